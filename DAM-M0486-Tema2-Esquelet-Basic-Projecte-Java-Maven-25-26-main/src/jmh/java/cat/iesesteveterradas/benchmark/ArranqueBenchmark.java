@@ -0,0 +1,109 @@
+package cat.iesesteveterradas.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Primera consulta en frio frente a la misma consulta en caliente, medidas una a una.
+ * <p>
+ * En frio cada medida abre la conexion, aplica los PRAGMA y compila la sentencia.
+ * La cache de paginas del sistema operativo no se vacia, asi que el fichero puede
+ * estar ya en memoria: es el caso de reiniciar la aplicacion, no la maquina.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 50)
+@Fork(3)
+public class ArranqueBenchmark {
+
+    static final String SQL_MEJOR_ATACANTE =
+        "SELECT * FROM Personaje WHERE idFaccion = ? ORDER BY atac DESC LIMIT 1;";
+
+    @State(Scope.Benchmark)
+    public static class Datos {
+        @Param({ "10", "10000", "1000000", "10000000" })
+        public int filas;
+
+        @Param({ "true", "false" })
+        public boolean indices;
+
+        String path;
+
+        @Setup(Level.Trial)
+        public void preparar() throws SQLException {
+            path = DatosBenchmark.preparar(filas, indices);
+        }
+    }
+
+    /** Un pool nuevo (sin conexiones ni sentencias) en cada medida. */
+    @State(Scope.Benchmark)
+    public static class PoolFrio {
+        ConnectionPool pool;
+
+        @Setup(Level.Invocation)
+        public void abrir(Datos datos) {
+            pool = new ConnectionPool(datos.path, 1, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE, TuningProfile.PERFORMANCE);
+        }
+
+        @TearDown(Level.Invocation)
+        public void cerrar() {
+            pool.close();
+        }
+    }
+
+    /** Un pool que ya ha ejecutado la consulta una vez. */
+    @State(Scope.Benchmark)
+    public static class PoolCaliente {
+        ConnectionPool pool;
+
+        @Setup(Level.Trial)
+        public void abrir(Datos datos) throws SQLException {
+            pool = new ConnectionPool(datos.path, 1, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE, TuningProfile.PERFORMANCE);
+            consultar(pool);
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() {
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<Personaje> frio(PoolFrio estado) throws SQLException {
+        return consultar(estado.pool);
+    }
+
+    @Benchmark
+    public Optional<Personaje> caliente(PoolCaliente estado) throws SQLException {
+        return consultar(estado.pool);
+    }
+
+    private static Optional<Personaje> consultar(ConnectionPool pool) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryFirst(conn, SQL_MEJOR_ATACANTE, HonorDao::mapPersonaje, 1);
+        }
+    }
+}
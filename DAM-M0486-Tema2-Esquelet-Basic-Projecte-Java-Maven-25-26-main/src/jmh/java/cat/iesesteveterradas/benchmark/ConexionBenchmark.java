@@ -0,0 +1,68 @@
+package cat.iesesteveterradas.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Coste de {@link DatabaseManager#connect}: prestamo del pool frente a abrir
+ * una conexion fisica nueva (lo que hacia connect antes del pool).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConexionBenchmark {
+
+    @Param({ "DRIVER_DEFAULT", "PERFORMANCE" })
+    public String perfil;
+
+    private String path;
+    private TuningProfile profile;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        path = DatosBenchmark.preparar(10, true);
+        profile = "PERFORMANCE".equals(perfil) ? TuningProfile.PERFORMANCE : TuningProfile.DRIVER_DEFAULT;
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        DatabaseManager.closePools();
+    }
+
+    @Benchmark
+    public boolean connectPool() throws SQLException {
+        try (Connection conn = DatabaseManager.connect(path, profile)) {
+            return conn.getAutoCommit();
+        }
+    }
+
+    @Benchmark
+    public boolean connectFisica() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            profile.apply(conn);
+            return conn.getAutoCommit();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cat.iesesteveterradas.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Consultas de {@link DatabaseManager} y {@link HonorDao} con la conexion ya abierta
+ * (en caliente), segun el tamano de la tabla, los indices y la cache de sentencias.
+ * <p>
+ * Para limitar la combinatoria: {@code -p filas=10000 -p indices=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsultasBenchmark {
+
+    static final String SQL_POR_ID = "SELECT * FROM Personaje WHERE id = ?;";
+    static final String SQL_TOP =
+        "SELECT * FROM Personaje WHERE idFaccion = ? ORDER BY atac DESC LIMIT ?;";
+    // Reescribe la fila sin cambiarla, para que los datos sigan siendo los generados
+    static final String SQL_UPDATE = "UPDATE Personaje SET defensa = defensa WHERE id = ?;";
+
+    static final int TOP_N = 10;
+
+    @Param({ "10", "10000", "1000000", "10000000" })
+    public int filas;
+
+    @Param({ "true", "false" })
+    public boolean indices;
+
+    /** Sentencias en cache por conexion (0 = sin cache). */
+    @Param({ "32", "0" })
+    public int cacheSentencias;
+
+    private ConnectionPool pool;
+    private Connection conn;
+    private HonorDao dao;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        String path = DatosBenchmark.preparar(filas, indices);
+        pool = new ConnectionPool(path, 2, cacheSentencias, TuningProfile.PERFORMANCE);
+        conn = pool.getConnection();
+        dao = new HonorDao(pool);
+        random = new SplittableRandom(DatosBenchmark.SEMILLA);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        conn.close();
+        pool.close();
+    }
+
+    @Benchmark
+    public void selectPorId(Blackhole bh) throws SQLException {
+        try (ResultSet rs = DatabaseManager.querySelectPS(conn, SQL_POR_ID, idAleatorio())) {
+            while (rs.next()) {
+                bh.consume(rs.getDouble("atac"));
+            }
+        }
+    }
+
+    @Benchmark
+    public int updatePorId() throws SQLException {
+        return DatabaseManager.queryUpdatePS(conn, SQL_UPDATE, idAleatorio());
+    }
+
+    @Benchmark
+    public List<Personaje> personajesPorFaccion() throws SQLException {
+        return dao.findPersonajesByFaccion(faccionAleatoria());
+    }
+
+    @Benchmark
+    public Optional<Personaje> mejorAtacante() throws SQLException {
+        return dao.findMejorAtacante(faccionAleatoria());
+    }
+
+    @Benchmark
+    public List<Personaje> topN() throws SQLException {
+        return DatabaseManager.queryList(conn, SQL_TOP, HonorDao::mapPersonaje, faccionAleatoria(), TOP_N);
+    }
+
+    private int idAleatorio() {
+        return 1 + random.nextInt(filas);
+    }
+
+    private int faccionAleatoria() {
+        return 1 + random.nextInt(DatosBenchmark.NUM_FACCIONES);
+    }
+}
@@ -0,0 +1,82 @@
+package cat.iesesteveterradas.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.GeneradorDatos;
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+/**
+ * Bases de datos de prueba para los benchmarks.
+ * <p>
+ * Cada combinacion (filas, indices) se genera una sola vez en {@code target/jmh-data}
+ * y se reutiliza entre forks y ejecuciones. Los datos salen de {@link GeneradorDatos}
+ * con semilla fija, asi que dos maquinas generan exactamente la misma base de datos.
+ */
+final class DatosBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatosBenchmark.class);
+
+    static final Path DIRECTORIO = Paths.get("target", "jmh-data");
+    static final int NUM_FACCIONES = 10;
+    static final long SEMILLA = 20251018L;
+
+    private static final int CHUNK = 100_000;
+
+    private DatosBenchmark() {
+    }
+
+    /**
+     * @return La ruta de una base de datos con {@code filas} personajes repartidos
+     *         entre {@link #NUM_FACCIONES} facciones, generandola si no existe.
+     */
+    static synchronized String preparar(int filas, boolean indices) throws SQLException {
+        Path db = DIRECTORIO.resolve("honor-" + filas + (indices ? "-idx" : "") + ".db");
+        if (Files.exists(db)) {
+            return db.toString();
+        }
+        try {
+            Files.createDirectories(DIRECTORIO);
+            Path tmp = Files.createTempFile(DIRECTORIO, "honor-", ".db.tmp");
+            Files.delete(tmp);
+            long t0 = System.nanoTime();
+            generar(tmp.toString(), filas, indices);
+            // Otro fork puede estar generando la misma: gana el primero que acabe
+            Files.move(tmp, db, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Generada {} ({} filas) en {} ms.", db, filas, (System.nanoTime() - t0) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return db.toString();
+    }
+
+    private static void generar(String path, int filas, boolean indices) throws SQLException {
+        // Pool propio (y journal por defecto) para poder mover el fichero al acabar
+        try (ConnectionPool pool = new ConnectionPool(path, 1, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE);
+             Connection conn = pool.getConnection()) {
+            HonorDao.crearTablas(conn);
+            // Reparto uniforme: los benchmarks eligen facciones al azar con la misma probabilidad
+            new GeneradorDatos(NUM_FACCIONES, filas, SEMILLA)
+                .setZipf(0)
+                .setSesgoStats(1)
+                .setChunkSize(CHUNK)
+                .generar(conn);
+
+            if (indices) {
+                HonorDao.crearIndices(conn);
+            }
+            DatabaseManager.queryUpdate(conn, "ANALYZE;");
+        }
+    }
+}
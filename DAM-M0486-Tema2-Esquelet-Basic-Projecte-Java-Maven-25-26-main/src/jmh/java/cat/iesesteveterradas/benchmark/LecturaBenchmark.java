@@ -0,0 +1,102 @@
+package cat.iesesteveterradas.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.iesesteveterradas.Main;
+import cat.iesesteveterradas.utility.LineReader;
+
+/**
+ * Lectura de un fichero de texto entero: {@link Main#readFileContent} (readAllLines)
+ * frente a {@link LineReader} en un hilo y en paralelo.
+ * <p>
+ * Cada variante suma la longitud de todas las lineas, para que no se pueda
+ * descartar la lectura. Con ficheros grandes, readAllLines necesita un heap
+ * del tamano del fichero (o mas): {@code -p megas=64} si falta memoria.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class LecturaBenchmark {
+
+    @Param({ "64", "512" })
+    public int megas;
+
+    private Path fichero;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        fichero = DatosBenchmark.DIRECTORIO.resolve("lineas-" + megas + "mb.txt");
+        if (Files.exists(fichero)) {
+            return;
+        }
+        Files.createDirectories(DatosBenchmark.DIRECTORIO);
+        Path tmp = Files.createTempFile(DatosBenchmark.DIRECTORIO, "lineas-", ".tmp");
+        SplittableRandom random = new SplittableRandom(DatosBenchmark.SEMILLA);
+        long objetivo = megas * 1024L * 1024L;
+        long escritos = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            while (escritos < objetivo) {
+                // Lineas de 20 a 200 caracteres, con algun caracter de dos bytes
+                StringBuilder linea = new StringBuilder();
+                int longitud = 20 + random.nextInt(180);
+                for (int i = 0; i < longitud; i++) {
+                    linea.append(random.nextInt(50) == 0 ? 'à' : (char) ('a' + random.nextInt(26)));
+                }
+                out.write(linea.toString());
+                out.newLine();
+                escritos += longitud + 1;
+            }
+        }
+        Files.move(tmp, fichero, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Benchmark
+    public long readAllLines() throws IOException {
+        List<String> lineas = Main.readFileContent(fichero);
+        long total = 0;
+        for (String linea : lineas) {
+            total += linea.length();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long lineReader() throws IOException {
+        try (Stream<String> lineas = LineReader.lines(fichero, StandardCharsets.UTF_8)) {
+            return lineas.mapToLong(String::length).sum();
+        }
+    }
+
+    @Benchmark
+    public long lineReaderParalelo() throws IOException {
+        try (Stream<String> lineas = LineReader.parallelLines(fichero, StandardCharsets.UTF_8,
+                Runtime.getRuntime().availableProcessors())) {
+            return lineas.mapToLong(String::length).sum();
+        }
+    }
+}
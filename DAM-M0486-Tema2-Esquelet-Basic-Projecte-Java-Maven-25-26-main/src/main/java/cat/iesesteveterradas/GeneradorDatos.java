@@ -0,0 +1,290 @@
+package cat.iesesteveterradas;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Generador de datos sinteticos de Faccion y Personaje para pruebas de carga.
+ * <p>
+ * Con la misma configuracion y la misma semilla genera siempre los mismos datos.
+ * Las distribuciones no son uniformes, para parecerse a unos datos reales:
+ * <ul>
+ *   <li>El tamano de las facciones sigue una ley de Zipf con exponente {@code zipf}:
+ *       la faccion k tiene un peso proporcional a 1/k^zipf (0 = todas iguales).</li>
+ *   <li>El ataque y la defensa van de 0 a {@link #MAX_STAT} con un decimal. Con
+ *       {@code sesgoStats} = 1 son uniformes; con valores mayores abundan los
+ *       valores bajos y los altos son raros.</li>
+ *   <li>Los nombres se repiten (unos cientos de nombres distintos), como los
+ *       heroes de un juego con muchas partidas.</li>
+ * </ul>
+ * Las filas se generan bajo demanda y se insertan con {@link DatabaseManager#executeBatch},
+ * asi que nunca hay mas de un lote en memoria.
+ */
+public class GeneradorDatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneradorDatos.class);
+
+    public static final int DEFAULT_FACCIONES = 10;
+    public static final int DEFAULT_PERSONAJES = 100_000;
+    public static final long DEFAULT_SEMILLA = 20251018L;
+    public static final double DEFAULT_ZIPF = 1.0;
+    public static final double DEFAULT_SESGO_STATS = 2.0;
+    public static final int DEFAULT_CHUNK_SIZE = 50_000;
+
+    static final double MAX_STAT = 10.0;
+
+    static final String USO = "Uso: P210Honor --generate [--factions N] [--characters N] [--seed N] "
+        + "[--zipf S] [--skew K] [--out fichero]";
+
+    static final String INSERT_FACCION_SQL = "INSERT INTO Faccion (id, nom, resum) VALUES (?, ?, ?);";
+    static final String INSERT_PERSONAJE_SQL = "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES (?, ?, ?, ?);";
+
+    // Para un fichero nuevo: si se interrumpe la carga, el fichero temporal se descarta
+    private static final TuningProfile CARGA_MASIVA = new TuningProfile("CARGA_MASIVA",
+        "OFF", "OFF", null, -256_000, "MEMORY");
+
+    private static final String[] NOMBRES = {
+        "Warden", "Conqueror", "Peacekeep", "Lawbringer", "Centurion", "Gladiator",
+        "Raider", "Warlord", "Berserker", "Valkyrie", "Highlander", "Shaman",
+        "Kensei", "Shugoki", "Orochi", "Nobushi", "Shinobi", "Aramusha"
+    };
+    private static final int SUFIJOS = 50;
+
+    private final int numFacciones;
+    private final int numPersonajes;
+    private final long semilla;
+    private double zipf = DEFAULT_ZIPF;
+    private double sesgoStats = DEFAULT_SESGO_STATS;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public GeneradorDatos(int numFacciones, int numPersonajes, long semilla) {
+        if (numFacciones <= 0 || numPersonajes < 0) {
+            throw new IllegalArgumentException("Hace falta al menos una faccion y un numero de personajes no negativo: "
+                + numFacciones + ", " + numPersonajes);
+        }
+        this.numFacciones = numFacciones;
+        this.numPersonajes = numPersonajes;
+        this.semilla = semilla;
+    }
+
+    public GeneradorDatos setZipf(double zipf) {
+        if (zipf < 0) {
+            throw new IllegalArgumentException("El exponente de Zipf no puede ser negativo: " + zipf);
+        }
+        this.zipf = zipf;
+        return this;
+    }
+
+    public GeneradorDatos setSesgoStats(double sesgoStats) {
+        if (!(sesgoStats > 0)) {
+            throw new IllegalArgumentException("El sesgo de ataque y defensa debe ser positivo: " + sesgoStats);
+        }
+        this.sesgoStats = sesgoStats;
+        return this;
+    }
+
+    public GeneradorDatos setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("El tamano del lote debe ser positivo: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getNumFacciones() {
+        return numFacciones;
+    }
+
+    public int getNumPersonajes() {
+        return numPersonajes;
+    }
+
+    /**
+     * Anade las facciones y personajes generados a una base de datos que ya tiene las
+     * tablas. Las facciones nuevas toman ids a continuacion del mayor existente.
+     * Mientras tanto el registro de cambios esta pausado (ver {@link HonorDao#pausarRegistro}).
+     *
+     * @return El numero de personajes insertados.
+     */
+    public long generar(Connection conn) throws SQLException {
+        long t0 = System.nanoTime();
+        int base = DatabaseManager.queryFirst(conn, "SELECT IFNULL(MAX(id), 0) FROM Faccion;", rs -> rs.getInt(1)).orElse(0);
+        int[] ids = new int[numFacciones];
+        List<Object[]> facciones = new ArrayList<>(numFacciones);
+        for (int f = 0; f < numFacciones; f++) {
+            ids[f] = base + f + 1;
+            facciones.add(new Object[] { ids[f], String.format("Faccion-%04d", f + 1),
+                "Faccion generada " + (f + 1) + " de " + numFacciones + " (semilla " + semilla + ")" });
+        }
+        long filas;
+        boolean pausado = HonorDao.pausarRegistro(conn);
+        try {
+            DatabaseManager.executeBatch(conn, INSERT_FACCION_SQL, facciones, chunkSize);
+            filas = DatabaseManager.executeBatch(conn, INSERT_PERSONAJE_SQL, () -> personajes(ids), chunkSize);
+        } finally {
+            if (pausado) {
+                HonorDao.reanudarRegistro(conn);
+            }
+        }
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        logger.info("Generados {} personajes en {} facciones en {} ms ({} filas/s).",
+            filas, numFacciones, ms, ms > 0 ? filas * 1000 / ms : filas);
+        return filas;
+    }
+
+    /**
+     * Crea un fichero de base de datos nuevo con las tablas, los datos generados,
+     * los indices y los resumenes. Se escribe en un temporal y se mueve al final,
+     * asi que nunca queda un fichero a medias con el nombre final.
+     *
+     * @return El numero de personajes insertados.
+     */
+    public long generarFichero(Path fichero) throws IOException, SQLException {
+        if (Files.exists(fichero)) {
+            throw new IOException("El fichero " + fichero + " ya existe.");
+        }
+        Path directorio = fichero.toAbsolutePath().getParent();
+        Files.createDirectories(directorio);
+        Path tmp = Files.createTempFile(directorio, "honor-", ".db.tmp");
+        Files.delete(tmp);
+        try {
+            long filas;
+            try (ConnectionPool pool = new ConnectionPool(tmp.toString(), 1, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE, CARGA_MASIVA);
+                 Connection conn = pool.getConnection()) {
+                HonorDao.crearTablas(conn);
+                filas = generar(conn);
+                // Indices, resumenes y busqueda al final: construirlos de una vez es mas rapido que fila a fila
+                HonorDao.crearIndices(conn);
+                HonorDao.crearVistas(conn);
+                HonorDao.crearBusqueda(conn);
+                DatabaseManager.queryUpdate(conn, "ANALYZE;");
+            }
+            Files.move(tmp, fichero, StandardCopyOption.ATOMIC_MOVE);
+            return filas;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Genera las filas de personaje bajo demanda ({nom, atac, defensa, idFaccion}).
+     *
+     * @param idsFacciones Los ids de las facciones, de la mas grande a la mas pequena.
+     */
+    Iterator<Object[]> personajes(int[] idsFacciones) {
+        SplittableRandom random = new SplittableRandom(semilla);
+        double[] acumulado = new double[idsFacciones.length];
+        double total = 0;
+        for (int f = 0; f < idsFacciones.length; f++) {
+            total += 1.0 / Math.pow(f + 1, zipf);
+            acumulado[f] = total;
+        }
+        double suma = total;
+        return new Iterator<Object[]>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < numPersonajes;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                i++;
+                int f = Arrays.binarySearch(acumulado, random.nextDouble(suma));
+                f = f >= 0 ? f + 1 : -f - 1;
+                String nom = NOMBRES[random.nextInt(NOMBRES.length)] + "-" + (1 + random.nextInt(SUFIJOS));
+                return new Object[] { nom, stat(random), stat(random), idsFacciones[Math.min(f, idsFacciones.length - 1)] };
+            }
+        };
+    }
+
+    private double stat(SplittableRandom random) {
+        return Math.round(Math.pow(random.nextDouble(), sesgoStats) * MAX_STAT * 10) / 10.0;
+    }
+
+    /**
+     * Genera datos desde la linea de comandos (ver {@link #USO}). Sin {@code --out}
+     * se anaden a la base de datos de la aplicacion.
+     *
+     * @return Un codigo de salida de {@link HonorCli}.
+     */
+    public static int ejecutar(String dbPath, TuningProfile perfil, String[] args) {
+        int facciones = DEFAULT_FACCIONES;
+        int personajes = DEFAULT_PERSONAJES;
+        long semilla = DEFAULT_SEMILLA;
+        double zipf = DEFAULT_ZIPF;
+        double sesgo = DEFAULT_SESGO_STATS;
+        Path out = null;
+        GeneradorDatos generador;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--generate":
+                        break;
+                    case "--factions":
+                        facciones = Integer.parseInt(args[++i]);
+                        break;
+                    case "--characters":
+                        personajes = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        semilla = Long.parseLong(args[++i]);
+                        break;
+                    case "--zipf":
+                        zipf = Double.parseDouble(args[++i]);
+                        break;
+                    case "--skew":
+                        sesgo = Double.parseDouble(args[++i]);
+                        break;
+                    case "--out":
+                        out = Paths.get(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argumento '" + args[i] + "' no valido.");
+                }
+            }
+            generador = new GeneradorDatos(facciones, personajes, semilla).setZipf(zipf).setSesgoStats(sesgo);
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.error("Argumentos no validos: {}\n{}", e.getMessage(), USO);
+            return HonorCli.EXIT_USO;
+        }
+
+        try {
+            if (out != null) {
+                generador.generarFichero(out);
+                logger.info("Base de datos generada en {}.", out);
+            } else {
+                try (Connection conn = DatabaseManager.connect(dbPath, perfil)) {
+                    generador.generar(conn);
+                }
+            }
+            return HonorCli.EXIT_OK;
+        } catch (IOException | SQLException e) {
+            logger.error("Error generando los datos: {}", e.getMessage(), e);
+            return HonorCli.EXIT_ERROR;
+        }
+    }
+}
@@ -0,0 +1,970 @@
+package cat.iesesteveterradas;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import cat.iesesteveterradas.analytics.AnalisisFacciones;
+import cat.iesesteveterradas.analytics.EstadisticasFaccion;
+import cat.iesesteveterradas.dao.CachedHonorDao;
+import cat.iesesteveterradas.dao.FeedCambios;
+import cat.iesesteveterradas.dao.FilaPersonaje;
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.dao.HonorWriter;
+import cat.iesesteveterradas.dao.IndiceAtacDefensa;
+import cat.iesesteveterradas.dao.Leaderboard;
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResultadoBusqueda;
+import cat.iesesteveterradas.model.ResumenFaccion;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Modo no interactivo de {@link P210Honor}: ejecuta una o varias consultas y
+ * escribe los resultados por la salida estandar.
+ * <p>
+ * Uso:
+ * <pre>
+ * P210Honor [--format text|csv|json] (--query CONSULTA [--faction ID] [--by atac|defensa|combinado] [--k N] [--text TEXTO]
+ *     [--atac X] [--defensa Y])... [--stdin]
+ * </pre>
+ * Consultas: {@code list-tables}, {@code facciones}, {@code personajes} (todas o de
+ * {@code --faction}), {@code best-attacker}, {@code best-defender}, {@code top}, {@code stats},
+ * {@code summary} (resumen mantenido por triggers, ver {@link HonorDao#crearVistas}),
+ * {@code search} (facciones por las palabras de {@code --text}) y {@code prefix} (personajes
+ * cuyo nombre empieza por {@code --text}); estas dos devuelven como mucho {@code --k} filas.
+ * {@code nearest} da los {@code --k} personajes mas cercanos a {@code --atac}/{@code --defensa}
+ * y {@code pareto} la frontera de Pareto (de todos o de {@code --faction}), ambas desde un
+ * {@link IndiceAtacDefensa} en memoria.
+ * <p>
+ * Con un {@link HonorWriter} (en {@link HonorServer}) tambien se admiten escrituras, que
+ * devuelven la fila escrita: {@code add-faction --name NOM [--text RESUM]},
+ * {@code add-character --name NOM --atac X --defensa Y --faction ID},
+ * {@code update-character --id ID} con los mismos campos, y {@code delete-character --id ID}.
+ * Sin escritor son un error.
+ * <p>
+ * Con {@code --stdin} (o sin ninguna {@code --query}) se lee una consulta por linea de la
+ * entrada estandar con la misma sintaxis, p.ej. {@code best-attacker --faction 2}. Las lineas
+ * vacias y las que empiezan por {@code #} se ignoran. Todas las consultas comparten conexiones
+ * y caches, y la salida se vuelca al acabar cada consulta.
+ * <p>
+ * En JSON cada consulta es un objeto en una linea (JSON Lines); en CSV cada consulta
+ * empieza por su cabecera y acaba con una linea en blanco. Una consulta que falla produce
+ * igualmente un resultado: {@code {"error": ...}} en JSON y {@code ERROR: ...} en texto y CSV.
+ * <p>
+ * Codigos de salida: {@link #EXIT_OK}, {@link #EXIT_USO}, {@link #EXIT_ERROR} y
+ * {@link #EXIT_SIN_RESULTADOS}. Si fallan varias consultas se devuelve el mas grave.
+ */
+public class HonorCli {
+
+    private static final Logger logger = LoggerFactory.getLogger(HonorCli.class);
+
+    /** Todas las consultas han devuelto algun resultado. */
+    public static final int EXIT_OK = 0;
+    /** Argumentos o consulta no validos. */
+    public static final int EXIT_USO = 1;
+    /** Error de base de datos o de escritura de la salida. */
+    public static final int EXIT_ERROR = 2;
+    /** Alguna consulta no ha encontrado nada (p.ej. una faccion sin personajes). */
+    public static final int EXIT_SIN_RESULTADOS = 3;
+
+    private static final int BUFFER_SALIDA = 64 * 1024;
+
+    static final String USO = "Uso: P210Honor [--format text|csv|json] "
+        + "(--query CONSULTA [--faction ID] [--by atac|defensa|combinado] [--k N] [--text TEXTO] "
+        + "[--atac X] [--defensa Y])... [--stdin]";
+
+    enum Formato {
+        TEXT, CSV, JSON
+    }
+
+    /**
+     * Una consulta con sus parametros.
+     */
+    static final class Consulta {
+        String nombre;
+        Integer faccion;
+        Leaderboard.Criterio criterio = Leaderboard.Criterio.COMBINADO;
+        int k = 10;
+        String texto;
+        Double atac;
+        Double defensa;
+        Integer id;
+        String nom;
+
+        @Override
+        public String toString() {
+            return nombre + (faccion != null ? " --faction " + faccion : "") + (texto != null ? " --text " + texto : "");
+        }
+    }
+
+    /**
+     * Argumentos de la linea de comandos ya interpretados.
+     */
+    static final class Argumentos {
+        Formato formato = Formato.TEXT;
+        boolean stdin;
+        final List<Consulta> consultas = new ArrayList<>();
+    }
+
+    private final ConnectionPool pool;
+    private final HonorDao dao;
+    private final HonorWriter escritor;
+    private final Tabla tabla;
+    private final boolean leaderboardPropio;
+    private final boolean indicePropio;
+    private final int paginaPersonajes;
+    private Leaderboard leaderboard;
+    private IndiceAtacDefensa indice;
+
+    /**
+     * @param pool De donde tomar conexiones para las consultas que no pasan por el DAO.
+     * @param dao El DAO (normalmente con cache) compartido entre consultas.
+     * @param leaderboard Una clasificacion compartida, o null para crear una propia al necesitarla.
+     * @param indice Un indice de ataque y defensa compartido, o null para crear uno propio al necesitarlo.
+     * @param tabla Donde escribir los resultados.
+     */
+    HonorCli(ConnectionPool pool, HonorDao dao, Leaderboard leaderboard, IndiceAtacDefensa indice, Tabla tabla) {
+        this(pool, dao, null, leaderboard, indice, tabla, 0);
+    }
+
+    /**
+     * Como {@link #HonorCli(ConnectionPool, HonorDao, Leaderboard, IndiceAtacDefensa, Tabla)},
+     * pero {@code personajes} sin faccion se lee por paginas y cada pagina se escribe
+     * despues de devolver la conexion. Para cuando la salida puede bloquearse (un
+     * cliente lento de {@link HonorServer}): mientras tanto no se ocupa una conexion
+     * del pool ni se mantiene abierta una transaccion de lectura.
+     *
+     * @param escritor Por donde pasan las escrituras, o null si no se admiten.
+     * @param paginaPersonajes Personajes por pagina, o 0 para recorrer la tabla de una vez.
+     */
+    HonorCli(ConnectionPool pool, HonorDao dao, HonorWriter escritor, Leaderboard leaderboard, IndiceAtacDefensa indice,
+            Tabla tabla, int paginaPersonajes) {
+        this.pool = pool;
+        this.dao = dao;
+        this.escritor = escritor;
+        this.leaderboard = leaderboard;
+        this.leaderboardPropio = leaderboard == null;
+        this.indice = indice;
+        this.indicePropio = indice == null;
+        this.tabla = tabla;
+        this.paginaPersonajes = paginaPersonajes;
+    }
+
+    /**
+     * Ejecuta las consultas indicadas en los argumentos (y/o en la entrada).
+     *
+     * @param dbPath La base de datos, que ya debe existir.
+     * @param perfil El perfil de ajuste de las conexiones.
+     * @param args Los argumentos de la linea de comandos.
+     * @param in De donde leer las consultas con {@code --stdin}.
+     * @param out Donde escribir los resultados.
+     * @return El codigo de salida.
+     */
+    public static int ejecutar(String dbPath, TuningProfile perfil, String[] args, InputStream in, OutputStream out) {
+        Argumentos argumentos;
+        try {
+            argumentos = parsearArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            logger.error("{}\n{}", e.getMessage(), USO);
+            return EXIT_USO;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SALIDA);
+        int codigo = EXIT_OK;
+        ConnectionPool pool = DatabaseManager.getPool(dbPath, perfil);
+        try (CachedHonorDao dao = new CachedHonorDao(pool)) {
+            HonorCli cli = new HonorCli(pool, dao, null, null, Tabla.crear(argumentos.formato, writer));
+            try {
+                for (Consulta consulta : argumentos.consultas) {
+                    codigo = Math.max(codigo, cli.ejecutar(consulta));
+                }
+                if (argumentos.stdin) {
+                    codigo = Math.max(codigo, cli.ejecutarLineas(
+                        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))));
+                }
+            } finally {
+                cli.close();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Normalmente la salida se ha cerrado (p.ej. "| head")
+            logger.error("Error escribiendo los resultados: {}", e.getMessage());
+            return EXIT_ERROR;
+        }
+        return codigo;
+    }
+
+    /**
+     * Ejecuta una consulta por linea hasta el final de la entrada.
+     */
+    int ejecutarLineas(BufferedReader reader) throws IOException {
+        int codigo = EXIT_OK;
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            codigo = Math.max(codigo, ejecutarLinea(linea));
+        }
+        return codigo;
+    }
+
+    /**
+     * Ejecuta una consulta escrita en una linea. Las lineas vacias y los comentarios
+     * no producen salida; una linea no valida produce un resultado de error.
+     *
+     * @return El codigo de salida de esta linea.
+     */
+    int ejecutarLinea(String linea) throws IOException {
+        linea = linea.trim();
+        if (linea.isEmpty() || linea.startsWith("#")) {
+            return EXIT_OK;
+        }
+        Consulta consulta;
+        try {
+            consulta = parsearLinea(linea);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Linea '{}' no valida: {}", linea, e.getMessage());
+            tabla.error(e.getMessage());
+            return EXIT_USO;
+        }
+        return ejecutar(consulta);
+    }
+
+    /**
+     * Ejecuta una consulta y vuelca su resultado.
+     *
+     * @return El codigo de salida de esta consulta.
+     */
+    int ejecutar(Consulta consulta) throws IOException {
+        long t0 = System.nanoTime();
+        if (esEscritura(consulta.nombre) && escritor == null) {
+            tabla.error("La consulta " + consulta.nombre + " solo se admite en el servidor.");
+            return EXIT_USO;
+        }
+        long filas;
+        try {
+            filas = resolver(consulta);
+        } catch (SQLException e) {
+            logger.error("Error de base de datos en la consulta '{}'.", consulta, e);
+            tabla.error("Error de base de datos: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+        tabla.fin();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Consulta '{}': {} filas en {} us.", consulta, filas, (System.nanoTime() - t0) / 1_000);
+        }
+        return filas == 0 ? EXIT_SIN_RESULTADOS : EXIT_OK;
+    }
+
+    /**
+     * Deja de escuchar cambios y vuelca lo que quede en el buffer.
+     */
+    void close() throws IOException {
+        if (leaderboardPropio && leaderboard != null) {
+            leaderboard.close();
+        }
+        if (indicePropio && indice != null) {
+            indice.close();
+        }
+        tabla.flush();
+    }
+
+    private long resolver(Consulta c) throws SQLException, IOException {
+        switch (c.nombre) {
+            case "list-tables": {
+                tabla.cabecera(c.nombre, new String[] { "tabla" }, new int[] { 20 });
+                List<String> tablas;
+                try (Connection conn = pool.getConnection()) {
+                    tablas = DatabaseManager.listTables(conn);
+                }
+                for (String t : tablas) {
+                    tabla.fila(t);
+                }
+                return tablas.size();
+            }
+            case "facciones": {
+                tabla.cabecera(c.nombre, new String[] { "id", "nom", "resum" }, new int[] { 5, 15, 50 });
+                List<Faccion> facciones = dao.listFacciones();
+                for (Faccion f : facciones) {
+                    tabla.fila(f.getId(), f.getNom(), f.getResum());
+                }
+                return facciones.size();
+            }
+            case "personajes": {
+                cabeceraPersonajes(c.nombre);
+                if (c.faccion == null && paginaPersonajes > 0) {
+                    return paginasPersonajes();
+                }
+                if (c.faccion == null) {
+                    // Sin faccion se recorre toda la tabla sin cargarla en memoria
+                    try {
+                        return dao.forEachFila(this::filaPersonaje);
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                }
+                List<Personaje> personajes = dao.findPersonajesByFaccion(c.faccion);
+                for (Personaje p : personajes) {
+                    filaPersonaje(p);
+                }
+                return personajes.size();
+            }
+            case "best-attacker":
+                cabeceraPersonajes(c.nombre);
+                return filaPersonaje(dao.findMejorAtacante(requerirFaccion(c)));
+            case "best-defender":
+                cabeceraPersonajes(c.nombre);
+                return filaPersonaje(dao.findMejorDefensor(requerirFaccion(c)));
+            case "top": {
+                cabeceraPersonajes(c.nombre);
+                if (leaderboard == null) {
+                    leaderboard = new Leaderboard(dao, new FeedCambios(pool, 0));
+                }
+                List<Personaje> top = leaderboard.top(requerirFaccion(c), c.criterio, c.k);
+                for (Personaje p : top) {
+                    filaPersonaje(p);
+                }
+                return top.size();
+            }
+            case "stats":
+                return estadisticas(c);
+            case "summary": {
+                tabla.cabecera(c.nombre, new String[] { "idFaccion", "personajes", "mediaAtac", "desviacionAtac",
+                    "mediaDefensa", "desviacionDefensa" }, new int[] { 9, 10, 9, 14, 12, 17 });
+                List<ResumenFaccion> resumenes = c.faccion == null
+                    ? dao.listResumenes()
+                    : dao.findResumen(c.faccion).map(List::of).orElse(List.of());
+                for (ResumenFaccion r : resumenes) {
+                    tabla.fila(r.getIdFaccion(), r.getNumPersonajes(), r.getMediaAtac(), r.getDesviacionAtac(),
+                        r.getMediaDefensa(), r.getDesviacionDefensa());
+                }
+                return resumenes.size();
+            }
+            case "search": {
+                tabla.cabecera(c.nombre, new String[] { "id", "nom", "fragmento", "puntuacion" },
+                    new int[] { 5, 15, 60, 10 });
+                List<ResultadoBusqueda> resultados = dao.buscarFacciones(c.texto, c.k);
+                for (ResultadoBusqueda r : resultados) {
+                    tabla.fila(r.getId(), r.getNom(), r.getFragmento(), r.getPuntuacion());
+                }
+                return resultados.size();
+            }
+            case "prefix": {
+                cabeceraPersonajes(c.nombre);
+                List<Personaje> personajes = dao.buscarPersonajesPorPrefijo(c.texto, c.k);
+                for (Personaje p : personajes) {
+                    filaPersonaje(p);
+                }
+                return personajes.size();
+            }
+            case "nearest": {
+                cabeceraPersonajes(c.nombre);
+                List<Personaje> cercanos = indice().cercanos(c.atac, c.defensa, c.k);
+                for (Personaje p : cercanos) {
+                    filaPersonaje(p);
+                }
+                return cercanos.size();
+            }
+            case "pareto": {
+                cabeceraPersonajes(c.nombre);
+                List<Personaje> frontera = c.faccion == null ? indice().pareto() : indice().pareto(c.faccion);
+                for (Personaje p : frontera) {
+                    filaPersonaje(p);
+                }
+                return frontera.size();
+            }
+            case "add-faction": {
+                tabla.cabecera(c.nombre, new String[] { "id", "nom", "resum" }, new int[] { 5, 15, 50 });
+                int id = esperar(escritor.insertFaccion(c.nom, c.texto));
+                tabla.fila(id, c.nom, c.texto);
+                return 1;
+            }
+            case "add-character":
+                cabeceraPersonajes(c.nombre);
+                filaPersonaje(esperar(escritor.insertPersonaje(c.nom, c.atac, c.defensa, c.faccion)));
+                return 1;
+            case "update-character": {
+                cabeceraPersonajes(c.nombre);
+                Personaje nuevo = new Personaje(c.id, c.nom, c.atac, c.defensa, c.faccion);
+                // Se devuelve la fila nueva, o nada si no existia
+                return filaPersonaje(esperar(escritor.updatePersonaje(nuevo)).map(anterior -> nuevo));
+            }
+            case "delete-character":
+                cabeceraPersonajes(c.nombre);
+                return filaPersonaje(esperar(escritor.deletePersonaje(c.id)));
+            default:
+                // parsearConsulta ya ha validado el nombre
+                throw new IllegalStateException("Consulta desconocida: " + c.nombre);
+        }
+    }
+
+    private static boolean esEscritura(String consulta) {
+        return consulta.startsWith("add-") || consulta.startsWith("update-") || consulta.startsWith("delete-");
+    }
+
+    /**
+     * Espera a que el escritor confirme la operacion.
+     */
+    private static <T> T esperar(CompletableFuture<T> futuro) throws SQLException, IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando una escritura.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Error en una escritura: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private long paginasPersonajes() throws SQLException, IOException {
+        long filas = 0;
+        int ultimo = Integer.MIN_VALUE;
+        List<Personaje> pagina;
+        do {
+            pagina = dao.paginaPersonajes(ultimo, paginaPersonajes);
+            for (Personaje p : pagina) {
+                filaPersonaje(p);
+            }
+            filas += pagina.size();
+            if (!pagina.isEmpty()) {
+                ultimo = pagina.get(pagina.size() - 1).getId();
+            }
+        } while (pagina.size() == paginaPersonajes);
+        return filas;
+    }
+
+    private IndiceAtacDefensa indice() {
+        if (indice == null) {
+            indice = new IndiceAtacDefensa(dao);
+        }
+        return indice;
+    }
+
+    private long estadisticas(Consulta c) throws SQLException, IOException {
+        AnalisisFacciones analisis = new AnalisisFacciones();
+        List<EstadisticasFaccion> estadisticas;
+        try (Connection conn = pool.getConnection()) {
+            estadisticas = analisis.calcular(conn);
+        }
+        double[] percentiles = analisis.getPercentiles();
+
+        List<String> columnas = new ArrayList<>(List.of("idFaccion", "personajes",
+            "mediaAtac", "desviacionAtac", "mediaDefensa", "desviacionDefensa"));
+        for (String col : new String[] { "Atac", "Defensa" }) {
+            for (double p : percentiles) {
+                columnas.add("p" + (int) p + col);
+            }
+        }
+        columnas.add("correlacion");
+        columnas.add("pareto");
+        int[] anchos = new int[columnas.size()];
+        for (int i = 0; i < anchos.length; i++) {
+            anchos[i] = Math.max(6, columnas.get(i).length());
+        }
+        tabla.cabecera(c.nombre, columnas.toArray(new String[0]), anchos);
+
+        long filas = 0;
+        for (EstadisticasFaccion e : estadisticas) {
+            if (c.faccion != null && e.getIdFaccion() != c.faccion) {
+                continue;
+            }
+            List<Object> valores = new ArrayList<>(columnas.size());
+            valores.add(e.getIdFaccion());
+            valores.add(e.getNumPersonajes());
+            valores.add(e.getMediaAtac());
+            valores.add(e.getDesviacionAtac());
+            valores.add(e.getMediaDefensa());
+            valores.add(e.getDesviacionDefensa());
+            for (double v : e.getPercentilesAtac()) {
+                valores.add(v);
+            }
+            for (double v : e.getPercentilesDefensa()) {
+                valores.add(v);
+            }
+            valores.add(e.getCorrelacion());
+            StringBuilder pareto = new StringBuilder();
+            for (Personaje p : e.getPareto()) {
+                if (pareto.length() > 0) {
+                    pareto.append(' ');
+                }
+                pareto.append(p.getId());
+            }
+            valores.add(pareto.toString());
+            tabla.fila(valores.toArray());
+            filas++;
+        }
+        return filas;
+    }
+
+    private void cabeceraPersonajes(String consulta) throws IOException {
+        tabla.cabecera(consulta, new String[] { "id", "nom", "atac", "defensa", "idFaccion", "faccion" },
+            new int[] { 5, 15, 7, 7, 9, 15 });
+    }
+
+    private long filaPersonaje(Optional<Personaje> p) throws IOException {
+        if (p.isEmpty()) {
+            return 0;
+        }
+        filaPersonaje(p.get());
+        return 1;
+    }
+
+    private void filaPersonaje(Personaje p) {
+        try {
+            tabla.fila(p.getId(), p.getNom(), p.getAtac(), p.getDefensa(), p.getIdFaccion(), p.getNomFaccion());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void filaPersonaje(FilaPersonaje p) {
+        try {
+            tabla.fila(p.getId(), p.getNom(), p.getAtac(), p.getDefensa(), p.getIdFaccion(), p.getNomFaccion());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int requerirFaccion(Consulta c) {
+        if (c.faccion == null) {
+            // Se comprueba al parsear; aqui solo por seguridad
+            throw new IllegalStateException("La consulta " + c.nombre + " necesita --faction.");
+        }
+        return c.faccion;
+    }
+
+    // ========== PARSEO DE ARGUMENTOS ==========
+
+    static Argumentos parsearArgumentos(String[] args) {
+        Argumentos result = new Argumentos();
+        List<String> actual = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format":
+                    result.formato = parsearFormato(valor(args, ++i, "--format"));
+                    break;
+                case "--stdin":
+                case "-":
+                    result.stdin = true;
+                    break;
+                case "--query":
+                    if (actual != null) {
+                        result.consultas.add(parsearConsulta(actual));
+                    }
+                    actual = new ArrayList<>();
+                    actual.add(valor(args, ++i, "--query"));
+                    break;
+                default:
+                    if (actual == null) {
+                        throw new IllegalArgumentException("Argumento '" + args[i] + "' fuera de una --query.");
+                    }
+                    actual.add(args[i]);
+            }
+        }
+        if (actual != null) {
+            result.consultas.add(parsearConsulta(actual));
+        }
+        if (result.consultas.isEmpty()) {
+            result.stdin = true;
+        }
+        return result;
+    }
+
+    static Consulta parsearLinea(String linea) {
+        List<String> tokens = new ArrayList<>(List.of(linea.split("\\s+")));
+        if (tokens.get(0).equals("--query")) {
+            tokens.remove(0);
+        }
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("Falta el nombre de la consulta.");
+        }
+        return parsearConsulta(tokens);
+    }
+
+    /**
+     * @param tokens El nombre de la consulta seguido de sus opciones.
+     */
+    static Consulta parsearConsulta(List<String> tokens) {
+        Consulta c = new Consulta();
+        c.nombre = tokens.get(0);
+        for (int i = 1; i < tokens.size(); i++) {
+            String opcion = tokens.get(i);
+            String valor = i + 1 < tokens.size() ? tokens.get(++i) : null;
+            if (valor == null) {
+                throw new IllegalArgumentException("Falta el valor de " + opcion + ".");
+            }
+            switch (opcion) {
+                case "--faction":
+                    c.faccion = parsearEntero(opcion, valor);
+                    break;
+                case "--k":
+                    c.k = parsearEntero(opcion, valor);
+                    break;
+                case "--text":
+                    c.texto = valor;
+                    break;
+                case "--id":
+                    c.id = parsearEntero(opcion, valor);
+                    break;
+                case "--name":
+                    c.nom = valor;
+                    break;
+                case "--atac":
+                    c.atac = parsearDecimal(opcion, valor);
+                    break;
+                case "--defensa":
+                    c.defensa = parsearDecimal(opcion, valor);
+                    break;
+                case "--by":
+                    try {
+                        c.criterio = Leaderboard.Criterio.valueOf(valor.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Criterio '" + valor + "' no valido (atac, defensa o combinado).");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opcion '" + opcion + "' no valida.");
+            }
+        }
+
+        switch (c.nombre) {
+            case "list-tables":
+            case "facciones":
+            case "personajes":
+            case "stats":
+            case "summary":
+            case "pareto":
+                break;
+            case "nearest":
+                if (c.atac == null || c.defensa == null) {
+                    throw new IllegalArgumentException("La consulta nearest necesita --atac y --defensa.");
+                }
+                break;
+            case "best-attacker":
+            case "best-defender":
+            case "top":
+                if (c.faccion == null) {
+                    throw new IllegalArgumentException("La consulta " + c.nombre + " necesita --faction.");
+                }
+                break;
+            case "search":
+            case "prefix":
+                if (c.texto == null || c.texto.isBlank()) {
+                    throw new IllegalArgumentException("La consulta " + c.nombre + " necesita --text.");
+                }
+                break;
+            case "add-faction":
+                if (c.nom == null) {
+                    throw new IllegalArgumentException("La consulta add-faction necesita --name.");
+                }
+                break;
+            case "add-character":
+            case "update-character":
+                if (c.nombre.equals("update-character") && c.id == null) {
+                    throw new IllegalArgumentException("La consulta update-character necesita --id.");
+                }
+                if (c.nom == null || c.atac == null || c.defensa == null || c.faccion == null) {
+                    throw new IllegalArgumentException("La consulta " + c.nombre
+                        + " necesita --name, --atac, --defensa y --faction.");
+                }
+                break;
+            case "delete-character":
+                if (c.id == null) {
+                    throw new IllegalArgumentException("La consulta delete-character necesita --id.");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Consulta '" + c.nombre + "' desconocida.");
+        }
+        return c;
+    }
+
+    private static Formato parsearFormato(String valor) {
+        try {
+            return Formato.valueOf(valor.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Formato '" + valor + "' no valido (text, csv o json).");
+        }
+    }
+
+    private static int parsearEntero(String opcion, String valor) {
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El valor de " + opcion + " debe ser un numero: '" + valor + "'.");
+        }
+    }
+
+    private static double parsearDecimal(String opcion, String valor) {
+        try {
+            return Double.parseDouble(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El valor de " + opcion + " debe ser un numero: '" + valor + "'.");
+        }
+    }
+
+    private static String valor(String[] args, int i, String opcion) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Falta el valor de " + opcion + ".");
+        }
+        return args[i];
+    }
+
+    // ========== FORMATOS DE SALIDA ==========
+
+    /**
+     * Escribe el resultado de una consulta en un formato. Las filas se escriben
+     * directamente al buffer, sin acumularlas.
+     */
+    abstract static class Tabla {
+        protected final Writer out;
+
+        Tabla(Writer out) {
+            this.out = out;
+        }
+
+        static Tabla crear(Formato formato, Writer out) throws IOException {
+            switch (formato) {
+                case CSV:
+                    return new TablaCsv(out);
+                case JSON:
+                    return new TablaJson(out);
+                default:
+                    return new TablaTexto(out);
+            }
+        }
+
+        abstract void cabecera(String consulta, String[] columnas, int[] anchos) throws IOException;
+
+        abstract void fila(Object... valores) throws IOException;
+
+        /**
+         * Cierra el resultado de la consulta y lo vuelca a la salida.
+         */
+        abstract void fin() throws IOException;
+
+        /**
+         * Termina la consulta con un error en lugar de (o despues de parte de) su resultado.
+         */
+        abstract void error(String mensaje) throws IOException;
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    static final class TablaTexto extends Tabla {
+        private int[] anchos;
+        private boolean abierta;
+
+        TablaTexto(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void cabecera(String consulta, String[] columnas, int[] anchos) throws IOException {
+            this.anchos = anchos;
+            this.abierta = true;
+            out.write("--- " + consulta + " ---\n");
+            int total = 0;
+            for (int i = 0; i < columnas.length; i++) {
+                celda(columnas[i], i);
+                total += anchos[i] + 3;
+            }
+            out.write('\n');
+            out.write("-".repeat(Math.max(0, total - 3)));
+            out.write('\n');
+        }
+
+        @Override
+        void fila(Object... valores) throws IOException {
+            for (int i = 0; i < valores.length; i++) {
+                Object v = valores[i];
+                celda(v instanceof Double ? String.format(Locale.ROOT, "%.2f", v) : v == null ? "" : v.toString(), i);
+            }
+            out.write('\n');
+        }
+
+        @Override
+        void fin() throws IOException {
+            if (abierta) {
+                out.write('\n');
+                abierta = false;
+            }
+            out.flush();
+        }
+
+        @Override
+        void error(String mensaje) throws IOException {
+            out.write("ERROR: " + mensaje + "\n");
+            abierta = true;
+            fin();
+        }
+
+        private void celda(String texto, int i) throws IOException {
+            if (i > 0) {
+                out.write(" | ");
+            }
+            out.write(texto);
+            for (int n = texto.length(); n < anchos[i]; n++) {
+                out.write(' ');
+            }
+        }
+    }
+
+    static final class TablaCsv extends Tabla {
+        private boolean abierta;
+
+        TablaCsv(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void cabecera(String consulta, String[] columnas, int[] anchos) throws IOException {
+            abierta = true;
+            fila((Object[]) columnas);
+        }
+
+        @Override
+        void fila(Object... valores) throws IOException {
+            for (int i = 0; i < valores.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object v = valores[i];
+                if (v instanceof Double && ((Double) v).isNaN() || v == null) {
+                    continue;
+                }
+                String texto = v.toString();
+                if (v instanceof String && needsQuotes(texto)) {
+                    out.write('"');
+                    out.write(texto.replace("\"", "\"\""));
+                    out.write('"');
+                } else {
+                    out.write(texto);
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        void fin() throws IOException {
+            if (abierta) {
+                out.write('\n');
+                abierta = false;
+            }
+            out.flush();
+        }
+
+        @Override
+        void error(String mensaje) throws IOException {
+            out.write("ERROR: " + mensaje + "\n");
+            abierta = true;
+            fin();
+        }
+
+        private static boolean needsQuotes(String texto) {
+            for (int i = 0; i < texto.length(); i++) {
+                char ch = texto.charAt(i);
+                if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class TablaJson extends Tabla {
+        private final JsonGenerator json;
+        private String[] columnas;
+
+        TablaJson(Writer out) throws IOException {
+            super(out);
+            this.json = new JsonFactory().createGenerator(out);
+            // La salida es de la aplicacion: el generador no la cierra
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        void cabecera(String consulta, String[] columnas, int[] anchos) throws IOException {
+            this.columnas = columnas;
+            json.writeStartObject();
+            json.writeStringField("query", consulta);
+            json.writeArrayFieldStart("rows");
+        }
+
+        @Override
+        void fila(Object... valores) throws IOException {
+            json.writeStartObject();
+            for (int i = 0; i < valores.length; i++) {
+                json.writeFieldName(columnas[i]);
+                Object v = valores[i];
+                if (v == null || v instanceof Double && ((Double) v).isNaN()) {
+                    json.writeNull();
+                } else if (v instanceof Integer) {
+                    json.writeNumber((Integer) v);
+                } else if (v instanceof Long) {
+                    json.writeNumber((Long) v);
+                } else if (v instanceof Double) {
+                    json.writeNumber((Double) v);
+                } else {
+                    json.writeString(v.toString());
+                }
+            }
+            json.writeEndObject();
+        }
+
+        @Override
+        void error(String mensaje) throws IOException {
+            // Un solo objeto por consulta: si ya habia filas, el error se anade al mismo objeto
+            if (columnas != null) {
+                json.writeEndArray();
+            } else {
+                json.writeStartObject();
+            }
+            json.writeStringField("error", mensaje);
+            json.writeEndObject();
+            json.flush();
+            out.write('\n');
+            out.flush();
+            columnas = null;
+        }
+
+        @Override
+        void fin() throws IOException {
+            if (columnas != null) {
+                json.writeEndArray();
+                json.writeEndObject();
+                json.flush();
+                out.write('\n');
+                columnas = null;
+            }
+            out.flush();
+        }
+    }
+}
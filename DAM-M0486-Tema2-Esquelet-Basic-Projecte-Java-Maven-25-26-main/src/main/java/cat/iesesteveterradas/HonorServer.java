@@ -0,0 +1,320 @@
+package cat.iesesteveterradas;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.dao.CachedHonorDao;
+import cat.iesesteveterradas.dao.FeedCambios;
+import cat.iesesteveterradas.dao.HonorWriter;
+import cat.iesesteveterradas.dao.IndiceAtacDefensa;
+import cat.iesesteveterradas.dao.Leaderboard;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Servidor de consultas para muchos clientes a la vez, por TCP (solo localhost)
+ * o por un socket de dominio Unix.
+ * <p>
+ * Protocolo: el cliente envia una consulta por linea con la misma sintaxis que
+ * {@link HonorCli} (p.ej. {@code best-attacker --faction 2}) y recibe una linea
+ * JSON por consulta: {@code {"query":...,"rows":[...]}} o {@code {"error":...}}.
+ * La linea {@code quit} cierra la conexion, y tambien una linea de mas de
+ * {@link #MAX_LINEA} caracteres (despues de responder con un error).
+ * <p>
+ * Cada cliente se atiende en su propio hilo virtual, asi que miles de clientes
+ * conectados no ocupan hilos del sistema mientras esperan. Lo que se limita es el
+ * acceso a SQLite: todos los clientes comparten un pool de conexiones de lectura
+ * (por defecto, una por nucleo), las caches del DAO, la clasificacion y el indice
+ * de ataque y defensa. Las escrituras ({@code add-faction}, {@code update-character}...,
+ * ver {@link HonorCli}) de todos los clientes pasan por un unico {@link HonorWriter},
+ * que las agrupa en pocas transacciones en lugar de pelearse por el bloqueo de
+ * escritura; cada cliente espera a que la suya este confirmada. Cada respuesta se escribe sin tener ninguna conexion
+ * prestada (la lista de todos los personajes, por paginas), asi que un cliente
+ * que lee despacio no deja sin conexiones a los demas ni impide los checkpoints
+ * del WAL.
+ */
+public class HonorServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HonorServer.class);
+
+    public static final int DEFAULT_PORT = 7070;
+
+    static final String USO = "Uso: P210Honor --server [--port N | --unix fichero] [--readers N]";
+
+    /** Longitud maxima de una consulta, en caracteres. */
+    public static final int MAX_LINEA = 4 * 1024;
+
+    // Personajes por pagina en la consulta de todos los personajes
+    static final int PAGINA_PERSONAJES = 1000;
+
+    private static final int BUFFER_CLIENTE = 8 * 1024;
+
+    private final ServerSocketChannel server;
+    private final Path unixPath;
+    private final ConnectionPool lectores;
+    private final HonorWriter escritor;
+    private final CachedHonorDao dao;
+    private final Leaderboard leaderboard;
+    private final IndiceAtacDefensa indice;
+    private final ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<SocketChannel> abiertos = ConcurrentHashMap.newKeySet();
+    private final AtomicLong atendidos = new AtomicLong();
+    private final AtomicLong consultas = new AtomicLong();
+    private volatile boolean cerrado;
+
+    /**
+     * @param server El canal ya enlazado a su direccion.
+     * @param unixPath El fichero del socket Unix (para borrarlo al cerrar), o null si es TCP.
+     * @param dbPath La base de datos, que ya debe existir.
+     * @param perfil El perfil de ajuste de las conexiones.
+     * @param numLectores Conexiones del pool de lectura.
+     */
+    HonorServer(ServerSocketChannel server, Path unixPath, String dbPath, TuningProfile perfil, int numLectores) {
+        this.server = server;
+        this.unixPath = unixPath;
+        this.lectores = new ConnectionPool(dbPath, numLectores, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE, perfil);
+        this.escritor = new HonorWriter(dbPath, perfil);
+        this.dao = new CachedHonorDao(lectores);
+        // Despues de una carga masiva, la clasificacion relee solo lo que dice el registro de cambios
+        this.leaderboard = new Leaderboard(dao, new FeedCambios(lectores, 0));
+        this.indice = new IndiceAtacDefensa(dao);
+    }
+
+    /**
+     * Abre el servidor en un puerto TCP de la interfaz local (loopback).
+     */
+    public static HonorServer abrirTcp(int port, String dbPath, TuningProfile perfil, int numLectores) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return new HonorServer(server, null, dbPath, perfil, numLectores);
+    }
+
+    /**
+     * Abre el servidor en un socket de dominio Unix. Si el fichero ya existe, se sustituye.
+     */
+    public static HonorServer abrirUnix(Path path, String dbPath, TuningProfile perfil, int numLectores) throws IOException {
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(path));
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return new HonorServer(server, path, dbPath, perfil, numLectores);
+    }
+
+    public SocketAddress getDireccion() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Acepta clientes hasta que se cierra el servidor.
+     */
+    public void servir() throws IOException {
+        logger.info("Servidor escuchando en {} ({} conexiones de lectura).", getDireccion(), lectores.getMaxSize());
+        while (!cerrado) {
+            SocketChannel canal;
+            try {
+                canal = server.accept();
+            } catch (AsynchronousCloseException e) {
+                // close() desde otro hilo
+                break;
+            }
+            abiertos.add(canal);
+            clientes.submit(() -> atender(canal));
+        }
+    }
+
+    /**
+     * Atiende a un cliente: una respuesta por cada linea hasta que cierra o envia {@code quit}.
+     */
+    private void atender(SocketChannel canal) {
+        long id = atendidos.incrementAndGet();
+        logger.debug("Cliente {} conectado.", id);
+        try (SocketChannel c = canal;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(c), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(c), StandardCharsets.UTF_8), BUFFER_CLIENTE)) {
+            HonorCli.Tabla tabla = HonorCli.Tabla.crear(HonorCli.Formato.JSON, out);
+            HonorCli cli = new HonorCli(lectores, dao, escritor, leaderboard, indice, tabla, PAGINA_PERSONAJES);
+            try {
+                StringBuilder buffer = new StringBuilder();
+                String linea;
+                while ((linea = leerLinea(in, buffer)) != null) {
+                    if (linea.length() > MAX_LINEA) {
+                        logger.warn("Cliente {}: linea de mas de {} caracteres, se cierra la conexion.", id, MAX_LINEA);
+                        tabla.error("Linea demasiado larga (maximo " + MAX_LINEA + " caracteres).");
+                        break;
+                    }
+                    if (linea.trim().equals("quit")) {
+                        break;
+                    }
+                    cli.ejecutarLinea(linea);
+                    consultas.incrementAndGet();
+                }
+            } finally {
+                cli.close();
+            }
+        } catch (IOException e) {
+            // El cliente ha cortado la conexion o el servidor se esta cerrando
+            if (!cerrado) {
+                logger.debug("Cliente {} desconectado: {}", id, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error atendiendo al cliente {}.", id, e);
+        } finally {
+            abiertos.remove(canal);
+        }
+        logger.debug("Cliente {} desconectado.", id);
+    }
+
+    /**
+     * Como {@link BufferedReader#readLine}, pero sin guardar mas de {@link #MAX_LINEA}
+     * caracteres: una linea mas larga se devuelve cortada a {@code MAX_LINEA + 1}.
+     *
+     * @return La linea sin el salto, o null al final de la entrada.
+     */
+    static String leerLinea(BufferedReader in, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        int ch;
+        while ((ch = in.read()) != -1 && ch != '\n') {
+            if (buffer.length() > MAX_LINEA) {
+                // Ya es demasiado larga: no hace falta leer el resto
+                return buffer.toString();
+            }
+            buffer.append((char) ch);
+        }
+        if (ch == -1 && buffer.length() == 0) {
+            return null;
+        }
+        int fin = buffer.length();
+        if (fin > 0 && buffer.charAt(fin - 1) == '\r') {
+            fin--;
+        }
+        return buffer.substring(0, fin);
+    }
+
+    /**
+     * Deja de aceptar clientes, corta los conectados y libera las conexiones.
+     */
+    @Override
+    public void close() {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.warn("Error cerrando el servidor: {}", e.getMessage());
+        }
+        for (SocketChannel canal : abiertos) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                logger.debug("Error cerrando un cliente: {}", e.getMessage());
+            }
+        }
+        // Espera a que acaben los hilos de los clientes
+        clientes.close();
+        // Confirma lo que quede en la cola antes de dejar de escuchar los avisos
+        escritor.close();
+        leaderboard.close();
+        indice.close();
+        dao.close();
+        lectores.close();
+        if (unixPath != null) {
+            try {
+                Files.deleteIfExists(unixPath);
+            } catch (IOException e) {
+                logger.warn("No se ha podido borrar {}: {}", unixPath, e.getMessage());
+            }
+        }
+        logger.info("Servidor cerrado. Clientes atendidos: {}, consultas: {}, escrituras: {} en {} transacciones.",
+            atendidos.get(), consultas.get(), escritor.getOperaciones(), escritor.getLotes());
+    }
+
+    /**
+     * Arranca el servidor con los argumentos de la linea de comandos y lo mantiene
+     * abierto hasta que se para la JVM (p.ej. con Ctrl+C).
+     *
+     * @return El codigo de salida.
+     */
+    public static int ejecutar(String dbPath, TuningProfile perfil, String[] args) {
+        int port = DEFAULT_PORT;
+        Path unix = null;
+        int numLectores = Math.max(DatabaseManager.DEFAULT_POOL_SIZE, Runtime.getRuntime().availableProcessors());
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--server":
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--unix":
+                        unix = Paths.get(args[++i]);
+                        break;
+                    case "--readers":
+                        numLectores = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argumento '" + args[i] + "' no valido.");
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.error("Argumentos no validos: {}\n{}", e.getMessage(), USO);
+            return HonorCli.EXIT_USO;
+        }
+
+        HonorServer server;
+        try {
+            server = unix != null
+                ? abrirUnix(unix, dbPath, perfil, numLectores)
+                : abrirTcp(port, dbPath, perfil, numLectores);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("No se ha podido abrir el servidor: {}", e.getMessage());
+            return HonorCli.EXIT_ERROR;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "honor-server-shutdown"));
+        try {
+            server.servir();
+        } catch (IOException e) {
+            logger.error("Error aceptando clientes: {}", e.getMessage());
+            server.close();
+            return HonorCli.EXIT_ERROR;
+        }
+        return HonorCli.EXIT_OK;
+    }
+}
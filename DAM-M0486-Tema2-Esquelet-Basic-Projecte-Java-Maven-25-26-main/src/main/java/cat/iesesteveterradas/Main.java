@@ -1,23 +1,36 @@
 package cat.iesesteveterradas;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.stream.Stream;
+
+import cat.iesesteveterradas.utility.LineReader;
 
 public class Main {
 
     public static void main(String[] args) {
-        Path filePath = obtenirPathFitxer();
-
-        try {
-            List<String> lines = readFileContent(filePath);
+        Path filePath = args.length > 0 ? Paths.get(args[0]) : obtenirPathFitxer();
+        // Joc de caràcters del fitxer (per defecte UTF-8, com readAllLines)
+        Charset charset = Charset.forName(System.getProperty("main.charset", "UTF-8"));
 
+        // Les línies s'escriuen a mesura que es llegeixen, sense carregar el fitxer sencer
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, charset), 64 * 1024));
+        try (Stream<String> lines = LineReader.lines(filePath, charset)) {
             // Imprimir les línies a la consola
-            lines.forEach(System.out::println);
-        } catch (IOException e) {
+            lines.forEach(out::println);
+        } catch (IOException | UncheckedIOException e) {
+            out.flush();
             System.out.println("S'ha produït un error en llegir el fitxer: " + e.getMessage());
+        } finally {
+            out.flush();
         }
     }
 
@@ -25,6 +38,10 @@ public class Main {
         return Paths.get(System.getProperty("user.dir"), "data", "bones_practiques_programacio.txt");
     }
 
+    /**
+     * Llegeix el fitxer sencer en una llista. Per a fitxers grans és millor
+     * {@link LineReader#lines}, que no els carrega en memòria.
+     */
     public static List<String> readFileContent(Path filePath) throws IOException {
         return Files.readAllLines(filePath);
     }
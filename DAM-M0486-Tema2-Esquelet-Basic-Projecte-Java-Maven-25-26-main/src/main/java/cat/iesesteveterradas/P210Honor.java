@@ -1,37 +1,97 @@
 package cat.iesesteveterradas;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Scanner;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cat.iesesteveterradas.analytics.AnalisisFacciones;
+import cat.iesesteveterradas.analytics.EstadisticasFaccion;
+import cat.iesesteveterradas.analytics.SimuladorDuelos;
+import cat.iesesteveterradas.dao.CachedHonorDao;
+import cat.iesesteveterradas.dao.FeedCambios;
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.dao.HonorSnapshot;
+import cat.iesesteveterradas.dao.Leaderboard;
+import cat.iesesteveterradas.dao.SnapshotHonorDao;
 import cat.iesesteveterradas.model.Faccion;
 import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResumenFaccion;
+import cat.iesesteveterradas.utility.ConnectionPool;
 import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.QueryMetrics;
+import cat.iesesteveterradas.utility.TuningProfile;
 
 public class P210Honor {
 
     private static final Logger logger = LoggerFactory.getLogger(P210Honor.class);
     private static final String DB_PATH = "data/honor.db";
+    private static final TuningProfile PERFIL = TuningProfile.PERFORMANCE;
+    
+    // Filas por pagina al mostrar una tabla completa (opcion 1)
+    private static final int TAMANO_PAGINA = Math.max(1, Integer.getInteger("honor.pagina", 20));
     
     private static final Scanner scanner = new Scanner(System.in);
 
     public static void main(String[] args) {
         
         new File("data").mkdirs();
+        configurarMetricas();
 
         try {
             initDatabase();
         } catch (SQLException e) {
             logger.error("Error al iniciar la base de datos.", e);
+            DatabaseManager.closePools();
+            System.exit(args.length > 0 ? HonorCli.EXIT_ERROR : 1);
+            return;
+        }
+
+        // Con argumentos: servidor (ver HonorServer), generador de datos (ver GeneradorDatos),
+        // simulacion de duelos (ver SimuladorDuelos) o modo no interactivo (ver HonorCli)
+        if (args.length > 0) {
+            int codigo;
+            switch (args[0]) {
+                case "--server":
+                    codigo = HonorServer.ejecutar(DB_PATH, PERFIL, args);
+                    break;
+                case "--generate":
+                    codigo = GeneradorDatos.ejecutar(DB_PATH, PERFIL, args);
+                    break;
+                case "--simulate":
+                    codigo = SimuladorDuelos.ejecutar(DB_PATH, PERFIL, args);
+                    break;
+                default:
+                    codigo = HonorCli.ejecutar(DB_PATH, PERFIL, args, System.in, System.out);
+            }
+            DatabaseManager.closePools();
+            System.exit(codigo);
             return;
         }
 
-        try (Connection conn = DatabaseManager.connect(DB_PATH)) {
+        HonorSnapshot snapshot = abrirSnapshot();
+
+        ConnectionPool pool = DatabaseManager.getPool(DB_PATH, PERFIL);
+        Leaderboard leaderboard = null;
+        try (Connection conn = pool.getConnection();
+             CachedHonorDao cache = new CachedHonorDao(pool)) {
+            // Con snapshot, las opciones 1-4 no pasan por JDBC
+            HonorDao dao = snapshot != null ? new SnapshotHonorDao(snapshot) : cache;
+            // Opciones 3 y 4: el mejor de cada faccion es la primera entrada de su clasificacion
+            leaderboard = new Leaderboard(dao, snapshot != null ? null : new FeedCambios(pool, 0));
             
             boolean salir = false;
             while (!salir) {
@@ -43,27 +103,33 @@ public class P210Honor {
 
                     switch (opcion) {
                         case 1:
-                            opcion1_MostrarTabla(conn);
+                            opcion1_MostrarTabla(dao);
                             pausaParaContinuar(); 
                             break;
                         case 2:
-                            opcion2_PersonajesPorFaccion(conn);
+                            opcion2_PersonajesPorFaccion(dao);
                             pausaParaContinuar(); 
                             break;
                         case 3:
-                            opcion3_MejorAtacantePorFaccion(conn);
+                            opcion3_MejorAtacantePorFaccion(dao, leaderboard);
                             pausaParaContinuar(); 
                             break;
                         case 4:
-                            opcion4_MejorDefensorPorFaccion(conn);
+                            opcion4_MejorDefensorPorFaccion(dao, leaderboard);
                             pausaParaContinuar(); 
                             break;
                         case 5:
+                            opcion5_EstadisticasPorFaccion(conn, dao);
+                            pausaParaContinuar(); 
+                            break;
+                        case 6:
                             salir = true;
+                            logger.info("Estadisticas de cache:\n{}", cache.getEstadisticas());
+                            logger.info("Metricas de consultas:\n{}", QueryMetrics.getDefault().dumpText());
                             logger.info("Cerrando la aplicacion. Adios!");
                             break; 
                         default:
-                            logger.warn("Opcion no valida. Por favor, elige un numero entre 1 y 5.");
+                            logger.warn("Opcion no valida. Por favor, elige un numero entre 1 y 6.");
                     }
                 } catch (NumberFormatException e) {
                     logger.error("Error: Debes introducir un numero. '{}' no es valido.", opcioStr);
@@ -75,10 +141,71 @@ public class P210Honor {
         } catch (SQLException e) {
             logger.error("Error fatal de conexion a la base de datos.", e);
         } finally {
+            if (leaderboard != null) {
+                leaderboard.close();
+            }
             scanner.close(); 
+            DatabaseManager.closePools();
         }
     }
 
+    /**
+     * Publica las metricas de consultas por JMX y las configura con las propiedades
+     * {@code honor.metricas.lentaMs} (umbral de consulta lenta) y
+     * {@code honor.metricas.volcadoSeg} (volcado periodico al log, desactivado por defecto;
+     * en JSON con {@code honor.metricas.json=true}).
+     */
+    private static void configurarMetricas() {
+        QueryMetrics metricas = QueryMetrics.getDefault();
+        metricas.registerMBean();
+        Long lentaMs = Long.getLong("honor.metricas.lentaMs");
+        if (lentaMs != null) {
+            metricas.setSlowQueryThresholdMillis(lentaMs);
+        }
+        long volcadoSeg = Long.getLong("honor.metricas.volcadoSeg", 0);
+        if (volcadoSeg > 0) {
+            metricas.startPeriodicDump(volcadoSeg, Boolean.getBoolean("honor.metricas.json"));
+        }
+    }
+
+    /**
+     * Si esta definida la propiedad {@code honor.snapshot}, abre ese snapshot para
+     * servir las lecturas del menu sin JDBC. Antes lo vuelve a escribir si no existe
+     * o si la base de datos se ha modificado despues.
+     *
+     * @return El snapshot, o null si no se usa o no se ha podido abrir.
+     */
+    private static HonorSnapshot abrirSnapshot() {
+        String ruta = System.getProperty("honor.snapshot");
+        if (ruta == null) {
+            return null;
+        }
+        Path fichero = Paths.get(ruta);
+        try {
+            if (!Files.exists(fichero) || ultimaModificacionBd() > Files.getLastModifiedTime(fichero).toMillis()) {
+                try (Connection conn = DatabaseManager.connect(DB_PATH, PERFIL)) {
+                    HonorSnapshot.escribir(conn, fichero);
+                }
+            }
+            return HonorSnapshot.abrir(fichero);
+        } catch (IOException | SQLException e) {
+            logger.warn("No se puede usar el snapshot {}: {}. Se lee de la base de datos.", ruta, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return La ultima modificacion de la base de datos (en WAL, los cambios recientes estan en el -wal).
+     */
+    private static long ultimaModificacionBd() throws IOException {
+        long ultima = Files.getLastModifiedTime(Paths.get(DB_PATH)).toMillis();
+        Path wal = Paths.get(DB_PATH + "-wal");
+        if (Files.exists(wal)) {
+            ultima = Math.max(ultima, Files.getLastModifiedTime(wal).toMillis());
+        }
+        return ultima;
+    }
+
     /**
      * Muestra el menu de opciones por consola.
      */
@@ -88,16 +215,18 @@ public class P210Honor {
         System.out.println("2. Mostrar personajes por faccion");
         System.out.println("3. Mostrar mejor atacante por faccion");
         System.out.println("4. Mostrar mejor defensor por faccion");
-        System.out.println("5. Salir");
+        System.out.println("5. Estadisticas por faccion");
+        System.out.println("6. Salir");
         System.out.print("Opcion: ");
     }
 
     // ========== METODOS POR OPCION DEL MENU ==========
 
     /**
-     * Opcion 1: Muestra un submenu para elegir que tabla visualizar.
+     * Opcion 1: Muestra un submenu para elegir que tabla visualizar. La tabla se
+     * muestra por paginas de {@link #TAMANO_PAGINA} filas.
      */
-    private static void opcion1_MostrarTabla(Connection conn) throws SQLException {
+    private static void opcion1_MostrarTabla(HonorDao dao) throws SQLException {
         logger.info("Has elegido: 1. Mostrar Tabla");
         
         System.out.println("\n--- Submenu: Mostrar Tabla ---");
@@ -113,26 +242,15 @@ public class P210Honor {
                 System.out.printf("%-5s | %-15s | %-50s\n", "ID", "Nombre", "Resumen (truncado)");
                 System.out.println(new String(new char[74]).replace("\0", "-"));
 
-                String sqlFaccion = "SELECT * FROM Faccion;";
-                try (ResultSet rs = DatabaseManager.querySelectPS(conn, sqlFaccion)) {
-                    boolean hasResults = false;
-                    while (rs.next()) {
-                        hasResults = true;
-                        Faccion faccion = new Faccion(
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getString("resum")
-                        );
-                        // Imprime la fila formateada
-                        System.out.printf("%-5d | %-15s | %-50s\n",
-                            faccion.getId(),
-                            faccion.getNom(),
-                            truncate(faccion.getResum(), 50)
-                        );
-                    }
-                    if (!hasResults) {
-                        System.out.println("La tabla 'Faccion' esta vacia.");
-                    }
+                int filasFaccion = mostrarPaginas(dao::paginaFacciones, Faccion::getId, (sb, faccion) -> {
+                    columna(sb, String.valueOf(faccion.getId()), 5);
+                    sb.append(" | ");
+                    columna(sb, faccion.getNom(), 15);
+                    sb.append(" | ");
+                    columna(sb, truncate(faccion.getResumPrevia(), 50), 50);
+                });
+                if (filasFaccion == 0) {
+                    System.out.println("La tabla 'Faccion' esta vacia.");
                 }
                 break; 
 
@@ -142,30 +260,19 @@ public class P210Honor {
                 System.out.printf("%-5s | %-15s | %-7s | %-7s | %-10s\n", "ID", "Nombre", "Atac", "Defensa", "ID Faccion");
                 System.out.println(new String(new char[50]).replace("\0", "-"));
                 
-                String sqlPersonaje = "SELECT * FROM Personaje;";
-                try (ResultSet rs = DatabaseManager.querySelectPS(conn, sqlPersonaje)) {
-                    boolean hasResults = false;
-                    while (rs.next()) {
-                        hasResults = true;
-                        Personaje p = new Personaje(
-                            rs.getInt("id"),
-                            rs.getString("nom"),
-                            rs.getDouble("atac"),
-                            rs.getDouble("defensa"),
-                            rs.getInt("idFaccion")
-                        );
-                        // Imprime la fila formateada
-                        System.out.printf("%-5d | %-15s | %-7.1f | %-7.1f | %-10d\n",
-                            p.getId(),
-                            p.getNom(),
-                            p.getAtac(),
-                            p.getDefensa(),
-                            p.getIdFaccion()
-                        );
-                    }
-                    if (!hasResults) {
-                        System.out.println("La tabla 'Personaje' esta vacia.");
-                    }
+                int filasPersonaje = mostrarPaginas(dao::paginaPersonajes, Personaje::getId, (sb, p) -> {
+                    columna(sb, String.valueOf(p.getId()), 5);
+                    sb.append(" | ");
+                    columna(sb, p.getNom(), 15);
+                    sb.append(" | ");
+                    columna(sb, unDecimal(p.getAtac()), 7);
+                    sb.append(" | ");
+                    columna(sb, unDecimal(p.getDefensa()), 7);
+                    sb.append(" | ");
+                    columna(sb, String.valueOf(p.getIdFaccion()), 10);
+                });
+                if (filasPersonaje == 0) {
+                    System.out.println("La tabla 'Personaje' esta vacia.");
                 }
                 break; 
 
@@ -174,13 +281,87 @@ public class P210Honor {
         }
     }
 
+    /**
+     * Lee una pagina de filas a partir de un id (ver {@link HonorDao#paginaFacciones}).
+     */
+    @FunctionalInterface
+    private interface Pagina<T> {
+        List<T> leer(int despuesDeId, int tamano) throws SQLException;
+    }
+
+    /**
+     * Muestra una tabla pagina a pagina. Cada pagina se lee con una consulta por clave
+     * (id mayor que el ultimo mostrado), se compone en un unico StringBuilder que se
+     * reutiliza y se escribe de una vez. Solo hay una pagina en memoria.
+     *
+     * @param pagina Lee la pagina siguiente.
+     * @param id El id de una fila, para pedir la pagina siguiente.
+     * @param fila Escribe una fila (sin salto de linea) en el StringBuilder.
+     * @return El numero de filas mostradas.
+     */
+    private static <T> int mostrarPaginas(Pagina<T> pagina, ToIntFunction<T> id,
+            BiConsumer<StringBuilder, T> fila) throws SQLException {
+        StringBuilder sb = new StringBuilder(TAMANO_PAGINA * 80);
+        int ultimoId = Integer.MIN_VALUE;
+        int total = 0;
+        while (true) {
+            List<T> filas = pagina.leer(ultimoId, TAMANO_PAGINA);
+            sb.setLength(0);
+            for (T t : filas) {
+                fila.accept(sb, t);
+                sb.append('\n');
+            }
+            System.out.print(sb);
+            total += filas.size();
+            if (filas.size() < TAMANO_PAGINA) {
+                return total;
+            }
+            ultimoId = id.applyAsInt(filas.get(filas.size() - 1));
+            System.out.print("-- " + total + " filas. Enter: siguiente pagina, q: salir --");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * Escribe el texto alineado a la izquierda en una columna de ancho minimo {@code ancho}
+     * (como {@code %-Ns}: si es mas largo, no se corta).
+     */
+    private static void columna(StringBuilder sb, String texto, int ancho) {
+        sb.append(texto);
+        espacios(sb, ancho - (texto == null ? 4 : texto.length()));
+    }
+
+    private static void espacios(StringBuilder sb, int n) {
+        for (int i = 0; i < n; i++) {
+            sb.append(' ');
+        }
+    }
+
+    /**
+     * @return El numero con un decimal, como {@code %.1f} pero sin pasar por Formatter.
+     */
+    private static String unDecimal(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Math.abs(v) >= 1e15) {
+            return String.format("%.1f", v);
+        }
+        long decimas = Math.round(v * 10);
+        StringBuilder sb = new StringBuilder(8);
+        if (decimas < 0) {
+            sb.append('-');
+            decimas = -decimas;
+        }
+        return sb.append(decimas / 10).append('.').append(decimas % 10).toString();
+    }
+
     /**
      * Opcion 2: Pide una faccion y muestra sus personajes.
      */
-    private static void opcion2_PersonajesPorFaccion(Connection conn) throws SQLException {
+    private static void opcion2_PersonajesPorFaccion(HonorDao dao) throws SQLException {
         logger.info("Has elegido: 2. Mostrar Personajes por Faccion");
         
-        int idFaccion = pedirFaccion(conn);
+        int idFaccion = pedirFaccion(dao);
         if (idFaccion == -1) {
             logger.warn("Seleccion de faccion invalida.");
             return;
@@ -191,46 +372,30 @@ public class P210Honor {
         System.out.printf("%-5s | %-15s | %-7s | %-7s | %-15s\n", "ID", "Nombre", "Atac", "Defensa", "Faccion");
         System.out.println(new String(new char[56]).replace("\0", "-"));
         
-        String sql = "SELECT p.*, f.nom as nomFaccion " +
-                     "FROM Personaje p " +
-                     "JOIN Faccion f ON p.idFaccion = f.id " +
-                     "WHERE p.idFaccion = ?;";
-
-        try (ResultSet rs = DatabaseManager.querySelectPS(conn, sql, idFaccion)) {
-            boolean hasResults = false;
-            while (rs.next()) {
-                hasResults = true;
-                Personaje p = new Personaje(
-                    rs.getInt("id"),
-                    rs.getString("nom"),
-                    rs.getDouble("atac"),
-                    rs.getDouble("defensa"),
-                    rs.getInt("idFaccion")
-                );
-                p.setNomFaccion(rs.getString("nomFaccion"));
-
-                // Imprime la fila formateada
-                System.out.printf("%-5d | %-15s | %-7.1f | %-7.1f | %-15s\n",
-                    p.getId(),
-                    p.getNom(),
-                    p.getAtac(),
-                    p.getDefensa(),
-                    p.getNomFaccion()
-                );
-            }
-            if (!hasResults) {
-                System.out.println("No se han encontrado personajes para esta faccion.");
-            }
+        List<Personaje> personajes = dao.findPersonajesByFaccion(idFaccion);
+        for (Personaje p : personajes) {
+            // Imprime la fila formateada
+            imprimirPersonajeConFaccion(p);
+        }
+        if (personajes.isEmpty()) {
+            System.out.println("No se han encontrado personajes para esta faccion.");
+        }
+        // Resumen mantenido por triggers: no vuelve a recorrer los personajes
+        Optional<ResumenFaccion> resumen = dao.findResumen(idFaccion);
+        if (resumen.isPresent()) {
+            ResumenFaccion r = resumen.get();
+            System.out.printf("Total: %d personajes | Atac medio: %.2f | Defensa media: %.2f\n",
+                r.getNumPersonajes(), r.getMediaAtac(), r.getMediaDefensa());
         }
     }
 
     /**
-     * Opcion 3: Pide una faccion y muestra su mejor atacante.
+     * Opcion 3: Pide una faccion y muestra su mejor atacante (de la clasificacion en memoria).
      */
-    private static void opcion3_MejorAtacantePorFaccion(Connection conn) throws SQLException {
+    private static void opcion3_MejorAtacantePorFaccion(HonorDao dao, Leaderboard leaderboard) throws SQLException {
         logger.info("Has elegido: 3. Mejor Atacante por Faccion");
 
-        int idFaccion = pedirFaccion(conn);
+        int idFaccion = pedirFaccion(dao);
         if (idFaccion == -1) {
             logger.warn("Seleccion de faccion invalida.");
             return;
@@ -241,44 +406,22 @@ public class P210Honor {
         System.out.printf("%-5s | %-15s | %-7s | %-7s | %-15s\n", "ID", "Nombre", "Atac", "Defensa", "Faccion");
         System.out.println(new String(new char[56]).replace("\0", "-"));
 
-        String sql = "SELECT p.*, f.nom as nomFaccion " +
-                     "FROM Personaje p " +
-                     "JOIN Faccion f ON p.idFaccion = f.id " +
-                     "WHERE p.idFaccion = ? " +
-                     "ORDER BY p.atac DESC " +
-                     "LIMIT 1;";
-        try (ResultSet rs = DatabaseManager.querySelectPS(conn, sql, idFaccion)) {
-            if (rs.next()) {
-                Personaje p = new Personaje(
-                    rs.getInt("id"),
-                    rs.getString("nom"),
-                    rs.getDouble("atac"),
-                    rs.getDouble("defensa"),
-                    rs.getInt("idFaccion")
-                );
-                p.setNomFaccion(rs.getString("nomFaccion"));
-                
-                // Imprime la fila formateada
-                System.out.printf("%-5d | %-15s | %-7.1f | %-7.1f | %-15s\n",
-                    p.getId(),
-                    p.getNom(),
-                    p.getAtac(),
-                    p.getDefensa(),
-                    p.getNomFaccion()
-                );
-            } else {
-                System.out.println("No se han encontrado personajes para esta faccion.");
-            }
+        Optional<Personaje> mejor = leaderboard.mejor(idFaccion, Leaderboard.Criterio.ATAC);
+        if (mejor.isPresent()) {
+            // Imprime la fila formateada
+            imprimirPersonajeConFaccion(mejor.get());
+        } else {
+            System.out.println("No se han encontrado personajes para esta faccion.");
         }
     }
 
     /**
-     * Opcion 4: Pide una faccion y muestra su mejor defensor.
+     * Opcion 4: Pide una faccion y muestra su mejor defensor (de la clasificacion en memoria).
      */
-    private static void opcion4_MejorDefensorPorFaccion(Connection conn) throws SQLException {
+    private static void opcion4_MejorDefensorPorFaccion(HonorDao dao, Leaderboard leaderboard) throws SQLException {
         logger.info("Has elegido: 4. Mejor Defensor por Faccion");
 
-        int idFaccion = pedirFaccion(conn);
+        int idFaccion = pedirFaccion(dao);
         if (idFaccion == -1) {
             logger.warn("Seleccion de faccion invalida.");
             return;
@@ -289,49 +432,69 @@ public class P210Honor {
         System.out.printf("%-5s | %-15s | %-7s | %-7s | %-15s\n", "ID", "Nombre", "Atac", "Defensa", "Faccion");
         System.out.println(new String(new char[56]).replace("\0", "-"));
 
-        String sql = "SELECT p.*, f.nom as nomFaccion " +
-                     "FROM Personaje p " +
-                     "JOIN Faccion f ON p.idFaccion = f.id " +
-                     "WHERE p.idFaccion = ? " +
-                     "ORDER BY p.defensa DESC " +
-                     "LIMIT 1;";
-        try (ResultSet rs = DatabaseManager.querySelectPS(conn, sql, idFaccion)) {
-            if (rs.next()) {
-                Personaje p = new Personaje(
-                    rs.getInt("id"),
-                    rs.getString("nom"),
-                    rs.getDouble("atac"),
-                    rs.getDouble("defensa"),
-                    rs.getInt("idFaccion")
-                );
-                p.setNomFaccion(rs.getString("nomFaccion"));
-                
-                // Imprime la fila formateada
-                System.out.printf("%-5d | %-15s | %-7.1f | %-7.1f | %-15s\n",
-                    p.getId(),
-                    p.getNom(),
-                    p.getAtac(),
-                    p.getDefensa(),
-                    p.getNomFaccion()
-                );
-            } else {
-                System.out.println("No se han encontrado personajes para esta faccion.");
-            }
+        Optional<Personaje> mejor = leaderboard.mejor(idFaccion, Leaderboard.Criterio.DEFENSA);
+        if (mejor.isPresent()) {
+            // Imprime la fila formateada
+            imprimirPersonajeConFaccion(mejor.get());
+        } else {
+            System.out.println("No se han encontrado personajes para esta faccion.");
         }
     }
 
+    /**
+     * Opcion 5: Muestra las estadisticas de ataque y defensa de cada faccion,
+     * calculadas en paralelo.
+     */
+    private static void opcion5_EstadisticasPorFaccion(Connection conn, HonorDao dao) throws SQLException {
+        logger.info("Has elegido: 5. Estadisticas por Faccion");
+
+        Map<Integer, String> nombres = new HashMap<>();
+        for (Faccion faccion : dao.listFacciones(0)) {
+            nombres.put(faccion.getId(), faccion.getNom());
+        }
+        List<EstadisticasFaccion> estadisticas = new AnalisisFacciones().calcular(conn);
+
+        System.out.println("\n--- Estadisticas por Faccion ---");
+        // Cabecera de la tabla
+        System.out.printf("%-15s | %-5s | %-15s | %-15s | %-19s | %-19s | %-6s\n",
+            "Faccion", "N", "Atac (m+/-s)", "Defensa (m+/-s)", "Atac p50/p90/p99", "Def. p50/p90/p99", "Correl");
+        System.out.println(new String(new char[114]).replace("\0", "-"));
+
+        for (EstadisticasFaccion e : estadisticas) {
+            double[] pa = e.getPercentilesAtac();
+            double[] pd = e.getPercentilesDefensa();
+            // Imprime la fila formateada
+            System.out.printf("%-15s | %-5d | %5.2f +/- %-5.2f | %5.2f +/- %-5.2f | %5.1f %5.1f %5.1f   | %5.1f %5.1f %5.1f   | %6.2f\n",
+                nombres.getOrDefault(e.getIdFaccion(), String.valueOf(e.getIdFaccion())),
+                e.getNumPersonajes(),
+                e.getMediaAtac(), e.getDesviacionAtac(),
+                e.getMediaDefensa(), e.getDesviacionDefensa(),
+                pa[0], pa[1], pa[2],
+                pd[0], pd[1], pd[2],
+                e.getCorrelacion()
+            );
+            StringBuilder pareto = new StringBuilder();
+            for (Personaje p : e.getPareto()) {
+                if (pareto.length() > 0) {
+                    pareto.append(", ");
+                }
+                pareto.append(p.getNom()).append(" (").append(p.getAtac()).append('/').append(p.getDefensa()).append(')');
+            }
+            System.out.println("    Pareto: " + pareto);
+        }
+        if (estadisticas.isEmpty()) {
+            System.out.println("La tabla 'Personaje' esta vacia.");
+        }
+    }
 
     /**
      * Pide al usuario que elija una faccion.
      */
-    private static int pedirFaccion(Connection conn) throws SQLException {
+    private static int pedirFaccion(HonorDao dao) throws SQLException {
         System.out.println("\nFacciones disponibles:");
         
-        String sqlFaccions = "SELECT id, nom FROM Faccion;";
-        try (ResultSet rs = DatabaseManager.querySelectPS(conn, sqlFaccions)) {
-            while (rs.next()) {
-                System.out.println("  " + rs.getInt("id") + ". " + rs.getString("nom"));
-            }
+        for (Faccion faccion : dao.listFacciones(0)) {
+            System.out.println("  " + faccion.getId() + ". " + faccion.getNom());
         }
         
         System.out.print("Opcion (ID): "); 
@@ -354,6 +517,19 @@ public class P210Honor {
         scanner.nextLine(); 
     }
 
+    /**
+     * Imprime una fila de personaje con el nombre de su faccion.
+     */
+    private static void imprimirPersonajeConFaccion(Personaje p) {
+        System.out.printf("%-5d | %-15s | %-7.1f | %-7.1f | %-15s\n",
+            p.getId(),
+            p.getNom(),
+            p.getAtac(),
+            p.getDefensa(),
+            p.getNomFaccion()
+        );
+    }
+
     /**
      * Metodo para truncar texto para tablas.
      */
@@ -378,57 +554,75 @@ public class P210Honor {
 
         if (dbFile.exists()) {
             logger.info("La base de datos {} ya existe. No es necesario inicializar.", DB_PATH);
+            // Las bases de datos creadas antes de tener indices y vistas tambien los necesitan
+            try (Connection conn = DatabaseManager.connect(DB_PATH, PERFIL)) {
+                HonorDao.crearIndices(conn);
+                HonorDao.crearVistas(conn);
+                HonorDao.crearBusqueda(conn);
+            }
             return;
         }
 
         logger.warn("La base de datos {} no existe. Creando y poblando...", DB_PATH);
 
-        try (Connection conn = DatabaseManager.connect(DB_PATH)) {
+        try (Connection conn = DatabaseManager.connect(DB_PATH, PERFIL)) {
             logger.info("Creando tablas...");
             
-            String sqlFaccion = "CREATE TABLE Faccion (" +
-                               " id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                               " nom VARCHAR(15) NOT NULL," +
-                               " resum VARCHAR(500)" +
-                               ");";
-            DatabaseManager.queryUpdate(conn, sqlFaccion);
-
-            String sqlPersonaje = "CREATE TABLE Personaje (" +
-                                   " id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                                   " nom VARCHAR(15) NOT NULL," +
-                                   " atac REAL," +
-                                   " defensa REAL," +
-                                   " idFaccion INTEGER," +
-                                   " FOREIGN KEY (idFaccion) REFERENCES Faccion(id)" +
-                                   ");";
-            DatabaseManager.queryUpdate(conn, sqlPersonaje);
+            HonorDao.crearTablas(conn);
+            HonorDao.crearIndices(conn);
             
             logger.info("Tablas creadas correctamente.");
             logger.info("Insertando datos iniciales (Anexo)...");
             
             String insertFaccioSQL = "INSERT INTO Faccion (nom, resum) VALUES (?, ?);";
-            DatabaseManager.queryUpdatePS(conn, insertFaccioSQL, "Cavallers", "Though seen as a single group, the Knights are hardly unified...");
-            DatabaseManager.queryUpdatePS(conn, insertFaccioSQL, "Vikings", "The Vikings are a loose coalition of hundreds of clans and tribes...");
-            DatabaseManager.queryUpdatePS(conn, insertFaccioSQL, "Samurais", "The Samurai are the most unified of the three factions...");
+            DatabaseManager.executeBatch(conn, insertFaccioSQL, List.of(
+                new Object[] { "Cavallers", "Though seen as a single group, the Knights are hardly unified..." },
+                new Object[] { "Vikings", "The Vikings are a loose coalition of hundreds of clans and tribes..." },
+                new Object[] { "Samurais", "The Samurai are the most unified of the three factions..." }
+            ), RosterLoader.DEFAULT_CHUNK_SIZE);
 
             String insertPersonajeSQL = "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES (?, ?, ?, ?);";
             
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Warden", 1.0, 3.0, 1);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Conqueror", 2.0, 2.0, 1);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Peacekeep", 2.0, 3.0, 1);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Raider", 3.0, 3.0, 2);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Warlord", 2.0, 2.0, 2);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Berserker", 1.0, 1.0, 2);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Kensei", 3.0, 2.0, 3);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Shugoki", 2.0, 1.0, 3);
-            DatabaseManager.queryUpdatePS(conn, insertPersonajeSQL, "Orochi", 3.0, 2.0, 3);
+            DatabaseManager.executeBatch(conn, insertPersonajeSQL, List.of(
+                new Object[] { "Warden", 1.0, 3.0, 1 },
+                new Object[] { "Conqueror", 2.0, 2.0, 1 },
+                new Object[] { "Peacekeep", 2.0, 3.0, 1 },
+                new Object[] { "Raider", 3.0, 3.0, 2 },
+                new Object[] { "Warlord", 2.0, 2.0, 2 },
+                new Object[] { "Berserker", 1.0, 1.0, 2 },
+                new Object[] { "Kensei", 3.0, 2.0, 3 },
+                new Object[] { "Shugoki", 2.0, 1.0, 3 },
+                new Object[] { "Orochi", 3.0, 2.0, 3 }
+            ), RosterLoader.DEFAULT_CHUNK_SIZE);
+
+            // Despues de insertar, como una carga masiva: los resumenes y la busqueda se
+            // calculan de una vez y el registro de cambios empieza vacio
+            HonorDao.crearVistas(conn);
+            HonorDao.crearBusqueda(conn);
 
             logger.info("Datos iniciales insertados correctamente.");
 
         } catch (SQLException e) {
             logger.error("Error durante la inicializacion de la BD: " + e.getMessage(), e);
-            dbFile.delete(); 
+            // El pool aun tiene abierta la conexion fisica: hay que cerrarla antes de borrar
+            borrarBaseDeDatos(e);
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Cierra las conexiones y borra la BBDD a medio crear junto con sus ficheros
+     * auxiliares, para que el siguiente arranque la vuelva a crear desde cero.
+     */
+    private static void borrarBaseDeDatos(SQLException causa) {
+        DatabaseManager.closePools();
+        for (String sufijo : new String[] { "", "-wal", "-shm", "-journal" }) {
+            try {
+                Files.deleteIfExists(Paths.get(DB_PATH + sufijo));
+            } catch (IOException e) {
+                logger.error("No se ha podido borrar {}{}: {}", DB_PATH, sufijo, e.getMessage());
+                causa.addSuppressed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package cat.iesesteveterradas;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+/**
+ * Carga masiva de facciones y personajes desde CSV o JSON.
+ * <p>
+ * Los ficheros se leen en streaming (nunca se cargan enteros en memoria) y las
+ * filas se insertan con {@link DatabaseManager#executeBatch} en transacciones
+ * de {@code chunkSize} filas.
+ * <p>
+ * Formatos admitidos:
+ * <ul>
+ *   <li>CSV con cabecera. Faccion: {@code id,nom,resum}. Personaje:
+ *       {@code id,nom,atac,defensa,idFaccion}. La columna {@code id} es opcional.</li>
+ *   <li>JSON: un array de objetos con los mismos campos, o un objeto
+ *       {@code {"facciones": [...], "personajes": [...]}}.</li>
+ * </ul>
+ * Si una fila trae {@code id} y ya existe, se sustituye (INSERT OR REPLACE).
+ * <p>
+ * Durante la carga no se anota cada fila en el registro de cambios: al acabar se
+ * deja un unico aviso de recarga (ver {@link HonorDao#pausarRegistro}).
+ */
+public class RosterLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(RosterLoader.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    static final String INSERT_FACCION_SQL =
+        "INSERT OR REPLACE INTO Faccion (id, nom, resum) VALUES (?, ?, ?);";
+    static final String INSERT_PERSONAJE_SQL =
+        "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (?, ?, ?, ?, ?);";
+
+    private static final String[] COLUMNAS_FACCION = { "id", "nom", "resum" };
+    private static final String[] COLUMNAS_PERSONAJE = { "id", "nom", "atac", "defensa", "idFaccion" };
+
+    private final Connection conn;
+    private final int chunkSize;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public RosterLoader(Connection conn, int chunkSize) {
+        this.conn = conn;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Carga facciones desde un fichero CSV o JSON (segun la extension).
+     *
+     * @return El numero de filas insertadas o sustituidas.
+     */
+    public long loadFacciones(Path file) throws IOException, SQLException {
+        if (isJson(file)) {
+            return sinRegistro(() -> loadJsonArray(file, INSERT_FACCION_SQL, RosterLoader::faccionFromJson));
+        }
+        return sinRegistro(() -> loadCsv(file, INSERT_FACCION_SQL, COLUMNAS_FACCION, RosterLoader::faccionFromCsv));
+    }
+
+    /**
+     * Carga personajes desde un fichero CSV o JSON (segun la extension).
+     *
+     * @return El numero de filas insertadas o sustituidas.
+     */
+    public long loadPersonajes(Path file) throws IOException, SQLException {
+        if (isJson(file)) {
+            return sinRegistro(() -> loadJsonArray(file, INSERT_PERSONAJE_SQL, RosterLoader::personajeFromJson));
+        }
+        return sinRegistro(() -> loadCsv(file, INSERT_PERSONAJE_SQL, COLUMNAS_PERSONAJE, RosterLoader::personajeFromCsv));
+    }
+
+    /**
+     * Carga un JSON con la forma {@code {"facciones": [...], "personajes": [...]}}.
+     * Las secciones se procesan en el orden en que aparecen en el fichero.
+     *
+     * @return El numero total de filas insertadas o sustituidas.
+     */
+    public long loadJson(Path file) throws IOException, SQLException {
+        return sinRegistro(() -> loadJsonSecciones(file));
+    }
+
+    private long loadJsonSecciones(Path file) throws IOException, SQLException {
+        long total = 0;
+        try (JsonParser parser = mapper.createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Se esperaba un objeto JSON en " + file);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String seccion = parser.currentName();
+                JsonToken valor = parser.nextToken();
+                if ("facciones".equals(seccion) && valor == JsonToken.START_ARRAY) {
+                    total += executeJson(parser, INSERT_FACCION_SQL, RosterLoader::faccionFromJson);
+                } else if ("personajes".equals(seccion) && valor == JsonToken.START_ARRAY) {
+                    total += executeJson(parser, INSERT_PERSONAJE_SQL, RosterLoader::personajeFromJson);
+                } else {
+                    logger.warn("Seccion JSON '{}' ignorada.", seccion);
+                    parser.skipChildren();
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Hace la carga con el registro de cambios pausado y lo reanuda al acabar, tambien si falla.
+     */
+    private long sinRegistro(Carga carga) throws IOException, SQLException {
+        boolean pausado = HonorDao.pausarRegistro(conn);
+        try {
+            return carga.cargar();
+        } finally {
+            if (pausado) {
+                HonorDao.reanudarRegistro(conn);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Carga {
+        long cargar() throws IOException, SQLException;
+    }
+
+    // ========== CSV ==========
+
+    private long loadCsv(Path file, String sql, String[] columnas, CsvConverter converter) throws IOException, SQLException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            CsvReader csv = new CsvReader(reader);
+            List<String> cabecera = csv.next();
+            if (cabecera == null) {
+                logger.warn("El fichero {} esta vacio.", file);
+                return 0;
+            }
+            int[] indices = resolverColumnas(cabecera, columnas);
+            Iterable<Object[]> filas = () -> new CsvRows(csv, indices, converter);
+            long total = DatabaseManager.executeBatch(conn, sql, filas, chunkSize);
+            logger.info("Cargadas {} filas desde {}", total, file);
+            return total;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Devuelve, para cada columna esperada, su posicion en la cabecera (-1 si no esta).
+     */
+    private static int[] resolverColumnas(List<String> cabecera, String[] columnas) throws IOException {
+        int[] indices = new int[columnas.length];
+        for (int i = 0; i < columnas.length; i++) {
+            indices[i] = -1;
+            for (int j = 0; j < cabecera.size(); j++) {
+                if (cabecera.get(j).trim().equalsIgnoreCase(columnas[i])) {
+                    indices[i] = j;
+                    break;
+                }
+            }
+        }
+        // La unica columna obligatoria comun es 'nom'
+        if (indices[1] == -1) {
+            throw new IOException("Falta la columna 'nom' en la cabecera: " + cabecera);
+        }
+        return indices;
+    }
+
+    private static Object[] faccionFromCsv(String[] campos, long linea) {
+        return new Object[] {
+            parseId(campos[0], linea),
+            requerido(campos[1], "nom", linea),
+            campos[2]
+        };
+    }
+
+    private static Object[] personajeFromCsv(String[] campos, long linea) {
+        return new Object[] {
+            parseId(campos[0], linea),
+            requerido(campos[1], "nom", linea),
+            parseDouble(campos[2], "atac", linea),
+            parseDouble(campos[3], "defensa", linea),
+            parseId(campos[4], linea)
+        };
+    }
+
+    private static Integer parseId(String valor, long linea) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Linea " + linea + ": '" + valor + "' no es un id valido.");
+        }
+    }
+
+    private static Double parseDouble(String valor, String columna, long linea) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Linea " + linea + ": '" + valor + "' no es valido para " + columna + ".");
+        }
+    }
+
+    private static String requerido(String valor, String columna, long linea) {
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Linea " + linea + ": falta el valor de " + columna + ".");
+        }
+        return valor;
+    }
+
+    @FunctionalInterface
+    private interface CsvConverter {
+        Object[] convert(String[] campos, long linea);
+    }
+
+    /**
+     * Iterador perezoso de filas CSV ya convertidas a parametros SQL.
+     */
+    private static final class CsvRows implements Iterator<Object[]> {
+
+        private final CsvReader csv;
+        private final int[] indices;
+        private final CsvConverter converter;
+        private final String[] campos;
+        private List<String> siguiente;
+        private long linea = 1;
+
+        CsvRows(CsvReader csv, int[] indices, CsvConverter converter) {
+            this.csv = csv;
+            this.indices = indices;
+            this.converter = converter;
+            this.campos = new String[indices.length];
+            avanzar();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (siguiente == null) {
+                throw new NoSuchElementException();
+            }
+            for (int i = 0; i < indices.length; i++) {
+                int idx = indices[i];
+                campos[i] = idx >= 0 && idx < siguiente.size() ? siguiente.get(idx) : null;
+            }
+            Object[] fila = converter.convert(campos, linea);
+            avanzar();
+            return fila;
+        }
+
+        private void avanzar() {
+            try {
+                do {
+                    siguiente = csv.next();
+                    linea++;
+                } while (siguiente != null && siguiente.size() == 1 && siguiente.get(0).isEmpty());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Lector CSV minimo (RFC 4180): separador ',', comillas dobles y saltos de linea dentro de comillas.
+     */
+    static final class CsvReader {
+
+        private final Reader in;
+        private final StringBuilder campo = new StringBuilder();
+
+        CsvReader(Reader in) {
+            this.in = in.markSupported() ? in : new BufferedReader(in);
+        }
+
+        /**
+         * @return Los campos del siguiente registro, o null al final del fichero.
+         */
+        List<String> next() throws IOException {
+            List<String> campos = new ArrayList<>();
+            campo.setLength(0);
+            boolean entreComillas = false;
+            boolean leido = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                leido = true;
+                if (entreComillas) {
+                    if (c == '"') {
+                        in.mark(1);
+                        int siguiente = in.read();
+                        if (siguiente == '"') {
+                            campo.append('"');
+                        } else {
+                            entreComillas = false;
+                            if (siguiente != -1) {
+                                in.reset();
+                            }
+                        }
+                    } else {
+                        campo.append((char) c);
+                    }
+                } else if (c == '"') {
+                    entreComillas = true;
+                } else if (c == ',') {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    campo.append((char) c);
+                }
+            }
+            if (!leido) {
+                return null;
+            }
+            campos.add(campo.toString());
+            return campos;
+        }
+    }
+
+    // ========== JSON ==========
+
+    private long loadJsonArray(Path file, String sql, JsonConverter converter) throws IOException, SQLException {
+        try (JsonParser parser = mapper.createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Se esperaba un array JSON en " + file);
+            }
+            long total = executeJson(parser, sql, converter);
+            logger.info("Cargadas {} filas desde {}", total, file);
+            return total;
+        }
+    }
+
+    /**
+     * Inserta los elementos del array en el que esta posicionado el parser.
+     * Al terminar, el parser queda en el END_ARRAY.
+     */
+    private long executeJson(JsonParser parser, String sql, JsonConverter converter) throws IOException, SQLException {
+        Iterable<Object[]> filas = () -> new JsonRows(parser, converter);
+        try {
+            return DatabaseManager.executeBatch(conn, sql, filas, chunkSize);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object[] faccionFromJson(JsonNode node) {
+        return new Object[] {
+            node.hasNonNull("id") ? node.get("id").asInt() : null,
+            textoRequerido(node, "nom"),
+            node.hasNonNull("resum") ? node.get("resum").asText() : null
+        };
+    }
+
+    private static Object[] personajeFromJson(JsonNode node) {
+        return new Object[] {
+            node.hasNonNull("id") ? node.get("id").asInt() : null,
+            textoRequerido(node, "nom"),
+            node.hasNonNull("atac") ? node.get("atac").asDouble() : null,
+            node.hasNonNull("defensa") ? node.get("defensa").asDouble() : null,
+            node.hasNonNull("idFaccion") ? node.get("idFaccion").asInt() : null
+        };
+    }
+
+    private static String textoRequerido(JsonNode node, String campo) {
+        if (!node.hasNonNull(campo)) {
+            throw new IllegalArgumentException("Falta el campo '" + campo + "' en " + node);
+        }
+        return node.get(campo).asText();
+    }
+
+    @FunctionalInterface
+    private interface JsonConverter {
+        Object[] convert(JsonNode node);
+    }
+
+    /**
+     * Iterador perezoso sobre los objetos de un array JSON.
+     */
+    private final class JsonRows implements Iterator<Object[]> {
+
+        private final JsonParser parser;
+        private final JsonConverter converter;
+        private JsonNode siguiente;
+
+        JsonRows(JsonParser parser, JsonConverter converter) {
+            this.parser = parser;
+            this.converter = converter;
+            avanzar();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (siguiente == null) {
+                throw new NoSuchElementException();
+            }
+            Object[] fila = converter.convert(siguiente);
+            avanzar();
+            return fila;
+        }
+
+        private void avanzar() {
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    siguiente = null;
+                } else {
+                    siguiente = mapper.readTree(parser);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static boolean isJson(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    // ========== LINEA DE COMANDOS ==========
+
+    /**
+     * Uso: {@code RosterLoader [--db data/honor.db] [--chunk 10000]
+     * [--facciones fichero] [--personajes fichero] [fichero.json]}
+     */
+    public static void main(String[] args) {
+        String dbPath = "data/honor.db";
+        int chunk = DEFAULT_CHUNK_SIZE;
+        Path facciones = null;
+        Path personajes = null;
+        Path combinado = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--db":
+                        dbPath = args[++i];
+                        break;
+                    case "--chunk":
+                        chunk = Integer.parseInt(args[++i]);
+                        break;
+                    case "--facciones":
+                        facciones = Paths.get(args[++i]);
+                        break;
+                    case "--personajes":
+                        personajes = Paths.get(args[++i]);
+                        break;
+                    default:
+                        combinado = Paths.get(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            logger.error("Argumentos no validos. Uso: RosterLoader [--db fichero.db] [--chunk N] "
+                    + "[--facciones fichero] [--personajes fichero] [fichero.json]");
+            System.exit(1);
+            return;
+        }
+
+        if (!new File(dbPath).exists()) {
+            logger.error("La base de datos {} no existe. Ejecuta P210Honor primero para crearla.", dbPath);
+            System.exit(1);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        long total = 0;
+        try (Connection conn = DatabaseManager.connect(dbPath)) {
+            RosterLoader loader = new RosterLoader(conn, chunk);
+            // Primero las facciones, para que las claves foraneas de los personajes existan
+            if (facciones != null) {
+                total += loader.loadFacciones(facciones);
+            }
+            if (personajes != null) {
+                total += loader.loadPersonajes(personajes);
+            }
+            if (combinado != null) {
+                total += loader.loadJson(combinado);
+            }
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            logger.error("Error en la carga masiva: {}", e.getMessage(), e);
+            DatabaseManager.closePools();
+            System.exit(2);
+            return;
+        }
+        DatabaseManager.closePools();
+        logger.info("Carga completada: {} filas en {} ms.", total, (System.nanoTime() - inicio) / 1_000_000);
+    }
+}
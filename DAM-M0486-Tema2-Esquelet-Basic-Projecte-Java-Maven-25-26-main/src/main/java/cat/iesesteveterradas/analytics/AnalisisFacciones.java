@@ -0,0 +1,292 @@
+package cat.iesesteveterradas.analytics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Personaje;
+
+/**
+ * Calcula en paralelo las estadisticas de cada faccion sobre una copia en columnas.
+ * <p>
+ * El trabajo se reparte con fork/join: una tarea por faccion y, dentro de cada
+ * faccion grande, por rangos de filas de tamano fijo. Los resultados parciales se
+ * combinan siempre en el mismo orden (izquierda + derecha), asi que el resultado
+ * es identico bit a bit sea cual sea el numero de hilos.
+ */
+public class AnalisisFacciones {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalisisFacciones.class);
+
+    // Percentiles calculados por defecto; privado para que nadie lo cambie
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    // Filas por tarea hoja; fijo (no depende de los hilos) para que el resultado sea determinista
+    static final int UMBRAL_FILAS = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final double[] percentiles;
+
+    public AnalisisFacciones() {
+        this(ForkJoinPool.commonPool(), PERCENTILES);
+    }
+
+    /**
+     * @param pool El pool de hilos donde ejecutar el calculo.
+     * @param percentiles Los percentiles a calcular, entre 0 y 100.
+     */
+    public AnalisisFacciones(ForkJoinPool pool, double[] percentiles) {
+        for (double p : percentiles) {
+            if (p < 0 || p > 100) {
+                throw new IllegalArgumentException("Percentil fuera de [0, 100]: " + p);
+            }
+        }
+        this.pool = pool;
+        this.percentiles = percentiles.clone();
+    }
+
+    /**
+     * @return Una copia de los percentiles calculados por defecto (50, 90 y 99).
+     */
+    public static double[] getPercentilesPorDefecto() {
+        return PERCENTILES.clone();
+    }
+
+    /**
+     * @return Una copia de los percentiles que calcula este analisis, en el orden de los resultados.
+     */
+    public double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    /**
+     * Carga los personajes de la BBDD y calcula sus estadisticas.
+     */
+    public List<EstadisticasFaccion> calcular(Connection conn) throws SQLException {
+        return calcular(PersonajeColumnas.cargar(conn));
+    }
+
+    /**
+     * @return Las estadisticas de cada faccion con personajes, ordenadas por id de faccion.
+     */
+    public List<EstadisticasFaccion> calcular(PersonajeColumnas datos) {
+        long t0 = System.nanoTime();
+        List<EstadisticasFaccion> result = pool.invoke(new TodasLasFacciones(datos));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Estadisticas de {} facciones ({} personajes) en {} ms con paralelismo {}.",
+                result.size(), datos.size(), (System.nanoTime() - t0) / 1_000_000, pool.getParallelism());
+        }
+        return result;
+    }
+
+    /**
+     * Lanza una tarea por faccion y recoge los resultados en orden.
+     */
+    private final class TodasLasFacciones extends RecursiveTask<List<EstadisticasFaccion>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PersonajeColumnas datos;
+
+        TodasLasFacciones(PersonajeColumnas datos) {
+            this.datos = datos;
+        }
+
+        @Override
+        protected List<EstadisticasFaccion> compute() {
+            List<UnaFaccion> tareas = new ArrayList<>(datos.numFacciones());
+            for (int s = 0; s < datos.numFacciones(); s++) {
+                tareas.add(new UnaFaccion(datos, s));
+            }
+            invokeAll(tareas);
+            List<EstadisticasFaccion> result = new ArrayList<>(tareas.size());
+            for (UnaFaccion tarea : tareas) {
+                result.add(tarea.join());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Todas las estadisticas de una faccion.
+     */
+    private final class UnaFaccion extends RecursiveTask<EstadisticasFaccion> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PersonajeColumnas datos;
+        private final int posicion;
+
+        UnaFaccion(PersonajeColumnas datos, int posicion) {
+            this.datos = datos;
+            this.posicion = posicion;
+        }
+
+        @Override
+        protected EstadisticasFaccion compute() {
+            int desde = datos.inicioFaccion(posicion);
+            int hasta = datos.finFaccion(posicion);
+            int n = hasta - desde;
+            double[] atac = datos.valores(PersonajeColumnas.Columna.ATAC);
+            double[] defensa = datos.valores(PersonajeColumnas.Columna.DEFENSA);
+
+            // Dos pasadas (medias y luego desviaciones) por estabilidad numerica
+            double[] sumas = new Sumas(atac, defensa, desde, hasta).invoke();
+            double mediaA = sumas[0] / n;
+            double mediaD = sumas[1] / n;
+            double[] desv = new Desviaciones(atac, defensa, mediaA, mediaD, desde, hasta).invoke();
+            double ssA = desv[0];
+            double ssD = desv[1];
+            double sAD = desv[2];
+
+            double desviacionA = n > 1 ? Math.sqrt(ssA / (n - 1)) : 0;
+            double desviacionD = n > 1 ? Math.sqrt(ssD / (n - 1)) : 0;
+            double correlacion = ssA > 0 && ssD > 0 ? sAD / Math.sqrt(ssA * ssD) : Double.NaN;
+
+            return new EstadisticasFaccion(datos.idFaccionEn(posicion), n,
+                mediaA, desviacionA, mediaD, desviacionD,
+                percentiles,
+                calcularPercentiles(Arrays.copyOfRange(atac, desde, hasta)),
+                calcularPercentiles(Arrays.copyOfRange(defensa, desde, hasta)),
+                correlacion, pareto(datos, desde, hasta));
+        }
+    }
+
+    /**
+     * Suma de ataque y defensa de un rango de filas: {sumaAtac, sumaDefensa}.
+     */
+    private static final class Sumas extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] a;
+        private final double[] d;
+        private final int desde;
+        private final int hasta;
+
+        Sumas(double[] a, double[] d, int desde, int hasta) {
+            this.a = a;
+            this.d = d;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (hasta - desde <= UMBRAL_FILAS) {
+                double sa = 0;
+                double sd = 0;
+                for (int i = desde; i < hasta; i++) {
+                    sa += a[i];
+                    sd += d[i];
+                }
+                return new double[] { sa, sd };
+            }
+            int mitad = (desde + hasta) >>> 1;
+            Sumas izquierda = new Sumas(a, d, desde, mitad);
+            izquierda.fork();
+            double[] der = new Sumas(a, d, mitad, hasta).compute();
+            double[] izq = izquierda.join();
+            return new double[] { izq[0] + der[0], izq[1] + der[1] };
+        }
+    }
+
+    /**
+     * Sumas de desviaciones de un rango de filas: {sum (a-ma)^2, sum (d-md)^2, sum (a-ma)(d-md)}.
+     */
+    private static final class Desviaciones extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] a;
+        private final double[] d;
+        private final double mediaA;
+        private final double mediaD;
+        private final int desde;
+        private final int hasta;
+
+        Desviaciones(double[] a, double[] d, double mediaA, double mediaD, int desde, int hasta) {
+            this.a = a;
+            this.d = d;
+            this.mediaA = mediaA;
+            this.mediaD = mediaD;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (hasta - desde <= UMBRAL_FILAS) {
+                double ssA = 0;
+                double ssD = 0;
+                double sAD = 0;
+                for (int i = desde; i < hasta; i++) {
+                    double da = a[i] - mediaA;
+                    double dd = d[i] - mediaD;
+                    ssA += da * da;
+                    ssD += dd * dd;
+                    sAD += da * dd;
+                }
+                return new double[] { ssA, ssD, sAD };
+            }
+            int mitad = (desde + hasta) >>> 1;
+            Desviaciones izquierda = new Desviaciones(a, d, mediaA, mediaD, desde, mitad);
+            izquierda.fork();
+            double[] der = new Desviaciones(a, d, mediaA, mediaD, mitad, hasta).compute();
+            double[] izq = izquierda.join();
+            return new double[] { izq[0] + der[0], izq[1] + der[1], izq[2] + der[2] };
+        }
+    }
+
+    /**
+     * Percentiles por interpolacion lineal entre los dos valores mas cercanos.
+     */
+    private double[] calcularPercentiles(double[] valores) {
+        Arrays.sort(valores);
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            double pos = percentiles[i] / 100 * (valores.length - 1);
+            int bajo = (int) Math.floor(pos);
+            int alto = Math.min(bajo + 1, valores.length - 1);
+            result[i] = valores[bajo] + (pos - bajo) * (valores[alto] - valores[bajo]);
+        }
+        return result;
+    }
+
+    /**
+     * Frontera de Pareto: personajes que ningun otro supera en ataque y defensa a la vez.
+     * Se ordena por ataque descendente y se recorre guardando la mejor defensa vista.
+     */
+    static List<Personaje> pareto(PersonajeColumnas datos, int desde, int hasta) {
+        Integer[] filas = new Integer[hasta - desde];
+        for (int i = 0; i < filas.length; i++) {
+            filas[i] = desde + i;
+        }
+        Arrays.sort(filas, (x, y) -> {
+            int c = Double.compare(datos.getAtac(y), datos.getAtac(x));
+            if (c != 0) {
+                return c;
+            }
+            c = Double.compare(datos.getDefensa(y), datos.getDefensa(x));
+            return c != 0 ? c : Integer.compare(datos.getId(x), datos.getId(y));
+        });
+
+        List<Personaje> result = new ArrayList<>();
+        double mejorDefensa = Double.NEGATIVE_INFINITY;
+        double atacDeLaMejor = Double.NaN;
+        for (int fila : filas) {
+            double a = datos.getAtac(fila);
+            double d = datos.getDefensa(fila);
+            // Un personaje identico al ultimo de la frontera tampoco esta dominado
+            if (d > mejorDefensa || (d == mejorDefensa && a == atacDeLaMejor)) {
+                result.add(datos.toPersonaje(fila));
+                mejorDefensa = d;
+                atacDeLaMejor = a;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+package cat.iesesteveterradas.analytics;
+
+import java.util.List;
+
+import cat.iesesteveterradas.model.Personaje;
+
+/**
+ * Estadisticas de ataque y defensa de los personajes de una faccion.
+ */
+public class EstadisticasFaccion {
+    private final int idFaccion;
+    private final int numPersonajes;
+    private final double mediaAtac;
+    private final double desviacionAtac;
+    private final double mediaDefensa;
+    private final double desviacionDefensa;
+    private final double[] percentiles;
+    private final double[] percentilesAtac;
+    private final double[] percentilesDefensa;
+    private final double correlacion;
+    private final List<Personaje> pareto;
+
+    public EstadisticasFaccion(int idFaccion, int numPersonajes,
+            double mediaAtac, double desviacionAtac, double mediaDefensa, double desviacionDefensa,
+            double[] percentiles, double[] percentilesAtac, double[] percentilesDefensa,
+            double correlacion, List<Personaje> pareto) {
+        this.idFaccion = idFaccion;
+        this.numPersonajes = numPersonajes;
+        this.mediaAtac = mediaAtac;
+        this.desviacionAtac = desviacionAtac;
+        this.mediaDefensa = mediaDefensa;
+        this.desviacionDefensa = desviacionDefensa;
+        this.percentiles = percentiles.clone();
+        this.percentilesAtac = percentilesAtac;
+        this.percentilesDefensa = percentilesDefensa;
+        this.correlacion = correlacion;
+        this.pareto = List.copyOf(pareto);
+    }
+
+    // Getters
+    public int getIdFaccion() {
+        return idFaccion;
+    }
+
+    public int getNumPersonajes() {
+        return numPersonajes;
+    }
+
+    public double getMediaAtac() {
+        return mediaAtac;
+    }
+
+    /**
+     * @return La desviacion tipica muestral del ataque (0 si hay un solo personaje).
+     */
+    public double getDesviacionAtac() {
+        return desviacionAtac;
+    }
+
+    public double getMediaDefensa() {
+        return mediaDefensa;
+    }
+
+    public double getDesviacionDefensa() {
+        return desviacionDefensa;
+    }
+
+    /**
+     * @return Los percentiles calculados (p.ej. 50, 90, 99), en el mismo orden que los valores.
+     */
+    public double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    public double[] getPercentilesAtac() {
+        return percentilesAtac.clone();
+    }
+
+    public double[] getPercentilesDefensa() {
+        return percentilesDefensa.clone();
+    }
+
+    /**
+     * @return La correlacion de Pearson entre ataque y defensa, o NaN si alguna no varia.
+     */
+    public double getCorrelacion() {
+        return correlacion;
+    }
+
+    /**
+     * @return Los personajes que ningun otro de la faccion supera a la vez en ataque y defensa,
+     *         ordenados de mayor a menor ataque.
+     */
+    public List<Personaje> getPareto() {
+        return pareto;
+    }
+
+    @Override
+    public String toString() {
+        return "EstadisticasFaccion [ID Faccion=" + idFaccion + ", Personajes=" + numPersonajes
+            + ", Atac=" + mediaAtac + " +/- " + desviacionAtac
+            + ", Defensa=" + mediaDefensa + " +/- " + desviacionDefensa
+            + ", Correlacion=" + correlacion + ", Pareto=" + pareto.size() + "]";
+    }
+}
@@ -0,0 +1,93 @@
+package cat.iesesteveterradas.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Resultado de una simulacion de duelos entre facciones (ver {@link SimuladorDuelos}):
+ * cuantos duelos ha ganado cada faccion contra cada otra.
+ * <p>
+ * Las facciones se indexan por posicion (0 .. numFacciones()-1, por id creciente).
+ */
+public class MatrizVictorias {
+    private final int[] facciones;
+    private final long duelosPorCruce;
+    private final long semilla;
+    // victorias[i][j]: duelos que la faccion i ha ganado contra la j
+    private final long[][] victorias;
+
+    public MatrizVictorias(int[] facciones, long duelosPorCruce, long semilla, long[][] victorias) {
+        this.facciones = facciones.clone();
+        this.duelosPorCruce = duelosPorCruce;
+        this.semilla = semilla;
+        this.victorias = new long[victorias.length][];
+        for (int i = 0; i < victorias.length; i++) {
+            this.victorias[i] = victorias[i].clone();
+        }
+    }
+
+    // Getters
+    public int numFacciones() {
+        return facciones.length;
+    }
+
+    /**
+     * @return El id de la faccion en la posicion indicada.
+     */
+    public int idFaccionEn(int posicion) {
+        return facciones[posicion];
+    }
+
+    /**
+     * @return La posicion de la faccion, o -1 si no esta en la matriz.
+     */
+    public int posicionFaccion(int idFaccion) {
+        int pos = Arrays.binarySearch(facciones, idFaccion);
+        return pos >= 0 ? pos : -1;
+    }
+
+    public long getDuelosPorCruce() {
+        return duelosPorCruce;
+    }
+
+    public long getSemilla() {
+        return semilla;
+    }
+
+    /**
+     * @return Los duelos que la faccion en la posicion i ha ganado contra la de la posicion j.
+     */
+    public long getVictorias(int i, int j) {
+        return victorias[i][j];
+    }
+
+    /**
+     * @return La fraccion de duelos que la faccion en la posicion i gana contra la j
+     *         (NaN en la diagonal, que no se simula).
+     */
+    public double getTasa(int i, int j) {
+        if (i == j || duelosPorCruce == 0) {
+            return Double.NaN;
+        }
+        return (double) victorias[i][j] / duelosPorCruce;
+    }
+
+    /**
+     * @return La fraccion de duelos ganados por la faccion contra todas las demas juntas.
+     */
+    public double getTasaGlobal(int i) {
+        long ganados = 0;
+        for (int j = 0; j < facciones.length; j++) {
+            if (j != i) {
+                ganados += victorias[i][j];
+            }
+        }
+        long jugados = duelosPorCruce * (facciones.length - 1);
+        return jugados > 0 ? (double) ganados / jugados : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return "MatrizVictorias [Facciones=" + facciones.length + ", DuelosPorCruce=" + duelosPorCruce
+            + ", Semilla=" + semilla + "]";
+    }
+}
@@ -0,0 +1,328 @@
+package cat.iesesteveterradas.analytics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+/**
+ * Copia de solo lectura de la tabla Personaje guardada por columnas en arrays primitivos.
+ * <p>
+ * Las filas estan ordenadas por {@code idFaccion} y despues por {@code id}, asi que
+ * los personajes de cada faccion ocupan un rango contiguo de posiciones. Los nombres
+ * se guardan codificados con diccionario (cada nombre distinto una sola vez).
+ * <p>
+ * Los agregados (min, max, media, histogramas) recorren los arrays directamente
+ * y no crean ningun objeto por fila.
+ */
+public final class PersonajeColumnas {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersonajeColumnas.class);
+
+    static final String SQL_COLUMNAS =
+        "SELECT id, nom, atac, defensa, idFaccion FROM Personaje ORDER BY idFaccion, id;";
+
+    /**
+     * Columnas numericas sobre las que se pueden calcular agregados.
+     */
+    public enum Columna {
+        ATAC, DEFENSA
+    }
+
+    private final int size;
+    private final int[] id;
+    private final double[] atac;
+    private final double[] defensa;
+    private final int[] idFaccion;
+    private final int[] nomCodigo;
+    private final String[] diccionario;
+
+    // Faccion en la posicion s: id facciones[s], filas [inicio[s], inicio[s + 1])
+    private final int[] facciones;
+    private final int[] inicio;
+
+    private PersonajeColumnas(int size, int[] id, double[] atac, double[] defensa, int[] idFaccion,
+            int[] nomCodigo, String[] diccionario) {
+        this.size = size;
+        this.id = id;
+        this.atac = atac;
+        this.defensa = defensa;
+        this.idFaccion = idFaccion;
+        this.nomCodigo = nomCodigo;
+        this.diccionario = diccionario;
+
+        int numFacciones = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || idFaccion[i] != idFaccion[i - 1]) {
+                numFacciones++;
+            }
+        }
+        this.facciones = new int[numFacciones];
+        this.inicio = new int[numFacciones + 1];
+        int s = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || idFaccion[i] != idFaccion[i - 1]) {
+                s++;
+                facciones[s] = idFaccion[i];
+                inicio[s] = i;
+            }
+        }
+        inicio[numFacciones] = size;
+    }
+
+    /**
+     * Lee toda la tabla Personaje en columnas.
+     *
+     * @param conn La conexion a la BBDD.
+     * @return La copia en columnas.
+     * @throws SQLException Si hay un error de base de datos.
+     */
+    public static PersonajeColumnas cargar(Connection conn) throws SQLException {
+        long t0 = System.nanoTime();
+        Builder builder = new Builder(1024);
+        DatabaseManager.queryForEach(conn, SQL_COLUMNAS, rs -> builder.add(
+            rs.getInt(1), rs.getString(2), rs.getDouble(3), rs.getDouble(4), rs.getInt(5)));
+        PersonajeColumnas columnas = builder.build();
+        logger.info("Cargados {} personajes en columnas ({} nombres distintos, {} facciones) en {} ms.",
+            columnas.size, columnas.diccionario.length, columnas.facciones.length, (System.nanoTime() - t0) / 1_000_000);
+        return columnas;
+    }
+
+    // ========== ACCESO POR FILA ==========
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int fila) {
+        return id[fila];
+    }
+
+    public String getNom(int fila) {
+        return diccionario[nomCodigo[fila]];
+    }
+
+    public double getAtac(int fila) {
+        return atac[fila];
+    }
+
+    public double getDefensa(int fila) {
+        return defensa[fila];
+    }
+
+    public int getIdFaccion(int fila) {
+        return idFaccion[fila];
+    }
+
+    public double get(Columna columna, int fila) {
+        return valores(columna)[fila];
+    }
+
+    /**
+     * Crea un Personaje con los datos de la fila (solo para cuando hace falta un objeto).
+     */
+    public Personaje toPersonaje(int fila) {
+        return new Personaje(id[fila], getNom(fila), atac[fila], defensa[fila], idFaccion[fila]);
+    }
+
+    // ========== FACCIONES ==========
+
+    /**
+     * @return El numero de facciones distintas con algun personaje.
+     */
+    public int numFacciones() {
+        return facciones.length;
+    }
+
+    /**
+     * @return El id de la faccion en la posicion indicada (0 .. numFacciones()-1), en orden creciente.
+     */
+    public int idFaccionEn(int posicion) {
+        return facciones[posicion];
+    }
+
+    /**
+     * @return La posicion de la faccion, o -1 si no tiene personajes.
+     */
+    public int posicionFaccion(int idFaccion) {
+        int pos = Arrays.binarySearch(facciones, idFaccion);
+        return pos >= 0 ? pos : -1;
+    }
+
+    /**
+     * @return La primera fila de la faccion en la posicion indicada.
+     */
+    public int inicioFaccion(int posicion) {
+        return inicio[posicion];
+    }
+
+    /**
+     * @return La fila siguiente a la ultima de la faccion en la posicion indicada.
+     */
+    public int finFaccion(int posicion) {
+        return inicio[posicion + 1];
+    }
+
+    // ========== AGREGADOS POR FACCION ==========
+    // Todos devuelven un array indexado por posicion de faccion (ver idFaccionEn).
+
+    public int[] recuento() {
+        int[] result = new int[facciones.length];
+        for (int s = 0; s < facciones.length; s++) {
+            result[s] = inicio[s + 1] - inicio[s];
+        }
+        return result;
+    }
+
+    public double[] min(Columna columna) {
+        double[] v = valores(columna);
+        double[] result = new double[facciones.length];
+        for (int s = 0; s < facciones.length; s++) {
+            double m = Double.POSITIVE_INFINITY;
+            for (int i = inicio[s], fin = inicio[s + 1]; i < fin; i++) {
+                m = Math.min(m, v[i]);
+            }
+            result[s] = m;
+        }
+        return result;
+    }
+
+    public double[] max(Columna columna) {
+        double[] v = valores(columna);
+        double[] result = new double[facciones.length];
+        for (int s = 0; s < facciones.length; s++) {
+            double m = Double.NEGATIVE_INFINITY;
+            for (int i = inicio[s], fin = inicio[s + 1]; i < fin; i++) {
+                m = Math.max(m, v[i]);
+            }
+            result[s] = m;
+        }
+        return result;
+    }
+
+    public double[] suma(Columna columna) {
+        double[] v = valores(columna);
+        double[] result = new double[facciones.length];
+        for (int s = 0; s < facciones.length; s++) {
+            double suma = 0;
+            for (int i = inicio[s], fin = inicio[s + 1]; i < fin; i++) {
+                suma += v[i];
+            }
+            result[s] = suma;
+        }
+        return result;
+    }
+
+    public double[] media(Columna columna) {
+        double[] result = suma(columna);
+        for (int s = 0; s < facciones.length; s++) {
+            result[s] /= inicio[s + 1] - inicio[s];
+        }
+        return result;
+    }
+
+    /**
+     * Histograma de la columna por faccion con {@code bins} intervalos iguales entre
+     * {@code desde} y {@code hasta}. Los valores fuera del rango cuentan en el primer
+     * o el ultimo intervalo.
+     *
+     * @return {@code result[posicionFaccion][intervalo]} = numero de personajes.
+     */
+    public long[][] histograma(Columna columna, int bins, double desde, double hasta) {
+        if (bins <= 0 || !(hasta > desde)) {
+            throw new IllegalArgumentException("Rango de histograma no valido: " + bins + " intervalos en [" + desde + ", " + hasta + ")");
+        }
+        double[] v = valores(columna);
+        double escala = bins / (hasta - desde);
+        long[][] result = new long[facciones.length][bins];
+        for (int s = 0; s < facciones.length; s++) {
+            long[] h = result[s];
+            for (int i = inicio[s], fin = inicio[s + 1]; i < fin; i++) {
+                int b = (int) ((v[i] - desde) * escala);
+                h[b < 0 ? 0 : (b >= bins ? bins - 1 : b)]++;
+            }
+        }
+        return result;
+    }
+
+    // Acceso sin copia para el resto del paquete; no se debe modificar.
+    double[] valores(Columna columna) {
+        return columna == Columna.ATAC ? atac : defensa;
+    }
+
+    int[] ids() {
+        return id;
+    }
+
+    /**
+     * Acumula filas en arrays que crecen segun se necesita.
+     * Las filas deben llegar ordenadas por idFaccion.
+     */
+    public static final class Builder {
+        private int size;
+        private int[] id;
+        private double[] atac;
+        private double[] defensa;
+        private int[] idFaccion;
+        private int[] nomCodigo;
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private String[] diccionario = new String[16];
+
+        public Builder(int capacidadInicial) {
+            int n = Math.max(capacidadInicial, 16);
+            id = new int[n];
+            atac = new double[n];
+            defensa = new double[n];
+            idFaccion = new int[n];
+            nomCodigo = new int[n];
+        }
+
+        public Builder add(int id, String nom, double atac, double defensa, int idFaccion) {
+            if (size > 0 && idFaccion < this.idFaccion[size - 1]) {
+                throw new IllegalArgumentException("Las filas deben llegar ordenadas por idFaccion.");
+            }
+            if (size == this.id.length) {
+                int n = size + (size >> 1);
+                this.id = Arrays.copyOf(this.id, n);
+                this.atac = Arrays.copyOf(this.atac, n);
+                this.defensa = Arrays.copyOf(this.defensa, n);
+                this.idFaccion = Arrays.copyOf(this.idFaccion, n);
+                this.nomCodigo = Arrays.copyOf(this.nomCodigo, n);
+            }
+            this.id[size] = id;
+            this.atac[size] = atac;
+            this.defensa[size] = defensa;
+            this.idFaccion[size] = idFaccion;
+            this.nomCodigo[size] = codificar(nom);
+            size++;
+            return this;
+        }
+
+        public PersonajeColumnas build() {
+            return new PersonajeColumnas(size,
+                Arrays.copyOf(id, size), Arrays.copyOf(atac, size), Arrays.copyOf(defensa, size),
+                Arrays.copyOf(idFaccion, size), Arrays.copyOf(nomCodigo, size),
+                Arrays.copyOf(diccionario, codigos.size()));
+        }
+
+        private int codificar(String nom) {
+            Integer codigo = codigos.get(nom);
+            if (codigo == null) {
+                codigo = codigos.size();
+                codigos.put(nom, codigo);
+                if (codigo == diccionario.length) {
+                    diccionario = Arrays.copyOf(diccionario, codigo * 2);
+                }
+                diccionario[codigo] = nom;
+            }
+            return codigo;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package cat.iesesteveterradas.analytics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.HonorCli;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Estima por Monte Carlo la probabilidad de que una faccion gane a otra en un duelo.
+ * <p>
+ * En cada duelo se elige al azar un personaje de cada faccion y cada uno golpea al
+ * otro: el golpe vale {@code atac * u - defensaDelRival * v}, con u y v uniformes en
+ * [0, 1). Gana el golpe mas fuerte; un empate se decide a cara o cruz.
+ * <p>
+ * Cada cruce de facciones es una tarea fork/join que reparte sus duelos en bloques de
+ * {@link #DUELOS_POR_TAREA}; los bloques se crean dentro de la tarea del cruce, asi que
+ * solo hay en memoria los de los cruces que se estan simulando. Cada cruce tiene su
+ * propio {@link SplittableRandom}, separado del de la semilla en el orden de los cruces,
+ * y cada bloque uno separado del de su cruce en el orden de los bloques: con la misma
+ * semilla el resultado es identico sea cual sea el numero de hilos. Los bloques solo
+ * leen los arrays de {@link PersonajeColumnas} y no crean objetos dentro del bucle.
+ */
+public class SimuladorDuelos {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimuladorDuelos.class);
+
+    public static final long DEFAULT_DUELOS = 1_000_000;
+    public static final long DEFAULT_SEMILLA = 20251018L;
+
+    // Duelos por tarea hoja; fijo (no depende de los hilos) para que el resultado sea determinista
+    static final int DUELOS_POR_TAREA = 1 << 16;
+
+    static final String USO = "Uso: P210Honor --simulate [--duels N] [--seed N] [--threads N]";
+
+    static final String SQL_INSERT_RESULTADO =
+        "INSERT INTO SimulacionDuelos (idFaccion, idRival, duelos, victorias, tasaVictoria, semilla) " +
+        "VALUES (?, ?, ?, ?, ?, ?);";
+
+    private final ForkJoinPool pool;
+    private final long duelosPorCruce;
+    private final long semilla;
+
+    public SimuladorDuelos(long duelosPorCruce, long semilla) {
+        this(ForkJoinPool.commonPool(), duelosPorCruce, semilla);
+    }
+
+    /**
+     * @param pool El pool de hilos donde simular.
+     * @param duelosPorCruce Duelos a simular entre cada pareja de facciones.
+     * @param semilla La semilla de los numeros aleatorios.
+     */
+    public SimuladorDuelos(ForkJoinPool pool, long duelosPorCruce, long semilla) {
+        if (duelosPorCruce <= 0) {
+            throw new IllegalArgumentException("El numero de duelos debe ser positivo: " + duelosPorCruce);
+        }
+        this.pool = pool;
+        this.duelosPorCruce = duelosPorCruce;
+        this.semilla = semilla;
+    }
+
+    /**
+     * Carga los personajes de la BBDD y simula todos los cruces entre facciones.
+     */
+    public MatrizVictorias simular(Connection conn) throws SQLException {
+        return simular(PersonajeColumnas.cargar(conn));
+    }
+
+    /**
+     * Simula {@code duelosPorCruce} duelos entre cada pareja de facciones con personajes.
+     */
+    public MatrizVictorias simular(PersonajeColumnas datos) {
+        long t0 = System.nanoTime();
+        int n = datos.numFacciones();
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        List<Cruce> cruces = new ArrayList<>(n * (n - 1) / 2);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                cruces.add(new Cruce(datos, i, j, duelosPorCruce, raiz.split()));
+            }
+        }
+        pool.invoke(new TodosLosCruces(cruces));
+
+        long[][] victorias = new long[n][n];
+        for (Cruce c : cruces) {
+            victorias[c.a][c.b] += c.victorias;
+            victorias[c.b][c.a] += c.duelos - c.victorias;
+        }
+        int[] facciones = new int[n];
+        for (int s = 0; s < n; s++) {
+            facciones[s] = datos.idFaccionEn(s);
+        }
+        MatrizVictorias result = new MatrizVictorias(facciones, duelosPorCruce, semilla, victorias);
+        if (logger.isDebugEnabled()) {
+            long total = duelosPorCruce * n * (n - 1) / 2;
+            double segundos = (System.nanoTime() - t0) / 1e9;
+            logger.debug("{} duelos entre {} facciones en {} s ({} duelos/s) con paralelismo {}.",
+                total, n, String.format(Locale.ROOT, "%.2f", segundos),
+                String.format(Locale.ROOT, "%.3g", total / segundos), pool.getParallelism());
+        }
+        return result;
+    }
+
+    /**
+     * Simula duelos entre personajes al azar de dos rangos de filas.
+     *
+     * @return Los duelos ganados por el rango A.
+     */
+    static long duelos(double[] atac, double[] defensa, int desdeA, int hastaA, int desdeB, int hastaB,
+                       long n, SplittableRandom random) {
+        int numA = hastaA - desdeA;
+        int numB = hastaB - desdeB;
+        long ganados = 0;
+        for (long k = 0; k < n; k++) {
+            int a = desdeA + random.nextInt(numA);
+            int b = desdeB + random.nextInt(numB);
+            double golpeA = atac[a] * random.nextDouble() - defensa[b] * random.nextDouble();
+            double golpeB = atac[b] * random.nextDouble() - defensa[a] * random.nextDouble();
+            if (golpeA > golpeB || (golpeA == golpeB && random.nextBoolean())) {
+                ganados++;
+            }
+        }
+        return ganados;
+    }
+
+    /**
+     * Lanza todos los cruces y espera a que acaben.
+     */
+    private static final class TodosLosCruces extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Cruce> cruces;
+
+        TodosLosCruces(List<Cruce> cruces) {
+            this.cruces = cruces;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(cruces);
+        }
+    }
+
+    /**
+     * Los duelos entre las facciones en las posiciones a y b, repartidos en bloques.
+     */
+    private static final class Cruce extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PersonajeColumnas datos;
+        private final int a;
+        private final int b;
+        private final long duelos;
+        private final transient SplittableRandom random;
+        private long victorias;
+
+        Cruce(PersonajeColumnas datos, int a, int b, long duelos, SplittableRandom random) {
+            this.datos = datos;
+            this.a = a;
+            this.b = b;
+            this.duelos = duelos;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            List<Bloque> bloques = new ArrayList<>((int) ((duelos + DUELOS_POR_TAREA - 1) / DUELOS_POR_TAREA));
+            for (long hechos = 0; hechos < duelos; hechos += DUELOS_POR_TAREA) {
+                bloques.add(new Bloque(datos, a, b, Math.min(DUELOS_POR_TAREA, duelos - hechos), random.split()));
+            }
+            invokeAll(bloques);
+            for (Bloque bloque : bloques) {
+                victorias += bloque.victorias;
+            }
+        }
+    }
+
+    /**
+     * Un bloque de duelos entre las facciones en las posiciones a y b.
+     */
+    private static final class Bloque extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PersonajeColumnas datos;
+        private final int a;
+        private final int b;
+        private final long duelos;
+        private final transient SplittableRandom random;
+        private long victorias;
+
+        Bloque(PersonajeColumnas datos, int a, int b, long duelos, SplittableRandom random) {
+            this.datos = datos;
+            this.a = a;
+            this.b = b;
+            this.duelos = duelos;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            victorias = duelos(datos.valores(PersonajeColumnas.Columna.ATAC),
+                datos.valores(PersonajeColumnas.Columna.DEFENSA),
+                datos.inicioFaccion(a), datos.finFaccion(a), datos.inicioFaccion(b), datos.finFaccion(b),
+                duelos, random);
+        }
+    }
+
+    // ========== PERSISTENCIA ==========
+
+    /**
+     * Crea (si no existe) la tabla SimulacionDuelos: una fila por faccion y rival con
+     * los duelos simulados, los ganados y la tasa de victorias de la ultima simulacion.
+     */
+    public static void crearTabla(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TABLE IF NOT EXISTS SimulacionDuelos (" +
+            " idFaccion INTEGER NOT NULL," +
+            " idRival INTEGER NOT NULL," +
+            " duelos INTEGER NOT NULL," +
+            " victorias INTEGER NOT NULL," +
+            " tasaVictoria REAL NOT NULL," +
+            " semilla INTEGER NOT NULL," +
+            " fecha TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+            " PRIMARY KEY (idFaccion, idRival)" +
+            ");");
+    }
+
+    /**
+     * Sustituye el contenido de SimulacionDuelos por la matriz, en una transaccion.
+     *
+     * @return El numero de filas guardadas.
+     */
+    public static long guardar(Connection conn, MatrizVictorias matriz) throws SQLException {
+        crearTabla(conn);
+        List<Object[]> filas = new ArrayList<>();
+        for (int i = 0; i < matriz.numFacciones(); i++) {
+            for (int j = 0; j < matriz.numFacciones(); j++) {
+                if (i != j) {
+                    filas.add(new Object[] { matriz.idFaccionEn(i), matriz.idFaccionEn(j), matriz.getDuelosPorCruce(),
+                        matriz.getVictorias(i, j), matriz.getTasa(i, j), matriz.getSemilla() });
+                }
+            }
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            DatabaseManager.queryUpdate(conn, "DELETE FROM SimulacionDuelos;");
+            long total = DatabaseManager.executeBatch(conn, SQL_INSERT_RESULTADO, filas,
+                Math.max(1, filas.size()));
+            if (autoCommit) {
+                conn.commit();
+            }
+            return total;
+        } catch (SQLException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // ========== LINEA DE COMANDOS ==========
+
+    /**
+     * Simula desde la linea de comandos (ver {@link #USO}), guarda el resultado en
+     * SimulacionDuelos y escribe la matriz de tasas por la salida estandar.
+     *
+     * @return El codigo de salida (ver {@link HonorCli}).
+     */
+    public static int ejecutar(String dbPath, TuningProfile perfil, String[] args) {
+        long duelos = DEFAULT_DUELOS;
+        long semilla = DEFAULT_SEMILLA;
+        int hilos = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--simulate":
+                        break;
+                    case "--duels":
+                        duelos = Long.parseLong(args[++i]);
+                        break;
+                    case "--seed":
+                        semilla = Long.parseLong(args[++i]);
+                        break;
+                    case "--threads":
+                        hilos = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argumento '" + args[i] + "' no valido.");
+                }
+            }
+            if (duelos <= 0 || hilos <= 0) {
+                throw new IllegalArgumentException("--duels y --threads deben ser positivos.");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.error("Argumentos no validos: {}\n{}", e.getMessage(), USO);
+            return HonorCli.EXIT_USO;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try (Connection conn = DatabaseManager.connect(dbPath, perfil)) {
+            long t0 = System.nanoTime();
+            MatrizVictorias matriz = new SimuladorDuelos(pool, duelos, semilla).simular(conn);
+            double segundos = (System.nanoTime() - t0) / 1e9;
+            long total = duelos * matriz.numFacciones() * (matriz.numFacciones() - 1) / 2;
+            guardar(conn, matriz);
+            logger.info("Simulados {} duelos en {} s con {} hilos ({} duelos/s).", total,
+                String.format(Locale.ROOT, "%.2f", segundos), hilos,
+                String.format(Locale.ROOT, "%.3g", total / Math.max(segundos, 1e-9)));
+            imprimir(matriz);
+            return matriz.numFacciones() < 2 ? HonorCli.EXIT_SIN_RESULTADOS : HonorCli.EXIT_OK;
+        } catch (SQLException e) {
+            logger.error("Error simulando los duelos: {}", e.getMessage(), e);
+            return HonorCli.EXIT_ERROR;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void imprimir(MatrizVictorias matriz) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%8s", "faccion"));
+        for (int j = 0; j < matriz.numFacciones(); j++) {
+            sb.append(String.format(Locale.ROOT, "%8d", matriz.idFaccionEn(j)));
+        }
+        sb.append(String.format(Locale.ROOT, "%8s%n", "global"));
+        for (int i = 0; i < matriz.numFacciones(); i++) {
+            sb.append(String.format(Locale.ROOT, "%8d", matriz.idFaccionEn(i)));
+            for (int j = 0; j < matriz.numFacciones(); j++) {
+                sb.append(i == j ? String.format(Locale.ROOT, "%8s", "-")
+                    : String.format(Locale.ROOT, "%8.3f", matriz.getTasa(i, j)));
+            }
+            sb.append(String.format(Locale.ROOT, "%8.3f%n", matriz.getTasaGlobal(i)));
+        }
+        System.out.print(sb);
+    }
+}
@@ -0,0 +1,182 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.LruCache;
+import cat.iesesteveterradas.utility.TableChangeListener;
+
+/**
+ * {@link HonorDao} con cache de lectura (read-through) en memoria.
+ * <p>
+ * Las lecturas de facciones, personajes por faccion y mejor atacante/defensor
+ * se sirven desde caches LRU con caducidad. Se invalidan:
+ * <ul>
+ *   <li>Con precision (solo las facciones afectadas) en las escrituras hechas
+ *       a traves de cualquier {@link HonorDao}.</li>
+ *   <li>Por tabla entera en cualquier otra escritura que pase por
+ *       {@link DatabaseManager} (por ejemplo, la carga masiva de {@code RosterLoader}).</li>
+ * </ul>
+ * Las listas devueltas son inmutables y compartidas entre llamadas.
+ */
+public class CachedHonorDao extends HonorDao implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachedHonorDao.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final Duration DEFAULT_TTL_FACCIONES = Duration.ofMinutes(10);
+    public static final Duration DEFAULT_TTL_PERSONAJES = Duration.ofMinutes(1);
+
+    private static final String CLAVE_FACCIONES = "facciones";
+
+    private final LruCache<String, List<Faccion>> facciones;
+    private final LruCache<Integer, List<Personaje>> personajesPorFaccion;
+    private final LruCache<Integer, Optional<Personaje>> mejorAtacante;
+    private final LruCache<Integer, Optional<Personaje>> mejorDefensor;
+
+    private final TableChangeListener listenerTablas = this::onTableChanged;
+    private final HonorListener listenerFilas = new HonorListener() {
+        @Override
+        public void personajeCambiado(Personaje anterior, Personaje nuevo) {
+            if (anterior != null) {
+                invalidarFaccion(anterior.getIdFaccion());
+            }
+            if (nuevo != null) {
+                invalidarFaccion(nuevo.getIdFaccion());
+            }
+        }
+
+        @Override
+        public void faccionCambiada(int idFaccion) {
+            facciones.invalidateAll();
+            invalidarFaccion(idFaccion);
+        }
+    };
+
+    public CachedHonorDao(ConnectionPool pool) {
+        this(pool, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_FACCIONES, DEFAULT_TTL_PERSONAJES);
+    }
+
+    /**
+     * @param pool El pool de conexiones de la base de datos.
+     * @param maxEntries Numero maximo de facciones cacheadas en cada cache de personajes.
+     * @param ttlFacciones Tiempo de vida de la lista de facciones.
+     * @param ttlPersonajes Tiempo de vida de las consultas de personajes.
+     */
+    public CachedHonorDao(ConnectionPool pool, int maxEntries, Duration ttlFacciones, Duration ttlPersonajes) {
+        super(pool);
+        this.facciones = new LruCache<>("facciones", 4, ttlFacciones);
+        this.personajesPorFaccion = new LruCache<>("personajesPorFaccion", maxEntries, ttlPersonajes);
+        this.mejorAtacante = new LruCache<>("mejorAtacante", maxEntries, ttlPersonajes);
+        this.mejorDefensor = new LruCache<>("mejorDefensor", maxEntries, ttlPersonajes);
+        DatabaseManager.addTableChangeListener(listenerTablas);
+        HonorDao.addListener(listenerFilas);
+    }
+
+    // ========== LECTURAS ==========
+
+    @Override
+    public List<Faccion> listFacciones() throws SQLException {
+        return facciones.getOrLoad(CLAVE_FACCIONES, k -> List.copyOf(super.listFacciones()));
+    }
+
+    @Override
+    public List<Faccion> listFacciones(int longitudPrevia) throws SQLException {
+        return facciones.getOrLoad(CLAVE_FACCIONES + ":" + longitudPrevia,
+            k -> List.copyOf(super.listFacciones(longitudPrevia)));
+    }
+
+    @Override
+    public List<Personaje> findPersonajesByFaccion(int idFaccion) throws SQLException {
+        return personajesPorFaccion.getOrLoad(idFaccion, id -> List.copyOf(super.findPersonajesByFaccion(id)));
+    }
+
+    @Override
+    public Optional<Personaje> findMejorAtacante(int idFaccion) throws SQLException {
+        return mejorAtacante.getOrLoad(idFaccion, super::findMejorAtacante);
+    }
+
+    @Override
+    public Optional<Personaje> findMejorDefensor(int idFaccion) throws SQLException {
+        return mejorDefensor.getOrLoad(idFaccion, super::findMejorDefensor);
+    }
+
+    // ========== INVALIDACION Y ESTADISTICAS ==========
+
+    /**
+     * Vacia todas las caches.
+     */
+    public void invalidateAll() {
+        facciones.invalidateAll();
+        invalidarPersonajes();
+    }
+
+    public LruCache<String, List<Faccion>> getCacheFacciones() {
+        return facciones;
+    }
+
+    public LruCache<Integer, List<Personaje>> getCachePersonajesPorFaccion() {
+        return personajesPorFaccion;
+    }
+
+    public LruCache<Integer, Optional<Personaje>> getCacheMejorAtacante() {
+        return mejorAtacante;
+    }
+
+    public LruCache<Integer, Optional<Personaje>> getCacheMejorDefensor() {
+        return mejorDefensor;
+    }
+
+    /**
+     * @return Un resumen de aciertos/fallos de cada cache, una por linea.
+     */
+    public String getEstadisticas() {
+        return facciones + "\n" + personajesPorFaccion + "\n" + mejorAtacante + "\n" + mejorDefensor;
+    }
+
+    /**
+     * Deja de escuchar los cambios de {@link DatabaseManager} y {@link HonorDao}.
+     */
+    @Override
+    public void close() {
+        DatabaseManager.removeTableChangeListener(listenerTablas);
+        HonorDao.removeListener(listenerFilas);
+    }
+
+    private void invalidarFaccion(int idFaccion) {
+        personajesPorFaccion.invalidate(idFaccion);
+        mejorAtacante.invalidate(idFaccion);
+        mejorDefensor.invalidate(idFaccion);
+    }
+
+    private void invalidarPersonajes() {
+        personajesPorFaccion.invalidateAll();
+        mejorAtacante.invalidateAll();
+        mejorDefensor.invalidateAll();
+    }
+
+    private void onTableChanged(String table, String sql) {
+        // Las escrituras de HonorDao ya llegan, con detalle, por listenerFilas
+        if (HonorDao.isEscrituraDao()) {
+            return;
+        }
+        if ("Faccion".equalsIgnoreCase(table)) {
+            // Los nombres se resuelven al leerlos (DiccionarioFacciones), pero las consultas de
+            // personajes siguen haciendo JOIN con Faccion: una faccion borrada se lleva los suyos
+            logger.debug("Cambio en Faccion: se vacian todas las caches.");
+            invalidateAll();
+        } else if ("Personaje".equalsIgnoreCase(table)) {
+            logger.debug("Cambio en Personaje: se vacian las caches de personajes.");
+            invalidarPersonajes();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+/**
+ * Lector del registro de cambios (tabla {@code RegistroCambios}, ver
+ * {@link HonorDao#crearVistas}).
+ * <p>
+ * Los triggers anotan cada cambio de Faccion o Personaje con un numero de
+ * secuencia creciente, venga de esta aplicacion, de una carga masiva o de otro
+ * proceso. Cada FeedCambios recuerda hasta donde ha leido, asi que quien
+ * mantenga una copia en memoria (p.ej. {@link Leaderboard}) puede aplicar
+ * solo lo que ha cambiado en lugar de volver a leerlo todo.
+ * <p>
+ * Hay que volver a leerlo todo al recibir un cambio {@link #RECARGAR}: lo deja
+ * una carga masiva (que no anota sus filas, ver {@link HonorDao#pausarRegistro})
+ * y lo devuelve {@link #siguientes} si se han borrado cambios que este lector
+ * no habia leido (el registro solo guarda los ultimos, ver {@link HonorDao#crearVistas}).
+ * <p>
+ * No es seguro usar una misma instancia desde varios hilos a la vez.
+ */
+public class FeedCambios {
+
+    static final String SQL_SIGUIENTES =
+        "SELECT seq, tabla, op, idFila, idFaccionAnterior, idFaccion FROM RegistroCambios " +
+        "WHERE seq > ? ORDER BY seq LIMIT ?;";
+
+    static final String SQL_ULTIMA = "SELECT IFNULL(MAX(seq), 0) FROM RegistroCambios;";
+
+    /**
+     * Operacion de un cambio que no dice que filas han cambiado: pueden ser todas.
+     */
+    public static final char RECARGAR = 'R';
+
+    static final String SQL_PURGAR = "DELETE FROM RegistroCambios WHERE seq <= ?;";
+
+    /**
+     * Un cambio de una fila.
+     */
+    public static final class Cambio {
+        private final long seq;
+        private final String tabla;
+        private final char op;
+        private final int idFila;
+        private final Integer idFaccionAnterior;
+        private final Integer idFaccion;
+
+        public Cambio(long seq, String tabla, char op, int idFila, Integer idFaccionAnterior, Integer idFaccion) {
+            this.seq = seq;
+            this.tabla = tabla;
+            this.op = op;
+            this.idFila = idFila;
+            this.idFaccionAnterior = idFaccionAnterior;
+            this.idFaccion = idFaccion;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * @return "Faccion" o "Personaje".
+         */
+        public String getTabla() {
+            return tabla;
+        }
+
+        /**
+         * @return 'I' (insercion), 'U' (actualizacion), 'D' (borrado) o {@link #RECARGAR}.
+         */
+        public char getOp() {
+            return op;
+        }
+
+        public int getIdFila() {
+            return idFila;
+        }
+
+        /**
+         * @return La faccion de la fila antes del cambio, o null si es una insercion.
+         */
+        public Integer getIdFaccionAnterior() {
+            return idFaccionAnterior;
+        }
+
+        /**
+         * @return La faccion de la fila despues del cambio, o null si es un borrado.
+         */
+        public Integer getIdFaccion() {
+            return idFaccion;
+        }
+
+        @Override
+        public String toString() {
+            return "Cambio [" + seq + " " + op + " " + tabla + " " + idFila + ", faccion " + idFaccionAnterior + " -> " + idFaccion + "]";
+        }
+    }
+
+    private final ConnectionPool pool;
+    private long posicion;
+
+    /**
+     * @param pool El pool de conexiones de la base de datos.
+     * @param desde La ultima secuencia ya vista; se leeran los cambios posteriores.
+     */
+    public FeedCambios(ConnectionPool pool, long desde) {
+        this.pool = pool;
+        this.posicion = desde;
+    }
+
+    /**
+     * Crea un lector que solo vera los cambios a partir de ahora.
+     */
+    public static FeedCambios desdeAhora(ConnectionPool pool) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return new FeedCambios(pool, ultimaSecuencia(conn));
+        }
+    }
+
+    /**
+     * @return La secuencia del ultimo cambio registrado, o 0 si no hay ninguno.
+     */
+    public static long ultimaSecuencia(Connection conn) throws SQLException {
+        return DatabaseManager.queryFirst(conn, SQL_ULTIMA, rs -> rs.getLong(1)).orElse(0L);
+    }
+
+    /**
+     * Lee los siguientes cambios y avanza la posicion.
+     *
+     * @param max Numero maximo de cambios a devolver.
+     * @return Los cambios en orden de secuencia; vacio si no hay nada nuevo. Si se han
+     *         borrado cambios sin leerlos, delante va un cambio {@link #RECARGAR}.
+     */
+    public List<Cambio> siguientes(int max) throws SQLException {
+        List<Cambio> cambios;
+        try (Connection conn = pool.getConnection()) {
+            cambios = DatabaseManager.queryList(conn, SQL_SIGUIENTES, FeedCambios::mapCambio, posicion, max);
+        }
+        if (cambios.isEmpty()) {
+            return cambios;
+        }
+        long primero = cambios.get(0).getSeq();
+        if (primero > posicion + 1) {
+            // Las secuencias no tienen huecos: los que faltan se han borrado sin leerlos
+            cambios.add(0, new Cambio(primero - 1, "*", RECARGAR, 0, null, null));
+        }
+        posicion = cambios.get(cambios.size() - 1).getSeq();
+        return cambios;
+    }
+
+    /**
+     * Se salta los cambios pendientes: a partir de ahora solo se veran los nuevos
+     * (p.ej. despues de volver a leer todos los datos).
+     */
+    public void saltarAlFinal() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            posicion = ultimaSecuencia(conn);
+        }
+    }
+
+    /**
+     * @return La secuencia del ultimo cambio leido.
+     */
+    public long getPosicion() {
+        return posicion;
+    }
+
+    /**
+     * Borra del registro los cambios hasta la secuencia indicada (incluida). Solo se
+     * debe hacer con los que ya han leido todos los lectores.
+     *
+     * @return El numero de cambios borrados.
+     */
+    public int purgar(long hasta) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryUpdatePS(conn, SQL_PURGAR, hasta);
+        }
+    }
+
+    private static Cambio mapCambio(ResultSet rs) throws SQLException {
+        return new Cambio(
+            rs.getLong("seq"),
+            rs.getString("tabla"),
+            rs.getString("op").charAt(0),
+            rs.getInt("idFila"),
+            enteroONull(rs, "idFaccionAnterior"),
+            enteroONull(rs, "idFaccion")
+        );
+    }
+
+    private static Integer enteroONull(ResultSet rs, String columna) throws SQLException {
+        int valor = rs.getInt(columna);
+        return rs.wasNull() ? null : valor;
+    }
+}
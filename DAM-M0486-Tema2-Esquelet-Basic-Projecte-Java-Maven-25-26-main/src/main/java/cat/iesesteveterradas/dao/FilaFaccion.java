@@ -0,0 +1,134 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.FuenteResumenes;
+import cat.iesesteveterradas.utility.RowMapper;
+
+/**
+ * Vista mutable de la fila actual de un recorrido de facciones (como {@link FilaPersonaje}).
+ * <p>
+ * Se reutiliza para todas las filas; {@link #toFaccion()} crea una Faccion si hay
+ * que conservarla. Las columnas se buscan por nombre solo en la primera fila.
+ * <p>
+ * En los listados, {@code resum} es solo el principio del resumen y la columna
+ * opcional {@code longitudResum} su longitud completa: si el principio es mas corto,
+ * la Faccion creada lee el resto de una {@link FuenteResumenes} cuando se pide.
+ */
+public final class FilaFaccion {
+
+    private int id;
+    private String nom;
+    private String resum;
+    private boolean resumCompleto;
+    private final FuenteResumenes fuente;
+
+    private ResultSet resuelto;
+    private int colId;
+    private int colNom;
+    private int colResum;
+    private int colLongitudResum;
+
+    public FilaFaccion() {
+        this(null);
+    }
+
+    /**
+     * @param fuente De donde leeran el resumen completo las facciones con el resumen cortado.
+     */
+    public FilaFaccion(FuenteResumenes fuente) {
+        this.fuente = fuente;
+    }
+
+    /**
+     * @return Un mapper que crea una Faccion por fila, leyendo las columnas por indice.
+     *         Cada llamada devuelve uno nuevo: no se debe compartir entre consultas simultaneas.
+     */
+    public static RowMapper<Faccion> mapper() {
+        return mapper(null);
+    }
+
+    /**
+     * @param fuente De donde leer el resumen completo si la consulta solo trae el principio.
+     * @return Un mapper como {@link #mapper()}, para consultas con {@code longitudResum}.
+     */
+    public static RowMapper<Faccion> mapper(FuenteResumenes fuente) {
+        FilaFaccion fila = new FilaFaccion(fuente);
+        return rs -> fila.cargar(rs).toFaccion();
+    }
+
+    /**
+     * Carga la fila actual del ResultSet.
+     *
+     * @return Esta misma vista.
+     */
+    public FilaFaccion cargar(ResultSet rs) throws SQLException {
+        if (rs != resuelto) {
+            resolver(rs);
+        }
+        id = rs.getInt(colId);
+        nom = rs.getString(colNom);
+        resum = rs.getString(colResum);
+        // Sin la longitud (o sin resumen) lo leido es el resumen entero
+        resumCompleto = true;
+        if (colLongitudResum > 0 && resum != null) {
+            int longitud = rs.getInt(colLongitudResum);
+            resumCompleto = rs.wasNull() || longitud <= resum.length();
+        }
+        return this;
+    }
+
+    private void resolver(ResultSet rs) throws SQLException {
+        colId = rs.findColumn("id");
+        colNom = rs.findColumn("nom");
+        colResum = rs.findColumn("resum");
+        // Como nomFaccion en FilaPersonaje: findColumn lanza una excepcion si no existe
+        colLongitudResum = 0;
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1, n = meta.getColumnCount(); i <= n; i++) {
+            if ("longitudResum".equalsIgnoreCase(meta.getColumnLabel(i))) {
+                colLongitudResum = i;
+                break;
+            }
+        }
+        resuelto = rs;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    /**
+     * @return El resumen leido de la fila; solo el principio si no {@link #isResumCompleto()}.
+     */
+    public String getResum() {
+        return resum;
+    }
+
+    public boolean isResumCompleto() {
+        return resumCompleto;
+    }
+
+    /**
+     * @return Una Faccion nueva con los valores de la fila actual.
+     */
+    public Faccion toFaccion() {
+        if (resumCompleto || fuente == null) {
+            return new Faccion(id, nom, resum);
+        }
+        return new Faccion(id, nom, resum, fuente);
+    }
+
+    @Override
+    public String toString() {
+        return "FilaFaccion [ID=" + id + ", Nom=" + nom + "]";
+    }
+}
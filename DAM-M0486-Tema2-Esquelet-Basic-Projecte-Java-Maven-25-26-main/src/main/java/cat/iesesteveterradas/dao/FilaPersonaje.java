@@ -0,0 +1,154 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import cat.iesesteveterradas.model.DiccionarioFacciones;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.RowMapper;
+
+/**
+ * Vista mutable de la fila actual de un recorrido de personajes.
+ * <p>
+ * Un mismo objeto se reutiliza para todas las filas: quien lo recibe puede leer
+ * sus valores pero no debe guardarlo, porque la siguiente fila los sobrescribe.
+ * Si hace falta conservar la fila, {@link #toPersonaje()} crea un Personaje.
+ * <p>
+ * Al leer de un ResultSet, las posiciones de las columnas se buscan por nombre una
+ * sola vez (en la primera fila) y despues se lee por indice. La columna
+ * {@code nomFaccion} es opcional: si no esta, el nombre se toma de
+ * {@link DiccionarioFacciones}.
+ */
+public final class FilaPersonaje {
+
+    private int id;
+    private String nom;
+    private double atac;
+    private double defensa;
+    private int idFaccion;
+    private String nomFaccion;
+    // Si el nombre viene de la fila y no del diccionario
+    private boolean nomExplicito;
+
+    // Posiciones de las columnas en el ultimo ResultSet leido
+    private ResultSet resuelto;
+    private int colId;
+    private int colNom;
+    private int colAtac;
+    private int colDefensa;
+    private int colIdFaccion;
+    private int colNomFaccion;
+
+    /**
+     * @return Un mapper que crea un Personaje por fila, leyendo las columnas por indice.
+     *         Cada llamada devuelve uno nuevo: no se debe compartir entre consultas simultaneas.
+     */
+    public static RowMapper<Personaje> mapper() {
+        FilaPersonaje fila = new FilaPersonaje();
+        return rs -> fila.cargar(rs).toPersonaje();
+    }
+
+    /**
+     * Carga la fila actual del ResultSet.
+     *
+     * @return Esta misma vista.
+     */
+    public FilaPersonaje cargar(ResultSet rs) throws SQLException {
+        if (rs != resuelto) {
+            resolver(rs);
+        }
+        id = rs.getInt(colId);
+        nom = rs.getString(colNom);
+        atac = rs.getDouble(colAtac);
+        defensa = rs.getDouble(colDefensa);
+        idFaccion = rs.getInt(colIdFaccion);
+        if (colNomFaccion > 0) {
+            nomFaccion = DiccionarioFacciones.getDefault().canonico(idFaccion, rs.getString(colNomFaccion));
+            nomExplicito = true;
+        } else {
+            nomFaccion = DiccionarioFacciones.getDefault().nombre(idFaccion);
+            nomExplicito = false;
+        }
+        return this;
+    }
+
+    /**
+     * Carga la fila con valores ya leidos (por ejemplo, de un snapshot).
+     *
+     * @return Esta misma vista.
+     */
+    public FilaPersonaje cargar(int id, String nom, double atac, double defensa, int idFaccion, String nomFaccion) {
+        this.id = id;
+        this.nom = nom;
+        this.atac = atac;
+        this.defensa = defensa;
+        this.idFaccion = idFaccion;
+        this.nomFaccion = nomFaccion;
+        this.nomExplicito = true;
+        return this;
+    }
+
+    private void resolver(ResultSet rs) throws SQLException {
+        colId = rs.findColumn("id");
+        colNom = rs.findColumn("nom");
+        colAtac = rs.findColumn("atac");
+        colDefensa = rs.findColumn("defensa");
+        colIdFaccion = rs.findColumn("idFaccion");
+        // findColumn lanza una excepcion si no existe; nomFaccion solo esta en los JOIN
+        colNomFaccion = 0;
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1, n = meta.getColumnCount(); i <= n; i++) {
+            if ("nomFaccion".equalsIgnoreCase(meta.getColumnLabel(i))) {
+                colNomFaccion = i;
+                break;
+            }
+        }
+        resuelto = rs;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public double getAtac() {
+        return atac;
+    }
+
+    public double getDefensa() {
+        return defensa;
+    }
+
+    public int getIdFaccion() {
+        return idFaccion;
+    }
+
+    /**
+     * @return El nombre de la faccion, o null si no se conoce.
+     */
+    public String getNomFaccion() {
+        return nomFaccion;
+    }
+
+    /**
+     * @return Un Personaje nuevo con los valores de la fila actual.
+     */
+    public Personaje toPersonaje() {
+        Personaje p = new Personaje(id, nom, atac, defensa, idFaccion);
+        if (nomExplicito) {
+            p.setNomFaccion(nomFaccion);
+        }
+        return p;
+    }
+
+    @Override
+    public String toString() {
+        return "FilaPersonaje [ID=" + id + ", Nom=" + nom + ", Atac=" + atac
+            + ", Defensa=" + defensa + ", ID Faccion=" + idFaccion + "]";
+    }
+}
@@ -0,0 +1,966 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.DiccionarioFacciones;
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.FuenteResumenes;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResultadoBusqueda;
+import cat.iesesteveterradas.model.ResumenFaccion;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.LruCache;
+import cat.iesesteveterradas.utility.UncheckedSQLException;
+
+/**
+ * Consultas y escrituras de las tablas Faccion y Personaje.
+ * <p>
+ * Cada operacion toma una conexion del pool y la devuelve al terminar,
+ * asi que una misma instancia se puede usar desde varios hilos.
+ * <p>
+ * Las escrituras avisan a los {@link HonorListener} registrados con el detalle
+ * de la fila cambiada (de cualquier instancia de HonorDao o de un {@link HonorWriter}).
+ * <p>
+ * Los personajes se leen sin el nombre de su faccion: lo resuelven cuando se pide
+ * desde {@link DiccionarioFacciones}, que HonorDao mantiene cargado. Del mismo modo,
+ * los listados de facciones ({@link #paginaFacciones}, {@link #listFacciones(int)}) solo
+ * traen el principio del resumen; el resto se lee al pedirlo, a traves de una cache.
+ * <p>
+ * Cada escritura se confirma por separado (autocommit). Si escriben muchos hilos a
+ * la vez, es mejor enviar las escrituras a un {@link HonorWriter}, que las agrupa.
+ */
+public class HonorDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(HonorDao.class);
+
+    private static final List<HonorListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Marca las escrituras en curso de HonorDao en este hilo
+    private static final ThreadLocal<Boolean> escribiendo = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    // Cambia con cada escritura en Faccion; las caches de resumenes se vacian al verla cambiar
+    private static volatile long versionFacciones;
+
+    /** Caracteres del resumen que traen los listados de facciones (ver {@link #paginaFacciones}). */
+    public static final int LONGITUD_PREVIA = 80;
+
+    /** Resumenes completos que guarda en cache cada HonorDao. */
+    public static final int DEFAULT_RESUMENES_CACHE = 64;
+
+    // Cambios que guarda RegistroCambios; los mas antiguos se borran al anotar uno nuevo
+    static final int VENTANA_REGISTRO = 100_000;
+
+    static {
+        // Cualquier escritura en Faccion (tambien las que no pasan por HonorDao) deja
+        // obsoletos los nombres; la siguiente lectura de personajes los vuelve a cargar
+        DatabaseManager.addTableChangeListener((tabla, sql) -> {
+            if ("Faccion".equalsIgnoreCase(tabla)) {
+                DiccionarioFacciones.getDefault().invalidar();
+                versionFacciones++;
+            }
+        });
+    }
+
+    static final String SQL_FACCIONES = "SELECT id, nom, resum FROM Faccion;";
+
+    static final String SQL_PERSONAJES_POR_FACCION =
+        "SELECT p.* " +
+        "FROM Personaje p " +
+        "JOIN Faccion f ON p.idFaccion = f.id " +
+        "WHERE p.idFaccion = ?;";
+
+    static final String SQL_MEJOR_ATACANTE =
+        "SELECT p.* " +
+        "FROM Personaje p " +
+        "JOIN Faccion f ON p.idFaccion = f.id " +
+        "WHERE p.idFaccion = ? " +
+        "ORDER BY p.atac DESC " +
+        "LIMIT 1;";
+
+    static final String SQL_MEJOR_DEFENSOR =
+        "SELECT p.* " +
+        "FROM Personaje p " +
+        "JOIN Faccion f ON p.idFaccion = f.id " +
+        "WHERE p.idFaccion = ? " +
+        "ORDER BY p.defensa DESC " +
+        "LIMIT 1;";
+
+    static final String SQL_PERSONAJES = "SELECT id, nom, atac, defensa, idFaccion FROM Personaje;";
+
+    static final String SQL_PERSONAJE_POR_ID =
+        "SELECT id, nom, atac, defensa, idFaccion FROM Personaje WHERE id = ?;";
+
+    static final String SQL_NOMBRES_FACCIONES = "SELECT id, nom FROM Faccion;";
+
+    static final String SQL_RESUMENES =
+        "SELECT idFaccion, numPersonajes, sumaAtac, sumaDefensa, sumaAtac2, sumaDefensa2 " +
+        "FROM ResumenFaccion ORDER BY idFaccion;";
+
+    static final String SQL_RESUMEN_POR_FACCION =
+        "SELECT idFaccion, numPersonajes, sumaAtac, sumaDefensa, sumaAtac2, sumaDefensa2 " +
+        "FROM ResumenFaccion WHERE idFaccion = ?;";
+
+    static final String SQL_TOP_ATACANTES =
+        "SELECT p.* " +
+        "FROM Personaje p " +
+        "JOIN Faccion f ON p.idFaccion = f.id " +
+        "WHERE p.idFaccion = ? " +
+        "ORDER BY p.atac DESC " +
+        "LIMIT ?;";
+
+    static final String SQL_TOP_DEFENSORES =
+        "SELECT p.* " +
+        "FROM Personaje p " +
+        "JOIN Faccion f ON p.idFaccion = f.id " +
+        "WHERE p.idFaccion = ? " +
+        "ORDER BY p.defensa DESC " +
+        "LIMIT ?;";
+
+    // Los listados traen el principio del resumen y su longitud (ver FilaFaccion)
+    static final String SQL_FACCIONES_PREVIA =
+        "SELECT id, nom, substr(resum, 1, ?) AS resum, length(resum) AS longitudResum FROM Faccion;";
+
+    static final String SQL_RESUM = "SELECT resum FROM Faccion WHERE id = ?;";
+
+    // Paginacion por clave: cada pagina empieza despues del ultimo id de la anterior
+    static final String SQL_PAGINA_FACCIONES =
+        "SELECT id, nom, substr(resum, 1, ?) AS resum, length(resum) AS longitudResum " +
+        "FROM Faccion WHERE id > ? ORDER BY id LIMIT ?;";
+
+    static final String SQL_PAGINA_PERSONAJES =
+        "SELECT id, nom, atac, defensa, idFaccion FROM Personaje WHERE id > ? ORDER BY id LIMIT ?;";
+
+    // Busqueda de texto (ver crearBusqueda): 'rank' es bm25, menor cuanto mas relevante
+    static final String SQL_BUSCAR_FACCIONES =
+        "SELECT f.id, f.nom, snippet(BusquedaFaccion, -1, '[', ']', '...', 12), bm25(BusquedaFaccion) " +
+        "FROM BusquedaFaccion JOIN Faccion f ON f.id = BusquedaFaccion.rowid " +
+        "WHERE BusquedaFaccion MATCH ? ORDER BY rank LIMIT ?;";
+
+    static final String SQL_BUSCAR_PERSONAJES =
+        "SELECT p.id, p.nom, p.atac, p.defensa, p.idFaccion " +
+        "FROM BusquedaPersonaje JOIN Personaje p ON p.id = BusquedaPersonaje.rowid " +
+        "WHERE BusquedaPersonaje MATCH ? ORDER BY rank LIMIT ?;";
+
+    static final String SQL_INSERT_FACCION = "INSERT INTO Faccion (nom, resum) VALUES (?, ?);";
+    static final String SQL_INSERT_PERSONAJE = "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES (?, ?, ?, ?);";
+    static final String SQL_UPDATE_PERSONAJE = "UPDATE Personaje SET nom = ?, atac = ?, defensa = ?, idFaccion = ? WHERE id = ?;";
+    static final String SQL_DELETE_PERSONAJE = "DELETE FROM Personaje WHERE id = ?;";
+
+    protected final ConnectionPool pool;
+
+    private final LruCache<Integer, Optional<String>> resumenes =
+        new LruCache<>("resumenes", DEFAULT_RESUMENES_CACHE, null);
+    private volatile long versionResumenes = versionFacciones;
+    private final FuenteResumenes fuenteResumenes = this::leerResum;
+
+    public HonorDao(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // ========== LECTURAS ==========
+
+    public List<Faccion> listFacciones() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryList(conn, SQL_FACCIONES, FilaFaccion.mapper());
+        }
+    }
+
+    /**
+     * Lista las facciones con solo el principio del resumen. Si hace falta el resumen
+     * entero de alguna, {@link Faccion#getResum()} lo lee con {@link #findResum}.
+     *
+     * @param longitudPrevia Caracteres del resumen a leer (0: solo ids y nombres).
+     */
+    public List<Faccion> listFacciones(int longitudPrevia) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryList(conn, SQL_FACCIONES_PREVIA, FilaFaccion.mapper(fuenteResumenes),
+                longitudPrevia);
+        }
+    }
+
+    /**
+     * @return El resumen completo de la faccion (vacio si no existe o no tiene). Los
+     *         ultimos {@link #DEFAULT_RESUMENES_CACHE} leidos se guardan en cache.
+     */
+    public Optional<String> findResum(int idFaccion) throws SQLException {
+        long version = versionFacciones;
+        if (version != versionResumenes) {
+            resumenes.invalidateAll();
+            versionResumenes = version;
+        }
+        return resumenes.getOrLoad(idFaccion, id -> {
+            try (Connection conn = pool.getConnection()) {
+                return DatabaseManager.queryFirst(conn, SQL_RESUM, rs -> Optional.ofNullable(rs.getString(1)), id)
+                    .orElse(Optional.empty());
+            }
+        });
+    }
+
+    public List<Personaje> findPersonajesByFaccion(int idFaccion) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryList(conn, SQL_PERSONAJES_POR_FACCION, FilaPersonaje.mapper(), idFaccion);
+        }
+    }
+
+    public Optional<Personaje> findMejorAtacante(int idFaccion) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryFirst(conn, SQL_MEJOR_ATACANTE, FilaPersonaje.mapper(), idFaccion);
+        }
+    }
+
+    public Optional<Personaje> findMejorDefensor(int idFaccion) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryFirst(conn, SQL_MEJOR_DEFENSOR, FilaPersonaje.mapper(), idFaccion);
+        }
+    }
+
+    public Optional<Personaje> findPersonaje(int id) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return findPersonaje(conn, id);
+        }
+    }
+
+    /**
+     * Recorre todos los personajes (con su nombre de faccion) sin cargarlos en una lista.
+     *
+     * @return El numero de personajes recorridos.
+     */
+    public int forEachPersonaje(Consumer<Personaje> consumer) throws SQLException {
+        return forEachFila(fila -> consumer.accept(fila.toPersonaje()));
+    }
+
+    /**
+     * Recorre todos los personajes (con su nombre de faccion) sin crear un objeto por fila:
+     * el consumidor recibe siempre la misma {@link FilaPersonaje}, cargada con la fila actual.
+     *
+     * @return El numero de personajes recorridos.
+     */
+    public int forEachFila(Consumer<FilaPersonaje> consumer) throws SQLException {
+        FilaPersonaje fila = new FilaPersonaje();
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryForEach(conn, SQL_PERSONAJES, rs -> consumer.accept(fila.cargar(rs)));
+        }
+    }
+
+    /**
+     * @return El resumen de cada faccion con personajes, por id de faccion.
+     */
+    public List<ResumenFaccion> listResumenes() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryList(conn, SQL_RESUMENES, HonorDao::mapResumen);
+        }
+    }
+
+    /**
+     * @return El resumen de la faccion, o vacio si no tiene personajes.
+     */
+    public Optional<ResumenFaccion> findResumen(int idFaccion) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryFirst(conn, SQL_RESUMEN_POR_FACCION, HonorDao::mapResumen, idFaccion);
+        }
+    }
+
+    /**
+     * @return Los k personajes con mas ataque de la faccion, de mayor a menor.
+     */
+    public List<Personaje> findTopAtacantes(int idFaccion, int k) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryList(conn, SQL_TOP_ATACANTES, FilaPersonaje.mapper(), idFaccion, k);
+        }
+    }
+
+    /**
+     * @return Los k personajes con mas defensa de la faccion, de mayor a menor.
+     */
+    public List<Personaje> findTopDefensores(int idFaccion, int k) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryList(conn, SQL_TOP_DEFENSORES, FilaPersonaje.mapper(), idFaccion, k);
+        }
+    }
+
+    /**
+     * Lee una pagina de facciones por orden de id, con los primeros {@link #LONGITUD_PREVIA}
+     * caracteres del resumen. Para la siguiente pagina se pasa el id de la ultima faccion recibida.
+     *
+     * @param despuesDeId Se devuelven las facciones con id mayor que este.
+     * @param tamano Numero maximo de facciones de la pagina.
+     * @return Las facciones de la pagina; si hay menos de {@code tamano}, es la ultima.
+     */
+    public List<Faccion> paginaFacciones(int despuesDeId, int tamano) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryPage(conn, SQL_PAGINA_FACCIONES, FilaFaccion.mapper(fuenteResumenes),
+                despuesDeId, tamano, LONGITUD_PREVIA);
+        }
+    }
+
+    /**
+     * Lee una pagina de personajes (sin nombre de faccion) por orden de id.
+     *
+     * @param despuesDeId Se devuelven los personajes con id mayor que este.
+     * @param tamano Numero maximo de personajes de la pagina.
+     * @return Los personajes de la pagina; si hay menos de {@code tamano}, es la ultima.
+     */
+    public List<Personaje> paginaPersonajes(int despuesDeId, int tamano) throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryPage(conn, SQL_PAGINA_PERSONAJES, FilaPersonaje.mapper(), despuesDeId, tamano);
+        }
+    }
+
+    /**
+     * Busca facciones por las palabras de su nombre y su resumen, sin distinguir
+     * mayusculas ni acentos. Tienen que aparecer todas las palabras del texto.
+     *
+     * @param texto Las palabras a buscar, separadas por espacios.
+     * @param limite Numero maximo de resultados.
+     * @return Las facciones encontradas, de mas a menos relevante.
+     */
+    public List<ResultadoBusqueda> buscarFacciones(String texto, int limite) throws SQLException {
+        String expresion = expresionBusqueda(texto, false);
+        if (expresion.isEmpty()) {
+            return List.of();
+        }
+        try (Connection conn = pool.getConnection()) {
+            return DatabaseManager.queryList(conn, SQL_BUSCAR_FACCIONES, rs -> new ResultadoBusqueda(
+                rs.getInt(1), rs.getString(2), rs.getString(3), rs.getDouble(4)), expresion, limite);
+        }
+    }
+
+    /**
+     * Busca personajes cuyo nombre tiene una palabra que empieza por el prefijo
+     * (p.ej. "war" encuentra "Warden" y "Warlord").
+     *
+     * @param prefijo El principio del nombre; si tiene varias palabras, la ultima es el prefijo.
+     * @param limite Numero maximo de resultados.
+     * @return Los personajes encontrados, de mas a menos relevante.
+     */
+    public List<Personaje> buscarPersonajesPorPrefijo(String prefijo, int limite) throws SQLException {
+        String expresion = expresionBusqueda(prefijo, true);
+        if (expresion.isEmpty()) {
+            return List.of();
+        }
+        try (Connection conn = pool.getConnection()) {
+            prepararDiccionario(conn);
+            return DatabaseManager.queryList(conn, SQL_BUSCAR_PERSONAJES, FilaPersonaje.mapper(), expresion, limite);
+        }
+    }
+
+    /**
+     * Convierte el texto del usuario en una expresion MATCH de FTS5: cada palabra va
+     * entre comillas, asi que los operadores y signos del texto no tienen efecto.
+     *
+     * @param prefijo Si la ultima palabra es un prefijo.
+     * @return La expresion, o una cadena vacia si el texto no tiene palabras.
+     */
+    static String expresionBusqueda(String texto, boolean prefijo) {
+        StringBuilder sb = new StringBuilder();
+        for (String palabra : texto.trim().split("\\s+")) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('"').append(palabra.replace("\"", "\"\"")).append('"');
+        }
+        if (prefijo && sb.length() > 0) {
+            sb.append('*');
+        }
+        return sb.toString();
+    }
+
+    // ========== ESCRITURAS ==========
+
+    /**
+     * @return El id asignado a la nueva faccion.
+     */
+    public int insertFaccion(String nom, String resum) throws SQLException {
+        List<Runnable> avisos = new ArrayList<>(1);
+        escribiendo.set(Boolean.TRUE);
+        try (Connection conn = pool.getConnection()) {
+            int id = insertFaccion(conn, nom, resum, avisos);
+            lanzarAvisos(avisos);
+            return id;
+        } finally {
+            escribiendo.set(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * @return El personaje insertado, con el id asignado.
+     */
+    public Personaje insertPersonaje(String nom, double atac, double defensa, int idFaccion) throws SQLException {
+        List<Runnable> avisos = new ArrayList<>(1);
+        escribiendo.set(Boolean.TRUE);
+        try (Connection conn = pool.getConnection()) {
+            Personaje nuevo = insertPersonaje(conn, nom, atac, defensa, idFaccion, avisos);
+            lanzarAvisos(avisos);
+            return nuevo;
+        } finally {
+            escribiendo.set(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Actualiza todos los campos del personaje con su id.
+     *
+     * @return El personaje tal como estaba antes del cambio, o vacio si no existia.
+     */
+    public Optional<Personaje> updatePersonaje(Personaje p) throws SQLException {
+        List<Runnable> avisos = new ArrayList<>(1);
+        escribiendo.set(Boolean.TRUE);
+        try (Connection conn = pool.getConnection()) {
+            Optional<Personaje> anterior = updatePersonaje(conn, p, avisos);
+            lanzarAvisos(avisos);
+            return anterior;
+        } finally {
+            escribiendo.set(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * @return El personaje borrado, o vacio si no existia.
+     */
+    public Optional<Personaje> deletePersonaje(int id) throws SQLException {
+        List<Runnable> avisos = new ArrayList<>(1);
+        escribiendo.set(Boolean.TRUE);
+        try (Connection conn = pool.getConnection()) {
+            Optional<Personaje> anterior = deletePersonaje(conn, id, avisos);
+            lanzarAvisos(avisos);
+            return anterior;
+        } finally {
+            escribiendo.set(Boolean.FALSE);
+        }
+    }
+
+    // Las escrituras sobre una conexion dada no avisan a los HonorListener: dejan los
+    // avisos en 'avisos' para lanzarlos cuando el cambio este confirmado (ver HonorWriter).
+    // Los TableChangeListener de DatabaseManager si se enteran al momento, antes del
+    // commit; por eso el aviso de una faccion nueva vuelve a cambiar las versiones del
+    // diccionario y de los resumenes, por si alguien ha leido la tabla entre medias.
+
+    static int insertFaccion(Connection conn, String nom, String resum, List<Runnable> avisos) throws SQLException {
+        DatabaseManager.queryUpdatePS(conn, SQL_INSERT_FACCION, nom, resum);
+        int id = lastInsertId(conn);
+        avisos.add(() -> {
+            versionFacciones++;
+            DiccionarioFacciones.getDefault().registrar(id, nom);
+            avisarFaccion(id);
+        });
+        return id;
+    }
+
+    static Personaje insertPersonaje(Connection conn, String nom, double atac, double defensa, int idFaccion,
+                                     List<Runnable> avisos) throws SQLException {
+        DatabaseManager.queryUpdatePS(conn, SQL_INSERT_PERSONAJE, nom, atac, defensa, idFaccion);
+        Personaje nuevo = findPersonaje(conn, lastInsertId(conn))
+            .orElseThrow(() -> new SQLException("No se encuentra el personaje recien insertado."));
+        avisos.add(() -> avisarPersonaje(null, nuevo));
+        return nuevo;
+    }
+
+    static Optional<Personaje> updatePersonaje(Connection conn, Personaje p, List<Runnable> avisos) throws SQLException {
+        Optional<Personaje> anterior = findPersonaje(conn, p.getId());
+        if (anterior.isPresent()) {
+            DatabaseManager.queryUpdatePS(conn, SQL_UPDATE_PERSONAJE,
+                p.getNom(), p.getAtac(), p.getDefensa(), p.getIdFaccion(), p.getId());
+            Personaje nuevo = findPersonaje(conn, p.getId()).orElse(null);
+            avisos.add(() -> avisarPersonaje(anterior.get(), nuevo));
+        }
+        return anterior;
+    }
+
+    static Optional<Personaje> deletePersonaje(Connection conn, int id, List<Runnable> avisos) throws SQLException {
+        Optional<Personaje> anterior = findPersonaje(conn, id);
+        if (anterior.isPresent()) {
+            DatabaseManager.queryUpdatePS(conn, SQL_DELETE_PERSONAJE, id);
+            avisos.add(() -> avisarPersonaje(anterior.get(), null));
+        }
+        return anterior;
+    }
+
+    // ========== AVISOS DE CAMBIOS ==========
+
+    public static void addListener(HonorListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(HonorListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Indica si el hilo actual esta dentro de una escritura de HonorDao.
+     * <p>
+     * Sirve para que quien escuche tambien los avisos genericos de
+     * {@link DatabaseManager#addTableChangeListener} pueda ignorarlos, porque
+     * ya recibira el aviso detallado en su {@link HonorListener}.
+     */
+    public static boolean isEscrituraDao() {
+        return escribiendo.get();
+    }
+
+    static void setEscrituraDao(boolean valor) {
+        escribiendo.set(valor);
+    }
+
+    static void lanzarAvisos(List<Runnable> avisos) {
+        for (Runnable aviso : avisos) {
+            aviso.run();
+        }
+    }
+
+    private static void avisarFaccion(int idFaccion) {
+        for (HonorListener listener : listeners) {
+            avisar(() -> listener.faccionCambiada(idFaccion));
+        }
+    }
+
+    private static void avisarPersonaje(Personaje anterior, Personaje nuevo) {
+        for (HonorListener listener : listeners) {
+            avisar(() -> listener.personajeCambiado(anterior, nuevo));
+        }
+    }
+
+    private static void avisar(Runnable aviso) {
+        try {
+            aviso.run();
+        } catch (RuntimeException e) {
+            logger.error("Error en un HonorListener: {}", e.getMessage(), e);
+        }
+    }
+
+    // Para Faccion.getResum(), que no puede lanzar SQLException
+    private String leerResum(int idFaccion) {
+        try {
+            return findResum(idFaccion).orElse(null);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private static Optional<Personaje> findPersonaje(Connection conn, int id) throws SQLException {
+        prepararDiccionario(conn);
+        return DatabaseManager.queryFirst(conn, SQL_PERSONAJE_POR_ID, FilaPersonaje.mapper(), id);
+    }
+
+    /**
+     * Carga los nombres de las facciones en {@link DiccionarioFacciones#getDefault()} si
+     * no estan cargados o alguien ha escrito en Faccion desde la ultima carga.
+     */
+    static void prepararDiccionario(Connection conn) throws SQLException {
+        DiccionarioFacciones diccionario = DiccionarioFacciones.getDefault();
+        if (!diccionario.isCargado()) {
+            cargarDiccionario(conn);
+        }
+    }
+
+    /**
+     * Vuelve a leer los nombres de todas las facciones en {@link DiccionarioFacciones#getDefault()}.
+     */
+    public static void cargarDiccionario(Connection conn) throws SQLException {
+        DiccionarioFacciones diccionario = DiccionarioFacciones.getDefault();
+        long version = diccionario.getVersion();
+        Map<Integer, String> nombres = new HashMap<>();
+        DatabaseManager.queryForEach(conn, SQL_NOMBRES_FACCIONES, rs -> nombres.put(rs.getInt(1), rs.getString(2)));
+        diccionario.reemplazar(nombres, version);
+    }
+
+    private static int lastInsertId(Connection conn) throws SQLException {
+        return DatabaseManager.queryFirst(conn, "SELECT last_insert_rowid();", rs -> rs.getInt(1))
+            .orElseThrow(() -> new SQLException("No se ha podido obtener el id insertado."));
+    }
+
+    // ========== ESQUEMA ==========
+
+    /**
+     * Crea las tablas Faccion y Personaje (deben no existir).
+     */
+    public static void crearTablas(Connection conn) throws SQLException {
+        String sqlFaccion = "CREATE TABLE Faccion (" +
+                           " id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                           " nom VARCHAR(15) NOT NULL," +
+                           " resum VARCHAR(500)" +
+                           ");";
+        DatabaseManager.queryUpdate(conn, sqlFaccion);
+
+        String sqlPersonaje = "CREATE TABLE Personaje (" +
+                               " id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                               " nom VARCHAR(15) NOT NULL," +
+                               " atac REAL," +
+                               " defensa REAL," +
+                               " idFaccion INTEGER," +
+                               " FOREIGN KEY (idFaccion) REFERENCES Faccion(id)" +
+                               ");";
+        DatabaseManager.queryUpdate(conn, sqlPersonaje);
+    }
+
+    /**
+     * Crea (si no existen) los indices de las consultas por faccion.
+     * <p>
+     * Son indices "covering": incluyen todas las columnas que leen las opciones 2, 3 y 4,
+     * asi que el mejor atacante/defensor de una faccion es la primera entrada del indice
+     * y SQLite no tiene que leer la tabla ni ordenar.
+     */
+    public static void crearIndices(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn,
+            "CREATE INDEX IF NOT EXISTS idx_personaje_faccion_atac " +
+            "ON Personaje (idFaccion, atac DESC, defensa, nom);");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE INDEX IF NOT EXISTS idx_personaje_faccion_defensa " +
+            "ON Personaje (idFaccion, defensa DESC, atac, nom);");
+        // Actualiza las estadisticas del planificador solo si hace falta
+        DatabaseManager.queryUpdate(conn, "PRAGMA optimize;");
+    }
+
+    /**
+     * Crea (si no existen) las vistas materializadas y el registro de cambios, que
+     * se mantienen con triggers en cualquier escritura, venga de donde venga:
+     * <ul>
+     *   <li>{@code ResumenFaccion}: numero de personajes y sumas de ataque y defensa
+     *       (y de sus cuadrados) por faccion. Leer el resumen de una faccion es leer
+     *       una fila, en lugar de recorrer todos sus personajes.</li>
+     *   <li>{@code RegistroCambios}: una fila por cada cambio en Faccion o Personaje,
+     *       con un numero de secuencia creciente (ver {@link FeedCambios}). Solo se
+     *       guardan los ultimos {@link #VENTANA_REGISTRO} cambios, y las cargas masivas
+     *       no se anotan fila a fila (ver {@link #pausarRegistro}).</li>
+     * </ul>
+     * Si el resumen esta vacio y hay personajes, se calcula desde cero. Los personajes
+     * sin faccion (idFaccion NULL) no cuentan en ningun resumen.
+     * <p>
+     * Un {@code INSERT OR IGNORE} de un personaje con un id que ya existe descuadra
+     * el resumen (el trigger de sustitucion no sabe que se ignorara); despues hay
+     * que llamar a {@link #reconstruirVistas}.
+     * <p>
+     * Los mejores personajes de cada faccion no se materializan: los indices de
+     * {@link #crearIndices} ya los dan ordenados.
+     */
+    public static void crearVistas(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TABLE IF NOT EXISTS ResumenFaccion (" +
+            " idFaccion INTEGER PRIMARY KEY," +
+            " numPersonajes INTEGER NOT NULL DEFAULT 0," +
+            " sumaAtac REAL NOT NULL DEFAULT 0," +
+            " sumaDefensa REAL NOT NULL DEFAULT 0," +
+            " sumaAtac2 REAL NOT NULL DEFAULT 0," +
+            " sumaDefensa2 REAL NOT NULL DEFAULT 0" +
+            ");");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TABLE IF NOT EXISTS RegistroCambios (" +
+            " seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+            " tabla TEXT NOT NULL," +
+            " op TEXT NOT NULL," +
+            " idFila INTEGER NOT NULL," +
+            " idFaccionAnterior INTEGER," +
+            " idFaccion INTEGER" +
+            ");");
+        // Con alguna fila, los triggers no anotan cambios (ver pausarRegistro)
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TABLE IF NOT EXISTS RegistroPausado (id INTEGER PRIMARY KEY);");
+
+        // Resumen: restar la fila anterior y sumar la nueva
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_resumen_insert AFTER INSERT ON Personaje BEGIN " +
+            sumarResumen("NEW") +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_resumen_delete AFTER DELETE ON Personaje BEGIN " +
+            restarResumen("OLD") +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_resumen_update " +
+            "AFTER UPDATE OF atac, defensa, idFaccion ON Personaje BEGIN " +
+            restarResumen("OLD") +
+            sumarResumen("NEW") +
+            "END;");
+
+        // INSERT OR REPLACE (RosterLoader) borra la fila anterior sin lanzar los triggers
+        // de DELETE (salvo con recursive_triggers), asi que se descuenta aqui
+        String anterior = "(SELECT %s FROM Personaje WHERE id = NEW.id)";
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_resumen_reemplazo BEFORE INSERT ON Personaje " +
+            "WHEN NEW.id IS NOT NULL AND EXISTS (SELECT 1 FROM Personaje WHERE id = NEW.id) BEGIN " +
+            actualizarResumen("-", String.format(anterior, "idFaccion"), String.format(anterior, "atac"), String.format(anterior, "defensa")) +
+            "DELETE FROM ResumenFaccion WHERE idFaccion = " + String.format(anterior, "idFaccion") + " AND numPersonajes <= 0; " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "SELECT 'Personaje', 'D', NEW.id, " + String.format(anterior, "idFaccion") + ", NULL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM RegistroPausado); " +
+            "END;");
+
+        // Registro de cambios
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_cambio_insert AFTER INSERT ON Personaje " +
+            "WHEN NOT EXISTS (SELECT 1 FROM RegistroPausado) BEGIN " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('Personaje', 'I', NEW.id, NULL, NEW.idFaccion); " +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_cambio_update AFTER UPDATE ON Personaje " +
+            "WHEN NOT EXISTS (SELECT 1 FROM RegistroPausado) BEGIN " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('Personaje', 'U', NEW.id, OLD.idFaccion, NEW.idFaccion); " +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_cambio_delete AFTER DELETE ON Personaje " +
+            "WHEN NOT EXISTS (SELECT 1 FROM RegistroPausado) BEGIN " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('Personaje', 'D', OLD.id, OLD.idFaccion, NULL); " +
+            "END;");
+        // En Faccion, idFaccion es la propia faccion
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_cambio_insert AFTER INSERT ON Faccion " +
+            "WHEN NOT EXISTS (SELECT 1 FROM RegistroPausado) BEGIN " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('Faccion', 'I', NEW.id, NULL, NEW.id); " +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_cambio_update AFTER UPDATE ON Faccion " +
+            "WHEN NOT EXISTS (SELECT 1 FROM RegistroPausado) BEGIN " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('Faccion', 'U', NEW.id, OLD.id, NEW.id); " +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_cambio_delete AFTER DELETE ON Faccion " +
+            "WHEN NOT EXISTS (SELECT 1 FROM RegistroPausado) BEGIN " +
+            "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('Faccion', 'D', OLD.id, OLD.id, NULL); " +
+            "END;");
+        // Ventana: cada cambio anotado borra los que han quedado fuera
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_registro_ventana AFTER INSERT ON RegistroCambios BEGIN " +
+            "DELETE FROM RegistroCambios WHERE seq <= NEW.seq - " + VENTANA_REGISTRO + "; " +
+            "END;");
+        // Una carga masiva que no llego a reanudar el registro (p.ej. el proceso murio a medias)
+        if (DatabaseManager.queryFirst(conn, "SELECT 1 FROM RegistroPausado LIMIT 1;", rs -> true).isPresent()) {
+            logger.warn("El registro de cambios estaba pausado: se reanuda.");
+            reanudarRegistro(conn);
+        }
+
+        boolean vacio = DatabaseManager.queryFirst(conn, "SELECT COUNT(*) FROM ResumenFaccion;", rs -> rs.getInt(1)).orElse(0) == 0;
+        boolean hayPersonajes = DatabaseManager.queryFirst(conn, "SELECT 1 FROM Personaje LIMIT 1;", rs -> true).isPresent();
+        if (vacio && hayPersonajes) {
+            reconstruirVistas(conn);
+        }
+    }
+
+    /**
+     * Deja de anotar en RegistroCambios los cambios de Faccion y Personaje, de cualquier
+     * conexion, hasta {@link #reanudarRegistro}. Para cargas masivas: anotar cada fila
+     * cuesta tanto como escribirla, y quien lee el registro tendria que volver a leerlo
+     * todo de todos modos.
+     *
+     * @return false si la base de datos no tiene el registro (no hay nada que pausar).
+     */
+    public static boolean pausarRegistro(Connection conn) throws SQLException {
+        if (!DatabaseManager.queryFirst(conn,
+                "SELECT 1 FROM sqlite_master WHERE name = 'RegistroPausado';", rs -> true).isPresent()) {
+            return false;
+        }
+        DatabaseManager.queryUpdate(conn, "INSERT INTO RegistroPausado DEFAULT VALUES;");
+        return true;
+    }
+
+    /**
+     * Vuelve a anotar los cambios y deja en el registro un cambio {@link FeedCambios#RECARGAR}:
+     * los lectores no saben que ha cambiado mientras estaba pausado.
+     */
+    public static void reanudarRegistro(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn, "DELETE FROM RegistroPausado;");
+        DatabaseManager.queryUpdate(conn, "INSERT INTO RegistroCambios (tabla, op, idFila, idFaccionAnterior, idFaccion) " +
+            "VALUES ('*', '" + FeedCambios.RECARGAR + "', 0, NULL, NULL);");
+    }
+
+    /**
+     * Crea (si no existen) los indices de texto completo para {@link #buscarFacciones}
+     * y {@link #buscarPersonajesPorPrefijo}:
+     * <ul>
+     *   <li>{@code BusquedaFaccion}: palabras del nombre y el resumen de cada faccion.</li>
+     *   <li>{@code BusquedaPersonaje}: palabras del nombre de cada personaje, con indices
+     *       de prefijos de 2 y 3 letras para que las busquedas por prefijo no recorran
+     *       todo el vocabulario.</li>
+     * </ul>
+     * Son tablas FTS5 de contenido externo: guardan solo el indice (el texto se lee de
+     * Faccion y Personaje) y se mantienen con triggers, como {@link #crearVistas}. Si se
+     * acaban de crear y ya hay datos, se indexan desde cero.
+     */
+    public static void crearBusqueda(Connection conn) throws SQLException {
+        boolean nuevas = !DatabaseManager.queryFirst(conn,
+            "SELECT 1 FROM sqlite_master WHERE name = 'BusquedaFaccion';", rs -> true).isPresent();
+        DatabaseManager.queryUpdate(conn,
+            "CREATE VIRTUAL TABLE IF NOT EXISTS BusquedaFaccion USING fts5(nom, resum, " +
+            "content='Faccion', content_rowid='id', tokenize='unicode61 remove_diacritics 2');");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE VIRTUAL TABLE IF NOT EXISTS BusquedaPersonaje USING fts5(nom, " +
+            "content='Personaje', content_rowid='id', tokenize='unicode61 remove_diacritics 2', prefix='2 3');");
+
+        // En una tabla de contenido externo, para quitar una fila hay que pasarle los valores que tenia
+        String quitarFaccion = "INSERT INTO BusquedaFaccion (BusquedaFaccion, rowid, nom, resum) " +
+            "VALUES ('delete', OLD.id, OLD.nom, OLD.resum); ";
+        String ponerFaccion = "INSERT INTO BusquedaFaccion (rowid, nom, resum) VALUES (NEW.id, NEW.nom, NEW.resum); ";
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_busqueda_insert AFTER INSERT ON Faccion BEGIN " +
+            ponerFaccion +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_busqueda_delete AFTER DELETE ON Faccion BEGIN " +
+            quitarFaccion +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_busqueda_update AFTER UPDATE OF nom, resum ON Faccion BEGIN " +
+            quitarFaccion +
+            ponerFaccion +
+            "END;");
+
+        String quitarPersonaje = "INSERT INTO BusquedaPersonaje (BusquedaPersonaje, rowid, nom) " +
+            "VALUES ('delete', OLD.id, OLD.nom); ";
+        String ponerPersonaje = "INSERT INTO BusquedaPersonaje (rowid, nom) VALUES (NEW.id, NEW.nom); ";
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_busqueda_insert AFTER INSERT ON Personaje BEGIN " +
+            ponerPersonaje +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_busqueda_delete AFTER DELETE ON Personaje BEGIN " +
+            quitarPersonaje +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_busqueda_update AFTER UPDATE OF nom ON Personaje BEGIN " +
+            quitarPersonaje +
+            ponerPersonaje +
+            "END;");
+
+        // INSERT OR REPLACE no lanza los triggers de DELETE (ver crearVistas): la fila
+        // sustituida se quita del indice antes de insertar la nueva
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_faccion_busqueda_reemplazo BEFORE INSERT ON Faccion " +
+            "WHEN NEW.id IS NOT NULL BEGIN " +
+            "INSERT INTO BusquedaFaccion (BusquedaFaccion, rowid, nom, resum) " +
+            "SELECT 'delete', id, nom, resum FROM Faccion WHERE id = NEW.id; " +
+            "END;");
+        DatabaseManager.queryUpdate(conn,
+            "CREATE TRIGGER IF NOT EXISTS trg_personaje_busqueda_reemplazo BEFORE INSERT ON Personaje " +
+            "WHEN NEW.id IS NOT NULL BEGIN " +
+            "INSERT INTO BusquedaPersonaje (BusquedaPersonaje, rowid, nom) " +
+            "SELECT 'delete', id, nom FROM Personaje WHERE id = NEW.id; " +
+            "END;");
+
+        if (nuevas) {
+            reconstruirBusqueda(conn);
+        }
+    }
+
+    /**
+     * Vuelve a indexar todas las facciones y personajes desde cero (p.ej. despues de
+     * escribir en las tablas con los triggers desactivados).
+     */
+    public static void reconstruirBusqueda(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn, "INSERT INTO BusquedaFaccion (BusquedaFaccion) VALUES ('rebuild');");
+        DatabaseManager.queryUpdate(conn, "INSERT INTO BusquedaPersonaje (BusquedaPersonaje) VALUES ('rebuild');");
+        logger.info("Indices de busqueda reconstruidos.");
+    }
+
+    /**
+     * Recalcula ResumenFaccion desde cero a partir de Personaje, en una transaccion.
+     * <p>
+     * No hace falta en el uso normal, pero corrige el error de redondeo que acumulan
+     * las sumas despues de muchisimas actualizaciones.
+     */
+    public static void reconstruirVistas(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            DatabaseManager.queryUpdate(conn, "DELETE FROM ResumenFaccion;");
+            DatabaseManager.queryUpdate(conn,
+                "INSERT INTO ResumenFaccion (idFaccion, numPersonajes, sumaAtac, sumaDefensa, sumaAtac2, sumaDefensa2) " +
+                "SELECT idFaccion, COUNT(*), TOTAL(atac), TOTAL(defensa), TOTAL(atac * atac), TOTAL(defensa * defensa) " +
+                "FROM Personaje WHERE idFaccion IS NOT NULL GROUP BY idFaccion;");
+            if (autoCommit) {
+                conn.commit();
+            }
+            logger.info("Resumenes por faccion recalculados.");
+        } catch (SQLException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String sumarResumen(String fila) {
+        // Sin INSERT OR IGNORE: dentro de un trigger manda el ON CONFLICT de la sentencia
+        // que lo lanza, y con un INSERT OR REPLACE se sustituiria el resumen existente.
+        // Un personaje sin faccion no tiene resumen: insertar un idFaccion NULL en la clave
+        // (INTEGER PRIMARY KEY) le daria un id nuevo; los UPDATE y DELETE con "= NULL" no hacen nada
+        return "INSERT INTO ResumenFaccion (idFaccion) SELECT " + fila + ".idFaccion " +
+            "WHERE " + fila + ".idFaccion IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM ResumenFaccion WHERE idFaccion = " + fila + ".idFaccion); " +
+            actualizarResumen("+", fila + ".idFaccion", fila + ".atac", fila + ".defensa");
+    }
+
+    private static String restarResumen(String fila) {
+        return actualizarResumen("-", fila + ".idFaccion", fila + ".atac", fila + ".defensa") +
+            // Una faccion sin personajes no tiene resumen (como en un GROUP BY)
+            "DELETE FROM ResumenFaccion WHERE idFaccion = " + fila + ".idFaccion AND numPersonajes <= 0; ";
+    }
+
+    private static String actualizarResumen(String signo, String idFaccion, String atac, String defensa) {
+        return "UPDATE ResumenFaccion SET " +
+            "numPersonajes = numPersonajes " + signo + " 1, " +
+            "sumaAtac = sumaAtac " + signo + " IFNULL(" + atac + ", 0), " +
+            "sumaDefensa = sumaDefensa " + signo + " IFNULL(" + defensa + ", 0), " +
+            "sumaAtac2 = sumaAtac2 " + signo + " IFNULL(" + atac + " * " + atac + ", 0), " +
+            "sumaDefensa2 = sumaDefensa2 " + signo + " IFNULL(" + defensa + " * " + defensa + ", 0) " +
+            "WHERE idFaccion = " + idFaccion + "; ";
+    }
+
+    // ========== MAPEO DE FILAS ==========
+    // Para una sola fila; en los recorridos se usan FilaPersonaje y FilaFaccion, que resuelven
+    // las columnas una vez por consulta.
+
+    /**
+     * Convierte la fila actual en un Personaje (sin nombre de faccion).
+     */
+    public static Personaje mapPersonaje(ResultSet rs) throws SQLException {
+        return new Personaje(
+            rs.getInt("id"),
+            rs.getString("nom"),
+            rs.getDouble("atac"),
+            rs.getDouble("defensa"),
+            rs.getInt("idFaccion")
+        );
+    }
+
+    /**
+     * Convierte la fila actual de ResumenFaccion en un ResumenFaccion.
+     */
+    public static ResumenFaccion mapResumen(ResultSet rs) throws SQLException {
+        return new ResumenFaccion(
+            rs.getInt("idFaccion"),
+            rs.getInt("numPersonajes"),
+            rs.getDouble("sumaAtac"),
+            rs.getDouble("sumaDefensa"),
+            rs.getDouble("sumaAtac2"),
+            rs.getDouble("sumaDefensa2")
+        );
+    }
+}
@@ -0,0 +1,25 @@
+package cat.iesesteveterradas.dao;
+
+import cat.iesesteveterradas.model.Personaje;
+
+/**
+ * Recibe los cambios fila a fila hechos a traves de {@link HonorDao}.
+ * <p>
+ * Se avisa despues de que el cambio se haya guardado, en el mismo hilo que lo ha hecho
+ * (para las escrituras de un {@link HonorWriter}, su hilo escritor).
+ */
+public interface HonorListener {
+
+    /**
+     * @param anterior El personaje antes del cambio, o null si es nuevo.
+     * @param nuevo El personaje despues del cambio, o null si se ha borrado.
+     */
+    default void personajeCambiado(Personaje anterior, Personaje nuevo) {
+    }
+
+    /**
+     * @param idFaccion La faccion creada o modificada.
+     */
+    default void faccionCambiada(int idFaccion) {
+    }
+}
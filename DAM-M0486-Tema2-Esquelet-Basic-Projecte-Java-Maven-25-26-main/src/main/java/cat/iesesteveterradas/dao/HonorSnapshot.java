@@ -0,0 +1,681 @@
+package cat.iesesteveterradas.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResumenFaccion;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+/**
+ * Copia binaria de solo lectura de las tablas Faccion y Personaje, leida con
+ * {@link FileChannel#map} sin pasar por JDBC.
+ * <p>
+ * Abrir el fichero solo proyecta las paginas en memoria; los datos se leen del
+ * fichero al consultarlos, asi que arrancar con un roster grande cuesta
+ * milisegundos. Los numeros se leen directamente del fichero y los textos se
+ * decodifican la primera vez que se piden.
+ * <p>
+ * Formato (little-endian; todas las secciones empiezan en multiplo de 8):
+ * <pre>
+ * Cabecera (64 bytes):
+ *   int magic "HNRS", int version, long creado (ms), int numFacciones,
+ *   int numPersonajes, int numCadenas, int reservado, long offFacciones,
+ *   long offPersonajes, long offCadenas, long longitud
+ * Facciones (columnas de numFacciones enteros, ordenadas por id):
+ *   id[], nom[], resum[], primeraFila[], numFilas[]
+ * Personajes (columnas de numPersonajes, ordenadas por idFaccion y id):
+ *   double atac[], double defensa[], int id[], int idFaccion[], int nom[],
+ *   int porId[] (filas ordenadas por id, para buscar por id)
+ * Cadenas:
+ *   int inicio[numCadenas + 1], bytes UTF-8
+ * </pre>
+ * Los textos son indices a la tabla de cadenas (-1 = null); cada texto distinto
+ * se guarda una sola vez.
+ * <p>
+ * Las consultas siguen la semantica de las de {@link HonorDao}; ver
+ * {@link SnapshotHonorDao}.
+ */
+public final class HonorSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(HonorSnapshot.class);
+
+    static final int MAGIC = 0x53524E48; // "HNRS" en little-endian
+    static final int VERSION = 1;
+    static final int CABECERA = 64;
+
+    static final String SQL_FACCIONES = "SELECT id, nom, resum FROM Faccion ORDER BY id;";
+    static final String SQL_PERSONAJES =
+        "SELECT id, nom, atac, defensa, idFaccion FROM Personaje ORDER BY idFaccion, id;";
+
+    private final Path fichero;
+    private final ByteBuffer buf;
+    private final long creado;
+    private final int numFacciones;
+    private final int numPersonajes;
+
+    // Posiciones de cada columna dentro del fichero
+    private final int fId, fNom, fResum, fPrimera, fNumFilas;
+    private final int pAtac, pDefensa, pId, pIdFaccion, pNom, pPorId;
+    private final int cInicio, cDatos;
+
+    // Textos ya decodificados (se rellenan la primera vez que se piden)
+    private final String[] cadenas;
+
+    private HonorSnapshot(Path fichero, ByteBuffer buf) throws IOException {
+        this.fichero = fichero;
+        this.buf = buf;
+        if (buf.capacity() < CABECERA || buf.getInt(0) != MAGIC) {
+            throw new IOException(fichero + " no es un snapshot de honor.");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Version de snapshot no soportada en " + fichero + ": " + buf.getInt(4));
+        }
+        if (buf.getLong(56) != buf.capacity()) {
+            throw new IOException("Snapshot incompleto: " + fichero);
+        }
+        this.creado = buf.getLong(8);
+        this.numFacciones = buf.getInt(16);
+        this.numPersonajes = buf.getInt(20);
+        int numCadenas = buf.getInt(24);
+
+        int f = (int) buf.getLong(32);
+        int nf = numFacciones * Integer.BYTES;
+        fId = f;
+        fNom = fId + nf;
+        fResum = fNom + nf;
+        fPrimera = fResum + nf;
+        fNumFilas = fPrimera + nf;
+
+        int p = (int) buf.getLong(40);
+        int np = numPersonajes * Integer.BYTES;
+        pAtac = p;
+        pDefensa = pAtac + numPersonajes * Double.BYTES;
+        pId = pDefensa + numPersonajes * Double.BYTES;
+        pIdFaccion = pId + np;
+        pNom = pIdFaccion + np;
+        pPorId = pNom + np;
+
+        cInicio = (int) buf.getLong(48);
+        cDatos = cInicio + (numCadenas + 1) * Integer.BYTES;
+        this.cadenas = new String[numCadenas];
+    }
+
+    /**
+     * Proyecta el fichero en memoria. No lee los datos: se leen al consultarlos.
+     *
+     * @throws IOException Si no se puede leer o no es un snapshot valido.
+     */
+    public static HonorSnapshot abrir(Path fichero) throws IOException {
+        long t0 = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot demasiado grande: " + fichero);
+            }
+            // La proyeccion sigue siendo valida despues de cerrar el canal
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            HonorSnapshot snapshot = new HonorSnapshot(fichero, map.order(ByteOrder.LITTLE_ENDIAN));
+            logger.info("Snapshot {} abierto: {} facciones, {} personajes en {} us.",
+                fichero, snapshot.numFacciones, snapshot.numPersonajes, (System.nanoTime() - t0) / 1_000);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Escribe un snapshot con el contenido actual de la base de datos. Se escribe
+     * en un fichero temporal que sustituye al anterior al terminar, asi que quien
+     * tenga abierto el anterior lo sigue viendo entero.
+     *
+     * @return El numero de personajes guardados.
+     */
+    public static int escribir(Connection conn, Path fichero) throws SQLException, IOException {
+        long t0 = System.nanoTime();
+        Datos datos = new Datos();
+        DatabaseManager.queryForEach(conn, SQL_FACCIONES, rs -> datos.addFaccion(rs.getInt(1), rs.getString(2), rs.getString(3)));
+        DatabaseManager.queryForEach(conn, SQL_PERSONAJES, rs -> datos.addPersonaje(
+            rs.getInt(1), rs.getString(2), rs.getDouble(3), rs.getDouble(4), rs.getInt(5)));
+
+        Path dir = fichero.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, fichero.getFileName().toString(), ".tmp");
+        try {
+            datos.escribir(tmp);
+            Files.move(tmp, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logger.info("Snapshot {} escrito: {} facciones, {} personajes en {} ms.",
+            fichero, datos.nf, datos.np, (System.nanoTime() - t0) / 1_000_000);
+        return datos.np;
+    }
+
+    // ========== CONSULTAS ==========
+
+    public Path getFichero() {
+        return fichero;
+    }
+
+    /**
+     * @return Cuando se escribio el snapshot (ms desde epoch).
+     */
+    public long getCreado() {
+        return creado;
+    }
+
+    public int numFacciones() {
+        return numFacciones;
+    }
+
+    public int numPersonajes() {
+        return numPersonajes;
+    }
+
+    public List<Faccion> listFacciones() {
+        List<Faccion> result = new ArrayList<>(numFacciones);
+        for (int s = 0; s < numFacciones; s++) {
+            result.add(faccion(s));
+        }
+        return result;
+    }
+
+    public Optional<Faccion> findFaccion(int idFaccion) {
+        int s = posicionFaccion(idFaccion);
+        return s < 0 ? Optional.empty() : Optional.of(faccion(s));
+    }
+
+    /**
+     * @return Los personajes de la faccion ordenados por id, o una lista vacia si no existe.
+     */
+    public List<Personaje> findPersonajesByFaccion(int idFaccion) {
+        int s = posicionFaccion(idFaccion);
+        if (s < 0) {
+            return new ArrayList<>();
+        }
+        String nomFaccion = cadena(buf.getInt(fNom + s * Integer.BYTES));
+        int desde = buf.getInt(fPrimera + s * Integer.BYTES);
+        int hasta = desde + buf.getInt(fNumFilas + s * Integer.BYTES);
+        List<Personaje> result = new ArrayList<>(hasta - desde);
+        for (int i = desde; i < hasta; i++) {
+            result.add(personaje(i, nomFaccion));
+        }
+        return result;
+    }
+
+    /**
+     * @return El personaje con mas ataque de la faccion (a igualdad, el de id mas bajo).
+     */
+    public Optional<Personaje> findMejorAtacante(int idFaccion) {
+        return mejor(idFaccion, pAtac);
+    }
+
+    /**
+     * @return El personaje con mas defensa de la faccion (a igualdad, el de id mas bajo).
+     */
+    public Optional<Personaje> findMejorDefensor(int idFaccion) {
+        return mejor(idFaccion, pDefensa);
+    }
+
+    /**
+     * @return Los k personajes con mas ataque de la faccion, de mayor a menor.
+     */
+    public List<Personaje> findTopAtacantes(int idFaccion, int k) {
+        return top(idFaccion, Comparator.comparingDouble(Personaje::getAtac).reversed(), k);
+    }
+
+    /**
+     * @return Los k personajes con mas defensa de la faccion, de mayor a menor.
+     */
+    public List<Personaje> findTopDefensores(int idFaccion, int k) {
+        return top(idFaccion, Comparator.comparingDouble(Personaje::getDefensa).reversed(), k);
+    }
+
+    /**
+     * @return El resumen de cada faccion con personajes, por id de faccion (como ResumenFaccion).
+     */
+    public List<ResumenFaccion> listResumenes() {
+        List<ResumenFaccion> result = new ArrayList<>(numFacciones);
+        for (int i = 0; i < numPersonajes; ) {
+            int fin = finGrupo(i);
+            result.add(resumen(i, fin));
+            i = fin;
+        }
+        return result;
+    }
+
+    /**
+     * @return El resumen de la faccion, o vacio si no tiene personajes.
+     */
+    public Optional<ResumenFaccion> findResumen(int idFaccion) {
+        // Primera fila con idFaccion >= el buscado
+        int lo = 0;
+        int hi = numPersonajes;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buf.getInt(pIdFaccion + mid * Integer.BYTES) < idFaccion) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == numPersonajes || buf.getInt(pIdFaccion + lo * Integer.BYTES) != idFaccion) {
+            return Optional.empty();
+        }
+        return Optional.of(resumen(lo, finGrupo(lo)));
+    }
+
+    public Optional<Personaje> findPersonaje(int id) {
+        int lo = 0;
+        int hi = numPersonajes - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int fila = buf.getInt(pPorId + mid * Integer.BYTES);
+            int idFila = buf.getInt(pId + fila * Integer.BYTES);
+            if (idFila < id) {
+                lo = mid + 1;
+            } else if (idFila > id) {
+                hi = mid - 1;
+            } else {
+                return Optional.of(personaje(fila, nomFaccionDe(buf.getInt(pIdFaccion + fila * Integer.BYTES))));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Recorre todos los personajes, con su nombre de faccion, en orden de faccion.
+     *
+     * @return El numero de personajes recorridos.
+     */
+    public int forEachPersonaje(Consumer<Personaje> consumer) {
+        int idFaccionActual = 0;
+        String nomFaccion = null;
+        for (int i = 0; i < numPersonajes; i++) {
+            int idFaccion = buf.getInt(pIdFaccion + i * Integer.BYTES);
+            if (i == 0 || idFaccion != idFaccionActual) {
+                idFaccionActual = idFaccion;
+                nomFaccion = nomFaccionDe(idFaccion);
+            }
+            consumer.accept(personaje(i, nomFaccion));
+        }
+        return numPersonajes;
+    }
+
+    /**
+     * @return El resumen de la faccion, o vacio si no existe o no tiene.
+     */
+    public Optional<String> findResum(int idFaccion) {
+        int s = posicionFaccion(idFaccion);
+        return s < 0 ? Optional.empty() : Optional.ofNullable(cadena(buf.getInt(fResum + s * Integer.BYTES)));
+    }
+
+    /**
+     * @return Las facciones con id mayor que {@code despuesDeId}, por orden de id, hasta {@code tamano}.
+     */
+    public List<Faccion> paginaFacciones(int despuesDeId, int tamano) {
+        // Primera posicion con id > despuesDeId
+        int lo = 0;
+        int hi = numFacciones;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buf.getInt(fId + mid * Integer.BYTES) <= despuesDeId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int hasta = Math.min(numFacciones, lo + Math.max(tamano, 0));
+        List<Faccion> result = new ArrayList<>(hasta - lo);
+        for (int s = lo; s < hasta; s++) {
+            result.add(faccion(s));
+        }
+        return result;
+    }
+
+    /**
+     * @return Los personajes (sin nombre de faccion) con id mayor que {@code despuesDeId},
+     *         por orden de id, hasta {@code tamano}.
+     */
+    public List<Personaje> paginaPersonajes(int despuesDeId, int tamano) {
+        int lo = 0;
+        int hi = numPersonajes;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int fila = buf.getInt(pPorId + mid * Integer.BYTES);
+            if (buf.getInt(pId + fila * Integer.BYTES) <= despuesDeId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int hasta = Math.min(numPersonajes, lo + Math.max(tamano, 0));
+        List<Personaje> result = new ArrayList<>(hasta - lo);
+        for (int i = lo; i < hasta; i++) {
+            result.add(personaje(buf.getInt(pPorId + i * Integer.BYTES), null));
+        }
+        return result;
+    }
+
+    /**
+     * Como {@link #forEachPersonaje}, pero reutilizando una sola {@link FilaPersonaje}
+     * para todas las filas.
+     *
+     * @return El numero de personajes recorridos.
+     */
+    public int forEachFila(Consumer<FilaPersonaje> consumer) {
+        FilaPersonaje fila = new FilaPersonaje();
+        int idFaccionActual = 0;
+        String nomFaccion = null;
+        for (int i = 0; i < numPersonajes; i++) {
+            int idFaccion = buf.getInt(pIdFaccion + i * Integer.BYTES);
+            if (i == 0 || idFaccion != idFaccionActual) {
+                idFaccionActual = idFaccion;
+                nomFaccion = nomFaccionDe(idFaccion);
+            }
+            consumer.accept(fila.cargar(
+                buf.getInt(pId + i * Integer.BYTES),
+                cadena(buf.getInt(pNom + i * Integer.BYTES)),
+                buf.getDouble(pAtac + i * Double.BYTES),
+                buf.getDouble(pDefensa + i * Double.BYTES),
+                idFaccion,
+                nomFaccion));
+        }
+        return numPersonajes;
+    }
+
+    @Override
+    public String toString() {
+        return "HonorSnapshot [" + fichero + ", " + numFacciones + " facciones, " + numPersonajes + " personajes]";
+    }
+
+    // ========== LECTURA DEL FICHERO ==========
+
+    private Optional<Personaje> mejor(int idFaccion, int columna) {
+        int s = posicionFaccion(idFaccion);
+        if (s < 0) {
+            return Optional.empty();
+        }
+        int desde = buf.getInt(fPrimera + s * Integer.BYTES);
+        int hasta = desde + buf.getInt(fNumFilas + s * Integer.BYTES);
+        int mejor = -1;
+        double max = Double.NEGATIVE_INFINITY;
+        // Las filas de la faccion van por id creciente: con '>' gana el id mas bajo
+        for (int i = desde; i < hasta; i++) {
+            double v = buf.getDouble(columna + i * Double.BYTES);
+            if (mejor < 0 || v > max) {
+                max = v;
+                mejor = i;
+            }
+        }
+        return mejor < 0 ? Optional.empty() : Optional.of(personaje(mejor, cadena(buf.getInt(fNom + s * Integer.BYTES))));
+    }
+
+    private List<Personaje> top(int idFaccion, Comparator<Personaje> orden, int k) {
+        List<Personaje> personajes = findPersonajesByFaccion(idFaccion);
+        personajes.sort(orden.thenComparingInt(Personaje::getId));
+        return personajes.size() > k ? new ArrayList<>(personajes.subList(0, Math.max(k, 0))) : personajes;
+    }
+
+    /**
+     * @return La fila siguiente a la ultima con el mismo idFaccion que la fila indicada.
+     */
+    private int finGrupo(int fila) {
+        int idFaccion = buf.getInt(pIdFaccion + fila * Integer.BYTES);
+        int fin = fila + 1;
+        while (fin < numPersonajes && buf.getInt(pIdFaccion + fin * Integer.BYTES) == idFaccion) {
+            fin++;
+        }
+        return fin;
+    }
+
+    private ResumenFaccion resumen(int desde, int hasta) {
+        double sumaAtac = 0;
+        double sumaDefensa = 0;
+        double sumaAtac2 = 0;
+        double sumaDefensa2 = 0;
+        for (int i = desde; i < hasta; i++) {
+            double a = buf.getDouble(pAtac + i * Double.BYTES);
+            double d = buf.getDouble(pDefensa + i * Double.BYTES);
+            sumaAtac += a;
+            sumaDefensa += d;
+            sumaAtac2 += a * a;
+            sumaDefensa2 += d * d;
+        }
+        return new ResumenFaccion(buf.getInt(pIdFaccion + desde * Integer.BYTES), hasta - desde,
+            sumaAtac, sumaDefensa, sumaAtac2, sumaDefensa2);
+    }
+
+    private int posicionFaccion(int idFaccion) {
+        int lo = 0;
+        int hi = numFacciones - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = buf.getInt(fId + mid * Integer.BYTES);
+            if (id < idFaccion) {
+                lo = mid + 1;
+            } else if (id > idFaccion) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String nomFaccionDe(int idFaccion) {
+        int s = posicionFaccion(idFaccion);
+        return s < 0 ? null : cadena(buf.getInt(fNom + s * Integer.BYTES));
+    }
+
+    private Faccion faccion(int s) {
+        return new Faccion(
+            buf.getInt(fId + s * Integer.BYTES),
+            cadena(buf.getInt(fNom + s * Integer.BYTES)),
+            cadena(buf.getInt(fResum + s * Integer.BYTES))
+        );
+    }
+
+    private Personaje personaje(int fila, String nomFaccion) {
+        Personaje p = new Personaje(
+            buf.getInt(pId + fila * Integer.BYTES),
+            cadena(buf.getInt(pNom + fila * Integer.BYTES)),
+            buf.getDouble(pAtac + fila * Double.BYTES),
+            buf.getDouble(pDefensa + fila * Double.BYTES),
+            buf.getInt(pIdFaccion + fila * Integer.BYTES)
+        );
+        p.setNomFaccion(nomFaccion);
+        return p;
+    }
+
+    private String cadena(int indice) {
+        if (indice < 0) {
+            return null;
+        }
+        // Sin sincronizar: en el peor caso dos hilos decodifican la misma cadena
+        String s = cadenas[indice];
+        if (s == null) {
+            int desde = buf.getInt(cInicio + indice * Integer.BYTES);
+            int hasta = buf.getInt(cInicio + (indice + 1) * Integer.BYTES);
+            byte[] bytes = new byte[hasta - desde];
+            buf.get(cDatos + desde, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            cadenas[indice] = s;
+        }
+        return s;
+    }
+
+    // ========== ESCRITURA DEL FICHERO ==========
+
+    /**
+     * Datos leidos de la BBDD, listos para volcar al fichero. Los personajes
+     * deben llegar ordenados por idFaccion y las facciones por id.
+     */
+    static final class Datos {
+        int nf;
+        int[] fId = new int[16];
+        int[] fNom = new int[16];
+        int[] fResum = new int[16];
+
+        int np;
+        double[] atac = new double[1024];
+        double[] defensa = new double[1024];
+        int[] id = new int[1024];
+        int[] idFaccion = new int[1024];
+        int[] nom = new int[1024];
+
+        final Map<String, Integer> codigos = new HashMap<>();
+        final List<byte[]> cadenas = new ArrayList<>();
+        long bytesCadenas;
+
+        void addFaccion(int id, String nom, String resum) {
+            if (nf == fId.length) {
+                fId = Arrays.copyOf(fId, nf * 2);
+                fNom = Arrays.copyOf(fNom, nf * 2);
+                fResum = Arrays.copyOf(fResum, nf * 2);
+            }
+            fId[nf] = id;
+            fNom[nf] = codificar(nom);
+            fResum[nf] = codificar(resum);
+            nf++;
+        }
+
+        void addPersonaje(int id, String nom, double atac, double defensa, int idFaccion) {
+            if (np == this.id.length) {
+                int n = np + (np >> 1);
+                this.atac = Arrays.copyOf(this.atac, n);
+                this.defensa = Arrays.copyOf(this.defensa, n);
+                this.id = Arrays.copyOf(this.id, n);
+                this.idFaccion = Arrays.copyOf(this.idFaccion, n);
+                this.nom = Arrays.copyOf(this.nom, n);
+            }
+            this.atac[np] = atac;
+            this.defensa[np] = defensa;
+            this.id[np] = id;
+            this.idFaccion[np] = idFaccion;
+            this.nom[np] = codificar(nom);
+            np++;
+        }
+
+        private int codificar(String texto) {
+            if (texto == null) {
+                return -1;
+            }
+            Integer codigo = codigos.get(texto);
+            if (codigo == null) {
+                codigo = cadenas.size();
+                codigos.put(texto, codigo);
+                byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+                cadenas.add(bytes);
+                bytesCadenas += bytes.length;
+            }
+            return codigo;
+        }
+
+        void escribir(Path destino) throws IOException {
+            long offFacciones = CABECERA;
+            long offPersonajes = alinear(offFacciones + 5L * nf * Integer.BYTES);
+            long offCadenas = alinear(offPersonajes + 2L * np * Double.BYTES + 4L * np * Integer.BYTES);
+            long longitud = offCadenas + (cadenas.size() + 1L) * Integer.BYTES + bytesCadenas;
+            if (longitud > Integer.MAX_VALUE) {
+                throw new IOException("El snapshot superaria los 2 GB (" + longitud + " bytes).");
+            }
+
+            try (FileChannel ch = FileChannel.open(destino, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, longitud);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+
+                map.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis())
+                   .putInt(nf).putInt(np).putInt(cadenas.size()).putInt(0)
+                   .putLong(offFacciones).putLong(offPersonajes).putLong(offCadenas).putLong(longitud);
+
+                // Facciones: las filas de cada una son un rango contiguo (personajes ordenados por idFaccion)
+                int[] primera = new int[nf];
+                int[] numFilas = new int[nf];
+                int fila = 0;
+                for (int s = 0; s < nf; s++) {
+                    while (fila < np && idFaccion[fila] < fId[s]) {
+                        fila++;
+                    }
+                    primera[s] = fila;
+                    while (fila < np && idFaccion[fila] == fId[s]) {
+                        fila++;
+                    }
+                    numFilas[s] = fila - primera[s];
+                }
+                map.position((int) offFacciones);
+                putInts(map, fId, nf);
+                putInts(map, fNom, nf);
+                putInts(map, fResum, nf);
+                putInts(map, primera, nf);
+                putInts(map, numFilas, nf);
+
+                // Personajes
+                // (id, fila) en un long para ordenar sin objetos
+                long[] porId = new long[np];
+                for (int i = 0; i < np; i++) {
+                    porId[i] = ((long) id[i] << 32) | i;
+                }
+                Arrays.sort(porId);
+                map.position((int) offPersonajes);
+                for (int i = 0; i < np; i++) {
+                    map.putDouble(atac[i]);
+                }
+                for (int i = 0; i < np; i++) {
+                    map.putDouble(defensa[i]);
+                }
+                putInts(map, id, np);
+                putInts(map, idFaccion, np);
+                putInts(map, nom, np);
+                for (int i = 0; i < np; i++) {
+                    map.putInt((int) porId[i]);
+                }
+
+                // Cadenas
+                map.position((int) offCadenas);
+                int inicio = 0;
+                for (byte[] bytes : cadenas) {
+                    map.putInt(inicio);
+                    inicio += bytes.length;
+                }
+                map.putInt(inicio);
+                for (byte[] bytes : cadenas) {
+                    map.put(bytes);
+                }
+                map.force();
+            }
+        }
+
+        private static void putInts(ByteBuffer map, int[] valores, int n) {
+            for (int i = 0; i < n; i++) {
+                map.putInt(valores[i]);
+            }
+        }
+
+        private static long alinear(long pos) {
+            return (pos + 7) & ~7L;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Cola de escrituras de Faccion y Personaje con un unico hilo escritor.
+ * <p>
+ * SQLite solo admite un escritor a la vez: si muchos hilos escriben con
+ * {@link HonorDao} cada uno hace su propia transaccion y se pelean por el
+ * bloqueo del fichero (SQLITE_BUSY). Aqui los hilos solo dejan la operacion en
+ * una cola limitada y reciben un {@link CompletableFuture}; el hilo escritor las
+ * ejecuta por grupos en una sola transaccion, que se confirma cuando el grupo
+ * llega a {@code maxLote} operaciones o han pasado {@code maxEspera} desde la
+ * primera. Asi hay un commit (un fsync) por grupo y no uno por fila.
+ * <p>
+ * Si una operacion falla se deshace el grupo y sus operaciones se repiten una a
+ * una, de manera que solo falla el futuro de la que da error.
+ * <p>
+ * Los {@link HonorListener} se avisan despues del commit, desde el hilo escritor,
+ * y justo despues se completan los futuros. Lo que se encadene a los futuros
+ * (thenApply...) tambien se ejecuta en el hilo escritor y no debe bloquear.
+ * <p>
+ * Si la cola esta llena, quien envia espera: es la forma de frenar a los productores.
+ */
+public class HonorWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HonorWriter.class);
+
+    public static final int DEFAULT_CAPACIDAD = 1024;
+    public static final int DEFAULT_MAX_LOTE = 256;
+    public static final Duration DEFAULT_MAX_ESPERA = Duration.ofMillis(5);
+
+    private final ConnectionPool pool;
+    private final boolean poolPropio;
+    private final int maxLote;
+    private final long maxEsperaNanos;
+    private final BlockingQueue<Operacion<?>> cola;
+    private final Thread escritor;
+    private volatile boolean cerrado;
+
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong operaciones = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+
+    /**
+     * Crea un escritor con su propio pool de una sola conexion.
+     *
+     * @param dbPath La ruta a la base de datos.
+     * @param perfil El perfil de ajuste de la conexion (mejor con WAL, para no bloquear a los lectores).
+     */
+    public HonorWriter(String dbPath, TuningProfile perfil) {
+        this(new ConnectionPool(dbPath, 1, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE, perfil), true,
+            DEFAULT_CAPACIDAD, DEFAULT_MAX_LOTE, DEFAULT_MAX_ESPERA);
+    }
+
+    /**
+     * @param pool De donde sacar la conexion de escritura. No se cierra con el escritor.
+     * @param capacidad Operaciones que caben en la cola antes de hacer esperar a quien envia.
+     * @param maxLote Operaciones maximas por transaccion.
+     * @param maxEspera Tiempo maximo que se espera a llenar un grupo antes de confirmarlo.
+     */
+    public HonorWriter(ConnectionPool pool, int capacidad, int maxLote, Duration maxEspera) {
+        this(pool, false, capacidad, maxLote, maxEspera);
+    }
+
+    private HonorWriter(ConnectionPool pool, boolean poolPropio, int capacidad, int maxLote, Duration maxEspera) {
+        if (maxLote <= 0) {
+            throw new IllegalArgumentException("El tamano del grupo debe ser positivo: " + maxLote);
+        }
+        this.pool = pool;
+        this.poolPropio = poolPropio;
+        this.maxLote = maxLote;
+        this.maxEsperaNanos = maxEspera.toNanos();
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.escritor = new Thread(this::bucle, "honor-writer");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    // ========== ESCRITURAS ==========
+
+    /**
+     * @return El id asignado a la nueva faccion.
+     */
+    public CompletableFuture<Integer> insertFaccion(String nom, String resum) {
+        return enviar((conn, avisos) -> HonorDao.insertFaccion(conn, nom, resum, avisos));
+    }
+
+    /**
+     * @return El personaje insertado, con el id asignado.
+     */
+    public CompletableFuture<Personaje> insertPersonaje(String nom, double atac, double defensa, int idFaccion) {
+        return enviar((conn, avisos) -> HonorDao.insertPersonaje(conn, nom, atac, defensa, idFaccion, avisos));
+    }
+
+    /**
+     * Actualiza todos los campos del personaje con su id.
+     *
+     * @return El personaje tal como estaba antes del cambio, o vacio si no existia.
+     */
+    public CompletableFuture<Optional<Personaje>> updatePersonaje(Personaje p) {
+        return enviar((conn, avisos) -> HonorDao.updatePersonaje(conn, p, avisos));
+    }
+
+    /**
+     * @return El personaje borrado, o vacio si no existia.
+     */
+    public CompletableFuture<Optional<Personaje>> deletePersonaje(int id) {
+        return enviar((conn, avisos) -> HonorDao.deletePersonaje(conn, id, avisos));
+    }
+
+    private <T> CompletableFuture<T> enviar(Escritura<T> escritura) {
+        if (cerrado) {
+            throw new IllegalStateException("El escritor esta cerrado.");
+        }
+        Operacion<T> op = new Operacion<>(escritura);
+        try {
+            cola.put(op);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            op.futuro.completeExceptionally(e);
+            return op.futuro;
+        }
+        // Si se ha cerrado mientras tanto y el escritor ya no la ha recogido, no se ejecutara nunca
+        if (cerrado && cola.remove(op)) {
+            op.futuro.completeExceptionally(new IllegalStateException("El escritor esta cerrado."));
+        }
+        return op.futuro;
+    }
+
+    // ========== HILO ESCRITOR ==========
+
+    private void bucle() {
+        List<Operacion<?>> lote = new ArrayList<>(maxLote);
+        while (!cerrado || !cola.isEmpty()) {
+            try {
+                Operacion<?> primera = cola.poll(100, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                lote.add(primera);
+                llenar(lote);
+                ejecutarLote(lote);
+            } catch (InterruptedException e) {
+                // Solo se interrumpe desde close(): se vacia lo que quede y se sale
+                cerrado = true;
+            } catch (RuntimeException e) {
+                logger.error("Error inesperado en el hilo escritor.", e);
+                for (Operacion<?> op : lote) {
+                    op.futuro.completeExceptionally(e);
+                }
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Anade operaciones al grupo hasta llegar a maxLote o agotar la espera.
+     */
+    private void llenar(List<Operacion<?>> lote) {
+        long limite = System.nanoTime() + maxEsperaNanos;
+        while (lote.size() < maxLote) {
+            // Primero lo que ya esta en la cola, sin esperar
+            if (cola.drainTo(lote, maxLote - lote.size()) > 0) {
+                continue;
+            }
+            long restante = limite - System.nanoTime();
+            if (restante <= 0 || cerrado) {
+                return;
+            }
+            Operacion<?> op;
+            try {
+                op = cola.poll(restante, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // Se ejecuta lo que ya hay en el grupo y el bucle acabara de vaciar la cola
+                cerrado = true;
+                return;
+            }
+            if (op == null) {
+                return;
+            }
+            lote.add(op);
+        }
+    }
+
+    private void ejecutarLote(List<Operacion<?>> lote) {
+        long inicio = System.nanoTime();
+        HonorDao.setEscrituraDao(true);
+        try (Connection conn = pool.getConnection()) {
+            if (!ejecutarEnTransaccion(conn, lote)) {
+                // Algo ha fallado y se ha deshecho todo: cada una en su propia transaccion
+                for (Operacion<?> op : lote) {
+                    ejecutarEnTransaccion(conn, List.of(op));
+                }
+            }
+        } catch (SQLException e) {
+            // No se ha podido obtener la conexion
+            for (Operacion<?> op : lote) {
+                op.futuro.completeExceptionally(e);
+            }
+        } finally {
+            HonorDao.setEscrituraDao(false);
+        }
+        lotes.incrementAndGet();
+        operaciones.addAndGet(lote.size());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Grupo de {} escrituras en {} us.", lote.size(), (System.nanoTime() - inicio) / 1_000);
+        }
+    }
+
+    /**
+     * Ejecuta las operaciones en una transaccion. Si todas van bien, confirma, avisa
+     * y completa los futuros. Si falla una, deshace todo y, si era la unica, falla su futuro.
+     *
+     * @return false si se ha deshecho un grupo de mas de una operacion (hay que repetirlas por separado).
+     */
+    private boolean ejecutarEnTransaccion(Connection conn, List<Operacion<?>> ops) throws SQLException {
+        List<Runnable> avisos = new ArrayList<>(ops.size());
+        conn.setAutoCommit(false);
+        try {
+            for (Operacion<?> op : ops) {
+                op.ejecutar(conn, avisos);
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            if (ops.size() > 1) {
+                return false;
+            }
+            fallos.incrementAndGet();
+            logger.warn("Escritura fallida: {}", e.getMessage());
+            ops.get(0).futuro.completeExceptionally(e);
+            return true;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        HonorDao.lanzarAvisos(avisos);
+        for (Operacion<?> op : ops) {
+            op.completar();
+        }
+        return true;
+    }
+
+    // ========== ESTADO ==========
+
+    /**
+     * @return Operaciones en la cola esperando al escritor.
+     */
+    public int getPendientes() {
+        return cola.size();
+    }
+
+    /**
+     * @return Transacciones confirmadas o intentadas.
+     */
+    public long getLotes() {
+        return lotes.get();
+    }
+
+    /**
+     * @return Operaciones procesadas (con exito o no).
+     */
+    public long getOperaciones() {
+        return operaciones.get();
+    }
+
+    /**
+     * @return Operaciones que han acabado con error.
+     */
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    /**
+     * Deja de aceptar escrituras, espera a que se ejecuten las que ya estan en la
+     * cola y, si el pool es propio, lo cierra.
+     */
+    @Override
+    public void close() {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            escritor.interrupt();
+        }
+        if (poolPropio) {
+            pool.close();
+        }
+        logger.debug("Escritor cerrado: {} operaciones en {} grupos, {} fallidas.", operaciones.get(), lotes.get(), fallos.get());
+    }
+
+    @FunctionalInterface
+    private interface Escritura<T> {
+        T ejecutar(Connection conn, List<Runnable> avisos) throws SQLException;
+    }
+
+    private static final class Operacion<T> {
+        final Escritura<T> escritura;
+        final CompletableFuture<T> futuro = new CompletableFuture<>();
+        private T resultado;
+
+        Operacion(Escritura<T> escritura) {
+            this.escritura = escritura;
+        }
+
+        void ejecutar(Connection conn, List<Runnable> avisos) throws SQLException {
+            resultado = escritura.ejecutar(conn, avisos);
+        }
+
+        void completar() {
+            futuro.complete(resultado);
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TableChangeListener;
+
+/**
+ * Indice en memoria de los personajes por (ataque, defensa) para consultas de
+ * personajes parecidos:
+ * <ul>
+ *   <li>{@link #cercanos}: los K personajes mas cercanos a un perfil (distancia euclidea).</li>
+ *   <li>{@link #rango}: los personajes con ataque y defensa dentro de unos limites.</li>
+ *   <li>{@link #pareto}: los personajes que ningun otro supera en ataque y defensa a la vez.</li>
+ * </ul>
+ * Los personajes estan en un arbol KD equilibrado guardado en arrays (cada nodo es la
+ * mediana de su rango, alternando ataque y defensa), asi que una consulta de K vecinos
+ * o de un rango pequeno visita O(log n + K) nodos.
+ * <p>
+ * Se mantiene al dia con los avisos fila a fila de {@link HonorDao}, como {@link Leaderboard}:
+ * un personaje cambiado se marca como borrado en el arbol y su version nueva va a una
+ * lista de pendientes que se recorre en cada consulta. Cuando los pendientes y borrados
+ * pasan de una cuarta parte del arbol, se reconstruye. Las escrituras que no pasan por
+ * HonorDao marcan el indice como obsoleto y se recarga entero en la siguiente consulta.
+ * <p>
+ * Las consultas se pueden hacer desde varios hilos a la vez; un cambio espera a que
+ * acaben las consultas en curso.
+ */
+public class IndiceAtacDefensa implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceAtacDefensa.class);
+
+    // Con menos cambios acumulados no vale la pena reconstruir
+    private static final int MIN_CAMBIOS_RECONSTRUIR = 256;
+
+    // Orden de la frontera de Pareto: ataque descendente, defensa descendente, id
+    private static final Comparator<Personaje> ORDEN_PARETO = Comparator
+        .comparingDouble(Personaje::getAtac).reversed()
+        .thenComparing(Comparator.comparingDouble(Personaje::getDefensa).reversed())
+        .thenComparingInt(Personaje::getId);
+
+    private final HonorDao fuente;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HonorListener listenerFilas = new HonorListener() {
+        @Override
+        public void personajeCambiado(Personaje anterior, Personaje nuevo) {
+            aplicar(anterior, nuevo);
+        }
+    };
+    private final TableChangeListener listenerTablas = this::onTableChanged;
+
+    private Arbol arbol = new Arbol(new Personaje[0]);
+    // Personajes nuevos o cambiados desde la ultima construccion del arbol, por id
+    private final Map<Integer, Personaje> pendientes = new LinkedHashMap<>();
+    private volatile boolean obsoleto = true;
+    // Fronteras de Pareto calculadas (clave -1: todos los personajes); se borran con cada cambio
+    private volatile Map<Integer, List<Personaje>> fronteras;
+
+    /**
+     * Crea el indice y empieza a escuchar los cambios. Los datos se cargan de la
+     * fuente en la primera consulta.
+     *
+     * @param fuente De donde leer todos los personajes al (re)cargar.
+     */
+    public IndiceAtacDefensa(HonorDao fuente) {
+        this.fuente = fuente;
+        HonorDao.addListener(listenerFilas);
+        DatabaseManager.addTableChangeListener(listenerTablas);
+    }
+
+    // ========== CONSULTAS ==========
+
+    /**
+     * @return Los k personajes mas cercanos al perfil, del mas cercano al mas lejano
+     *         (a igual distancia, el id mas bajo primero).
+     */
+    public List<Personaje> cercanos(double atac, double defensa, int k) throws SQLException {
+        return cercanos(atac, defensa, k, -1);
+    }
+
+    /**
+     * @return Los k personajes mas parecidos al personaje dado, sin contarlo a el.
+     */
+    public List<Personaje> similares(Personaje p, int k) throws SQLException {
+        return cercanos(p.getAtac(), p.getDefensa(), k, p.getId());
+    }
+
+    /**
+     * Personajes con ataque y defensa dentro de los limites (incluidos). Para dejar
+     * un limite abierto se pasa {@code Double.NEGATIVE_INFINITY} o {@code Double.POSITIVE_INFINITY}.
+     *
+     * @return Los personajes del rango, por id.
+     */
+    public List<Personaje> rango(double minAtac, double maxAtac, double minDefensa, double maxDefensa)
+            throws SQLException {
+        cargarSiObsoleto();
+        List<Personaje> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            arbol.rango(0, arbol.size(), 0, minAtac, maxAtac, minDefensa, maxDefensa, result);
+            for (Personaje p : pendientes.values()) {
+                if (p.getAtac() >= minAtac && p.getAtac() <= maxAtac
+                        && p.getDefensa() >= minDefensa && p.getDefensa() <= maxDefensa) {
+                    result.add(p);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingInt(Personaje::getId));
+        return result;
+    }
+
+    /**
+     * @return La frontera de Pareto de todos los personajes, por ataque descendente.
+     */
+    public List<Personaje> pareto() throws SQLException {
+        return fronteras().getOrDefault(-1, List.of());
+    }
+
+    /**
+     * @return La frontera de Pareto de los personajes de la faccion, por ataque descendente.
+     */
+    public List<Personaje> pareto(int idFaccion) throws SQLException {
+        return fronteras().getOrDefault(idFaccion, List.of());
+    }
+
+    /**
+     * @return El numero de personajes indexados.
+     */
+    public int size() throws SQLException {
+        cargarSiObsoleto();
+        lock.readLock().lock();
+        try {
+            return arbol.vivos() + pendientes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== MANTENIMIENTO ==========
+
+    /**
+     * Vuelve a leer todos los personajes de la fuente y reconstruye el indice.
+     */
+    public void recargar() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            long inicio = System.nanoTime();
+            List<Personaje> todos = new ArrayList<>();
+            // Se marca antes de leer: si llega un cambio masivo durante la carga, se volvera a cargar
+            obsoleto = false;
+            fuente.forEachPersonaje(todos::add);
+            arbol = new Arbol(todos.toArray(new Personaje[0]));
+            pendientes.clear();
+            fronteras = null;
+            logger.info("Indice de ataque y defensa cargado: {} personajes en {} ms.",
+                todos.size(), (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aplica un cambio de un personaje.
+     *
+     * @param anterior El personaje antes del cambio, o null si es nuevo.
+     * @param nuevo El personaje despues del cambio, o null si se ha borrado.
+     */
+    public void aplicar(Personaje anterior, Personaje nuevo) {
+        if (anterior == null && nuevo == null) {
+            return;
+        }
+        int id = nuevo != null ? nuevo.getId() : anterior.getId();
+        lock.writeLock().lock();
+        try {
+            arbol.borrar(id);
+            pendientes.remove(id);
+            if (nuevo != null) {
+                pendientes.put(id, nuevo);
+            }
+            fronteras = null;
+            if (arbol.borrados() + pendientes.size() > Math.max(MIN_CAMBIOS_RECONSTRUIR, arbol.size() / 4)) {
+                reconstruir();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deja de escuchar los cambios.
+     */
+    @Override
+    public void close() {
+        HonorDao.removeListener(listenerFilas);
+        DatabaseManager.removeTableChangeListener(listenerTablas);
+    }
+
+    private void onTableChanged(String table, String sql) {
+        if (HonorDao.isEscrituraDao()) {
+            return;
+        }
+        if ("Personaje".equalsIgnoreCase(table)) {
+            obsoleto = true;
+        }
+    }
+
+    private void cargarSiObsoleto() throws SQLException {
+        if (obsoleto) {
+            lock.writeLock().lock();
+            try {
+                if (obsoleto) {
+                    recargar();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Construye un arbol nuevo con los personajes vivos del actual y los pendientes.
+     * Se llama con el lock de escritura.
+     */
+    private void reconstruir() {
+        List<Personaje> todos = new ArrayList<>(arbol.vivos() + pendientes.size());
+        arbol.forEachVivo(todos::add);
+        todos.addAll(pendientes.values());
+        arbol = new Arbol(todos.toArray(new Personaje[0]));
+        pendientes.clear();
+    }
+
+    private List<Personaje> cercanos(double atac, double defensa, int k, int excluido) throws SQLException {
+        cargarSiObsoleto();
+        if (k <= 0) {
+            return List.of();
+        }
+        Vecinos vecinos;
+        lock.readLock().lock();
+        try {
+            vecinos = new Vecinos(Math.min(k, arbol.vivos() + pendientes.size()));
+            if (vecinos.capacidad() > 0) {
+                arbol.cercanos(0, arbol.size(), 0, atac, defensa, excluido, vecinos);
+                for (Personaje p : pendientes.values()) {
+                    if (p.getId() != excluido) {
+                        vecinos.ofrecer(p, distancia2(atac, defensa, p.getAtac(), p.getDefensa()));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return vecinos.ordenados();
+    }
+
+    /**
+     * Calcula de una vez la frontera de todos los personajes y la de cada faccion.
+     * <p>
+     * Primero se descartan sin ordenar los personajes que estan por debajo en defensa
+     * del de mas ataque de su grupo, o por debajo en ataque del de mas defensa: ese
+     * personaje los domina. Los que quedan se ordenan por ataque descendente y se
+     * recorren guardando la mejor defensa vista (como {@code AnalisisFacciones.pareto}).
+     */
+    private Map<Integer, List<Personaje>> fronteras() throws SQLException {
+        cargarSiObsoleto();
+        Map<Integer, List<Personaje>> result = fronteras;
+        if (result != null) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            Map<Integer, Caja> cajas = new HashMap<>();
+            Consumer<Personaje> medir = p -> {
+                cajas.computeIfAbsent(-1, c -> new Caja()).anadir(p);
+                cajas.computeIfAbsent(p.getIdFaccion(), c -> new Caja()).anadir(p);
+            };
+            arbol.forEachVivo(medir);
+            pendientes.values().forEach(medir);
+
+            List<Personaje> candidatos = new ArrayList<>();
+            Consumer<Personaje> filtrar = p -> {
+                if (cajas.get(-1).contiene(p) || cajas.get(p.getIdFaccion()).contiene(p)) {
+                    candidatos.add(p);
+                }
+            };
+            arbol.forEachVivo(filtrar);
+            pendientes.values().forEach(filtrar);
+            candidatos.sort(ORDEN_PARETO);
+
+            result = new TreeMap<>();
+            Map<Integer, Personaje> ultimo = new HashMap<>();
+            for (Personaje p : candidatos) {
+                anadirSiNoDominado(result, ultimo, -1, p);
+                anadirSiNoDominado(result, ultimo, p.getIdFaccion(), p);
+            }
+            for (Map.Entry<Integer, List<Personaje>> e : result.entrySet()) {
+                e.setValue(List.copyOf(e.getValue()));
+            }
+            // Los cambios esperan al lock de lectura, asi que este resultado sigue al dia
+            fronteras = result;
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void anadirSiNoDominado(Map<Integer, List<Personaje>> fronteras, Map<Integer, Personaje> ultimo,
+                                           int clave, Personaje p) {
+        Personaje u = ultimo.get(clave);
+        // Un personaje identico al ultimo de la frontera tampoco esta dominado
+        if (u == null || p.getDefensa() > u.getDefensa()
+                || (p.getDefensa() == u.getDefensa() && p.getAtac() == u.getAtac())) {
+            fronteras.computeIfAbsent(clave, c -> new ArrayList<>()).add(p);
+            ultimo.put(clave, p);
+        }
+    }
+
+    /**
+     * Zona de un grupo de personajes donde puede estar su frontera de Pareto: con al menos
+     * la defensa del de mas ataque y al menos el ataque del de mas defensa. Cualquier
+     * personaje que domine a uno de la zona tambien esta dentro.
+     */
+    private static final class Caja {
+        private double maxAtac = Double.NEGATIVE_INFINITY;
+        private double defensaDelMaxAtac = Double.NEGATIVE_INFINITY;
+        private double maxDefensa = Double.NEGATIVE_INFINITY;
+        private double atacDelMaxDefensa = Double.NEGATIVE_INFINITY;
+
+        void anadir(Personaje p) {
+            double a = p.getAtac();
+            double d = p.getDefensa();
+            if (a > maxAtac || (a == maxAtac && d > defensaDelMaxAtac)) {
+                maxAtac = a;
+                defensaDelMaxAtac = d;
+            }
+            if (d > maxDefensa || (d == maxDefensa && a > atacDelMaxDefensa)) {
+                maxDefensa = d;
+                atacDelMaxDefensa = a;
+            }
+        }
+
+        boolean contiene(Personaje p) {
+            return p.getDefensa() >= defensaDelMaxAtac && p.getAtac() >= atacDelMaxDefensa;
+        }
+    }
+
+    private static double distancia2(double atac, double defensa, double otroAtac, double otraDefensa) {
+        double da = atac - otroAtac;
+        double dd = defensa - otraDefensa;
+        return da * da + dd * dd;
+    }
+
+    /**
+     * Arbol KD implicito: el nodo de un rango [desde, hasta) es la posicion del medio,
+     * con los menores o iguales (en ataque si la profundidad es par, en defensa si es
+     * impar) a la izquierda y los mayores o iguales a la derecha.
+     */
+    private static final class Arbol {
+        private final Personaje[] personajes;
+        // Copia de las coordenadas en arrays, para no seguir punteros al recorrer
+        private final double[] atac;
+        private final double[] defensa;
+        private final boolean[] borrado;
+        private final Map<Integer, Integer> posicion;
+        private int borrados;
+
+        Arbol(Personaje[] personajes) {
+            this.personajes = personajes;
+            construir(0, personajes.length, 0);
+            int n = personajes.length;
+            atac = new double[n];
+            defensa = new double[n];
+            borrado = new boolean[n];
+            posicion = new HashMap<>(Math.max(16, n * 4 / 3 + 1));
+            for (int i = 0; i < n; i++) {
+                atac[i] = personajes[i].getAtac();
+                defensa[i] = personajes[i].getDefensa();
+                posicion.put(personajes[i].getId(), i);
+            }
+        }
+
+        int size() {
+            return personajes.length;
+        }
+
+        int borrados() {
+            return borrados;
+        }
+
+        int vivos() {
+            return personajes.length - borrados;
+        }
+
+        void borrar(int id) {
+            Integer i = posicion.get(id);
+            if (i != null && !borrado[i]) {
+                borrado[i] = true;
+                borrados++;
+            }
+        }
+
+        void forEachVivo(Consumer<Personaje> consumer) {
+            for (int i = 0; i < personajes.length; i++) {
+                if (!borrado[i]) {
+                    consumer.accept(personajes[i]);
+                }
+            }
+        }
+
+        private void construir(int desde, int hasta, int profundidad) {
+            if (hasta - desde <= 1) {
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            seleccionar(desde, hasta, medio, profundidad % 2 == 0);
+            construir(desde, medio, profundidad + 1);
+            construir(medio + 1, hasta, profundidad + 1);
+        }
+
+        /**
+         * Deja en la posicion n el elemento que iria ahi si el rango estuviera ordenado,
+         * con los menores o iguales delante y los mayores o iguales detras (quickselect).
+         */
+        private void seleccionar(int desde, int hasta, int n, boolean porAtac) {
+            int lo = desde;
+            int hi = hasta - 1;
+            while (lo < hi) {
+                double pivote = clave(personajes[(lo + hi) >>> 1], porAtac);
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (clave(personajes[i], porAtac) < pivote) {
+                        i++;
+                    }
+                    while (clave(personajes[j], porAtac) > pivote) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        Personaje t = personajes[i];
+                        personajes[i] = personajes[j];
+                        personajes[j] = t;
+                        i++;
+                        j--;
+                    }
+                }
+                // [lo, j] <= pivote, [i, hi] >= pivote y lo que queda en medio es igual al pivote
+                if (n <= j) {
+                    hi = j;
+                } else if (n >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static double clave(Personaje p, boolean porAtac) {
+            return porAtac ? p.getAtac() : p.getDefensa();
+        }
+
+        void cercanos(int desde, int hasta, int profundidad, double a, double d, int excluido, Vecinos vecinos) {
+            if (desde >= hasta) {
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            if (!borrado[medio] && personajes[medio].getId() != excluido) {
+                vecinos.ofrecer(personajes[medio], distancia2(a, d, atac[medio], defensa[medio]));
+            }
+            double diferencia = profundidad % 2 == 0 ? a - atac[medio] : d - defensa[medio];
+            // Primero el lado del punto; el otro solo si puede tener alguno mas cerca que el peor
+            if (diferencia < 0) {
+                cercanos(desde, medio, profundidad + 1, a, d, excluido, vecinos);
+                if (vecinos.admite(diferencia * diferencia)) {
+                    cercanos(medio + 1, hasta, profundidad + 1, a, d, excluido, vecinos);
+                }
+            } else {
+                cercanos(medio + 1, hasta, profundidad + 1, a, d, excluido, vecinos);
+                if (vecinos.admite(diferencia * diferencia)) {
+                    cercanos(desde, medio, profundidad + 1, a, d, excluido, vecinos);
+                }
+            }
+        }
+
+        void rango(int desde, int hasta, int profundidad, double minAtac, double maxAtac,
+                   double minDefensa, double maxDefensa, List<Personaje> result) {
+            if (desde >= hasta) {
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            double a = atac[medio];
+            double d = defensa[medio];
+            if (!borrado[medio] && a >= minAtac && a <= maxAtac && d >= minDefensa && d <= maxDefensa) {
+                result.add(personajes[medio]);
+            }
+            double valor = profundidad % 2 == 0 ? a : d;
+            double min = profundidad % 2 == 0 ? minAtac : minDefensa;
+            double max = profundidad % 2 == 0 ? maxAtac : maxDefensa;
+            if (min <= valor) {
+                rango(desde, medio, profundidad + 1, minAtac, maxAtac, minDefensa, maxDefensa, result);
+            }
+            if (max >= valor) {
+                rango(medio + 1, hasta, profundidad + 1, minAtac, maxAtac, minDefensa, maxDefensa, result);
+            }
+        }
+    }
+
+    /**
+     * Los k mejores candidatos vistos hasta ahora, en un monticulo con el peor arriba
+     * (mayor distancia; a igual distancia, mayor id).
+     */
+    private static final class Vecinos {
+        private final Personaje[] personajes;
+        private final double[] distancias;
+        private int n;
+
+        Vecinos(int k) {
+            personajes = new Personaje[k];
+            distancias = new double[k];
+        }
+
+        int capacidad() {
+            return personajes.length;
+        }
+
+        /**
+         * @return Si un personaje a esta distancia (al cuadrado) podria entrar.
+         */
+        boolean admite(double distancia2) {
+            return n < personajes.length || distancia2 <= distancias[0];
+        }
+
+        void ofrecer(Personaje p, double distancia2) {
+            if (n < personajes.length) {
+                personajes[n] = p;
+                distancias[n] = distancia2;
+                subir(n++);
+            } else if (peor(distancias[0], personajes[0], distancia2, p)) {
+                personajes[0] = p;
+                distancias[0] = distancia2;
+                bajar(0);
+            }
+        }
+
+        List<Personaje> ordenados() {
+            Integer[] orden = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (x, y) -> peor(distancias[x], personajes[x], distancias[y], personajes[y]) ? 1
+                : peor(distancias[y], personajes[y], distancias[x], personajes[x]) ? -1 : 0);
+            List<Personaje> result = new ArrayList<>(n);
+            for (int i : orden) {
+                result.add(personajes[i]);
+            }
+            return result;
+        }
+
+        /**
+         * @return Si (da, a) esta mas lejos que (db, b).
+         */
+        private static boolean peor(double da, Personaje a, double db, Personaje b) {
+            return da > db || (da == db && a.getId() > b.getId());
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int padre = (i - 1) / 2;
+                if (!peor(distancias[i], personajes[i], distancias[padre], personajes[padre])) {
+                    break;
+                }
+                intercambiar(i, padre);
+                i = padre;
+            }
+        }
+
+        private void bajar(int i) {
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= n) {
+                    break;
+                }
+                if (hijo + 1 < n && peor(distancias[hijo + 1], personajes[hijo + 1], distancias[hijo], personajes[hijo])) {
+                    hijo++;
+                }
+                if (!peor(distancias[hijo], personajes[hijo], distancias[i], personajes[i])) {
+                    break;
+                }
+                intercambiar(i, hijo);
+                i = hijo;
+            }
+        }
+
+        private void intercambiar(int i, int j) {
+            Personaje p = personajes[i];
+            personajes[i] = personajes[j];
+            personajes[j] = p;
+            double d = distancias[i];
+            distancias[i] = distancias[j];
+            distancias[j] = d;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TableChangeListener;
+
+/**
+ * Clasificacion en memoria de los personajes de cada faccion por ataque,
+ * defensa o puntuacion combinada (ataque + defensa).
+ * <p>
+ * Cada faccion tiene una skip list ordenada por criterio, asi que:
+ * <ul>
+ *   <li>El mejor de una faccion es la primera entrada: O(1).</li>
+ *   <li>El top-K se recorre en O(log n + K).</li>
+ *   <li>Un alta, baja o cambio de un personaje cuesta O(log n).</li>
+ * </ul>
+ * Se mantiene al dia con los avisos fila a fila de {@link HonorDao}. Las
+ * escrituras que no pasan por HonorDao (p.ej. la carga masiva) marcan la
+ * clasificacion como obsoleta. En la siguiente consulta, si tiene un
+ * {@link FeedCambios}, vuelve a leer solo los personajes que han cambiado;
+ * si no lo tiene o han cambiado demasiados, se recarga entera.
+ * <p>
+ * Como las consultas SQL (con {@code JOIN Faccion}), solo se clasifican los
+ * personajes de una faccion que existe: los que no tienen faccion o tienen una
+ * que se ha borrado no salen en ningun ranking. Al crear o borrar una faccion
+ * se recarga todo.
+ * <p>
+ * Las lecturas no bloquean; las escrituras se serializan entre ellas.
+ */
+public class Leaderboard implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Leaderboard.class);
+
+    // Cambios leidos de cada vez del registro
+    private static final int LOTE_CAMBIOS = 1024;
+    // Con mas personajes cambiados que estos (o que una cuarta parte del total), se recarga todo
+    private static final int MIN_CAMBIOS_RECARGA = 256;
+
+    /**
+     * Criterios de ordenacion (de mayor a menor).
+     */
+    public enum Criterio {
+        ATAC {
+            @Override
+            public double valor(Personaje p) {
+                return p.getAtac();
+            }
+        },
+        DEFENSA {
+            @Override
+            public double valor(Personaje p) {
+                return p.getDefensa();
+            }
+        },
+        COMBINADO {
+            @Override
+            public double valor(Personaje p) {
+                return p.getAtac() + p.getDefensa();
+            }
+        };
+
+        public abstract double valor(Personaje p);
+
+        // Mayor valor primero; a igualdad, el id mas bajo (el orden de la consulta SQL)
+        final Comparator<Personaje> orden() {
+            return Comparator.comparingDouble(this::valor).reversed().thenComparingInt(Personaje::getId);
+        }
+    }
+
+    private final HonorDao fuente;
+    private final FeedCambios feed;
+    private final Object escritura = new Object();
+    private final HonorListener listenerFilas = new HonorListener() {
+        @Override
+        public void personajeCambiado(Personaje anterior, Personaje nuevo) {
+            aplicar(anterior, nuevo);
+        }
+
+        @Override
+        public void faccionCambiada(int idFaccion) {
+            // Puede haber personajes que ahora si (o ya no) tienen faccion
+            synchronized (escritura) {
+                cargado = false;
+                obsoleto = true;
+            }
+        }
+    };
+    private final TableChangeListener listenerTablas = this::onTableChanged;
+
+    private volatile Estado estado = new Estado(Set.of());
+    private volatile boolean obsoleto = true;
+    private boolean cargado;
+
+    /**
+     * Crea la clasificacion y empieza a escuchar los cambios. Los datos se
+     * cargan de la fuente en la primera consulta.
+     *
+     * @param fuente De donde leer todos los personajes al (re)cargar.
+     */
+    public Leaderboard(HonorDao fuente) {
+        this(fuente, null);
+    }
+
+    /**
+     * Como {@link #Leaderboard(HonorDao)}, pero despues de una escritura que no pasa
+     * por HonorDao lee del registro de cambios que personajes han cambiado, en lugar
+     * de recargarlos todos. La base de datos debe tener el registro
+     * (ver {@link HonorDao#crearVistas}).
+     *
+     * @param fuente De donde leer los personajes.
+     * @param feed El registro de cambios de la misma base de datos; su posicion se
+     *             ajusta en cada recarga.
+     */
+    public Leaderboard(HonorDao fuente, FeedCambios feed) {
+        this.fuente = fuente;
+        this.feed = feed;
+        HonorDao.addListener(listenerFilas);
+        DatabaseManager.addTableChangeListener(listenerTablas);
+    }
+
+    // ========== CONSULTAS ==========
+
+    /**
+     * @return El mejor personaje de la faccion segun el criterio, o vacio si no tiene personajes.
+     */
+    public Optional<Personaje> mejor(int idFaccion, Criterio criterio) throws SQLException {
+        NavigableSet<Personaje> ranking = ranking(idFaccion, criterio);
+        if (ranking == null) {
+            return Optional.empty();
+        }
+        Iterator<Personaje> it = ranking.iterator();
+        return it.hasNext() ? Optional.of(it.next()) : Optional.empty();
+    }
+
+    /**
+     * @return Los k mejores personajes de la faccion segun el criterio, de mejor a peor.
+     */
+    public List<Personaje> top(int idFaccion, Criterio criterio, int k) throws SQLException {
+        NavigableSet<Personaje> ranking = ranking(idFaccion, criterio);
+        if (ranking == null || k <= 0) {
+            return Collections.emptyList();
+        }
+        List<Personaje> result = new ArrayList<>(Math.min(k, 16));
+        for (Personaje p : ranking) {
+            result.add(p);
+            if (result.size() == k) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Los k mejores de cada faccion, ordenado por id de faccion.
+     */
+    public Map<Integer, List<Personaje>> topPorFaccion(Criterio criterio, int k) throws SQLException {
+        Estado actual = estadoActual();
+        Map<Integer, List<Personaje>> result = new TreeMap<>();
+        for (Integer idFaccion : actual.porFaccion.keySet()) {
+            List<Personaje> top = top(idFaccion, criterio, k);
+            if (!top.isEmpty()) {
+                result.put(idFaccion, top);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return El numero de personajes clasificados.
+     */
+    public int size() throws SQLException {
+        return estadoActual().porId.size();
+    }
+
+    // ========== MANTENIMIENTO ==========
+
+    /**
+     * Vuelve a leer todos los personajes de la fuente y sustituye la clasificacion.
+     */
+    public void recargar() throws SQLException {
+        synchronized (escritura) {
+            long inicio = System.nanoTime();
+            // Se marca antes de leer: si llega un cambio masivo durante la carga, se volvera a cargar
+            obsoleto = false;
+            if (feed != null) {
+                // Los cambios posteriores se aplicaran encima, aunque la carga ya los incluya
+                feed.saltarAlFinal();
+            }
+            Set<Integer> facciones = new HashSet<>();
+            for (Faccion f : fuente.listFacciones(0)) {
+                facciones.add(f.getId());
+            }
+            Estado nuevo = new Estado(facciones);
+            int filas = fuente.forEachPersonaje(nuevo::insertar);
+            estado = nuevo;
+            cargado = true;
+            logger.info("Clasificacion cargada: {} personajes en {} ms.", filas, (System.nanoTime() - inicio) / 1_000_000);
+        }
+    }
+
+    /**
+     * Aplica un cambio de un personaje.
+     *
+     * @param anterior El personaje antes del cambio, o null si es nuevo.
+     * @param nuevo El personaje despues del cambio, o null si se ha borrado.
+     */
+    public void aplicar(Personaje anterior, Personaje nuevo) {
+        synchronized (escritura) {
+            if (nuevo != null) {
+                estado.insertar(nuevo);
+            } else if (anterior != null) {
+                estado.borrar(anterior.getId());
+            }
+        }
+    }
+
+    /**
+     * Deja de escuchar los cambios.
+     */
+    @Override
+    public void close() {
+        HonorDao.removeListener(listenerFilas);
+        DatabaseManager.removeTableChangeListener(listenerTablas);
+    }
+
+    private void onTableChanged(String table, String sql) {
+        if (HonorDao.isEscrituraDao()) {
+            return;
+        }
+        // RegistroCambios: el aviso de una carga masiva (ver HonorDao.reanudarRegistro)
+        if ("Personaje".equalsIgnoreCase(table) || "Faccion".equalsIgnoreCase(table)
+                || "RegistroCambios".equalsIgnoreCase(table)) {
+            obsoleto = true;
+        }
+    }
+
+    private Estado estadoActual() throws SQLException {
+        if (obsoleto) {
+            synchronized (escritura) {
+                if (obsoleto) {
+                    if (feed != null && cargado) {
+                        ponerAlDia();
+                    } else {
+                        recargar();
+                    }
+                }
+            }
+        }
+        return estado;
+    }
+
+    /**
+     * Vuelve a leer los personajes que aparecen en el registro de cambios desde la
+     * ultima lectura. Se llama con el cerrojo de escritura.
+     */
+    private void ponerAlDia() throws SQLException {
+        long inicio = System.nanoTime();
+        obsoleto = false;
+        Set<Integer> cambiados = new LinkedHashSet<>();
+        int leidos = 0;
+        int limite = Math.max(MIN_CAMBIOS_RECARGA, estado.porId.size() / 4);
+        try {
+            List<FeedCambios.Cambio> cambios;
+            do {
+                cambios = feed.siguientes(LOTE_CAMBIOS);
+                leidos += cambios.size();
+                for (FeedCambios.Cambio cambio : cambios) {
+                    if (cambio.getOp() == FeedCambios.RECARGAR) {
+                        recargar();
+                        return;
+                    }
+                    if ("Personaje".equals(cambio.getTabla())) {
+                        cambiados.add(cambio.getIdFila());
+                    } else if (cambio.getOp() != 'U' || !Objects.equals(cambio.getIdFaccionAnterior(), cambio.getIdFaccion())) {
+                        // Una faccion nueva o borrada (los nombres no se guardan aqui, ver DiccionarioFacciones)
+                        recargar();
+                        return;
+                    }
+                }
+                if (cambiados.size() > limite) {
+                    recargar();
+                    return;
+                }
+            } while (cambios.size() == LOTE_CAMBIOS);
+            for (Integer id : cambiados) {
+                Optional<Personaje> p = fuente.findPersonaje(id);
+                if (p.isPresent()) {
+                    estado.insertar(p.get());
+                } else {
+                    estado.borrar(id);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Los cambios ya leidos del registro no se volveran a ver: la proxima vez, todo
+            obsoleto = true;
+            cargado = false;
+            throw e;
+        }
+        logger.info("Clasificacion al dia: {} personajes releidos de {} cambios en {} ms.", cambiados.size(),
+            leidos, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private NavigableSet<Personaje> ranking(int idFaccion, Criterio criterio) throws SQLException {
+        Rankings rankings = estadoActual().porFaccion.get(idFaccion);
+        return rankings == null ? null : rankings.por(criterio);
+    }
+
+    /**
+     * Todos los rankings; se sustituye entero al recargar.
+     */
+    private static final class Estado {
+        final Set<Integer> facciones;
+        final Map<Integer, Personaje> porId = new ConcurrentHashMap<>();
+        final Map<Integer, Rankings> porFaccion = new ConcurrentHashMap<>();
+
+        /**
+         * @param facciones Las facciones que existen; los personajes de otras no se clasifican.
+         */
+        Estado(Set<Integer> facciones) {
+            this.facciones = facciones;
+        }
+
+        void insertar(Personaje p) {
+            if (!facciones.contains(p.getIdFaccion())) {
+                // Sin faccion (NULL se lee como 0) o de una que no existe: como si se hubiera borrado
+                borrar(p.getId());
+                return;
+            }
+            Rankings rankings = porFaccion.computeIfAbsent(p.getIdFaccion(), id -> new Rankings());
+            Personaje viejo = porId.put(p.getId(), p);
+            if (viejo == null) {
+                rankings.anadir(p);
+            } else if (viejo.getIdFaccion() == p.getIdFaccion()) {
+                rankings.reemplazar(viejo, p);
+            } else {
+                rankings.anadir(p);
+                porFaccion.get(viejo.getIdFaccion()).quitar(viejo);
+            }
+        }
+
+        void borrar(int id) {
+            Personaje viejo = porId.remove(id);
+            if (viejo != null) {
+                porFaccion.get(viejo.getIdFaccion()).quitar(viejo);
+            }
+        }
+    }
+
+    /**
+     * Los personajes de una faccion ordenados por cada criterio.
+     */
+    private static final class Rankings {
+        private final EnumMap<Criterio, ConcurrentSkipListSet<Personaje>> porCriterio = new EnumMap<>(Criterio.class);
+
+        Rankings() {
+            for (Criterio c : Criterio.values()) {
+                porCriterio.put(c, new ConcurrentSkipListSet<>(c.orden()));
+            }
+        }
+
+        NavigableSet<Personaje> por(Criterio criterio) {
+            return porCriterio.get(criterio);
+        }
+
+        void anadir(Personaje p) {
+            for (ConcurrentSkipListSet<Personaje> set : porCriterio.values()) {
+                set.add(p);
+            }
+        }
+
+        void quitar(Personaje p) {
+            for (ConcurrentSkipListSet<Personaje> set : porCriterio.values()) {
+                set.remove(p);
+            }
+        }
+
+        /**
+         * Sustituye un personaje por su version nueva. Se anade antes de quitar
+         * para que un lector concurrente no vea la faccion sin el personaje,
+         * excepto si ambas versiones ocupan la misma posicion (el set las
+         * consideraria el mismo elemento).
+         */
+        void reemplazar(Personaje viejo, Personaje nuevo) {
+            for (ConcurrentSkipListSet<Personaje> set : porCriterio.values()) {
+                if (set.comparator().compare(viejo, nuevo) == 0) {
+                    set.remove(viejo);
+                    set.add(nuevo);
+                } else {
+                    set.add(nuevo);
+                    set.remove(viejo);
+                }
+            }
+        }
+    }
+}
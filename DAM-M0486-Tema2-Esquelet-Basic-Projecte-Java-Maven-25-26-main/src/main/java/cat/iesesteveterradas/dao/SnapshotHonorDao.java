@@ -0,0 +1,153 @@
+package cat.iesesteveterradas.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResultadoBusqueda;
+import cat.iesesteveterradas.model.ResumenFaccion;
+
+/**
+ * {@link HonorDao} de solo lectura que responde desde un {@link HonorSnapshot}
+ * en lugar de la base de datos.
+ * <p>
+ * Las consultas no usan JDBC ni conexiones del pool. Los datos son los del
+ * momento en que se escribio el snapshot; las escrituras no estan soportadas.
+ */
+public class SnapshotHonorDao extends HonorDao {
+
+    private final HonorSnapshot snapshot;
+
+    public SnapshotHonorDao(HonorSnapshot snapshot) {
+        super(null);
+        this.snapshot = snapshot;
+    }
+
+    public HonorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // ========== LECTURAS ==========
+
+    @Override
+    public List<Faccion> listFacciones() {
+        return snapshot.listFacciones();
+    }
+
+    // El snapshot ya tiene los resumenes en memoria: no hace falta cortarlos
+
+    @Override
+    public List<Faccion> listFacciones(int longitudPrevia) {
+        return snapshot.listFacciones();
+    }
+
+    @Override
+    public Optional<String> findResum(int idFaccion) {
+        return snapshot.findResum(idFaccion);
+    }
+
+    @Override
+    public List<Personaje> findPersonajesByFaccion(int idFaccion) {
+        return snapshot.findPersonajesByFaccion(idFaccion);
+    }
+
+    @Override
+    public Optional<Personaje> findMejorAtacante(int idFaccion) {
+        return snapshot.findMejorAtacante(idFaccion);
+    }
+
+    @Override
+    public Optional<Personaje> findMejorDefensor(int idFaccion) {
+        return snapshot.findMejorDefensor(idFaccion);
+    }
+
+    @Override
+    public Optional<Personaje> findPersonaje(int id) {
+        return snapshot.findPersonaje(id);
+    }
+
+    @Override
+    public List<ResumenFaccion> listResumenes() {
+        return snapshot.listResumenes();
+    }
+
+    @Override
+    public Optional<ResumenFaccion> findResumen(int idFaccion) {
+        return snapshot.findResumen(idFaccion);
+    }
+
+    @Override
+    public List<Personaje> findTopAtacantes(int idFaccion, int k) {
+        return snapshot.findTopAtacantes(idFaccion, k);
+    }
+
+    @Override
+    public List<Personaje> findTopDefensores(int idFaccion, int k) {
+        return snapshot.findTopDefensores(idFaccion, k);
+    }
+
+    @Override
+    public List<Faccion> paginaFacciones(int despuesDeId, int tamano) {
+        return snapshot.paginaFacciones(despuesDeId, tamano);
+    }
+
+    @Override
+    public List<Personaje> paginaPersonajes(int despuesDeId, int tamano) {
+        return snapshot.paginaPersonajes(despuesDeId, tamano);
+    }
+
+    @Override
+    public int forEachPersonaje(Consumer<Personaje> consumer) {
+        return snapshot.forEachPersonaje(consumer);
+    }
+
+    @Override
+    public int forEachFila(Consumer<FilaPersonaje> consumer) {
+        return snapshot.forEachFila(consumer);
+    }
+
+    // El snapshot no guarda los indices de texto
+
+    @Override
+    public List<ResultadoBusqueda> buscarFacciones(String texto, int limite) throws SQLException {
+        throw sinBusqueda();
+    }
+
+    @Override
+    public List<Personaje> buscarPersonajesPorPrefijo(String prefijo, int limite) throws SQLException {
+        throw sinBusqueda();
+    }
+
+    // ========== ESCRITURAS ==========
+
+    @Override
+    public int insertFaccion(String nom, String resum) throws SQLException {
+        throw soloLectura();
+    }
+
+    @Override
+    public Personaje insertPersonaje(String nom, double atac, double defensa, int idFaccion) throws SQLException {
+        throw soloLectura();
+    }
+
+    @Override
+    public Optional<Personaje> updatePersonaje(Personaje p) throws SQLException {
+        throw soloLectura();
+    }
+
+    @Override
+    public Optional<Personaje> deletePersonaje(int id) throws SQLException {
+        throw soloLectura();
+    }
+
+    private SQLException sinBusqueda() {
+        return new SQLException("El snapshot " + snapshot.getFichero() + " no permite busquedas de texto.");
+    }
+
+    private SQLException soloLectura() {
+        return new SQLException("El snapshot " + snapshot.getFichero() + " es de solo lectura.");
+    }
+}
@@ -0,0 +1,118 @@
+package cat.iesesteveterradas.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Nombres de las facciones por id, con una sola instancia de String por faccion.
+ * <p>
+ * Los personajes no guardan el nombre de su faccion: lo buscan aqui cuando se
+ * pide (ver {@link Personaje#getNomFaccion()}). Asi millones de personajes
+ * comparten unas pocas cadenas en lugar de llevar cada uno su copia.
+ * <p>
+ * Las lecturas no se bloquean: cada cambio sustituye el mapa entero, lo que es
+ * barato porque hay pocas facciones y cambian muy poco. Quien lo rellena es
+ * {@code HonorDao}, que lo vuelve a cargar cuando se ha marcado como obsoleto.
+ */
+public final class DiccionarioFacciones {
+
+    private static final DiccionarioFacciones DEFAULT = new DiccionarioFacciones();
+
+    private volatile Map<Integer, String> nombres = Map.of();
+    private volatile boolean cargado;
+    // Cambia con cada invalidacion o registro, para no dar por buena una carga que ha empezado antes
+    private volatile long version;
+
+    /**
+     * @return El diccionario que usan los personajes para resolver su faccion.
+     */
+    public static DiccionarioFacciones getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return El nombre de la faccion, o null si no se conoce.
+     */
+    public String nombre(int idFaccion) {
+        return nombres.get(idFaccion);
+    }
+
+    /**
+     * Devuelve la instancia compartida del nombre, guardandolo si es nuevo o ha cambiado.
+     *
+     * @return El nombre canonico de la faccion (null si {@code nom} es null).
+     */
+    public String canonico(int idFaccion, String nom) {
+        if (nom == null) {
+            return null;
+        }
+        String actual = nombres.get(idFaccion);
+        if (nom.equals(actual)) {
+            return actual;
+        }
+        registrar(idFaccion, nom);
+        return nom;
+    }
+
+    /**
+     * Anade o cambia el nombre de una faccion.
+     * <p>
+     * Una carga que haya empezado antes puede haber leido la tabla sin este cambio
+     * (p.ej. si la invalidacion llego antes del commit), asi que ya no se aceptara.
+     */
+    public synchronized void registrar(int idFaccion, String nom) {
+        Map<Integer, String> copia = new HashMap<>(nombres);
+        copia.put(idFaccion, nom);
+        nombres = copia;
+        version++;
+    }
+
+    /**
+     * Sustituye todo el contenido y lo marca como cargado, pero solo si no se ha
+     * invalidado ni registrado nada desde que se leyo {@code versionLeida} (ver
+     * {@link #getVersion()}). Si no, lo leido puede ser mas viejo que lo que ya hay:
+     * se descarta y la siguiente lectura volvera a cargar.
+     *
+     * @return Si se ha aceptado la carga.
+     */
+    public synchronized boolean reemplazar(Map<Integer, String> todos, long versionLeida) {
+        if (versionLeida != version) {
+            return false;
+        }
+        nombres = new HashMap<>(todos);
+        cargado = true;
+        return true;
+    }
+
+    /**
+     * Marca el contenido como obsoleto. Los nombres se siguen devolviendo hasta
+     * que se vuelva a cargar.
+     */
+    public synchronized void invalidar() {
+        version++;
+        cargado = false;
+    }
+
+    /**
+     * @return La version actual; se lee antes de cargar y se pasa a {@link #reemplazar}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Si el contenido se ha cargado completo y no se ha invalidado despues.
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    public int size() {
+        return nombres.size();
+    }
+
+    @Override
+    public String toString() {
+        return "DiccionarioFacciones [" + nombres.size() + " facciones" + (cargado ? "" : ", obsoleto") + "]";
+    }
+}
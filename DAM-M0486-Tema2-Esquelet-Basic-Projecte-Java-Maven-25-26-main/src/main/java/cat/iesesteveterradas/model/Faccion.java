@@ -1,15 +1,35 @@
 package cat.iesesteveterradas.model;
 
-public class Faccion { 
+/**
+ * Una faccion. El resumen puede estar cargado entero o solo su principio (en los
+ * listados): en ese caso {@link #getResum()} lee el resto cuando se pide.
+ */
+public class Faccion {
     private int id;
     private String nom;
+    // El resumen entero, o su principio si fuente no es null
     private String resum;
+    private final FuenteResumenes fuente;
 
     // Constructor
-    public Faccion(int id, String nom, String resum) { 
+    public Faccion(int id, String nom, String resum) {
         this.id = id;
         this.nom = nom;
         this.resum = resum;
+        this.fuente = null;
+    }
+
+    /**
+     * Faccion con solo el principio del resumen.
+     *
+     * @param previa El principio del resumen.
+     * @param fuente De donde leer el resumen completo si se pide.
+     */
+    public Faccion(int id, String nom, String previa, FuenteResumenes fuente) {
+        this.id = id;
+        this.nom = nom;
+        this.resum = previa;
+        this.fuente = fuente;
     }
 
     // Getters
@@ -21,12 +41,27 @@ public class Faccion {
         return nom;
     }
 
+    /**
+     * @return El resumen completo (si solo se tiene el principio, se lee de la fuente).
+     */
     public String getResum() {
+        return fuente == null ? resum : fuente.resum(id);
+    }
+
+    /**
+     * @return Lo que se ha cargado del resumen, sin ir a buscar el resto; es el
+     *         resumen completo si {@link #isResumCompleto()}.
+     */
+    public String getResumPrevia() {
         return resum;
     }
 
+    public boolean isResumCompleto() {
+        return fuente == null;
+    }
+
     @Override
     public String toString() {
-        return "Faccion [ID=" + id + ", Nom=" + nom + "]\nResumen: " + resum;
+        return "Faccion [ID=" + id + ", Nom=" + nom + "]\nResumen: " + resum + (fuente == null ? "" : "...");
     }
 }
@@ -0,0 +1,14 @@
+package cat.iesesteveterradas.model;
+
+/**
+ * De donde lee una {@link Faccion} su resumen completo cuando solo se ha cargado
+ * el principio (ver {@link Faccion#getResum()}).
+ */
+@FunctionalInterface
+public interface FuenteResumenes {
+
+    /**
+     * @return El resumen completo de la faccion, o null si no tiene.
+     */
+    String resum(int idFaccion);
+}
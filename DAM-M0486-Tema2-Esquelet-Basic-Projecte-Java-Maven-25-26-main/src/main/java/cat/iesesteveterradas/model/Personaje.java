@@ -7,6 +7,7 @@ public class Personaje {
     private double defensa;
     private int idFaccion; 
     
+    // Solo si se ha fijado con setNomFaccion; si no, se busca en DiccionarioFacciones
     private String nomFaccion; 
 
     // Constructor
@@ -39,21 +40,35 @@ public class Personaje {
         return idFaccion;
     }
 
+    /**
+     * @return El nombre fijado con {@link #setNomFaccion}, o si no el de
+     *         {@link DiccionarioFacciones#getDefault()}; null si no se conoce.
+     */
     public String getNomFaccion() { 
-        return nomFaccion;
+        return nomFaccion != null ? nomFaccion : DiccionarioFacciones.getDefault().nombre(idFaccion);
     }
 
+    /**
+     * Fija el nombre de la faccion en lugar de buscarlo en el diccionario (por ejemplo,
+     * para datos que no vienen de la base de datos actual).
+     */
     public void setNomFaccion(String nomFaccion) { 
         this.nomFaccion = nomFaccion;
     }
 
     @Override
     public String toString() {
-        if (nomFaccion != null && !nomFaccion.isEmpty()) {
-            return "Personaje [ID=" + id + ", Nom=" + nom + ", Atac=" + atac + 
-                   ", Defensa=" + defensa + ", Faccion=" + nomFaccion + "]"; 
+        String faccion = getNomFaccion();
+        StringBuilder sb = new StringBuilder(80)
+            .append("Personaje [ID=").append(id)
+            .append(", Nom=").append(nom)
+            .append(", Atac=").append(atac)
+            .append(", Defensa=").append(defensa);
+        if (faccion != null && !faccion.isEmpty()) {
+            sb.append(", Faccion=").append(faccion);
+        } else {
+            sb.append(", ID Faccion=").append(idFaccion);
         }
-        return "Personaje [ID=" + id + ", Nom=" + nom + ", Atac=" + atac + 
-               ", Defensa=" + defensa + ", ID Faccion=" + idFaccion + "]";
+        return sb.append(']').toString();
     }
 }
\ No newline at end of file
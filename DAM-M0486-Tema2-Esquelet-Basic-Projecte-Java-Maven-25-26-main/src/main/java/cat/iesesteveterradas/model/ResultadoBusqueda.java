@@ -0,0 +1,45 @@
+package cat.iesesteveterradas.model;
+
+/**
+ * Una faccion encontrada en una busqueda de texto, con el trozo del resumen
+ * donde aparecen los terminos buscados.
+ */
+public class ResultadoBusqueda {
+    private final int id;
+    private final String nom;
+    private final String fragmento;
+    private final double puntuacion;
+
+    /**
+     * @param fragmento El trozo del resumen con los terminos marcados entre corchetes.
+     * @param puntuacion La relevancia (bm25); cuanto mas baja, mas relevante.
+     */
+    public ResultadoBusqueda(int id, String nom, String fragmento, double puntuacion) {
+        this.id = id;
+        this.nom = nom;
+        this.fragmento = fragmento;
+        this.puntuacion = puntuacion;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public String getFragmento() {
+        return fragmento;
+    }
+
+    public double getPuntuacion() {
+        return puntuacion;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoBusqueda [ID=" + id + ", Nom=" + nom + "] " + fragmento;
+    }
+}
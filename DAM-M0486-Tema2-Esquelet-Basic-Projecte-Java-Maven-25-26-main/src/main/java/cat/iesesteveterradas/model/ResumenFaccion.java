@@ -0,0 +1,78 @@
+package cat.iesesteveterradas.model;
+
+/**
+ * Resumen de los personajes de una faccion: numero de personajes y sumas de
+ * ataque y defensa (y de sus cuadrados, para la desviacion).
+ */
+public class ResumenFaccion {
+    private final int idFaccion;
+    private final int numPersonajes;
+    private final double sumaAtac;
+    private final double sumaDefensa;
+    private final double sumaAtac2;
+    private final double sumaDefensa2;
+
+    public ResumenFaccion(int idFaccion, int numPersonajes, double sumaAtac, double sumaDefensa,
+            double sumaAtac2, double sumaDefensa2) {
+        this.idFaccion = idFaccion;
+        this.numPersonajes = numPersonajes;
+        this.sumaAtac = sumaAtac;
+        this.sumaDefensa = sumaDefensa;
+        this.sumaAtac2 = sumaAtac2;
+        this.sumaDefensa2 = sumaDefensa2;
+    }
+
+    // Getters
+    public int getIdFaccion() {
+        return idFaccion;
+    }
+
+    public int getNumPersonajes() {
+        return numPersonajes;
+    }
+
+    public double getSumaAtac() {
+        return sumaAtac;
+    }
+
+    public double getSumaDefensa() {
+        return sumaDefensa;
+    }
+
+    public double getMediaAtac() {
+        return numPersonajes > 0 ? sumaAtac / numPersonajes : 0;
+    }
+
+    public double getMediaDefensa() {
+        return numPersonajes > 0 ? sumaDefensa / numPersonajes : 0;
+    }
+
+    /**
+     * @return La desviacion tipica muestral del ataque.
+     */
+    public double getDesviacionAtac() {
+        return desviacion(sumaAtac, sumaAtac2);
+    }
+
+    /**
+     * @return La desviacion tipica muestral de la defensa.
+     */
+    public double getDesviacionDefensa() {
+        return desviacion(sumaDefensa, sumaDefensa2);
+    }
+
+    private double desviacion(double suma, double suma2) {
+        if (numPersonajes < 2) {
+            return 0;
+        }
+        // Con sumas mantenidas de forma incremental puede quedar un negativo minimo por redondeo
+        double ss = suma2 - suma * suma / numPersonajes;
+        return ss > 0 ? Math.sqrt(ss / (numPersonajes - 1)) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumenFaccion [ID=" + idFaccion + ", N=" + numPersonajes
+            + ", Atac=" + getMediaAtac() + ", Defensa=" + getMediaDefensa() + "]";
+    }
+}
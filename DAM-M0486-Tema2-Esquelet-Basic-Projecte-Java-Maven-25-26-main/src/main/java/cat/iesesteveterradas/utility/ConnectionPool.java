@@ -0,0 +1,365 @@
+package cat.iesesteveterradas.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool limitat de connexions SQLite a un mateix arxiu.
+ * <p>
+ * Cada connexió física es crea un sol cop i es reutilitza entre préstecs.
+ * Les connexions prestades són envoltoris: cridar {@code close()} la retorna
+ * al pool en lloc de tancar-la, de manera que el codi existent amb
+ * try-with-resources continua funcionant igual.
+ * <p>
+ * Cada connexió física té la seva pròpia {@link StatementCache}, així que
+ * {@code conn.prepareStatement(sql)} només compila l'SQL el primer cop,
+ * i se li aplica el {@link TuningProfile} del pool en obrir-la.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /** Temps màxim d'espera per obtenir una connexió lliure. */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 30_000;
+
+    private final String filePath;
+    private final int maxSize;
+    private final int statementCacheSize;
+    private final TuningProfile profile;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+
+    // Protegits per 'this'
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final List<PooledConnection> all = new ArrayList<>();
+    private boolean closed;
+    private boolean reported;
+
+    /**
+     * Crea un pool buit. Les connexions físiques s'obren a mesura que es necessiten.
+     *
+     * @param filePath La ruta a l'arxiu de la base de dades.
+     * @param maxSize Nombre màxim de connexions simultànies.
+     * @param statementCacheSize Nombre màxim de statements en memòria cau per connexió (0 la desactiva).
+     */
+    public ConnectionPool(String filePath, int maxSize, int statementCacheSize) {
+        this(filePath, maxSize, statementCacheSize, TuningProfile.DRIVER_DEFAULT);
+    }
+
+    /**
+     * Crea un pool buit que aplica el perfil indicat a cada connexió física nova.
+     *
+     * @param filePath La ruta a l'arxiu de la base de dades.
+     * @param maxSize Nombre màxim de connexions simultànies.
+     * @param statementCacheSize Nombre màxim de statements en memòria cau per connexió (0 la desactiva).
+     * @param profile Els PRAGMA a aplicar a cada connexió.
+     */
+    public ConnectionPool(String filePath, int maxSize, int statementCacheSize, TuningProfile profile) {
+        this(filePath, maxSize, statementCacheSize, profile, DEFAULT_ACQUIRE_TIMEOUT_MS);
+    }
+
+    /**
+     * Com {@link #ConnectionPool(String, int, int, TuningProfile)}, amb un altre temps màxim d'espera.
+     *
+     * @param acquireTimeoutMs Temps màxim d'espera per obtenir una connexió lliure, en mil·lisegons.
+     */
+    ConnectionPool(String filePath, int maxSize, int statementCacheSize, TuningProfile profile, long acquireTimeoutMs) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("La mida del pool ha de ser positiva: " + maxSize);
+        }
+        this.filePath = filePath;
+        this.maxSize = maxSize;
+        this.statementCacheSize = statementCacheSize;
+        this.profile = profile;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Obté una connexió del pool, esperant si totes estan ocupades.
+     * <p>
+     * <b>IMPORTANT:</b> Cal tancar-la (preferiblement amb try-with-resources)
+     * per retornar-la al pool.
+     *
+     * @return Una connexió en préstec.
+     * @throws SQLException Si el pool està tancat, s'esgota el temps d'espera o falla la connexió.
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Temps d'espera esgotat obtenint una connexió a " + filePath);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interromput mentre s'esperava una connexió a " + filePath, e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            Connection lease = pooled.lease();
+            // Inclou l'espera per una connexió lliure i, si cal, obrir-ne una de nova
+            QueryMetrics.getDefault().recordAcquire(System.nanoTime() - start);
+            return lease;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Tanca totes les connexions físiques. Les connexions en préstec es tanquen
+     * quan es retornen.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (PooledConnection pooled : idle) {
+            pooled.closePhysical();
+        }
+        idle.clear();
+        logger.debug("Pool de {} tancat.", filePath);
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public TuningProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return Nombre de connexions físiques obertes actualment.
+     */
+    public synchronized int getOpenConnections() {
+        return all.size();
+    }
+
+    /**
+     * Si la connexió és un préstec d'un pool i té una transacció oberta, guarda
+     * l'acció per executar-la quan es confirmi. Si la transacció es desfà (o la
+     * connexió es retorna sense confirmar-la), l'acció es descarta.
+     *
+     * @param conn La connexió on s'ha fet l'escriptura.
+     * @param action El que s'ha de fer un cop confirmada.
+     * @return {@code false} si no és un préstec d'un pool: qui crida l'ha d'executar ara.
+     */
+    static boolean afterCommit(Connection conn, Runnable action) {
+        if (!Proxy.isProxyClass(conn.getClass())
+                || !(Proxy.getInvocationHandler(conn) instanceof LeaseHandler lease)) {
+            return false;
+        }
+        lease.afterCommit.add(action);
+        return true;
+    }
+
+    private synchronized PooledConnection takeIdle() throws SQLException {
+        if (closed) {
+            throw new SQLException("El pool de " + filePath + " està tancat.");
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (!pooled.physical.isClosed()) {
+                return pooled;
+            }
+            pooled.closePhysical();
+        }
+        return null;
+    }
+
+    private PooledConnection open() throws SQLException {
+        String url = "jdbc:sqlite:" + filePath;
+        Connection physical = DriverManager.getConnection(url);
+
+        logger.info("BBDD SQLite connectada a {}", filePath);
+        try {
+            profile.apply(physical);
+            // El report fa consultes: un cop per pool, amb la primera connexió física
+            if (claimReport()) {
+                logger.info("Perfil {} aplicat: {}", profile.getName(), TuningProfile.report(physical));
+                if (logger.isDebugEnabled()) {
+                    DatabaseMetaData meta = physical.getMetaData();
+                    logger.debug("BBDD driver: {}", meta.getDriverName());
+                }
+            }
+        } catch (SQLException e) {
+            physical.close();
+            throw e;
+        }
+
+        PooledConnection pooled = new PooledConnection(physical, new StatementCache(physical, statementCacheSize));
+        synchronized (this) {
+            all.add(pooled);
+        }
+        return pooled;
+    }
+
+    private synchronized boolean claimReport() {
+        if (reported) {
+            return false;
+        }
+        reported = true;
+        return true;
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean reusable;
+        try {
+            reusable = !pooled.physical.isClosed();
+            if (reusable) {
+                pooled.statements.returnAll();
+            }
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                // No deixem transaccions a mitges per al següent que la demani
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.warn("Connexió descartada en retornar-la al pool: {}", e.getMessage());
+            reusable = false;
+        }
+
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.addFirst(pooled);
+            } else {
+                pooled.closePhysical();
+            }
+        }
+        permits.release();
+    }
+
+    /**
+     * Connexió física amb la seva memòria cau de statements.
+     */
+    private final class PooledConnection {
+
+        private final Connection physical;
+        private final StatementCache statements;
+
+        PooledConnection(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new LeaseHandler(this));
+        }
+
+        void closePhysical() {
+            statements.clear();
+            try {
+                physical.close();
+                logger.info("DDBB SQLite desconnectada");
+            } catch (SQLException e) {
+                logger.error("Error en tancar la connexió: {}", e.getMessage());
+            }
+            synchronized (ConnectionPool.this) {
+                all.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Gestiona un préstec concret: {@code close()} retorna la connexió,
+     * {@code prepareStatement(String)} passa per la memòria cau i el que s'ha de
+     * fer després de confirmar la transacció s'executa en {@code commit()}.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private boolean returned;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        // release() desfà la transacció que quedi oberta
+                        afterCommit.clear();
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + filePath + (returned ? ", retornada]" : "]");
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("La connexió ja s'ha retornat al pool.");
+            }
+            if ("prepareStatement".equals(name) && args != null && args.length == 1) {
+                return pooled.statements.prepare((String) args[0]);
+            }
+            // setAutoCommit(true) confirma la transacció oberta
+            boolean commits = "commit".equals(name)
+                    || ("setAutoCommit".equals(name) && Boolean.TRUE.equals(args[0]) && !pooled.physical.getAutoCommit());
+            Object result;
+            try {
+                result = method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (commits) {
+                runAfterCommit();
+            } else if ("rollback".equals(name) && args == null) {
+                afterCommit.clear();
+            }
+            return result;
+        }
+
+        private void runAfterCommit() {
+            if (afterCommit.isEmpty()) {
+                return;
+            }
+            List<Runnable> actions = new ArrayList<>(afterCommit);
+            afterCommit.clear();
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+    }
+}
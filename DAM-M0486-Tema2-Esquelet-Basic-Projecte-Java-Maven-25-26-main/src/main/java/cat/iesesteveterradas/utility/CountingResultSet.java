@@ -0,0 +1,49 @@
+package cat.iesesteveterradas.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * Envolta un {@link ResultSet} per comptar les files llegides i sumar-les a
+ * {@link QueryMetrics} quan es tanca.
+ */
+final class CountingResultSet implements InvocationHandler {
+
+    private final ResultSet rs;
+    private final String sql;
+    private final QueryMetrics metrics;
+    private long rows;
+    private boolean closed;
+
+    private CountingResultSet(ResultSet rs, String sql, QueryMetrics metrics) {
+        this.rs = rs;
+        this.sql = sql;
+        this.metrics = metrics;
+    }
+
+    static ResultSet wrap(ResultSet rs, String sql, QueryMetrics metrics) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, new CountingResultSet(rs, sql, metrics));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("close") && !closed) {
+            closed = true;
+            metrics.addRows(sql, rows);
+        }
+        try {
+            Object result = method.invoke(rs, args);
+            if (name.equals("next") && Boolean.TRUE.equals(result)) {
+                rows++;
+            }
+            return result;
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package cat.iesesteveterradas.utility;
 
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,26 +32,114 @@ public class DatabaseManager {
     // Instància del logger de SLF4J per a aquesta classe.
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
 
+    /** Nombre màxim de connexions per arxiu al pool per defecte. */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    /** Nombre màxim de statements preparats en memòria cau per connexió. */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    // Un pool per arxiu de base de dades
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    // Latència, files i errors de cada consulta
+    private static final QueryMetrics metrics = QueryMetrics.getDefault();
+
+    // Qui vol saber quan canvia una taula (p.ex. memòries cau)
+    private static final List<TableChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Taula afectada per una escriptura: INSERT [OR x] INTO t, REPLACE INTO t, UPDATE [OR x] t, DELETE FROM t, DROP TABLE [IF EXISTS] t
+    private static final Pattern WRITE_TABLE = Pattern.compile(
+            "^\\s*(?:INSERT(?:\\s+OR\\s+\\w+)?\\s+INTO|REPLACE\\s+INTO|UPDATE(?:\\s+OR\\s+\\w+)?|DELETE\\s+FROM"
+                    + "|DROP\\s+TABLE(?:\\s+IF\\s+EXISTS)?)\\s+[\"`\\[]?(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+
     /**
-     * Estableix una connexió amb la base de dades SQLite.
+     * Obté una connexió amb la base de dades SQLite del pool de l'arxiu.
+     * <p>
+     * La connexió física només s'obre el primer cop; tancar la connexió
+     * retornada la torna al pool.
      *
      * @param filePath La ruta a l'arxiu de la base de dades (p.ex. "data/nor.db").
      * @return L'objecte Connection establert.
      * @throws SQLException Si hi ha un error en la connexió.
      */
     public static Connection connect(String filePath) throws SQLException {
-        String url = "jdbc:sqlite:" + filePath;
-        Connection conn = DriverManager.getConnection(url);
-        
-        logger.info("BBDD SQLite connectada a {}", filePath);
-        DatabaseMetaData meta = conn.getMetaData();
-        logger.info("BBDD driver: {}", meta.getDriverName());
-        
-        return conn;
+        return getPool(filePath).getConnection();
     }
 
     /**
-     * Tanca la connexió a la base de dades.
+     * Obté una connexió amb la base de dades SQLite aplicant un perfil d'ajust.
+     * <p>
+     * El perfil s'aplica a cada connexió física del pool de l'arxiu. Si el pool
+     * ja existia amb un altre perfil, es manté el primer (i es mostra un avís).
+     *
+     * @param filePath La ruta a l'arxiu de la base de dades (p.ex. "data/nor.db").
+     * @param profile Els PRAGMA a aplicar (p.ex. {@link TuningProfile#PERFORMANCE}).
+     * @return L'objecte Connection establert.
+     * @throws SQLException Si hi ha un error en la connexió.
+     */
+    public static Connection connect(String filePath, TuningProfile profile) throws SQLException {
+        return getPool(filePath, profile).getConnection();
+    }
+
+    /**
+     * Retorna el pool compartit de l'arxiu indicat, creant-lo si cal.
+     *
+     * @param filePath La ruta a l'arxiu de la base de dades.
+     * @return El pool de connexions de l'arxiu.
+     */
+    public static ConnectionPool getPool(String filePath) {
+        return pools.computeIfAbsent(filePath,
+                path -> new ConnectionPool(path, DEFAULT_POOL_SIZE, DEFAULT_STATEMENT_CACHE_SIZE));
+    }
+
+    /**
+     * Retorna el pool compartit de l'arxiu indicat, creant-lo amb el perfil si cal.
+     *
+     * @param filePath La ruta a l'arxiu de la base de dades.
+     * @param profile Els PRAGMA a aplicar a cada connexió.
+     * @return El pool de connexions de l'arxiu.
+     */
+    public static ConnectionPool getPool(String filePath, TuningProfile profile) {
+        ConnectionPool pool = pools.computeIfAbsent(filePath,
+                path -> new ConnectionPool(path, DEFAULT_POOL_SIZE, DEFAULT_STATEMENT_CACHE_SIZE, profile));
+        if (pool.getProfile() != profile) {
+            logger.warn("El pool de {} ja existeix amb el perfil {}; s'ignora {}.",
+                    filePath, pool.getProfile().getName(), profile.getName());
+        }
+        return pool;
+    }
+
+    /**
+     * Tanca tots els pools i les seves connexions físiques.
+     * Cal cridar-lo en acabar l'aplicació.
+     */
+    public static void closePools() {
+        for (ConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    /**
+     * Registra un listener que rebrà un avís després de cada escriptura feta amb
+     * {@link #queryUpdate}, {@link #queryUpdatePS} o {@link #executeBatch}.
+     * <p>
+     * Si l'escriptura es fa dins d'una transacció d'una connexió del pool, l'avís
+     * arriba quan es confirma; si es desfà, no arriba.
+     *
+     * @param listener El listener a afegir.
+     */
+    public static void addTableChangeListener(TableChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeTableChangeListener(TableChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tanca la connexió a la base de dades (o la retorna al pool si és prestada).
      * <p>
      * <b>Nota:</b> És millor pràctica usar try-with-resources en lloc de cridar aquest mètode.
      *
@@ -51,7 +149,6 @@ public class DatabaseManager {
         if (conn != null) {
             try {
                 conn.close();
-                logger.info("DDBB SQLite desconnectada");
             } catch (SQLException e) {
                 logger.error("Error en tancar la connexió: {}", e.getMessage());
             }
@@ -73,7 +170,9 @@ public class DatabaseManager {
                 tables.add(rs.getString("TABLE_NAME"));
             }
         }
-        logger.debug("S'han trobat {} taules.", tables.size());
+        if (logger.isDebugEnabled()) {
+            logger.debug("S'han trobat {} taules.", tables.size());
+        }
         return tables;
     }
 
@@ -93,12 +192,19 @@ public class DatabaseManager {
      * @throws SQLException Si hi ha un error de base de dades.
      */
     public static int queryUpdate(Connection conn, String sql) throws SQLException {
+        long start = metrics.start();
+        int affectedRows = -1;
         // Utilitza try-with-resources per tancar el Statement automàticament
         try (Statement stmt = conn.createStatement()) {
-            int affectedRows = stmt.executeUpdate(sql);
-            logger.debug("Executada queryUpdate. Files afectades: {}. SQL: {}", affectedRows, sql);
-            return affectedRows;
+            affectedRows = stmt.executeUpdate(sql);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executada queryUpdate. Files afectades: {}. SQL: {}", affectedRows, sql);
+            }
+        } finally {
+            metrics.record(sql, start, affectedRows, affectedRows < 0);
         }
+        notifyChange(conn, sql);
+        return affectedRows;
     }
 
     // =================================================================
@@ -116,14 +222,114 @@ public class DatabaseManager {
      * @throws SQLException Si hi ha un error de base de dades.
      */
     public static int queryUpdatePS(Connection conn, String sql, Object... params) throws SQLException {
+        long start = metrics.start();
+        int affectedRows = -1;
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            for (int i = 0; i < params.length; i++) {
-                pstmt.setObject(i + 1, params[i]); 
+            bind(pstmt, params);
+            affectedRows = pstmt.executeUpdate();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executada queryUpdatePS. Files afectades: {}. SQL: {}", affectedRows, sql);
             }
-            int affectedRows = pstmt.executeUpdate();
-            logger.debug("Executada queryUpdatePS. Files afectades: {}. SQL: {}", affectedRows, sql);
-            return affectedRows;
+        } finally {
+            metrics.record(sql, start, affectedRows, affectedRows < 0);
+        }
+        if (affectedRows > 0) {
+            notifyChange(conn, sql);
         }
+        return affectedRows;
+    }
+
+    /**
+     * Executa la mateixa consulta d'actualització (normalment INSERT) per a moltes
+     * files usant {@code addBatch}/{@code executeBatch}.
+     * <p>
+     * Si la connexió està en mode autocommit, les files s'envien i es confirmen
+     * en transaccions de {@code chunkSize} files, de manera que no hi ha un fsync
+     * per fila i el bloqueig de l'arxiu s'allibera entre blocs. Si falla un bloc,
+     * es desfà només aquell bloc (els anteriors ja estan confirmats).
+     * <p>
+     * Si la connexió ja té una transacció oberta (autocommit desactivat), no es fa
+     * cap commit ni rollback: la transacció és responsabilitat de qui crida.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @param rows Els paràmetres de cada fila (en ordre). Es recorren una sola vegada.
+     * @param chunkSize Nombre de files per lot i per transacció.
+     * @return El nombre total de files afectades.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static long executeBatch(Connection conn, String sql, Iterable<Object[]> rows, int chunkSize) throws SQLException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("La mida del lot ha de ser positiva: " + chunkSize);
+        }
+        boolean ownTransaction = conn.getAutoCommit();
+        if (ownTransaction) {
+            conn.setAutoCommit(false);
+        }
+        long start = metrics.start();
+        boolean failed = true;
+        long total = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            try {
+                int pending = 0;
+                for (Object[] row : rows) {
+                    bind(pstmt, row);
+                    pstmt.addBatch();
+                    if (++pending == chunkSize) {
+                        total += flushBatch(conn, pstmt, ownTransaction);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    total += flushBatch(conn, pstmt, ownTransaction);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Les files ja afegides al lot no s'han d'enviar amb el proper ús de l'statement
+                try {
+                    pstmt.clearBatch();
+                } catch (SQLException clearError) {
+                    e.addSuppressed(clearError);
+                }
+                throw e;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executat executeBatch. Files afectades: {}. SQL: {}", total, sql);
+            }
+            failed = false;
+            return total;
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            logger.error("Error executant executeBatch: {}", e.getMessage());
+            throw e;
+        } finally {
+            metrics.record(sql, start, total, failed);
+            if (ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+            // També si ha fallat a mitges: els blocs anteriors ja estan confirmats
+            if (total > 0) {
+                notifyChange(conn, sql);
+            }
+        }
+    }
+
+    private static long flushBatch(Connection conn, PreparedStatement pstmt, boolean commit) throws SQLException {
+        long affected = 0;
+        for (int count : pstmt.executeBatch()) {
+            // Alguns drivers retornen SUCCESS_NO_INFO (-2) en lloc del nombre de files
+            affected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        pstmt.clearBatch();
+        if (commit) {
+            conn.commit();
+        }
+        return affected;
     }
 
     /**
@@ -132,6 +338,10 @@ public class DatabaseManager {
      * <b>IMPORTANT:</b> Qui cridi aquest mètode ÉS RESPONSABLE DE TANCAR
      * el {@link ResultSet} retornat!
      * Es recomana fer-ho sempre amb un bloc <b>try-with-resources</b>.
+     * En tancar el ResultSet també es tanca el PreparedStatement que l'ha generat.
+     * <p>
+     * Per a codi nou és preferible {@link #queryForEach}, {@link #queryList}
+     * o {@link #queryStream}, que ho tanquen tot automàticament.
      *
      * @param conn La connexió a la BBDD.
      * @param sql La consulta SQL amb marcadors de posició '?'.
@@ -140,19 +350,294 @@ public class DatabaseManager {
      * @throws SQLException Si hi ha un error de base de dades.
      */
     public static ResultSet querySelectPS(Connection conn, String sql, Object... params) throws SQLException {
+        long start = metrics.start();
         PreparedStatement pstmt = conn.prepareStatement(sql);
         try {
-            for (int i = 0; i < params.length; i++) {
-                pstmt.setObject(i + 1, params[i]);
-            }
-            logger.debug("Executant querySelectPS. SQL: {}", sql);
-            return pstmt.executeQuery();
-        } catch (SQLException e) {
-            if (pstmt != null) {
-                pstmt.close();
+            bind(pstmt, params);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executant querySelectPS. SQL: {}", sql);
             }
+            ResultSet rs = pstmt.executeQuery();
+            // Així el PreparedStatement no queda orfe quan el cridador tanca el ResultSet
+            pstmt.closeOnCompletion();
+            // La latència és la de l'execució; les files es compten quan el cridador tanca el ResultSet
+            metrics.record(sql, start, -1, false);
+            return start == 0 ? rs : CountingResultSet.wrap(rs, sql, metrics);
+        } catch (SQLException | RuntimeException e) {
+            // També si el driver rebutja un paràmetre amb una excepció no comprovada
+            metrics.record(sql, start, -1, true);
+            pstmt.close();
             logger.error("Error executant querySelectPS: {}", e.getMessage(), e);
             throw e; 
         }
     }
-}
\ No newline at end of file
+
+    // =================================================================
+    // MÈTODES AMB TANCAMENT AUTOMÀTIC (ResultSet i PreparedStatement)
+    // =================================================================
+
+    /**
+     * Executa una consulta de selecció i crida el callback per a cada fila.
+     * <p>
+     * El ResultSet i el PreparedStatement es tanquen en acabar, fins i tot si
+     * el callback llança una excepció. No es crea cap llista intermèdia.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @param callback El codi a executar per a cada fila.
+     * @param params Els paràmetres per a la consulta (en ordre).
+     * @return El nombre de files processades.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static int queryForEach(Connection conn, String sql, RowCallback callback, Object... params) throws SQLException {
+        return queryForEach(conn, sql, 0, callback, params);
+    }
+
+    /**
+     * Com {@link #queryForEach(Connection, String, RowCallback, Object...)}, però
+     * indicant al driver quantes files ha de portar de cop.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @param fetchSize Files per lectura del driver (0 = el valor per defecte del driver).
+     * @param callback El codi a executar per a cada fila.
+     * @param params Els paràmetres per a la consulta (en ordre).
+     * @return El nombre de files processades.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static int queryForEach(Connection conn, String sql, int fetchSize, RowCallback callback, Object... params) throws SQLException {
+        long start = metrics.start();
+        int rows = 0;
+        boolean failed = true;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bind(pstmt, params);
+            if (fetchSize > 0) {
+                pstmt.setFetchSize(fetchSize);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executant queryForEach. SQL: {}", sql);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.accept(rs);
+                    rows++;
+                }
+            } finally {
+                if (fetchSize > 0) {
+                    // El statement pot tornar a la memòria cau: que no el condicioni per a la propera
+                    pstmt.setFetchSize(0);
+                }
+            }
+            failed = false;
+            return rows;
+        } finally {
+            metrics.record(sql, start, rows, failed);
+        }
+    }
+
+    /**
+     * Executa una consulta de selecció i converteix totes les files en una llista.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @param mapper Converteix cada fila en un objecte.
+     * @param params Els paràmetres per a la consulta (en ordre).
+     * @return La llista d'objectes, buida si no hi ha resultats.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static <T> List<T> queryList(Connection conn, String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> result = new ArrayList<>();
+        queryForEach(conn, sql, rs -> result.add(mapper.map(rs)), params);
+        return result;
+    }
+
+    /**
+     * Llegeix una pàgina amb paginació per clau (keyset): la consulta ha de ser de la forma
+     * {@code ... WHERE clau > ? ORDER BY clau LIMIT ?}. Els dos últims paràmetres que
+     * s'afegeixen són la darrera clau de la pàgina anterior i la mida de pàgina.
+     * <p>
+     * Cada pàgina és una consulta curta que fa servir l'índex de la clau: no cal
+     * recórrer les pàgines anteriors (com amb OFFSET) ni mantenir oberta una
+     * transacció de lectura entre pàgines.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL; els dos últims '?' són la clau i el LIMIT.
+     * @param mapper Converteix cada fila en un objecte.
+     * @param despresDe La clau de la darrera fila de la pàgina anterior.
+     * @param midaPagina El nombre màxim de files de la pàgina (també és el fetch size).
+     * @param params Els paràmetres anteriors de la consulta (en ordre), si n'hi ha.
+     * @return Les files de la pàgina; si n'hi ha menys de {@code midaPagina}, és l'última.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static <T> List<T> queryPage(Connection conn, String sql, RowMapper<T> mapper,
+            Object despresDe, int midaPagina, Object... params) throws SQLException {
+        if (midaPagina <= 0) {
+            throw new IllegalArgumentException("La mida de pàgina ha de ser positiva: " + midaPagina);
+        }
+        Object[] all = Arrays.copyOf(params, params.length + 2);
+        all[params.length] = despresDe;
+        all[params.length + 1] = midaPagina;
+        List<T> result = new ArrayList<>(midaPagina);
+        queryForEach(conn, sql, midaPagina, rs -> result.add(mapper.map(rs)), all);
+        return result;
+    }
+
+    /**
+     * Executa una consulta de selecció i retorna només la primera fila.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @param mapper Converteix la fila en un objecte.
+     * @param params Els paràmetres per a la consulta (en ordre).
+     * @return La primera fila convertida, o buit si no hi ha resultats.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static <T> Optional<T> queryFirst(Connection conn, String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        long start = metrics.start();
+        int rows = 0;
+        boolean failed = true;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bind(pstmt, params);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executant queryFirst. SQL: {}", sql);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rows = rs.next() ? 1 : 0;
+                Optional<T> result = rows == 1 ? Optional.ofNullable(mapper.map(rs)) : Optional.empty();
+                failed = false;
+                return result;
+            }
+        } finally {
+            metrics.record(sql, start, rows, failed);
+        }
+    }
+
+    /**
+     * Executa una consulta de selecció i retorna les files com un {@link Stream} lazy.
+     * <p>
+     * Les files es llegeixen de la BBDD a mesura que el Stream les consumeix.
+     * El ResultSet i el PreparedStatement es tanquen quan s'exhaureix el Stream
+     * o quan es tanca.
+     * <p>
+     * <b>IMPORTANT:</b> Si el Stream no es consumeix sencer cal tancar-lo,
+     * preferiblement amb <b>try-with-resources</b>.
+     * Els errors de BBDD durant el recorregut es llancen com a {@link UncheckedSQLException}.
+     *
+     * @param conn La connexió a la BBDD.
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @param mapper Converteix cada fila en un objecte.
+     * @param params Els paràmetres per a la consulta (en ordre).
+     * @return Un Stream seqüencial amb les files convertides.
+     * @throws SQLException Si hi ha un error executant la consulta.
+     */
+    public static <T> Stream<T> queryStream(Connection conn, String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        long start = metrics.start();
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        ResultSet rs;
+        try {
+            bind(pstmt, params);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Executant queryStream. SQL: {}", sql);
+            }
+            rs = pstmt.executeQuery();
+            metrics.record(sql, start, -1, false);
+        } catch (SQLException | RuntimeException e) {
+            metrics.record(sql, start, -1, true);
+            pstmt.close();
+            logger.error("Error executant queryStream: {}", e.getMessage(), e);
+            throw e;
+        }
+        RowSpliterator<T> rows = new RowSpliterator<>(pstmt, rs, mapper, sql);
+        return StreamSupport.stream(rows, false).onClose(rows::close);
+    }
+
+    private static void notifyChange(Connection conn, String sql) throws SQLException {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Matcher m = WRITE_TABLE.matcher(sql);
+        if (!m.find()) {
+            return;
+        }
+        String table = m.group(1);
+        // Dins d'una transacció, que ningú torni a llegir abans que el canvi sigui visible
+        if (!conn.getAutoCommit() && ConnectionPool.afterCommit(conn, () -> notifyListeners(table, sql))) {
+            return;
+        }
+        notifyListeners(table, sql);
+    }
+
+    private static void notifyListeners(String table, String sql) {
+        for (TableChangeListener listener : listeners) {
+            try {
+                listener.tableChanged(table, sql);
+            } catch (RuntimeException e) {
+                logger.error("Error en un TableChangeListener: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            pstmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * Recorre un ResultSet fila a fila i ho tanca tot en acabar.
+     */
+    private static final class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final PreparedStatement pstmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private final String sql;
+        private long rows;
+        private boolean closed;
+
+        RowSpliterator(PreparedStatement pstmt, ResultSet rs, RowMapper<T> mapper, String sql) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.pstmt = pstmt;
+            this.rs = rs;
+            this.mapper = mapper;
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                rows++;
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new UncheckedSQLException(e);
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            metrics.addRows(sql, rows);
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                logger.warn("Error en tancar el ResultSet de queryStream: {}", e.getMessage());
+            }
+            try {
+                pstmt.close();
+            } catch (SQLException e) {
+                logger.warn("Error en tancar el PreparedStatement de queryStream: {}", e.getMessage());
+            }
+        }
+    }
+}
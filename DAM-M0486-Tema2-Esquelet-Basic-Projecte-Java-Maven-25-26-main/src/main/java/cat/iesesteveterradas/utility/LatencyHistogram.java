@@ -0,0 +1,94 @@
+package cat.iesesteveterradas.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latències amb intervals log-lineals (a l'estil d'HdrHistogram).
+ * <p>
+ * Cada potència de 2 es divideix en {@value #SUB_BUCKETS} intervals iguals, així que
+ * l'error relatiu de qualsevol percentil és com a molt d'un 3% (1/32), des d'1 ns
+ * fins a centenars d'anys. Ocupa una mida fixa (uns 15 KB) i enregistrar un valor
+ * és un increment atòmic sense bloquejos.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Exponents de 5 a 62 (Long.MAX_VALUE) més el primer tram lineal [0, 32)
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Enregistra un valor (normalment nanosegons). Els valors negatius compten com a 0.
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @param percentile Entre 0 i 100.
+     * @return El límit superior de l'interval on cau el percentil (mai més gran que el màxim),
+     *         o 0 si no hi ha cap valor.
+     */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lower = (1L << exp) + (sub << (exp - SUB_BUCKET_BITS));
+        return lower + (1L << (exp - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,323 @@
+package cat.iesesteveterradas.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lectura de fitxers de text línia a línia sense carregar-los sencers en memòria.
+ * <p>
+ * Les línies es llegeixen d'un {@link FileChannel} mapat a memòria per finestres
+ * de {@link #DEFAULT_WINDOW_SIZE} bytes, i cada línia es descodifica quan es
+ * demana: la primera surt de seguida i la memòria no creix amb la mida del fitxer.
+ * <p>
+ * Un fitxer es pot dividir en trossos ({@link Chunk}) que comencen i acaben en un
+ * salt de línia, per processar-los en paral·lel ({@link #parallelLines}).
+ * <p>
+ * Com {@link Files#readAllLines}, el separador és {@code \n}, {@code \r\n} o un
+ * {@code \r} sol, i no hi ha línia buida després de l'últim salt. A diferència d'aquest, els bytes que no són
+ * vàlids al joc de caràcters es substitueixen per U+FFFD en lloc de llançar una excepció.
+ * Per als jocs de caràcters on {@code \n} no és el byte 0x0A (UTF-16, UTF-32...) es
+ * llegeix amb un {@link java.io.BufferedReader} normal, sense mapar ni dividir.
+ */
+public final class LineReader {
+
+    /** Mida de cada finestra mapada a memòria. */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    // Per sota d'aquesta mida no val la pena dividir el fitxer
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private static final int SCAN_BUFFER = 8 * 1024;
+
+    private LineReader() {
+    }
+
+    /**
+     * Tros d'un fitxer: els bytes de {@code start} (inclòs) a {@code end} (exclòs).
+     * Comença al principi d'una línia i acaba després d'un salt de línia (o al final del fitxer).
+     */
+    public static final class Chunk {
+        private final long start;
+        private final long end;
+
+        public Chunk(long start, long end) {
+            if (start < 0 || end < start) {
+                throw new IllegalArgumentException("Tros no vàlid: [" + start + ", " + end + ")");
+            }
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long size() {
+            return end - start;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk [" + start + ", " + end + ")";
+        }
+    }
+
+    /**
+     * Llegeix les línies del fitxer de manera mandrosa.
+     * <p>
+     * El Stream s'ha de tancar (try-with-resources) per alliberar el fitxer.
+     *
+     * @param path El fitxer a llegir.
+     * @param charset El joc de caràcters del fitxer.
+     * @return Les línies, en ordre.
+     * @throws IOException Si no es pot obrir el fitxer.
+     */
+    public static Stream<String> lines(Path path, Charset charset) throws IOException {
+        if (!isAsciiCompatible(charset)) {
+            return Files.newBufferedReader(path, charset).lines();
+        }
+        return lines(path, new Chunk(0, Files.size(path)), charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Llegeix de manera mandrosa les línies d'un tros del fitxer (vegeu {@link #split}).
+     *
+     * @param path El fitxer a llegir.
+     * @param chunk El tros a llegir.
+     * @param charset El joc de caràcters del fitxer; ha de codificar {@code \n} com el byte 0x0A.
+     * @return Les línies del tros, en ordre.
+     * @throws IOException Si no es pot obrir el fitxer.
+     */
+    public static Stream<String> lines(Path path, Chunk chunk, Charset charset) throws IOException {
+        requireAsciiCompatible(charset);
+        return lines(path, chunk, charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    static Stream<String> lines(Path path, Chunk chunk, Charset charset, int windowSize) throws IOException {
+        ChunkLines it = new ChunkLines(FileChannel.open(path, StandardOpenOption.READ), chunk, charset, windowSize);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(it::close);
+    }
+
+    /**
+     * Divideix el fitxer en com a molt {@code parts} trossos de mida semblant, cadascun
+     * començant al principi d'una línia. Els trossos són consecutius i cobreixen tot el fitxer.
+     * Només es talla després d'un {@code \n}: un fitxer amb salts {@code \r} sols queda en un tros.
+     *
+     * @param path El fitxer a dividir.
+     * @param parts El nombre de trossos desitjat.
+     * @return Els trossos, en ordre (un de sol si el fitxer és petit).
+     * @throws IOException Si no es pot llegir el fitxer.
+     */
+    public static List<Chunk> split(Path path, int parts) throws IOException {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("El nombre de trossos ha de ser positiu: " + parts);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int n = (int) Math.max(1, Math.min(parts, size / MIN_CHUNK_SIZE));
+            List<Chunk> chunks = new ArrayList<>(n);
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+            long start = 0;
+            for (int k = 1; k < n && start < size; k++) {
+                long end = nextLineStart(channel, Math.max(start, size / n * k), size, buffer);
+                if (end > start) {
+                    chunks.add(new Chunk(start, end));
+                    start = end;
+                }
+            }
+            if (start < size || chunks.isEmpty()) {
+                chunks.add(new Chunk(start, size));
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * Llegeix les línies del fitxer dividit en trossos que es processen en paral·lel.
+     * El Stream és paral·lel però ordenat: {@code forEachOrdered} i {@code collect}
+     * mantenen l'ordre del fitxer.
+     *
+     * @param path El fitxer a llegir.
+     * @param charset El joc de caràcters del fitxer; ha de codificar {@code \n} com el byte 0x0A.
+     * @param parts El nombre de trossos (normalment el nombre de processadors).
+     * @return Les línies de tot el fitxer.
+     * @throws IOException Si no es pot llegir el fitxer.
+     */
+    public static Stream<String> parallelLines(Path path, Charset charset, int parts) throws IOException {
+        requireAsciiCompatible(charset);
+        return split(path, parts).parallelStream().flatMap(chunk -> {
+            try {
+                return lines(path, chunk, charset, DEFAULT_WINDOW_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * @return La posició següent al primer {@code \n} a partir de {@code from}, o {@code size} si no n'hi ha.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer buffer) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * @return Si el joc de caràcters codifica {@code \r} i {@code \n} com els bytes ASCII
+     *         (i per tant es pot tallar pels bytes 0x0A sense descodificar).
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        return Arrays.equals("\r\n".getBytes(charset), new byte[] { '\r', '\n' });
+    }
+
+    private static void requireAsciiCompatible(Charset charset) {
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException("No es pot dividir un fitxer en " + charset + " pels salts de línia.");
+        }
+    }
+
+    /**
+     * Recorre les línies d'un tros mapant-lo a memòria per finestres. Les línies que
+     * travessen dues finestres es copien a un buffer que es reutilitza.
+     */
+    private static final class ChunkLines implements Iterator<String>, Closeable {
+        private final FileChannel channel;
+        private final Charset charset;
+        private final long end;
+        private final int windowSize;
+
+        private long position;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private byte[] line = new byte[256];
+        private String next;
+
+        ChunkLines(FileChannel channel, Chunk chunk, Charset charset, int windowSize) {
+            this.channel = channel;
+            this.charset = charset;
+            this.position = chunk.getStart();
+            this.end = chunk.getEnd();
+            this.windowSize = windowSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && position < end) {
+                try {
+                    next = readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        private String readLine() throws IOException {
+            int length = 0;
+            byte separator = 0;
+            while (true) {
+                mapWindow();
+                int from = (int) (position - windowStart);
+                int limit = window.limit();
+                int i = from;
+                while (i < limit && window.get(i) != '\n' && window.get(i) != '\r') {
+                    i++;
+                }
+                int n = i - from;
+                if (length + n > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + n));
+                }
+                window.get(from, line, length, n);
+                length += n;
+                position = windowStart + i;
+                if (i < limit) {
+                    // Salt de línia trobat
+                    separator = window.get(i);
+                    position++;
+                    break;
+                }
+                if (position >= end) {
+                    // Última línia sense salt
+                    break;
+                }
+            }
+            // Un \r seguit de \n és un sol salt; el \n pot ser a la finestra següent
+            if (separator == '\r' && position < end) {
+                mapWindow();
+                if (window.get((int) (position - windowStart)) == '\n') {
+                    position++;
+                }
+            }
+            return new String(line, 0, length, charset);
+        }
+
+        /**
+         * Mapa una finestra nova a partir de {@code position} si l'actual no la conté.
+         */
+        private void mapWindow() throws IOException {
+            if (window == null || position >= windowStart + window.limit()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, end - position));
+            }
+        }
+
+        @Override
+        public void close() {
+            window = null;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package cat.iesesteveterradas.utility;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Memòria cau en memòria limitada per mida (LRU) i per temps de vida (TTL).
+ * <p>
+ * És segura entre fils (tots els accessos estan sincronitzats). Els valors
+ * es carreguen fora del bloqueig, així que dues crides simultànies a
+ * {@link #getOrLoad} amb la mateixa clau poden carregar-la dues vegades;
+ * a canvi, una consulta lenta no bloqueja la resta de claus.
+ *
+ * @param <K> El tipus de la clau.
+ * @param <V> El tipus del valor.
+ */
+public class LruCache<K, V> {
+
+    /**
+     * Carrega el valor d'una clau que no és a la memòria cau.
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+
+    // Protegits per 'this'
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private long generation;
+
+    /**
+     * @param name Nom de la memòria cau (per a les estadístiques).
+     * @param maxSize Nombre màxim d'entrades.
+     * @param ttl Temps de vida de cada entrada; {@code null} o zero vol dir sense caducitat.
+     */
+    public LruCache(String name, int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("La mida de la memòria cau ha de ser positiva: " + maxSize);
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return El valor de la clau, o {@code null} si no hi és o ha caducat.
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired(System.nanoTime())) {
+            hits++;
+            return entry.value;
+        }
+        if (entry != null) {
+            entries.remove(key);
+            evictions++;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, expiry()));
+    }
+
+    /**
+     * Retorna el valor de la clau, carregant-lo amb el loader si no hi és (read-through).
+     * <p>
+     * Si la memòria cau s'invalida mentre es carrega, el valor carregat es retorna
+     * però no es desa, per no tornar a posar dades velles.
+     *
+     * @param key La clau a consultar.
+     * @param loader Com carregar el valor si cal (p.ex. una consulta a la BBDD).
+     * @return El valor (de la memòria cau o acabat de carregar).
+     * @throws SQLException Si el loader falla.
+     */
+    public V getOrLoad(K key, Loader<K, V> loader) throws SQLException {
+        long loadGeneration;
+        synchronized (this) {
+            V cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+            loadGeneration = generation;
+        }
+        V value = loader.load(key);
+        synchronized (this) {
+            if (value != null && loadGeneration == generation) {
+                entries.put(key, new Entry<>(value, expiry()));
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Elimina totes les entrades la clau de les quals compleix la condició.
+     */
+    public synchronized void invalidateIf(Predicate<K> condition) {
+        generation++;
+        int before = entries.size();
+        entries.keySet().removeIf(condition);
+        invalidations += before - entries.size();
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return Proporció d'encerts entre 0 i 1 (0 si encara no s'ha consultat).
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s [mida=%d/%d, encerts=%d, errades=%d, ràtio=%.2f, expulsions=%d, invalidacions=%d]",
+                name, entries.size(), maxSize, hits, misses, getHitRatio(), evictions, invalidations);
+    }
+
+    private long expiry() {
+        return ttlNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + ttlNanos;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt > 0;
+        }
+    }
+}
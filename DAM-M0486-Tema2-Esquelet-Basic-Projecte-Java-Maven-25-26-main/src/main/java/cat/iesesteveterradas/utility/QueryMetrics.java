@@ -0,0 +1,344 @@
+package cat.iesesteveterradas.utility;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Mètriques de les consultes de {@link DatabaseManager}: latència, files i errors
+ * per empremta SQL, i temps d'espera de les connexions del pool.
+ * <p>
+ * L'empremta d'una consulta és el seu SQL amb els espais normalitzats i els literals
+ * (números i cadenes) substituïts per '?', de manera que totes les execucions d'una
+ * mateixa consulta es compten juntes. Les latències es guarden en un
+ * {@link LatencyHistogram} per empremta.
+ * <p>
+ * Les consultes que triguen més del llindar es registren amb WARN. Les mètriques es
+ * poden consultar per JMX ({@link #registerMBean()}), demanar en text o JSON, o
+ * bolcar periòdicament al log ({@link #startPeriodicDump}).
+ * <p>
+ * Desactivades ({@link #setEnabled(boolean)}) no costen res més que una lectura
+ * d'un camp volatile per consulta.
+ */
+public final class QueryMetrics implements QueryMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryMetrics.class);
+
+    /** Nom JMX amb què es registra la instància per defecte. */
+    public static final String OBJECT_NAME = "cat.iesesteveterradas:type=QueryMetrics";
+
+    /** Llindar per defecte de consulta lenta. */
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 200;
+
+    // Màxim d'SQL diferents recordats; més enllà es calcula l'empremta cada cop
+    private static final int MAX_SQL_CACHE = 10_000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final QueryMetrics DEFAULT = new QueryMetrics();
+
+    private volatile boolean enabled = true;
+    private volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+
+    private final Map<String, Entry> byFingerprint = new ConcurrentHashMap<>();
+    // SQL tal com arriba -> entrada de la seva empremta (evita normalitzar a cada crida)
+    private final Map<String, Entry> bySql = new ConcurrentHashMap<>();
+    private volatile LatencyHistogram acquire = new LatencyHistogram();
+    private final LongAdder slowQueries = new LongAdder();
+
+    private ScheduledExecutorService dumper;
+
+    /**
+     * @return Les mètriques que fan servir {@link DatabaseManager} i {@link ConnectionPool}.
+     */
+    public static QueryMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    // =================================================================
+    // ENREGISTRAMENT (cridat per DatabaseManager i ConnectionPool)
+    // =================================================================
+
+    /**
+     * @return L'instant d'inici a passar a {@link #record}, o 0 si les mètriques estan desactivades.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Enregistra una execució iniciada amb {@link #start()}.
+     *
+     * @param sql L'SQL executat.
+     * @param start El valor retornat per {@link #start()}.
+     * @param rows Files retornades o afectades (negatiu si no se sap).
+     * @param failed Si ha acabat amb error.
+     */
+    void record(String sql, long start, long rows, boolean failed) {
+        if (start == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        Entry entry = entry(sql);
+        entry.latency.record(elapsed);
+        if (rows > 0) {
+            entry.rows.add(rows);
+        }
+        if (failed) {
+            entry.errors.increment();
+        }
+        if (elapsed >= slowQueryThresholdNanos) {
+            slowQueries.increment();
+            logger.warn("Consulta lenta ({} ms, {} files): {}", elapsed / 1_000_000, rows, sql);
+        }
+    }
+
+    /**
+     * Suma files a una consulta ja enregistrada (per als ResultSet que es llegeixen després).
+     */
+    void addRows(String sql, long rows) {
+        if (enabled && rows > 0) {
+            entry(sql).rows.add(rows);
+        }
+    }
+
+    void recordAcquire(long nanos) {
+        if (enabled) {
+            acquire.record(nanos);
+        }
+    }
+
+    private Entry entry(String sql) {
+        Entry entry = bySql.get(sql);
+        if (entry == null) {
+            entry = byFingerprint.computeIfAbsent(fingerprint(sql), Entry::new);
+            if (bySql.size() < MAX_SQL_CACHE) {
+                bySql.put(sql, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return L'SQL amb els espais normalitzats i els literals substituïts per '?'.
+     */
+    static String fingerprint(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return s.endsWith(";") ? s.substring(0, s.length() - 1).trim() : s;
+    }
+
+    // =================================================================
+    // CONSULTA
+    // =================================================================
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long getTotalQueries() {
+        long total = 0;
+        for (Entry entry : byFingerprint.values()) {
+            total += entry.latency.getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalErrors() {
+        long total = 0;
+        for (Entry entry : byFingerprint.values()) {
+            total += entry.errors.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getSlowQueries() {
+        return slowQueries.sum();
+    }
+
+    @Override
+    public List<QueryStats> getQueries() {
+        List<QueryStats> result = new ArrayList<>(byFingerprint.size());
+        for (Entry entry : byFingerprint.values()) {
+            result.add(entry.snapshot());
+        }
+        result.sort(Comparator.comparingDouble(QueryStats::getTotalMillis).reversed());
+        return result;
+    }
+
+    @Override
+    public QueryStats getConnectionAcquire() {
+        return QueryStats.of("<connection acquire>", acquire, 0, 0);
+    }
+
+    /**
+     * Esborra totes les mètriques. Les execucions en curs poden quedar comptades a mitges.
+     */
+    @Override
+    public void reset() {
+        bySql.clear();
+        byFingerprint.clear();
+        acquire = new LatencyHistogram();
+        slowQueries.reset();
+    }
+
+    @Override
+    public String dumpText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Consultes: ").append(getTotalQueries())
+          .append(", errors: ").append(getTotalErrors())
+          .append(", lentes (>= ").append(getSlowQueryThresholdMillis()).append(" ms): ").append(getSlowQueries())
+          .append('\n');
+        sb.append(getConnectionAcquire()).append('\n');
+        for (QueryStats stats : getQueries()) {
+            sb.append(stats).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String dumpJson() {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = new JsonFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeNumberField("totalQueries", getTotalQueries());
+            json.writeNumberField("totalErrors", getTotalErrors());
+            json.writeNumberField("slowQueries", getSlowQueries());
+            json.writeNumberField("slowQueryThresholdMillis", getSlowQueryThresholdMillis());
+            json.writeFieldName("connectionAcquire");
+            writeJson(json, getConnectionAcquire());
+            json.writeArrayFieldStart("queries");
+            for (QueryStats stats : getQueries()) {
+                writeJson(json, stats);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            // Un StringWriter no falla mai
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static void writeJson(JsonGenerator json, QueryStats stats) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("sql", stats.getSql());
+        json.writeNumberField("count", stats.getCount());
+        json.writeNumberField("errors", stats.getErrors());
+        json.writeNumberField("rows", stats.getRows());
+        json.writeNumberField("meanMicros", stats.getMeanMicros());
+        json.writeNumberField("p50Micros", stats.getP50Micros());
+        json.writeNumberField("p90Micros", stats.getP90Micros());
+        json.writeNumberField("p99Micros", stats.getP99Micros());
+        json.writeNumberField("maxMicros", stats.getMaxMicros());
+        json.writeNumberField("totalMillis", stats.getTotalMillis());
+        json.writeEndObject();
+    }
+
+    // =================================================================
+    // EXPOSICIÓ
+    // =================================================================
+
+    /**
+     * Registra aquesta instància al servidor MBean de la plataforma amb el nom
+     * {@link #OBJECT_NAME}. Si ja hi és, no fa res.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                logger.debug("Mètriques registrades a JMX com a {}.", OBJECT_NAME);
+            }
+        } catch (JMException e) {
+            logger.warn("No s'han pogut registrar les mètriques a JMX: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Bolca les mètriques al log (INFO) cada {@code periodSeconds} segons, des d'un
+     * fil dimoni. Substitueix el bolcat periòdic anterior si n'hi havia.
+     *
+     * @param periodSeconds Període en segons.
+     * @param json true per bolcar en JSON, false en text.
+     */
+    public synchronized void startPeriodicDump(long periodSeconds, boolean json) {
+        stopPeriodicDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "query-metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> logger.info("Mètriques de consultes:\n{}", json ? dumpJson() : dumpText()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopPeriodicDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Comptadors d'una empremta.
+     */
+    private static final class Entry {
+        final String fingerprint;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        QueryStats snapshot() {
+            return QueryStats.of(fingerprint, latency, errors.sum(), rows.sum());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package cat.iesesteveterradas.utility;
+
+import java.util.List;
+
+/**
+ * Vista JMX de {@link QueryMetrics} (p.ex. amb JConsole o VisualVM).
+ */
+public interface QueryMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    long getTotalQueries();
+
+    long getTotalErrors();
+
+    long getSlowQueries();
+
+    /**
+     * @return Les consultes ordenades per temps total, de més a menys.
+     */
+    List<QueryStats> getQueries();
+
+    /**
+     * @return El temps d'espera per obtenir connexions del pool.
+     */
+    QueryStats getConnectionAcquire();
+
+    void reset();
+
+    String dumpText();
+
+    String dumpJson();
+}
@@ -0,0 +1,99 @@
+package cat.iesesteveterradas.utility;
+
+import java.beans.ConstructorProperties;
+import java.util.Locale;
+
+/**
+ * Fotografia de les mètriques d'una consulta (agrupada per empremta SQL).
+ * Els temps són en microsegons.
+ */
+public class QueryStats {
+    private final String sql;
+    private final long count;
+    private final long errors;
+    private final long rows;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+    private final double totalMillis;
+
+    @ConstructorProperties({ "sql", "count", "errors", "rows", "meanMicros", "p50Micros", "p90Micros",
+            "p99Micros", "maxMicros", "totalMillis" })
+    public QueryStats(String sql, long count, long errors, long rows, double meanMicros, double p50Micros,
+            double p90Micros, double p99Micros, double maxMicros, double totalMillis) {
+        this.sql = sql;
+        this.count = count;
+        this.errors = errors;
+        this.rows = rows;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+        this.totalMillis = totalMillis;
+    }
+
+    static QueryStats of(String sql, LatencyHistogram h, long errors, long rows) {
+        return new QueryStats(sql, h.getCount(), errors, rows,
+                h.getMean() / 1_000, h.getPercentile(50) / 1_000.0, h.getPercentile(90) / 1_000.0,
+                h.getPercentile(99) / 1_000.0, h.getMax() / 1_000.0, h.getSum() / 1_000_000.0);
+    }
+
+    /**
+     * @return L'empremta de la consulta: l'SQL amb els literals substituïts per '?'.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return Files retornades (SELECT) o afectades (escriptures) en total.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * @return Temps total acumulat, en mil·lisegons.
+     */
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%8d crides %6d errors %10d files | mitjana %9.1f p50 %9.1f p90 %9.1f p99 %9.1f max %10.1f us | total %9.1f ms | %s",
+                count, errors, rows, meanMicros, p50Micros, p90Micros, p99Micros, maxMicros, totalMillis, sql);
+    }
+}
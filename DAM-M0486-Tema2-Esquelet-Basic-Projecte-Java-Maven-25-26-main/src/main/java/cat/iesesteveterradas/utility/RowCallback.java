@@ -0,0 +1,20 @@
+package cat.iesesteveterradas.utility;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Processa la fila actual d'un {@link ResultSet} sense crear cap objecte.
+ * <p>
+ * El callback NO ha de cridar {@code rs.next()} ni tancar el ResultSet;
+ * d'això se n'encarrega {@link DatabaseManager}.
+ */
+@FunctionalInterface
+public interface RowCallback {
+
+    /**
+     * @param rs El ResultSet posicionat a la fila a processar.
+     * @throws SQLException Si hi ha un error llegint les columnes.
+     */
+    void accept(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,23 @@
+package cat.iesesteveterradas.utility;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converteix la fila actual d'un {@link ResultSet} en un objecte.
+ * <p>
+ * El mapper NO ha de cridar {@code rs.next()} ni tancar el ResultSet;
+ * d'això se n'encarrega {@link DatabaseManager}.
+ *
+ * @param <T> El tipus d'objecte resultant.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * @param rs El ResultSet posicionat a la fila a convertir.
+     * @return L'objecte corresponent a la fila.
+     * @throws SQLException Si hi ha un error llegint les columnes.
+     */
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,282 @@
+package cat.iesesteveterradas.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memòria cau LRU de {@link PreparedStatement} per a una única connexió física,
+ * indexada pel text SQL.
+ * <p>
+ * Els statements retornats són envoltoris: cridar {@code close()} no tanca
+ * l'statement real, només en neteja els paràmetres, el lot ({@code addBatch})
+ * i els avisos perquè es pugui reutilitzar. Amb {@code closeOnCompletion()},
+ * tancar el {@link ResultSet} el retorna igual que {@code close()}.
+ * L'statement real es tanca quan surt de la memòria cau (LRU) o quan es
+ * tanca la connexió.
+ * <p>
+ * Un statement està en ús des que es retorna fins que se'n crida {@code close()}.
+ * Mentre ho està, no es torna a donar: si es torna a preparar el mateix SQL
+ * (p.ex. una consulta dins del recorregut d'una altra), es retorna un statement
+ * nou fora de la memòria cau, que sí que es tanca amb {@code close()}. I si surt
+ * de la memòria cau mentre està en ús, no es tanca fins que es retorna: el
+ * {@link java.sql.ResultSet} que s'està llegint continua obert.
+ * <p>
+ * <b>Nota:</b> No és segura entre fils; la protegeix el préstec exclusiu
+ * de la connexió que fa {@link ConnectionPool}.
+ */
+class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Map<String, PreparedStatement> cache;
+    // Statements reals prestats, i els que ja han sortit de la memòria cau i s'han de tancar en retornar-los
+    private final Set<PreparedStatement> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<PreparedStatement> evicted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Préstec actual de la connexió: els envoltoris d'un préstec anterior ja no valen
+    private int lease;
+
+    private long hits;
+    private long misses;
+    private long uncached;
+
+    /**
+     * @param physical La connexió física propietària dels statements.
+     * @param maxSize Nombre màxim de statements en memòria cau (0 la desactiva).
+     */
+    StatementCache(Connection physical, int maxSize) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    if (inUse.contains(eldest.getValue())) {
+                        evicted.add(eldest.getValue());
+                    } else {
+                        closeQuietly(eldest.getValue());
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retorna un statement preparat per a l'SQL indicat, reutilitzant-lo si ja
+     * s'havia compilat abans en aquesta connexió i no està en ús.
+     *
+     * @param sql La consulta SQL amb marcadors de posició '?'.
+     * @return Un {@link PreparedStatement} el {@code close()} del qual el retorna a la memòria cau.
+     * @throws SQLException Si hi ha un error en preparar la consulta.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        if (maxSize <= 0) {
+            return physical.prepareStatement(sql);
+        }
+        PreparedStatement pstmt = cache.get(sql);
+        if (pstmt != null && !pstmt.isClosed()) {
+            if (inUse.contains(pstmt)) {
+                // Reutilitzar-lo tancaria el ResultSet de qui el té
+                uncached++;
+                return physical.prepareStatement(sql);
+            }
+            hits++;
+            return checkOut(pstmt);
+        }
+        misses++;
+        pstmt = physical.prepareStatement(sql);
+        cache.put(sql, pstmt);
+        return checkOut(pstmt);
+    }
+
+    /**
+     * Torna a la memòria cau els statements que el préstec de la connexió no ha
+     * tancat. Els seus envoltoris deixen de funcionar.
+     */
+    void returnAll() {
+        List<PreparedStatement> statements = new ArrayList<>(inUse);
+        lease++;
+        for (PreparedStatement pstmt : statements) {
+            try {
+                checkIn(pstmt);
+            } catch (SQLException e) {
+                logger.warn("Error en retornar un statement a la memòria cau: {}", e.getMessage());
+                closeQuietly(pstmt);
+            }
+        }
+    }
+
+    /**
+     * Tanca tots els statements reals i buida la memòria cau.
+     */
+    void clear() {
+        List<PreparedStatement> statements = new ArrayList<>(cache.values());
+        statements.addAll(evicted);
+        cache.clear();
+        evicted.clear();
+        inUse.clear();
+        for (PreparedStatement pstmt : statements) {
+            closeQuietly(pstmt);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Memòria cau de statements buidada. Encerts: {}, errades: {}, fora de la memòria cau: {}",
+                hits, misses, uncached);
+        }
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Statements preparats fora de la memòria cau perquè el de la memòria cau estava en ús.
+     */
+    long getUncached() {
+        return uncached;
+    }
+
+    /**
+     * @return Statements de la memòria cau en ús ara mateix.
+     */
+    int inUse() {
+        return inUse.size();
+    }
+
+    private PreparedStatement checkOut(PreparedStatement pstmt) {
+        inUse.add(pstmt);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new CachedStatementHandler(pstmt));
+    }
+
+    private void checkIn(PreparedStatement pstmt) throws SQLException {
+        inUse.remove(pstmt);
+        if (evicted.remove(pstmt)) {
+            pstmt.close();
+        } else if (!pstmt.isClosed()) {
+            // Que no arribi res de l'ús anterior al següent: ni paràmetres ni files pendents d'un lot
+            pstmt.clearParameters();
+            pstmt.clearBatch();
+            pstmt.clearWarnings();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            logger.warn("Error en tancar un statement de la memòria cau: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Redirigeix totes les crides a l'statement real excepte les que el tancarien.
+     * Després de {@code close()} l'envoltori ja no es pot fer servir: l'statement
+     * real pot ser d'un altre.
+     */
+    private final class CachedStatementHandler implements InvocationHandler {
+
+        private final PreparedStatement target;
+        private final int lease = StatementCache.this.lease;
+        private boolean returned;
+        private boolean closeOnCompletion;
+
+        CachedStatementHandler(PreparedStatement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (lease != StatementCache.this.lease) {
+                // Ja el va retornar returnAll()
+                returned = true;
+            }
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return returned || target.isClosed();
+                case "closeOnCompletion":
+                    closeOnCompletion = true;
+                    return null;
+                case "isCloseOnCompletion":
+                    return closeOnCompletion;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (returned) {
+                        throw new SQLException("L'statement ja s'ha tancat.");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (closeOnCompletion && result instanceof ResultSet rs) {
+                        return onClose(rs);
+                    }
+                    return result;
+            }
+        }
+
+        private void close() throws SQLException {
+            if (!returned) {
+                returned = true;
+                checkIn(target);
+            }
+        }
+
+        /**
+         * Envolta el ResultSet perquè tancar-lo retorni l'statement.
+         */
+        private ResultSet onClose(ResultSet rs) {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class },
+                    (proxy, method, args) -> {
+                        try {
+                            return method.invoke(rs, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            if ("close".equals(method.getName()) && lease == StatementCache.this.lease) {
+                                close();
+                            }
+                        }
+                    });
+        }
+    }
+}
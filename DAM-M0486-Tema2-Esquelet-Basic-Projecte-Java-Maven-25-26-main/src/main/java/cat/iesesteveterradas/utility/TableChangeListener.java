@@ -0,0 +1,20 @@
+package cat.iesesteveterradas.utility;
+
+/**
+ * Rep un avís cada cop que {@link DatabaseManager} executa una escriptura
+ * (INSERT, UPDATE, DELETE, REPLACE o DROP TABLE) sobre una taula.
+ * <p>
+ * S'avisa quan el canvi ja està confirmat: en mode autocommit (el cas habitual),
+ * després de l'escriptura; dins d'una transacció d'una connexió del pool, en
+ * confirmar-la, i mai si es desfà. Amb una connexió que no és del pool s'avisa
+ * després de l'escriptura encara que la transacció no s'hagi confirmat.
+ */
+@FunctionalInterface
+public interface TableChangeListener {
+
+    /**
+     * @param table El nom de la taula modificada.
+     * @param sql La consulta que l'ha modificada.
+     */
+    void tableChanged(String table, String sql);
+}
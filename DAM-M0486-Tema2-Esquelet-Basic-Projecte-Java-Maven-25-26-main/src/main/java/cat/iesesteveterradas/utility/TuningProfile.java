@@ -0,0 +1,149 @@
+package cat.iesesteveterradas.utility;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Conjunt de PRAGMA de SQLite que s'apliquen a cada connexió física en obrir-la.
+ * <p>
+ * Els valors {@code null} vol dir "deixar el valor per defecte del driver".
+ * Vegeu https://www.sqlite.org/pragma.html per al significat de cada opció.
+ */
+public final class TuningProfile {
+
+    // Abans dels perfils estàtics: els seus constructors ja els fan servir
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+
+    /** No toca res: el comportament original de SQLite. */
+    public static final TuningProfile DRIVER_DEFAULT = new TuningProfile("DRIVER_DEFAULT", null, null, null, null, null);
+
+    /**
+     * Perfil per a lectures freqüents: WAL (lectors i escriptor no es bloquegen),
+     * synchronous=NORMAL (segur amb WAL), 256 MB de mmap, 64 MB de memòria cau
+     * de pàgines i taules temporals en memòria.
+     */
+    public static final TuningProfile PERFORMANCE = new TuningProfile("PERFORMANCE",
+            "WAL", "NORMAL", 256L * 1024 * 1024, -64_000, "MEMORY");
+
+    private final String name;
+    private final String journalMode;
+    private final String synchronous;
+    private final Long mmapSize;
+    private final Integer cacheSize;
+    private final String tempStore;
+
+    /**
+     * @param name Nom descriptiu del perfil (per als logs).
+     * @param journalMode PRAGMA journal_mode (p.ex. "WAL").
+     * @param synchronous PRAGMA synchronous (p.ex. "NORMAL").
+     * @param mmapSize PRAGMA mmap_size en bytes.
+     * @param cacheSize PRAGMA cache_size (positiu: pàgines; negatiu: KiB).
+     * @param tempStore PRAGMA temp_store (p.ex. "MEMORY").
+     */
+    public TuningProfile(String name, String journalMode, String synchronous, Long mmapSize,
+            Integer cacheSize, String tempStore) {
+        this.name = name;
+        this.journalMode = checkOption("journal_mode", journalMode, JOURNAL_MODES);
+        this.synchronous = checkOption("synchronous", synchronous, SYNCHRONOUS);
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.tempStore = checkOption("temp_store", tempStore, TEMP_STORES);
+    }
+
+    /**
+     * Aplica el perfil a una connexió. Els PRAGMA són per connexió
+     * (excepte journal_mode=WAL, que queda guardat a l'arxiu).
+     *
+     * @param conn La connexió física acabada d'obrir.
+     * @throws SQLException Si algun PRAGMA falla.
+     */
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (journalMode != null) {
+                stmt.execute("PRAGMA journal_mode=" + journalMode);
+            }
+            if (synchronous != null) {
+                stmt.execute("PRAGMA synchronous=" + synchronous);
+            }
+            if (mmapSize != null) {
+                stmt.execute("PRAGMA mmap_size=" + mmapSize);
+            }
+            if (cacheSize != null) {
+                stmt.execute("PRAGMA cache_size=" + cacheSize);
+            }
+            if (tempStore != null) {
+                stmt.execute("PRAGMA temp_store=" + tempStore);
+            }
+        }
+    }
+
+    /**
+     * Llegeix els valors efectius dels PRAGMA del perfil a la connexió.
+     * Útil per comprovar a l'arrencada que el perfil s'ha aplicat de veritat.
+     *
+     * @param conn La connexió a consultar.
+     * @return Els valors actuals, en ordre.
+     * @throws SQLException Si hi ha un error de base de dades.
+     */
+    public static Map<String, String> report(Connection conn) throws SQLException {
+        Map<String, String> values = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : new String[] { "journal_mode", "synchronous", "mmap_size", "cache_size", "temp_store" }) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+                    values.put(pragma, rs.next() ? rs.getString(1) : "?");
+                }
+            }
+        }
+        return values;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public Long getMmapSize() {
+        return mmapSize;
+    }
+
+    public Integer getCacheSize() {
+        return cacheSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    @Override
+    public String toString() {
+        return "TuningProfile [" + name + ": journal_mode=" + journalMode + ", synchronous=" + synchronous
+                + ", mmap_size=" + mmapSize + ", cache_size=" + cacheSize + ", temp_store=" + tempStore + "]";
+    }
+
+    private static String checkOption(String pragma, String value, Set<String> allowed) {
+        if (value == null) {
+            return null;
+        }
+        String upper = value.toUpperCase(Locale.ROOT);
+        // El valor s'afegeix directament al PRAGMA, així que només acceptem valors coneguts
+        if (!allowed.contains(upper)) {
+            throw new IllegalArgumentException("Valor no vàlid per a " + pragma + ": " + value);
+        }
+        return upper;
+    }
+}
@@ -0,0 +1,21 @@
+package cat.iesesteveterradas.utility;
+
+import java.sql.SQLException;
+
+/**
+ * Embolcalla una {@link SQLException} en contextos on no es poden llançar
+ * excepcions comprovades, com ara dins d'un {@link java.util.stream.Stream}.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,71 @@
+package cat.iesesteveterradas;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class GeneradorDatosTest {
+
+    private static final int[] FACCIONS = { 11, 12, 13, 14, 15 };
+
+    private static List<Object[]> filas(GeneradorDatos generador) {
+        List<Object[]> result = new ArrayList<>();
+        Iterator<Object[]> it = generador.personajes(FACCIONS);
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void testMateixaLlavorMateixesDades() {
+        List<Object[]> a = filas(new GeneradorDatos(5, 1000, 42));
+        List<Object[]> b = filas(new GeneradorDatos(5, 1000, 42));
+        assertEquals(1000, a.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertArrayEquals(a.get(i), b.get(i));
+        }
+        // Una altra llavor dona unes altres dades
+        List<Object[]> c = filas(new GeneradorDatos(5, 1000, 43));
+        boolean diferent = false;
+        for (int i = 0; i < a.size() && !diferent; i++) {
+            diferent = !Arrays.equals(a.get(i), c.get(i));
+        }
+        assertTrue(diferent);
+    }
+
+    @Test
+    public void testDistribucionsEsbiaixades() {
+        int[] perFaccio = new int[FACCIONS.length];
+        double sumaAtac = 0;
+        List<Object[]> files = filas(new GeneradorDatos(5, 20_000, 7).setZipf(1.0).setSesgoStats(2.0));
+        for (Object[] fila : files) {
+            double atac = (Double) fila[1];
+            assertTrue(atac >= 0 && atac <= GeneradorDatos.MAX_STAT);
+            sumaAtac += atac;
+            perFaccio[(Integer) fila[3] - 11]++;
+        }
+        // Zipf: cada facció és més petita que l'anterior, i la primera té ~1/H(5) = 44% de les files
+        for (int f = 1; f < perFaccio.length; f++) {
+            assertTrue(perFaccio[f] < perFaccio[f - 1]);
+        }
+        assertEquals(0.438, perFaccio[0] / 20_000.0, 0.02);
+        // u^2 * 10 té mitjana 10/3
+        assertEquals(10.0 / 3, sumaAtac / files.size(), 0.1);
+
+        // Sense biaix: faccions de mida semblant
+        int[] uniforme = new int[FACCIONS.length];
+        for (Object[] fila : filas(new GeneradorDatos(5, 20_000, 7).setZipf(0))) {
+            uniforme[(Integer) fila[3] - 11]++;
+        }
+        for (int n : uniforme) {
+            assertEquals(0.2, n / 20_000.0, 0.02);
+        }
+    }
+}
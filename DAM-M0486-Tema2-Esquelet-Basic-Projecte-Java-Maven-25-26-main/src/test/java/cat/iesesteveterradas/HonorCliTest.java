@@ -0,0 +1,70 @@
+package cat.iesesteveterradas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import cat.iesesteveterradas.dao.Leaderboard;
+
+public class HonorCliTest {
+    @Test
+    public void testParsejaDiversesConsultes() {
+        HonorCli.Argumentos args = HonorCli.parsearArgumentos(new String[] {
+            "--format", "csv",
+            "--query", "best-attacker", "--faction", "2",
+            "--query", "top", "--faction", "1", "--by", "defensa", "--k", "3" });
+
+        assertEquals(HonorCli.Formato.CSV, args.formato);
+        assertEquals(2, args.consultas.size());
+        assertEquals(2, (int) args.consultas.get(0).faccion);
+        assertEquals(Leaderboard.Criterio.DEFENSA, args.consultas.get(1).criterio);
+        assertEquals(3, args.consultas.get(1).k);
+        assertFalse(args.stdin);
+        // Sense cap --query es llegeix de l'entrada
+        assertTrue(HonorCli.parsearArgumentos(new String[0]).stdin);
+    }
+
+    @Test
+    public void testRebutjaConsultesNoValides() {
+        assertThrows(IllegalArgumentException.class, () -> HonorCli.parsearLinea("best-defender"));
+        assertThrows(IllegalArgumentException.class, () -> HonorCli.parsearLinea("desconeguda"));
+        assertThrows(IllegalArgumentException.class, () -> HonorCli.parsearLinea("personajes --faction x"));
+        assertThrows(IllegalArgumentException.class, () -> HonorCli.parsearLinea("search"));
+        assertEquals("war", HonorCli.parsearLinea("prefix --text war").texto);
+    }
+
+    @Test
+    public void testFormatsCsvIJson() throws IOException {
+        StringWriter csv = new StringWriter();
+        HonorCli.Tabla tabla = HonorCli.Tabla.crear(HonorCli.Formato.CSV, csv);
+        tabla.cabecera("facciones", new String[] { "id", "nom" }, new int[] { 5, 15 });
+        tabla.fila(1, "Cavallers, \"K\"");
+        tabla.fin();
+        assertEquals("id,nom\n1,\"Cavallers, \"\"K\"\"\"\n\n", csv.toString());
+
+        StringWriter json = new StringWriter();
+        tabla = HonorCli.Tabla.crear(HonorCli.Formato.JSON, json);
+        tabla.cabecera("stats", new String[] { "id", "correlacion" }, new int[] { 5, 6 });
+        tabla.fila(1, Double.NaN);
+        tabla.fin();
+        assertEquals("{\"query\":\"stats\",\"rows\":[{\"id\":1,\"correlacion\":null}]}\n", json.toString());
+    }
+
+    @Test
+    public void testEscripturesNomesAmbEscriptor() throws IOException {
+        assertEquals("Tiandi", HonorCli.parsearLinea("add-character --name Tiandi --atac 2 --defensa 3 --faction 4").nom);
+        assertThrows(IllegalArgumentException.class, () -> HonorCli.parsearLinea("update-character --name Tiandi --atac 2 --defensa 3 --faction 4"));
+        assertThrows(IllegalArgumentException.class, () -> HonorCli.parsearLinea("delete-character"));
+
+        // Fora del servidor no hi ha escriptor: error sense tocar la base de dades
+        StringWriter json = new StringWriter();
+        HonorCli cli = new HonorCli(null, null, null, null, HonorCli.Tabla.crear(HonorCli.Formato.JSON, json));
+        assertEquals(HonorCli.EXIT_USO, cli.ejecutarLinea("delete-character --id 1"));
+        assertTrue(json.toString().startsWith("{\"error\":"));
+    }
+}
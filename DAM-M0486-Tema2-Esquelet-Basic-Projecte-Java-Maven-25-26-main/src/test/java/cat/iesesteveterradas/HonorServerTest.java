@@ -0,0 +1,264 @@
+package cat.iesesteveterradas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cat.iesesteveterradas.utility.TuningProfile;
+
+public class HonorServerTest {
+
+    // Prou perquè la resposta de tots els personatges no càpiga als buffers del socket
+    private static final int PERSONATGES = 100_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Path directori;
+    private HonorServer server;
+    private Thread fil;
+
+    /**
+     * Un client del servidor: escriu consultes i llegeix una resposta JSON per línia.
+     */
+    private final class Client implements AutoCloseable {
+        final Socket socket;
+        final BufferedReader in;
+        final OutputStream out;
+
+        Client() throws IOException {
+            this(0);
+        }
+
+        /**
+         * @param bufferRecepcio Mida del buffer de recepció del socket, o 0 per la del sistema.
+         */
+        Client(int bufferRecepcio) throws IOException {
+            socket = new Socket();
+            if (bufferRecepcio > 0) {
+                socket.setReceiveBufferSize(bufferRecepcio);
+            }
+            socket.connect((InetSocketAddress) server.getDireccion());
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = socket.getOutputStream();
+        }
+
+        void enviar(String linia) throws IOException {
+            out.write(linia.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        JsonNode resposta() throws IOException {
+            String linia = in.readLine();
+            return linia == null ? null : mapper.readTree(linia);
+        }
+
+        JsonNode consulta(String consulta) throws IOException {
+            enviar(consulta + "\n");
+            return resposta();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    // Amb una sola connexió de lectura: si un client la reté, els altres s'han d'esperar
+    @BeforeEach
+    public void obrirServidor() throws IOException, SQLException {
+        directori = Files.createTempDirectory("honor-server");
+        Path bd = directori.resolve("honor.db");
+        new GeneradorDatos(3, PERSONATGES, 11).generarFichero(bd);
+        server = HonorServer.abrirTcp(0, bd.toString(), TuningProfile.PERFORMANCE, 1);
+        fil = new Thread(() -> {
+            try {
+                server.servir();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "honor-server-test");
+        fil.start();
+    }
+
+    @AfterEach
+    public void tancarServidor() throws IOException, InterruptedException {
+        server.close();
+        fil.join(5_000);
+        try (var fitxers = Files.list(directori)) {
+            for (Path fitxer : fitxers.toList()) {
+                Files.deleteIfExists(fitxer);
+            }
+        }
+        Files.deleteIfExists(directori);
+    }
+
+    @Test
+    public void testProtocol() throws IOException {
+        try (Client client = new Client()) {
+            JsonNode faccions = client.consulta("facciones");
+            assertEquals("facciones", faccions.get("query").asText());
+            assertEquals(3, faccions.get("rows").size());
+
+            // Salts de línia \r\n, línies buides i comentaris no responen
+            client.enviar("# comentari\n\r\nbest-attacker --faction 1\r\n");
+            JsonNode millor = client.resposta();
+            assertEquals("best-attacker", millor.get("query").asText());
+            assertEquals(1, millor.get("rows").get(0).get("idFaccion").asInt());
+
+            // Una consulta no vàlida respon un error i la connexió continua
+            assertTrue(client.consulta("desconeguda").has("error"));
+            assertTrue(client.consulta("top").has("error"));
+            assertEquals(PERSONATGES, client.consulta("personajes").get("rows").size());
+
+            client.enviar("quit\n");
+            assertNull(client.resposta());
+        }
+    }
+
+    @Test
+    public void testLiniaMassaLlarga() throws IOException {
+        try (Client client = new Client()) {
+            client.enviar("prefix --text " + "a".repeat(HonorServer.MAX_LINEA) + "\n");
+            assertTrue(client.resposta().get("error").asText().contains("demasiado larga"));
+            assertNull(client.resposta());
+        }
+        // El servidor continua atenent els altres
+        try (Client client = new Client()) {
+            assertEquals(3, client.consulta("facciones").get("rows").size());
+        }
+    }
+
+    @Test
+    public void testClientLentNoBloquejaElsAltres() throws Exception {
+        try (Client lent = new Client(4 * 1024)) {
+            // Demana tots els personatges (uns quants MB de JSON) i no llegeix la resposta
+            lent.enviar("personajes\n");
+            Thread.sleep(200);
+
+            ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+            try {
+                List<Future<JsonNode>> respostes = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    String consulta = i % 2 == 0 ? "list-tables" : "personajes --faction " + (i % 3 + 1);
+                    respostes.add(clients.submit(() -> {
+                        try (Client client = new Client()) {
+                            return client.consulta(consulta);
+                        }
+                    }));
+                }
+                // Molt per sota dels 30 s d'espera d'una connexió del pool
+                for (Future<JsonNode> resposta : respostes) {
+                    assertTrue(resposta.get(10, TimeUnit.SECONDS).get("rows").size() > 0);
+                }
+            } finally {
+                clients.shutdownNow();
+            }
+
+            // Quan el client lent llegeix, rep la resposta sencera
+            assertEquals(PERSONATGES, lent.resposta().get("rows").size());
+        }
+    }
+
+    @Test
+    public void testClientsConcurrents() throws Exception {
+        String esperada;
+        try (Client client = new Client()) {
+            esperada = client.consulta("top --faction 2 --k 5").toString();
+        }
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<Integer>> resultats = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                resultats.add(clients.submit(() -> {
+                    int consultes = 0;
+                    try (Client client = new Client()) {
+                        for (int j = 0; j < 10; j++) {
+                            assertEquals(esperada, client.consulta("top --faction 2 --k 5").toString());
+                            assertEquals(1, client.consulta("summary --faction 3").get("rows").size());
+                            consultes += 2;
+                        }
+                    }
+                    return consultes;
+                }));
+            }
+            for (Future<Integer> resultat : resultats) {
+                assertEquals(20, resultat.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEscripturesDeDiversosClients() throws Exception {
+        int idFaccio;
+        try (Client client = new Client()) {
+            JsonNode faccio = client.consulta("add-faction --name Wu-Lin --text Els_nouvinguts");
+            idFaccio = faccio.get("rows").get(0).get("id").asInt();
+            assertEquals(4, idFaccio);
+            // Sense els camps obligatoris no s'envia res a l'escriptor
+            assertTrue(client.consulta("add-character --name Tiandi").has("error"));
+        }
+
+        // Les insercions de tots els clients passen pel mateix escriptor
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<Integer>> ids = new ArrayList<>();
+        try {
+            for (int i = 0; i < 16; i++) {
+                int n = i;
+                ids.add(clients.submit(() -> {
+                    try (Client client = new Client()) {
+                        JsonNode nou = client.consulta("add-character --name Shaolin" + n + " --atac " + n
+                            + " --defensa 1 --faction " + idFaccio);
+                        return nou.get("rows").get(0).get("id").asInt();
+                    }
+                }));
+            }
+            for (Future<Integer> id : ids) {
+                assertTrue(id.get(10, TimeUnit.SECONDS) > PERSONATGES);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        try (Client client = new Client()) {
+            // La classificació i el DAO dels lectors ja veuen les escriptures confirmades
+            assertEquals("Shaolin15", client.consulta("best-attacker --faction " + idFaccio)
+                .get("rows").get(0).get("nom").asText());
+            assertEquals(16, client.consulta("personajes --faction " + idFaccio).get("rows").size());
+
+            int id = ids.get(15).get();
+            JsonNode canviat = client.consulta("update-character --id " + id + " --name Shaolin15 --atac 0 --defensa 9 --faction "
+                + idFaccio);
+            assertEquals(9.0, canviat.get("rows").get(0).get("defensa").asDouble());
+            assertEquals("Shaolin14", client.consulta("top --faction " + idFaccio + " --by atac --k 1")
+                .get("rows").get(0).get("nom").asText());
+
+            assertEquals(id, client.consulta("delete-character --id " + id).get("rows").get(0).get("id").asInt());
+            assertEquals(0, client.consulta("delete-character --id " + id).get("rows").size());
+            assertEquals(15, client.consulta("summary --faction " + idFaccio).get("rows").get(0).get("personajes").asInt());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package cat.iesesteveterradas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import cat.iesesteveterradas.dao.HonorDao;
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class RosterLoaderTest {
+
+    private Path db;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void crearBaseDeDades() throws IOException, SQLException {
+        db = Files.createTempFile("honor", ".db");
+        // Una sola connexió: totes les càrregues comparteixen els statements en memòria cau
+        pool = new ConnectionPool(db.toString(), 1, 8);
+        try (Connection conn = pool.getConnection()) {
+            HonorDao.crearTablas(conn);
+        }
+    }
+
+    @AfterEach
+    public void esborrarBaseDeDades() throws IOException {
+        pool.close();
+        Files.deleteIfExists(db);
+    }
+
+    private Path fitxer(String sufix, String contingut) throws IOException {
+        Path f = Files.createTempFile("roster", sufix);
+        Files.writeString(f, contingut, StandardCharsets.UTF_8);
+        f.toFile().deleteOnExit();
+        return f;
+    }
+
+    private List<Integer> ids(Connection conn, String taula) throws SQLException {
+        return DatabaseManager.queryList(conn, "SELECT id FROM " + taula + " ORDER BY id;", rs -> rs.getInt(1));
+    }
+
+    @Test
+    public void testLectorCsv() throws IOException {
+        RosterLoader.CsvReader csv = new RosterLoader.CsvReader(new StringReader(
+            "id,nom,resum\r\n"
+            + "1,\"Cavallers, Ordre\",\"Diuen \"\"prou\"\"\"\r\n"
+            + "2,Vikings,\"Línia 1\nLínia 2\"\n"
+            + "3,,"));
+        assertEquals(List.of("id", "nom", "resum"), csv.next());
+        assertEquals(List.of("1", "Cavallers, Ordre", "Diuen \"prou\""), csv.next());
+        assertEquals(List.of("2", "Vikings", "Línia 1\nLínia 2"), csv.next());
+        assertEquals(List.of("3", "", ""), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void testCarregaCsvPerBlocs() throws IOException, SQLException {
+        Path facciones = fitxer(".csv",
+            "nom,id,resum\n"
+            + "Cavallers,1,\"Though seen as a single group, \"\"the Knights\"\"...\"\n"
+            + "Vikings,2,\"Primera línia\nsegona línia\"\n"
+            + "\n"
+            + "Samurais,3,\n"
+            + "Wu Lin,4,\"\"\n"
+            + "Pirates,,Sense id\n");
+        try (Connection conn = pool.getConnection()) {
+            // 5 files en blocs de 2: dos blocs plens i un de mig
+            assertEquals(5, new RosterLoader(conn, 2).loadFacciones(facciones));
+            assertEquals(List.of(1, 2, 3, 4, 5), ids(conn, "Faccion"));
+            assertEquals("Primera línia\nsegona línia", DatabaseManager.queryFirst(conn,
+                "SELECT resum FROM Faccion WHERE id = 2;", rs -> rs.getString(1)).get());
+            assertEquals("Though seen as a single group, \"the Knights\"...", DatabaseManager.queryFirst(conn,
+                "SELECT resum FROM Faccion WHERE id = 1;", rs -> rs.getString(1)).get());
+
+            // Tornar a carregar els mateixos ids els substitueix
+            assertEquals(1, new RosterLoader(conn, 2).loadFacciones(fitxer(".csv", "id,nom\n2,Jomsvikings\n")));
+            assertEquals(5, ids(conn, "Faccion").size());
+        }
+    }
+
+    @Test
+    public void testFilaErroniaNomesDesfaElSeuBloc() throws IOException, SQLException {
+        Path dolent = fitxer(".csv",
+            "id,nom,atac,defensa,idFaccion\n"
+            + "1,Warden,1,3,1\n"
+            + "2,Conqueror,2,2,1\n"
+            + "3,Peacekeep,2,3,1\n"
+            + "4,Raider,molt,2,2\n"
+            + "5,Kensei,3,2,3\n");
+        Path bo = fitxer(".csv",
+            "id,nom,atac,defensa,idFaccion\n"
+            + "10,Orochi,3,2,3\n"
+            + "11,Shugoki,2,1,3\n");
+        try (Connection conn = pool.getConnection()) {
+            RosterLoader loader = new RosterLoader(conn, 2);
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> loader.loadPersonajes(dolent));
+            assertEquals("Linea 5: 'molt' no es valido para atac.", e.getMessage());
+            // El primer bloc ja estava confirmat; el Peacekeep del bloc fallit no
+            assertEquals(List.of(1, 2), ids(conn, "Personaje"));
+
+            // El Peacekeep afegit al lot abans de l'error no s'ha de colar a la càrrega següent
+            assertEquals(2, loader.loadPersonajes(bo));
+            assertEquals(List.of(1, 2, 10, 11), ids(conn, "Personaje"));
+        }
+    }
+
+    @Test
+    public void testCarregaJson() throws IOException, SQLException {
+        Path combinat = fitxer(".json",
+            "{\"facciones\": [{\"id\": 4, \"nom\": \"Wu Lin\", \"resum\": \"Forged in the fires\"}],"
+            + " \"altres\": [1, {\"a\": 2}],"
+            + " \"personajes\": [{\"nom\": \"Tiandi\", \"atac\": 3, \"defensa\": 2.5, \"idFaccion\": 4},"
+            + " {\"id\": 7, \"nom\": \"Nobushi\", \"idFaccion\": null}]}");
+        Path personajes = fitxer(".json",
+            "[{\"id\": 8, \"nom\": \"Jiang Jun\", \"atac\": 2, \"defensa\": 3, \"idFaccion\": 4},"
+            + " {\"id\": 9, \"atac\": 1}]");
+        try (Connection conn = pool.getConnection()) {
+            RosterLoader loader = new RosterLoader(conn, 1);
+            assertEquals(3, loader.loadJson(combinat));
+            assertEquals(List.of(1, 7), ids(conn, "Personaje"));
+            assertEquals(2.5, DatabaseManager.queryFirst(conn,
+                "SELECT defensa FROM Personaje WHERE nom = 'Tiandi';", rs -> rs.getDouble(1)).get());
+
+            // Al segon objecte li falta el nom: el primer (bloc d'1) ja està confirmat
+            assertThrows(IllegalArgumentException.class, () -> loader.loadPersonajes(personajes));
+            assertEquals(List.of(1, 7, 8), ids(conn, "Personaje"));
+        }
+    }
+}
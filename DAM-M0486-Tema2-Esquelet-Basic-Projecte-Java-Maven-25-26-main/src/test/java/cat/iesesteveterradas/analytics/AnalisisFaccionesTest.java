@@ -0,0 +1,71 @@
+package cat.iesesteveterradas.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import cat.iesesteveterradas.model.Personaje;
+
+public class AnalisisFaccionesTest {
+    @Test
+    public void testEstadistiquesDUnaFaccio() {
+        PersonajeColumnas datos = new PersonajeColumnas.Builder(8)
+            .add(1, "Warden", 1.0, 3.0, 1)
+            .add(2, "Conqueror", 2.0, 2.0, 1)
+            .add(3, "Peacekeep", 2.0, 3.0, 1)
+            .add(4, "Raider", 3.0, 3.0, 2)
+            .build();
+
+        List<EstadisticasFaccion> result = new AnalisisFacciones().calcular(datos);
+
+        assertEquals(2, result.size());
+        EstadisticasFaccion f1 = result.get(0);
+        assertEquals(1, f1.getIdFaccion());
+        assertEquals(3, f1.getNumPersonajes());
+        assertEquals(5.0 / 3, f1.getMediaAtac(), 1e-12);
+        assertEquals(Math.sqrt(1.0 / 3), f1.getDesviacionAtac(), 1e-12);
+        assertArrayEquals(new double[] { 2.0, 2.0, 2.0 }, f1.getPercentilesAtac(), 1e-12);
+        // Peacekeep (2/3) domina Warden (1/3) i Conqueror (2/2)
+        assertEquals(List.of(3), f1.getPareto().stream().map(Personaje::getId).toList());
+        // La faccio 2 només té un personatge: sense variància no hi ha correlació
+        assertEquals(Double.NaN, result.get(1).getCorrelacion());
+    }
+
+    @Test
+    public void testElsPercentilsPerDefecteNoEsPodenCanviar() {
+        double[] percentils = AnalisisFacciones.getPercentilesPorDefecto();
+        percentils[0] = 1;
+        assertArrayEquals(new double[] { 50, 90, 99 }, AnalisisFacciones.getPercentilesPorDefecto());
+        assertArrayEquals(new double[] { 50, 90, 99 }, new AnalisisFacciones().getPercentiles());
+    }
+
+    @Test
+    public void testResultatIgualAmbQualsevolNombreDeFils() {
+        PersonajeColumnas.Builder builder = new PersonajeColumnas.Builder(16);
+        Random random = new Random(42);
+        int n = AnalisisFacciones.UMBRAL_FILAS * 3 + 7;
+        for (int i = 0; i < n; i++) {
+            builder.add(i, "p" + (i % 100), random.nextDouble() * 10, random.nextDouble() * 10, i < n / 2 ? 1 : 2);
+        }
+        PersonajeColumnas datos = builder.build();
+
+        ForkJoinPool unFil = new ForkJoinPool(1);
+        ForkJoinPool quatreFils = new ForkJoinPool(4);
+        try {
+            List<EstadisticasFaccion> a = new AnalisisFacciones(unFil, AnalisisFacciones.getPercentilesPorDefecto()).calcular(datos);
+            List<EstadisticasFaccion> b = new AnalisisFacciones(quatreFils, AnalisisFacciones.getPercentilesPorDefecto()).calcular(datos);
+            for (int s = 0; s < a.size(); s++) {
+                assertEquals(a.get(s).getMediaAtac(), b.get(s).getMediaAtac());
+                assertEquals(a.get(s).getDesviacionDefensa(), b.get(s).getDesviacionDefensa());
+                assertEquals(a.get(s).getCorrelacion(), b.get(s).getCorrelacion());
+            }
+        } finally {
+            unFil.shutdown();
+            quatreFils.shutdown();
+        }
+    }
+}
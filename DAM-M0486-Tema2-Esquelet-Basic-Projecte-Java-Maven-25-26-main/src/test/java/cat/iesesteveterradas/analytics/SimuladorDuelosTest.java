@@ -0,0 +1,56 @@
+package cat.iesesteveterradas.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class SimuladorDuelosTest {
+
+    // Facció 1 i 2 idèntiques, facció 3 molt més forta
+    private static PersonajeColumnas datos() {
+        return new PersonajeColumnas.Builder(8)
+            .add(1, "Warden", 1.0, 3.0, 1)
+            .add(2, "Conqueror", 2.0, 2.0, 1)
+            .add(3, "Warden", 1.0, 3.0, 2)
+            .add(4, "Conqueror", 2.0, 2.0, 2)
+            .add(5, "Kensei", 9.0, 9.0, 3)
+            .add(6, "Orochi", 10.0, 8.0, 3)
+            .build();
+    }
+
+    @Test
+    public void testResultatIgualAmbQualsevolNombreDeFils() {
+        // No és múltiple de la mida del bloc: l'últim bloc de cada creuament és més petit
+        long duelos = 2 * SimuladorDuelos.DUELOS_POR_TAREA + 1234;
+        ForkJoinPool unFil = new ForkJoinPool(1);
+        ForkJoinPool tresFils = new ForkJoinPool(3);
+        try {
+            MatrizVictorias a = new SimuladorDuelos(unFil, duelos, 42).simular(datos());
+            MatrizVictorias b = new SimuladorDuelos(tresFils, duelos, 42).simular(datos());
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    assertEquals(a.getVictorias(i, j), b.getVictorias(i, j));
+                    if (i != j) {
+                        // Cada duel el guanya exactament una de les dues faccions
+                        assertEquals(duelos, a.getVictorias(i, j) + a.getVictorias(j, i));
+                    }
+                }
+            }
+        } finally {
+            unFil.shutdown();
+            tresFils.shutdown();
+        }
+    }
+
+    @Test
+    public void testTaxesDeVictoria() {
+        MatrizVictorias m = new SimuladorDuelos(400_000, 7).simular(datos());
+        assertEquals(3, m.numFacciones());
+        assertEquals(0.5, m.getTasa(0, 1), 0.005);
+        assertTrue(m.getTasa(2, 0) > 0.9);
+        assertTrue(m.getTasaGlobal(2) > 0.9);
+        assertTrue(Double.isNaN(m.getTasa(1, 1)));
+    }
+}
@@ -0,0 +1,44 @@
+package cat.iesesteveterradas.dao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import cat.iesesteveterradas.utility.ConnectionPool;
+import cat.iesesteveterradas.utility.DatabaseManager;
+import cat.iesesteveterradas.utility.TuningProfile;
+
+/**
+ * Base de dades SQLite en un fitxer temporal amb l'esquema de l'aplicació
+ * (taules, vistes i cerca). En tancar-la s'esborra.
+ */
+final class BdTemporal implements AutoCloseable {
+
+    final Path fitxer;
+    final ConnectionPool pool;
+
+    BdTemporal() throws IOException, SQLException {
+        fitxer = Files.createTempFile("honor", ".db");
+        pool = new ConnectionPool(fitxer.toString(), 2, DatabaseManager.DEFAULT_STATEMENT_CACHE_SIZE,
+            TuningProfile.PERFORMANCE);
+        try (Connection conn = pool.getConnection()) {
+            HonorDao.crearTablas(conn);
+            HonorDao.crearVistas(conn);
+            HonorDao.crearBusqueda(conn);
+        }
+    }
+
+    Connection connexio() throws SQLException {
+        return pool.getConnection();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.close();
+        Files.deleteIfExists(fitxer);
+        Files.deleteIfExists(Path.of(fitxer + "-wal"));
+        Files.deleteIfExists(Path.of(fitxer + "-shm"));
+    }
+}
@@ -0,0 +1,128 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResultadoBusqueda;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class BusquedaTest {
+
+    // Amb rank = 1, FTS5 compara l'índex amb el contingut de la taula externa i falla si no quadren
+    private static void comprovarIndexs(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn,
+            "INSERT INTO BusquedaFaccion (BusquedaFaccion, rank) VALUES ('integrity-check', 1);");
+        DatabaseManager.queryUpdate(conn,
+            "INSERT INTO BusquedaPersonaje (BusquedaPersonaje, rank) VALUES ('integrity-check', 1);");
+    }
+
+    private static void executar(Connection conn, String sql, Object... params) throws SQLException {
+        DatabaseManager.queryUpdatePS(conn, sql, params);
+    }
+
+    private static List<String> noms(List<Personaje> personajes) {
+        return personajes.stream().map(Personaje::getNom).toList();
+    }
+
+    private static List<Integer> ids(List<ResultadoBusqueda> resultats) {
+        return resultats.stream().map(ResultadoBusqueda::getId).toList();
+    }
+
+    @Test
+    public void testExpressioDeCerca() {
+        assertEquals("\"war\" \"lord\"", HonorDao.expresionBusqueda("  war \t lord ", false));
+        // Només l'última paraula és un prefix
+        assertEquals("\"war\" \"lo\"*", HonorDao.expresionBusqueda("war lo", true));
+        // Els operadors i la sintaxi de FTS5 queden entre cometes, com a text
+        assertEquals("\"a\" \"OR\" \"NOT\" \"b\"", HonorDao.expresionBusqueda("a OR NOT b", false));
+        assertEquals("\"nom:vikings\" \"NEAR(x\" \"-y\" \"z*\"", HonorDao.expresionBusqueda("nom:vikings NEAR(x -y z*", false));
+        // Les cometes del text es dupliquen
+        assertEquals("\"diuen\" \"\"\"prou\"\"\"", HonorDao.expresionBusqueda("diuen \"prou\"", false));
+        assertEquals("\"\"\"\"*", HonorDao.expresionBusqueda("\"", true));
+        assertEquals("", HonorDao.expresionBusqueda("", true));
+        assertEquals("", HonorDao.expresionBusqueda("  \t ", false));
+    }
+
+    @Test
+    public void testTextDelUsuariNoTrencaLaConsulta() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                executar(conn, "INSERT INTO Faccion (id, nom, resum) VALUES " +
+                    "(1, 'Cavallers', 'The Knights OR the Legion'), (2, 'Vikings', 'Raiders from the north'), " +
+                    "(3, 'Samuráis', 'The Dawn Empire');");
+                executar(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+                    "(1, 'Warden', 1, 3, 1), (2, 'Warlord', 2, 2, 2), (3, 'Raider', 3, 1, 2), (4, 'Nobushi', 2, 2, 3);");
+            }
+            HonorDao dao = new HonorDao(bd.pool);
+
+            // Sense cometes, "OR" i ":" serien sintaxi de FTS5 (o un error de sintaxi)
+            assertEquals(List.of(1), ids(dao.buscarFacciones("knights OR", 10)));
+            assertTrue(dao.buscarFacciones("nom: vikings", 10).isEmpty());
+            for (String text : new String[] { "\"", "\"knights", "(", "*", "NEAR(", "-north", "^the", "a AND" }) {
+                dao.buscarFacciones(text, 10);
+                dao.buscarPersonajesPorPrefijo(text, 10);
+            }
+            assertTrue(dao.buscarFacciones("   ", 10).isEmpty());
+
+            // Sense distingir majúscules ni accents
+            assertEquals(List.of(3), ids(dao.buscarFacciones("SAMURAIS dawn", 10)));
+            assertEquals(List.of("Warden", "Warlord"), noms(dao.buscarPersonajesPorPrefijo("WAR", 10)).stream().sorted().toList());
+            assertEquals(List.of("Warlord"), noms(dao.buscarPersonajesPorPrefijo("warl", 10)));
+            assertEquals(1, dao.buscarPersonajesPorPrefijo("wa", 1).size());
+        }
+    }
+
+    @Test
+    public void testIndexSegueixLesEscriptures() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            HonorDao dao = new HonorDao(bd.pool);
+            try (Connection conn = bd.connexio()) {
+                executar(conn, "INSERT INTO Faccion (id, nom, resum) VALUES (1, 'Cavallers', 'Iron Legion'), (2, 'Vikings', NULL);");
+                executar(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+                    "(1, 'Warden', 1, 3, 1), (2, 'Raider', 3, 1, 2);");
+                comprovarIndexs(conn);
+
+                // Canvi de nom: el vell deixa de trobar-se i el nou es troba
+                executar(conn, "UPDATE Personaje SET nom = 'Warmonger' WHERE id = 1;");
+                executar(conn, "UPDATE Faccion SET nom = 'Knights', resum = 'Blackstone Legion' WHERE id = 1;");
+                comprovarIndexs(conn);
+                assertEquals(List.of("Warmonger"), noms(dao.buscarPersonajesPorPrefijo("war", 10)));
+                assertTrue(dao.buscarPersonajesPorPrefijo("warden", 10).isEmpty());
+                assertEquals(List.of(1), ids(dao.buscarFacciones("blackstone", 10)));
+                assertTrue(dao.buscarFacciones("iron", 10).isEmpty());
+                assertTrue(dao.buscarFacciones("cavallers", 10).isEmpty());
+
+                // Un UPDATE que no toca el text no reindexa, però l'índex continua quadrant
+                executar(conn, "UPDATE Personaje SET atac = 5 WHERE id = 2;");
+                comprovarIndexs(conn);
+
+                // INSERT OR REPLACE treu la fila substituïda de l'índex abans de posar-hi la nova
+                executar(conn, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (2, 'Berserker', 3, 1, 2);");
+                executar(conn, "INSERT OR REPLACE INTO Faccion (id, nom, resum) VALUES (2, 'Jomsvikings', 'Sea raiders');");
+                comprovarIndexs(conn);
+                assertTrue(dao.buscarPersonajesPorPrefijo("raider", 10).isEmpty());
+                assertEquals(List.of("Berserker"), noms(dao.buscarPersonajesPorPrefijo("bers", 10)));
+                assertEquals(List.of(2), ids(dao.buscarFacciones("sea raiders", 10)));
+                assertTrue(dao.buscarFacciones("vikings", 10).isEmpty());
+
+                // INSERT OR REPLACE d'un id nou és una inserció normal
+                executar(conn, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (9, 'Warlord', 2, 2, 2);");
+                comprovarIndexs(conn);
+                assertEquals(2, dao.buscarPersonajesPorPrefijo("war", 10).size());
+
+                executar(conn, "DELETE FROM Personaje WHERE id = 1;");
+                executar(conn, "DELETE FROM Faccion WHERE id = 1;");
+                comprovarIndexs(conn);
+                assertEquals(List.of("Warlord"), noms(dao.buscarPersonajesPorPrefijo("war", 10)));
+                assertTrue(dao.buscarFacciones("legion", 10).isEmpty());
+            }
+        }
+    }
+}
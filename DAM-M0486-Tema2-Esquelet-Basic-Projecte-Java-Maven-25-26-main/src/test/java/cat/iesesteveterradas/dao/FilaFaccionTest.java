@@ -0,0 +1,55 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class FilaFaccionTest {
+
+    @Test
+    public void testColumnesILongitudDelResum() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal(); Connection conn = bd.connexio()) {
+            DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom, resum) VALUES " +
+                "(1, 'Cavallers', 'Though seen as a single group'), (2, 'Vikings', NULL), (3, 'Samurais', 'Breu');");
+            List<String> llegits = new ArrayList<>();
+
+            // Sense longitudResum: el que es llegeix és el resum sencer, encara que les columnes vagin desordenades
+            List<Faccion> senceres = DatabaseManager.queryList(conn,
+                "SELECT resum, id, nom FROM Faccion ORDER BY id;", FilaFaccion.mapper(id -> "font " + id));
+            assertTrue(senceres.stream().allMatch(Faccion::isResumCompleto));
+            assertEquals("Though seen as a single group", senceres.get(0).getResum());
+            assertNull(senceres.get(1).getResum());
+
+            // Amb longitudResum: els retallats llegeixen la resta de la font, la resta no
+            List<Faccion> retallades = DatabaseManager.queryList(conn, HonorDao.SQL_FACCIONES_PREVIA,
+                FilaFaccion.mapper(id -> {
+                    llegits.add("font " + id);
+                    return "resum " + id;
+                }), 6);
+            assertFalse(retallades.get(0).isResumCompleto());
+            assertEquals("Though", retallades.get(0).getResumPrevia());
+            assertEquals("resum 1", retallades.get(0).getResum());
+            assertTrue(retallades.get(1).isResumCompleto());
+            assertTrue(retallades.get(2).isResumCompleto());
+            assertEquals("Breu", retallades.get(2).getResum());
+            assertEquals(List.of("font 1"), llegits);
+
+            // Sense font, un resum retallat es queda com està
+            FilaFaccion fila = new FilaFaccion();
+            DatabaseManager.queryFirst(conn, HonorDao.SQL_FACCIONES_PREVIA, fila::cargar, 6);
+            assertFalse(fila.isResumCompleto());
+            assertEquals("Though", fila.toFaccion().getResum());
+        }
+    }
+}
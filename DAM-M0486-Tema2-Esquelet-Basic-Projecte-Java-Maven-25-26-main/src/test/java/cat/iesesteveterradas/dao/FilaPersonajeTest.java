@@ -0,0 +1,88 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class FilaPersonajeTest {
+
+    private static void omplir(Connection conn) throws SQLException {
+        DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers'), (3, 'Samurais');");
+        DatabaseManager.queryUpdate(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+            "(1, 'Warden', 1, 3, 1), (7, 'Kensei', 3, 2.5, 3), (9, 'Nobushi', 2, 2, NULL);");
+    }
+
+    @Test
+    public void testColumnesEnQualsevolOrdre() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal(); Connection conn = bd.connexio()) {
+            omplir(conn);
+            FilaPersonaje fila = new FilaPersonaje();
+            List<String> vistes = new ArrayList<>();
+
+            // Primer amb l'ordre de la taula i després amb un altre ordre i columnes de més:
+            // la mateixa fila ha de tornar a buscar les posicions en canviar de ResultSet
+            DatabaseManager.queryForEach(conn, "SELECT id, nom, atac, defensa, idFaccion FROM Personaje ORDER BY id;",
+                rs -> vistes.add(fila.cargar(rs).getId() + ":" + fila.getNom() + ":" + fila.getAtac()));
+            DatabaseManager.queryForEach(conn,
+                "SELECT 'x' AS altra, defensa, idFaccion, nom, atac, id FROM Personaje ORDER BY id DESC;",
+                rs -> vistes.add(fila.cargar(rs).getId() + ":" + fila.getNom() + ":" + fila.getDefensa()));
+            assertEquals(List.of("1:Warden:1.0", "7:Kensei:3.0", "9:Nobushi:2.0",
+                "9:Nobushi:2.0", "7:Kensei:2.5", "1:Warden:3.0"), vistes);
+        }
+    }
+
+    @Test
+    public void testNomDeFaccioOpcional() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal(); Connection conn = bd.connexio()) {
+            omplir(conn);
+            HonorDao.cargarDiccionario(conn);
+
+            // Sense la columna, el nom ve del diccionari
+            Personaje kensei = DatabaseManager.queryFirst(conn, "SELECT * FROM Personaje WHERE id = 7;",
+                FilaPersonaje.mapper()).get();
+            assertEquals("Samurais", kensei.getNomFaccion());
+            assertEquals(2.5, kensei.getDefensa());
+
+            // Amb la columna (en qualsevol posició i amb qualsevol majúscula), es fa servir la de la fila
+            Personaje warden = DatabaseManager.queryFirst(conn,
+                "SELECT f.nom AS NOMFACCION, p.* FROM Personaje p JOIN Faccion f ON f.id = p.idFaccion WHERE p.id = 1;",
+                FilaPersonaje.mapper()).get();
+            assertEquals("Cavallers", warden.getNomFaccion());
+            assertEquals("Warden", warden.getNom());
+
+            Personaje nobushi = DatabaseManager.queryFirst(conn, "SELECT * FROM Personaje WHERE id = 9;",
+                FilaPersonaje.mapper()).get();
+            assertEquals(0, nobushi.getIdFaccion());
+            assertNull(nobushi.getNomFaccion());
+        }
+    }
+
+    @Test
+    public void testUnaSolaFilaPerRecorregut() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                omplir(conn);
+            }
+            List<FilaPersonaje> rebudes = new ArrayList<>();
+            List<Personaje> copies = new ArrayList<>();
+            assertEquals(3, new HonorDao(bd.pool).forEachFila(f -> {
+                rebudes.add(f);
+                copies.add(f.toPersonaje());
+            }));
+            assertSame(rebudes.get(0), rebudes.get(2));
+            // Les còpies no canvien quan la fila passa a la següent
+            assertEquals(List.of("Warden", "Kensei", "Nobushi"), copies.stream().map(Personaje::getNom).toList());
+            assertEquals("Cavallers", copies.get(0).getNomFaccion());
+        }
+    }
+}
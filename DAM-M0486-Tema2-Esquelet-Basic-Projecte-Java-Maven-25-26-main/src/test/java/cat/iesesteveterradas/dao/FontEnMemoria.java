@@ -0,0 +1,39 @@
+package cat.iesesteveterradas.dao;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+
+/**
+ * HonorDao sense base de dades que recorre una llista de personatges. Per a les
+ * estructures que es carreguen amb {@link HonorDao#forEachPersonaje}.
+ */
+final class FontEnMemoria extends HonorDao {
+
+    private final List<Personaje> personajes;
+    private final List<Integer> facciones;
+
+    // Existeixen totes les faccions dels personatges
+    FontEnMemoria(List<Personaje> personajes) {
+        this(personajes, personajes.stream().map(Personaje::getIdFaccion).distinct().toList());
+    }
+
+    FontEnMemoria(List<Personaje> personajes, List<Integer> facciones) {
+        super(null);
+        this.personajes = personajes;
+        this.facciones = facciones;
+    }
+
+    @Override
+    public List<Faccion> listFacciones(int longitudPrevia) {
+        return facciones.stream().map(id -> new Faccion(id, "Faccio " + id, null)).toList();
+    }
+
+    @Override
+    public int forEachPersonaje(Consumer<Personaje> consumer) {
+        personajes.forEach(consumer);
+        return personajes.size();
+    }
+}
@@ -0,0 +1,131 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class HonorDaoTest {
+
+    private static final String RESUM_LLARG = "Though seen as a single group, the Knights are made up of many orders. ".repeat(3);
+
+    private BdTemporal bd;
+    private HonorDao dao;
+
+    @BeforeEach
+    public void crearBaseDeDades() throws IOException, SQLException {
+        bd = new BdTemporal();
+        dao = new HonorDao(bd.pool);
+        try (Connection conn = bd.connexio()) {
+            DatabaseManager.queryUpdatePS(conn, "INSERT INTO Faccion (id, nom, resum) VALUES (1, 'Cavallers', ?), " +
+                "(2, 'Vikings', NULL), (3, 'Samurais', 'Breu'), (5, 'Wu Lin', ?);", RESUM_LLARG, RESUM_LLARG);
+            // Ids amb forats, per comprovar que les pàgines van per clau i no per posició
+            DatabaseManager.queryUpdate(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+                "(1, 'Warden', 1, 3, 1), (2, 'Conqueror', 2, 2, 1), (4, 'Raider', 3, 1, 2), " +
+                "(7, 'Kensei', 3, 2, 3), (8, 'Shugoki', 2, 1, 3), (12, 'Tiandi', 3, 2, 5), (13, 'Nobushi', 2, 2, NULL);");
+        }
+    }
+
+    @AfterEach
+    public void esborrarBaseDeDades() throws IOException {
+        bd.close();
+    }
+
+    private static List<Integer> ids(List<Personaje> personajes) {
+        return personajes.stream().map(Personaje::getId).toList();
+    }
+
+    @Test
+    public void testPaginaPersonatges() throws SQLException {
+        List<List<Integer>> pagines = new ArrayList<>();
+        int ultim = Integer.MIN_VALUE;
+        List<Personaje> pagina;
+        do {
+            pagina = dao.paginaPersonajes(ultim, 3);
+            pagines.add(ids(pagina));
+            if (!pagina.isEmpty()) {
+                ultim = pagina.get(pagina.size() - 1).getId();
+            }
+        } while (pagina.size() == 3);
+        assertEquals(List.of(List.of(1, 2, 4), List.of(7, 8, 12), List.of(13)), pagines);
+
+        // El nom de la facció ve del diccionari; sense facció, cap
+        List<Personaje> darrers = dao.paginaPersonajes(8, 10);
+        assertEquals("Wu Lin", darrers.get(0).getNomFaccion());
+        assertNull(darrers.get(1).getNomFaccion());
+        assertTrue(dao.paginaPersonajes(13, 10).isEmpty());
+    }
+
+    @Test
+    public void testPaginaFaccionsAmbResumRetallat() throws SQLException {
+        List<Faccion> primera = dao.paginaFacciones(Integer.MIN_VALUE, 2);
+        assertEquals(List.of(1, 2), primera.stream().map(Faccion::getId).toList());
+        List<Faccion> segona = dao.paginaFacciones(2, 2);
+        assertEquals(List.of(3, 5), segona.stream().map(Faccion::getId).toList());
+        assertTrue(dao.paginaFacciones(5, 2).isEmpty());
+
+        // El llistat porta només el principi dels resums llargs; la resta es llegeix en demanar-la
+        Faccion cavallers = primera.get(0);
+        assertFalse(cavallers.isResumCompleto());
+        assertEquals(RESUM_LLARG.substring(0, HonorDao.LONGITUD_PREVIA), cavallers.getResumPrevia());
+        assertEquals(RESUM_LLARG, cavallers.getResum());
+        assertTrue(primera.get(1).isResumCompleto());
+        assertNull(primera.get(1).getResum());
+        assertTrue(segona.get(0).isResumCompleto());
+        assertEquals("Breu", segona.get(0).getResum());
+    }
+
+    @Test
+    public void testResumSencerADemanda() throws SQLException {
+        List<Faccion> facciones = dao.listFacciones(10);
+        Faccion cavallers = facciones.get(0);
+        assertEquals("Though see", cavallers.getResumPrevia());
+        assertFalse(cavallers.isResumCompleto());
+        assertEquals(RESUM_LLARG, cavallers.getResum());
+        // Les que ja hi caben no van a buscar res
+        assertEquals("Breu", facciones.get(2).getResum());
+        assertTrue(facciones.get(2).isResumCompleto());
+        assertTrue(dao.findResum(2).isEmpty());
+        assertTrue(dao.findResum(42).isEmpty());
+    }
+
+    @Test
+    public void testCacheDeResumsSegueixLaVersio() throws SQLException {
+        assertEquals(RESUM_LLARG, dao.findResum(1).get());
+        HonorDao altre = new HonorDao(bd.pool);
+        assertEquals(RESUM_LLARG, altre.findResum(1).get());
+
+        // Un canvi que no passa per DatabaseManager no avisa ningú: es continua servint de la cache
+        try (Connection conn = bd.connexio(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE Faccion SET resum = 'Directe' WHERE id = 1;");
+        }
+        assertEquals(RESUM_LLARG, dao.findResum(1).get());
+
+        // Qualsevol escriptura a Faccion canvia la versió i buida la cache de tots els HonorDao
+        try (Connection conn = bd.connexio()) {
+            DatabaseManager.queryUpdatePS(conn, "UPDATE Faccion SET resum = ? WHERE id = ?;", "Nou", 5);
+        }
+        assertEquals("Directe", dao.findResum(1).get());
+        assertEquals("Directe", altre.findResum(1).get());
+        assertEquals("Nou", altre.findResum(5).get());
+
+        // També una facció nova afegida pel DAO: la cache no es queda amb el "no existeix"
+        assertTrue(altre.findResum(6).isEmpty());
+        assertEquals(6, dao.insertFaccion("Pirates", "Sense llei"));
+        assertEquals("Sense llei", altre.findResum(6).get());
+    }
+}
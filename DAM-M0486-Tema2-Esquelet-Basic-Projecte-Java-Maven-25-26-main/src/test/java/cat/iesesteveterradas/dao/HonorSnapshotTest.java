@@ -0,0 +1,186 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cat.iesesteveterradas.model.Faccion;
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResumenFaccion;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class HonorSnapshotTest {
+
+    private Path fichero;
+    private HonorSnapshot snapshot;
+
+    // Facció 2 sense personatges i un personatge d'una facció que no existeix (99)
+    private static HonorSnapshot.Datos annex() {
+        HonorSnapshot.Datos datos = new HonorSnapshot.Datos();
+        datos.addFaccion(1, "Cavallers", "Though seen as a single group...");
+        datos.addFaccion(2, "Vikings", null);
+        datos.addFaccion(3, "Samurais", "The Samurai are the most unified...");
+        datos.addPersonaje(1, "Warden", 1.0, 3.0, 1);
+        datos.addPersonaje(2, "Conqueror", 2.0, 2.0, 1);
+        datos.addPersonaje(3, "Peacekeep", 2.0, 3.0, 1);
+        datos.addPersonaje(7, "Kensei", 3.0, 2.0, 3);
+        datos.addPersonaje(8, "Shugoki", 2.0, 1.0, 3);
+        datos.addPersonaje(9, "Orochi", 3.0, 2.0, 3);
+        datos.addPersonaje(4, "Kensei", 0.5, 0.5, 99);
+        return datos;
+    }
+
+    private static List<Integer> ids(List<Personaje> personajes) {
+        return personajes.stream().map(Personaje::getId).toList();
+    }
+
+    @BeforeEach
+    public void escriureSnapshot() throws IOException {
+        fichero = Files.createTempFile("honor", ".snap");
+        annex().escribir(fichero);
+        snapshot = HonorSnapshot.abrir(fichero);
+    }
+
+    @AfterEach
+    public void esborrarSnapshot() throws IOException {
+        Files.deleteIfExists(fichero);
+    }
+
+    @Test
+    public void testFaccions() {
+        assertEquals(3, snapshot.numFacciones());
+        List<Faccion> facciones = snapshot.listFacciones();
+        assertEquals(List.of("Cavallers", "Vikings", "Samurais"), facciones.stream().map(Faccion::getNom).toList());
+        assertNull(facciones.get(1).getResum());
+        assertEquals("Samurais", snapshot.findFaccion(3).get().getNom());
+        assertTrue(snapshot.findFaccion(99).isEmpty());
+    }
+
+    @Test
+    public void testPersonatgesPerFaccio() {
+        assertEquals(7, snapshot.numPersonajes());
+        List<Personaje> samurais = snapshot.findPersonajesByFaccion(3);
+        assertEquals(List.of(7, 8, 9), ids(samurais));
+        assertEquals("Samurais", samurais.get(0).getNomFaccion());
+        assertTrue(snapshot.findPersonajesByFaccion(2).isEmpty());
+        // Com amb el JOIN: els d'una facció que no existeix no surten
+        assertTrue(snapshot.findPersonajesByFaccion(99).isEmpty());
+
+        Personaje orfe = snapshot.findPersonaje(4).get();
+        assertEquals(99, orfe.getIdFaccion());
+        assertNull(orfe.getNomFaccion());
+        assertTrue(snapshot.findPersonaje(5).isEmpty());
+    }
+
+    @Test
+    public void testMillorsPerFaccio() {
+        // Empat a atac entre Kensei i Orochi: guanya l'id més baix, com a la consulta SQL
+        assertEquals("Kensei", snapshot.findMejorAtacante(3).get().getNom());
+        assertEquals("Warden", snapshot.findMejorDefensor(1).get().getNom());
+        assertTrue(snapshot.findMejorAtacante(2).isEmpty());
+        assertEquals(List.of(1, 3), ids(snapshot.findTopDefensores(1, 2)));
+        assertEquals(List.of(7, 9, 8), ids(snapshot.findTopAtacantes(3, 5)));
+    }
+
+    @Test
+    public void testResums() {
+        // Resums com els de ResumenFaccion: també el de la facció 99, que no existeix
+        assertEquals(List.of(1, 3, 99), snapshot.listResumenes().stream().map(ResumenFaccion::getIdFaccion).toList());
+        ResumenFaccion cavallers = snapshot.findResumen(1).get();
+        assertEquals(3, cavallers.getNumPersonajes());
+        assertEquals(5.0 / 3, cavallers.getMediaAtac(), 1e-9);
+        assertEquals(Math.sqrt(1.0 / 3), cavallers.getDesviacionDefensa(), 1e-9);
+        assertTrue(snapshot.findResumen(2).isEmpty());
+        assertEquals(1, snapshot.findResumen(99).get().getNumPersonajes());
+    }
+
+    @Test
+    public void testPaginacio() {
+        // Per id: el personatge 4 (facció 99) va entre el 3 i el 7
+        assertEquals(List.of(3, 4, 7), ids(snapshot.paginaPersonajes(2, 3)));
+        assertEquals(List.of(8, 9), ids(snapshot.paginaPersonajes(7, 3)));
+        assertTrue(snapshot.paginaPersonajes(9, 3).isEmpty());
+        assertEquals("Vikings", snapshot.paginaFacciones(1, 1).get(0).getNom());
+        assertEquals(3, snapshot.paginaFacciones(Integer.MIN_VALUE, 10).size());
+    }
+
+    @Test
+    public void testResumADemanda() {
+        assertEquals("Though seen as a single group...", snapshot.findResum(1).get());
+        assertTrue(snapshot.findResum(2).isEmpty());
+        assertTrue(snapshot.findResum(5).isEmpty());
+        // Una facció amb només el principi el llegeix sencer de la font
+        Faccion previa = new Faccion(3, "Samurais", "The Sam", id -> snapshot.findResum(id).orElse(null));
+        assertEquals("The Sam", previa.getResumPrevia());
+        assertEquals("The Samurai are the most unified...", previa.getResum());
+    }
+
+    @Test
+    public void testRecorreguts() {
+        List<Personaje> tots = new ArrayList<>();
+        assertEquals(7, snapshot.forEachPersonaje(tots::add));
+        assertEquals(7, tots.size());
+
+        // La mateixa fila reutilitzada per a tot el recorregut
+        List<FilaPersonaje> vistes = new ArrayList<>();
+        List<String> noms = new ArrayList<>();
+        assertEquals(7, snapshot.forEachFila(f -> {
+            vistes.add(f);
+            noms.add(f.getNom() + "/" + f.getNomFaccion());
+        }));
+        assertTrue(vistes.stream().allMatch(f -> f == vistes.get(0)));
+        assertEquals("Warden/Cavallers", noms.get(0));
+        assertEquals("Kensei/null", noms.get(6));
+    }
+
+    @Test
+    public void testCopiaDeLaBaseDeDades() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                DatabaseManager.queryUpdatePS(conn, "INSERT INTO Faccion (id, nom, resum) VALUES (1, 'Cavallers', ?), " +
+                    "(2, 'Vikings', NULL), (3, 'Samurais', ?);",
+                    "Though seen as a single group...", "The Samurai are the most unified...");
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+                    "(1, 'Warden', 1, 3, 1), (2, 'Conqueror', 2, 2, 1), (3, 'Peacekeep', 2, 3, 1), " +
+                    "(7, 'Kensei', 3, 2, 3), (8, 'Shugoki', 2, 1, 3), (9, 'Orochi', 3, 2, 3), (4, 'Kensei', 0.5, 0.5, 99);");
+                assertEquals(7, HonorSnapshot.escribir(conn, fichero));
+            }
+            HonorDao dao = new HonorDao(bd.pool);
+            HonorDao copia = new SnapshotHonorDao(HonorSnapshot.abrir(fichero));
+
+            // Les mateixes respostes que les consultes SQL
+            assertEquals(dao.listFacciones().stream().map(Faccion::getResum).toList(),
+                copia.listFacciones().stream().map(Faccion::getResum).toList());
+            for (int idFaccion : new int[] { 1, 2, 3, 99 }) {
+                assertEquals(ids(dao.findPersonajesByFaccion(idFaccion)), ids(copia.findPersonajesByFaccion(idFaccion)));
+                assertEquals(dao.findMejorAtacante(idFaccion).map(Personaje::getId),
+                    copia.findMejorAtacante(idFaccion).map(Personaje::getId));
+                assertEquals(dao.findMejorDefensor(idFaccion).map(Personaje::getId),
+                    copia.findMejorDefensor(idFaccion).map(Personaje::getId));
+                assertEquals(dao.findResumen(idFaccion).map(ResumenFaccion::getSumaAtac),
+                    copia.findResumen(idFaccion).map(ResumenFaccion::getSumaAtac));
+            }
+            assertEquals("Samurais", copia.findPersonaje(9).get().getNomFaccion());
+            assertEquals(ids(dao.paginaPersonajes(2, 3)), ids(copia.paginaPersonajes(2, 3)));
+            assertEquals(dao.listResumenes().size(), copia.listResumenes().size());
+        }
+    }
+
+    @Test
+    public void testRebutjaFitxersQueNoSonSnapshots() throws IOException {
+        Files.writeString(fichero, "SQLite format 3 ... això no és un snapshot, però ocupa més de 64 bytes.");
+        assertThrows(IOException.class, () -> HonorSnapshot.abrir(fichero));
+    }
+}
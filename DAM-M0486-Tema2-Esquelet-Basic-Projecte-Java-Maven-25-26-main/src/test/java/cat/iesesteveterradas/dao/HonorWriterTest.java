@@ -0,0 +1,104 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class HonorWriterTest {
+
+    private static List<String> noms(Connection conn, String taula) throws SQLException {
+        return DatabaseManager.queryList(conn, "SELECT nom FROM " + taula + " ORDER BY id;", rs -> rs.getString(1));
+    }
+
+    @Test
+    public void testNomesFallaLOperacioErronia() throws Exception {
+        List<String> vistos = new CopyOnWriteArrayList<>();
+        List<String> fils = new CopyOnWriteArrayList<>();
+        try (BdTemporal bd = new BdTemporal()) {
+            // El listener llegeix amb una altra connexió: només veu el que ja s'ha confirmat
+            HonorListener listener = new HonorListener() {
+                @Override
+                public void faccionCambiada(int idFaccion) {
+                    fils.add(Thread.currentThread().getName());
+                    try (Connection conn = bd.connexio()) {
+                        vistos.add(DatabaseManager.queryFirst(conn, "SELECT nom FROM Faccion WHERE id = ?;",
+                            rs -> rs.getString(1), idFaccion).orElse("(no confirmada)"));
+                    } catch (SQLException e) {
+                        vistos.add(e.getMessage());
+                    }
+                }
+            };
+            HonorDao.addListener(listener);
+            // Grup de 3 i prou espera perquè les tres vagin a la mateixa transacció
+            HonorWriter writer = new HonorWriter(bd.pool, 16, 3, Duration.ofSeconds(5));
+            try {
+                CompletableFuture<Integer> cavallers = writer.insertFaccion("Cavallers", null);
+                CompletableFuture<Integer> senseNom = writer.insertFaccion(null, "NOT NULL");
+                CompletableFuture<Integer> vikings = writer.insertFaccion("Vikings", null);
+
+                assertEquals(1, cavallers.get(5, TimeUnit.SECONDS));
+                assertEquals(2, vikings.get(5, TimeUnit.SECONDS));
+                ExecutionException e = assertThrows(ExecutionException.class, () -> senseNom.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(SQLException.class, e.getCause());
+            } finally {
+                writer.close();
+                HonorDao.removeListener(listener);
+            }
+            // Els comptadors s'actualitzen després de completar els futurs: es miren un cop tancat
+            assertEquals(1, writer.getLotes());
+            assertEquals(3, writer.getOperaciones());
+            assertEquals(1, writer.getFallos());
+
+            // Un avís per cada inserció confirmada, cap per l'intent del grup desfet
+            assertEquals(List.of("Cavallers", "Vikings"), vistos);
+            assertEquals(List.of("honor-writer", "honor-writer"), fils);
+            try (Connection conn = bd.connexio()) {
+                assertEquals(List.of("Cavallers", "Vikings"), noms(conn, "Faccion"));
+            }
+        }
+    }
+
+    @Test
+    public void testTancarBuidaLaCua() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers');");
+            }
+            List<CompletableFuture<Personaje>> futurs = new ArrayList<>();
+            HonorWriter writer = new HonorWriter(bd.pool, 64, 4, Duration.ofMillis(1));
+            for (int i = 0; i < 50; i++) {
+                futurs.add(writer.insertPersonaje("P" + i, i % 4, 2, 1));
+            }
+            writer.close();
+
+            // close() espera que s'executi tot el que ja era a la cua
+            assertEquals(0, writer.getPendientes());
+            assertEquals(50, writer.getOperaciones());
+            for (int i = 0; i < futurs.size(); i++) {
+                CompletableFuture<Personaje> futur = futurs.get(i);
+                assertTrue(futur.isDone() && !futur.isCompletedExceptionally(), "Futur " + i);
+                assertEquals("P" + i, futur.join().getNom());
+            }
+            try (Connection conn = bd.connexio()) {
+                assertEquals(50, noms(conn, "Personaje").size());
+            }
+            assertThrows(IllegalStateException.class, () -> writer.insertFaccion("Vikings", null));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import cat.iesesteveterradas.model.Personaje;
+
+public class IndiceAtacDefensaTest {
+
+    private static List<Integer> ids(List<Personaje> personajes) {
+        return personajes.stream().map(Personaje::getId).collect(Collectors.toList());
+    }
+
+    // Solució de referència: ordenar-los tots per distància
+    private static List<Integer> cercanosForcaBruta(Map<Integer, Personaje> tots, double a, double d, int k) {
+        return tots.values().stream()
+            .sorted(Comparator.comparingDouble((Personaje p) ->
+                    (p.getAtac() - a) * (p.getAtac() - a) + (p.getDefensa() - d) * (p.getDefensa() - d))
+                .thenComparingInt(Personaje::getId))
+            .limit(k).map(Personaje::getId).collect(Collectors.toList());
+    }
+
+    private static List<Integer> rangoForcaBruta(Map<Integer, Personaje> tots, double minA, double maxA, double minD) {
+        return tots.values().stream()
+            .filter(p -> p.getAtac() >= minA && p.getAtac() <= maxA && p.getDefensa() >= minD)
+            .map(Personaje::getId).sorted().collect(Collectors.toList());
+    }
+
+    // Els que cap altre supera en un valor sense quedar per sota en l'altre
+    private static List<Integer> paretoForcaBruta(Map<Integer, Personaje> tots, int idFaccion) {
+        List<Personaje> grup = tots.values().stream()
+            .filter(p -> idFaccion < 0 || p.getIdFaccion() == idFaccion).collect(Collectors.toList());
+        return grup.stream()
+            .filter(p -> grup.stream().noneMatch(q -> q.getAtac() >= p.getAtac() && q.getDefensa() >= p.getDefensa()
+                && (q.getAtac() > p.getAtac() || q.getDefensa() > p.getDefensa())))
+            .map(Personaje::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testIgualQueForcaBruta() throws SQLException {
+        SplittableRandom random = new SplittableRandom(3);
+        Map<Integer, Personaje> tots = new TreeMap<>();
+        for (int id = 1; id <= 2000; id++) {
+            // Valors arrodonits a un decimal: molts empats, com a les dades reals
+            tots.put(id, new Personaje(id, "P" + id, Math.round(random.nextDouble(10) * 10) / 10.0,
+                Math.round(random.nextDouble(10) * 10) / 10.0, 1 + random.nextInt(5)));
+        }
+        try (IndiceAtacDefensa indice = new IndiceAtacDefensa(new FontEnMemoria(new ArrayList<>(tots.values())))) {
+            for (int ronda = 0; ronda < 3; ronda++) {
+                for (int q = 0; q < 50; q++) {
+                    double a = random.nextDouble(10);
+                    double d = random.nextDouble(10);
+                    assertEquals(cercanosForcaBruta(tots, a, d, 7), ids(indice.cercanos(a, d, 7)));
+                    double minA = random.nextDouble(10);
+                    assertEquals(rangoForcaBruta(tots, minA, minA + 1.5, d),
+                        ids(indice.rango(minA, minA + 1.5, d, Double.POSITIVE_INFINITY)));
+                }
+                assertEquals(tots.size(), indice.size());
+                assertEquals(paretoForcaBruta(tots, -1), ids(indice.pareto()).stream().sorted().collect(Collectors.toList()));
+                assertEquals(paretoForcaBruta(tots, 2), ids(indice.pareto(2)).stream().sorted().collect(Collectors.toList()));
+
+                // Canvis incrementals: n'hi ha prou perquè la segona ronda reconstrueixi l'arbre
+                for (int c = 0; c < 400; c++) {
+                    int id = 1 + random.nextInt(2100);
+                    Personaje anterior = tots.get(id);
+                    if (anterior != null && random.nextInt(3) == 0) {
+                        tots.remove(id);
+                        indice.aplicar(anterior, null);
+                    } else {
+                        Personaje nuevo = new Personaje(id, "P" + id, random.nextInt(101) / 10.0,
+                            random.nextInt(101) / 10.0, 1 + random.nextInt(5));
+                        tots.put(id, nuevo);
+                        indice.aplicar(anterior, nuevo);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParetoISimilars() throws SQLException {
+        List<Personaje> annex = List.of(
+            new Personaje(1, "Warden", 1.0, 3.0, 1),
+            new Personaje(2, "Conqueror", 2.0, 2.0, 1),
+            new Personaje(3, "Peacekeep", 2.0, 3.0, 1),
+            new Personaje(7, "Kensei", 3.0, 2.0, 3),
+            new Personaje(8, "Shugoki", 2.0, 1.0, 3),
+            new Personaje(9, "Orochi", 3.0, 2.0, 3)
+        );
+        try (IndiceAtacDefensa indice = new IndiceAtacDefensa(new FontEnMemoria(annex))) {
+            // Kensei i Orochi són idèntics: cap dels dos domina l'altre
+            assertEquals(List.of(7, 9, 3), ids(indice.pareto()));
+            assertEquals(List.of(3), ids(indice.pareto(1)));
+            assertEquals(List.of(7, 9), ids(indice.pareto(3)));
+            assertTrue(indice.pareto(2).isEmpty());
+
+            // El més semblant a Kensei és Orochi, i ell mateix no hi surt
+            assertEquals(List.of(9, 2), ids(indice.similares(annex.get(3), 2)));
+
+            // Un canvi invalida la frontera calculada
+            indice.aplicar(annex.get(1), new Personaje(2, "Conqueror", 4.0, 4.0, 1));
+            assertEquals(List.of(2), ids(indice.pareto()));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class LeaderboardTest {
+
+    private static List<Personaje> annex() {
+        return List.of(
+            new Personaje(1, "Warden", 1.0, 3.0, 1),
+            new Personaje(2, "Conqueror", 2.0, 2.0, 1),
+            new Personaje(3, "Peacekeep", 2.0, 3.0, 1),
+            new Personaje(7, "Kensei", 3.0, 2.0, 3),
+            new Personaje(8, "Shugoki", 2.0, 1.0, 3),
+            new Personaje(9, "Orochi", 3.0, 2.0, 3)
+        );
+    }
+
+    @Test
+    public void testMejorPorCriterio() throws SQLException {
+        try (Leaderboard leaderboard = new Leaderboard(new FontEnMemoria(annex()))) {
+            // Empat a atac entre Kensei i Orochi: guanya l'id més baix, com amb ORDER BY a SQLite
+            assertEquals("Kensei", leaderboard.mejor(3, Leaderboard.Criterio.ATAC).get().getNom());
+            assertEquals("Warden", leaderboard.mejor(1, Leaderboard.Criterio.DEFENSA).get().getNom());
+            assertEquals("Peacekeep", leaderboard.mejor(1, Leaderboard.Criterio.COMBINADO).get().getNom());
+            assertTrue(leaderboard.mejor(2, Leaderboard.Criterio.ATAC).isEmpty());
+        }
+    }
+
+    @Test
+    public void testCambiosIncrementales() throws SQLException {
+        try (Leaderboard leaderboard = new Leaderboard(new FontEnMemoria(annex()))) {
+            assertEquals(6, leaderboard.size());
+
+            // Shugoki millora i es canvia de facció
+            Personaje shugoki = new Personaje(8, "Shugoki", 5.0, 1.0, 1);
+            leaderboard.aplicar(new Personaje(8, "Shugoki", 2.0, 1.0, 3), shugoki);
+            assertEquals("Shugoki", leaderboard.mejor(1, Leaderboard.Criterio.ATAC).get().getNom());
+            assertEquals(2, leaderboard.top(3, Leaderboard.Criterio.ATAC, 10).size());
+
+            // Canvi sense moure la posició (mateix valor): no es pot perdre
+            leaderboard.aplicar(shugoki, new Personaje(8, "Shugoki II", 5.0, 1.0, 1));
+            assertEquals("Shugoki II", leaderboard.mejor(1, Leaderboard.Criterio.ATAC).get().getNom());
+            assertEquals(6, leaderboard.size());
+
+            leaderboard.aplicar(shugoki, null);
+            assertEquals(5, leaderboard.size());
+            assertEquals(List.of(2, 3, 1), leaderboard.top(1, Leaderboard.Criterio.ATAC, 3).stream().map(Personaje::getId).toList());
+        }
+    }
+
+    @Test
+    public void testPosaAlDiaAmbElRegistreDeCanvis() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers'), (3, 'Samurais');");
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+                    "(1, 'Warden', 1, 3, 1), (2, 'Conqueror', 2, 2, 1), (7, 'Kensei', 3, 2, 3);");
+            }
+            AtomicInteger cargas = new AtomicInteger();
+            HonorDao fuente = new HonorDao(bd.pool) {
+                @Override
+                public int forEachPersonaje(Consumer<Personaje> consumer) throws SQLException {
+                    cargas.incrementAndGet();
+                    return super.forEachPersonaje(consumer);
+                }
+            };
+            try (Leaderboard leaderboard = new Leaderboard(fuente, new FeedCambios(bd.pool, 0))) {
+                assertEquals("Conqueror", leaderboard.mejor(1, Leaderboard.Criterio.ATAC).get().getNom());
+
+                // Escriptures fora de HonorDao (com RosterLoader): només es rellegeixen les files canviades
+                try (Connection conn = bd.connexio()) {
+                    DatabaseManager.queryUpdate(conn, "UPDATE Personaje SET atac = 9, idFaccion = 3 WHERE id = 1;");
+                    DatabaseManager.queryUpdate(conn, "DELETE FROM Personaje WHERE id = 2;");
+                    DatabaseManager.queryUpdate(conn,
+                        "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (8, 'Shugoki', 2, 1, 1);");
+                }
+                assertEquals("Warden", leaderboard.mejor(3, Leaderboard.Criterio.ATAC).get().getNom());
+                assertEquals(List.of(8), leaderboard.top(1, Leaderboard.Criterio.ATAC, 5).stream().map(Personaje::getId).toList());
+                assertEquals(3, leaderboard.size());
+                assertEquals(1, cargas.get());
+            }
+        }
+    }
+
+    @Test
+    public void testRecarregaDespresDUnaCarregaMassiva() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            AtomicInteger cargas = new AtomicInteger();
+            HonorDao fuente = new HonorDao(bd.pool) {
+                @Override
+                public int forEachPersonaje(Consumer<Personaje> consumer) throws SQLException {
+                    cargas.incrementAndGet();
+                    return super.forEachPersonaje(consumer);
+                }
+            };
+            try (Connection conn = bd.connexio()) {
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers'), (3, 'Samurais');");
+            }
+            try (Leaderboard leaderboard = new Leaderboard(fuente, new FeedCambios(bd.pool, 0))) {
+                assertEquals(0, leaderboard.size());
+
+                // Com RosterLoader: el registre queda pausat i només hi ha l'avís final
+                try (Connection conn = bd.connexio()) {
+                    assertTrue(HonorDao.pausarRegistro(conn));
+                    DatabaseManager.executeBatch(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (?, ?, ?, ?, ?);",
+                        List.of(new Object[] { 1, "Warden", 1.0, 3.0, 1 }, new Object[] { 7, "Kensei", 3.0, 2.0, 3 }), 1);
+                    HonorDao.reanudarRegistro(conn);
+                }
+                assertEquals("Kensei", leaderboard.mejor(3, Leaderboard.Criterio.ATAC).get().getNom());
+                assertEquals(2, leaderboard.size());
+                assertEquals(2, cargas.get());
+            }
+        }
+    }
+
+    @Test
+    public void testPersonatgesSenseFaccioNoEsClassifiquen() throws SQLException {
+        List<Personaje> personajes = new ArrayList<>(annex());
+        // Un de la facció 99, que no existeix, i un sense facció (NULL es llegeix com a 0)
+        personajes.add(new Personaje(20, "Orfe", 9.0, 9.0, 99));
+        personajes.add(new Personaje(21, "Nobushi", 9.0, 9.0, 0));
+        try (Leaderboard leaderboard = new Leaderboard(new FontEnMemoria(personajes, List.of(1, 2, 3)))) {
+            assertEquals(6, leaderboard.size());
+            assertTrue(leaderboard.mejor(99, Leaderboard.Criterio.ATAC).isEmpty());
+            assertTrue(leaderboard.mejor(0, Leaderboard.Criterio.ATAC).isEmpty());
+            assertEquals(List.of(1, 3), List.copyOf(leaderboard.topPorFaccion(Leaderboard.Criterio.ATAC, 1).keySet()));
+
+            // Passar a una facció que no existeix és com esborrar-lo, i tornar el torna a classificar
+            Personaje kensei = new Personaje(7, "Kensei", 3.0, 2.0, 3);
+            Personaje orfe = new Personaje(7, "Kensei", 3.0, 2.0, 99);
+            leaderboard.aplicar(kensei, orfe);
+            assertEquals(5, leaderboard.size());
+            assertEquals("Orochi", leaderboard.mejor(3, Leaderboard.Criterio.ATAC).get().getNom());
+            leaderboard.aplicar(orfe, new Personaje(7, "Kensei", 3.0, 2.0, 2));
+            assertEquals("Kensei", leaderboard.mejor(2, Leaderboard.Criterio.ATAC).get().getNom());
+        }
+    }
+
+    @Test
+    public void testFaccioEsborradaAmbElRegistreDeCanvis() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers'), (3, 'Samurais');");
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES " +
+                    "(1, 'Warden', 1, 3, 1), (7, 'Kensei', 3, 2, 3), (20, 'Orfe', 9, 9, 99), (21, 'Nobushi', 9, 9, NULL);");
+            }
+            HonorDao fuente = new HonorDao(bd.pool);
+            try (Leaderboard leaderboard = new Leaderboard(fuente, new FeedCambios(bd.pool, 0))) {
+                assertEquals(2, leaderboard.size());
+                assertTrue(leaderboard.mejor(0, Leaderboard.Criterio.ATAC).isEmpty());
+
+                // Fora de HonorDao: s'esborra la facció 3 i es crea la 99
+                try (Connection conn = bd.connexio()) {
+                    DatabaseManager.queryUpdate(conn, "DELETE FROM Faccion WHERE id = 3;");
+                    DatabaseManager.queryUpdate(conn, "INSERT INTO Faccion (id, nom) VALUES (99, 'Wu-Lin');");
+                }
+                assertTrue(leaderboard.mejor(3, Leaderboard.Criterio.ATAC).isEmpty());
+                assertEquals("Orfe", leaderboard.mejor(99, Leaderboard.Criterio.ATAC).get().getNom());
+                assertEquals(2, leaderboard.size());
+
+                // Amb HonorDao: l'avís de la facció nova també fa recarregar
+                try (Connection conn = bd.connexio()) {
+                    DatabaseManager.queryUpdate(conn, "UPDATE Personaje SET idFaccion = 100 WHERE id = 1;");
+                }
+                assertEquals(1, leaderboard.size());
+                assertEquals(100, fuente.insertFaccion("Vikings", null));
+                assertEquals("Warden", leaderboard.mejor(100, Leaderboard.Criterio.ATAC).get().getNom());
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package cat.iesesteveterradas.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import cat.iesesteveterradas.model.Personaje;
+import cat.iesesteveterradas.model.ResumenFaccion;
+import cat.iesesteveterradas.utility.DatabaseManager;
+
+public class VistasTest {
+
+    // El resum que mantenen els triggers ha de ser el mateix que calcular-lo des de zero
+    private static void comprovarResums(Connection conn) throws SQLException {
+        List<ResumenFaccion> esperats = DatabaseManager.queryList(conn,
+            "SELECT idFaccion, COUNT(*) AS numPersonajes, TOTAL(atac) AS sumaAtac, TOTAL(defensa) AS sumaDefensa, " +
+            "TOTAL(atac * atac) AS sumaAtac2, TOTAL(defensa * defensa) AS sumaDefensa2 " +
+            "FROM Personaje WHERE idFaccion IS NOT NULL GROUP BY idFaccion ORDER BY idFaccion;", HonorDao::mapResumen);
+        List<ResumenFaccion> resums = DatabaseManager.queryList(conn, HonorDao.SQL_RESUMENES, HonorDao::mapResumen);
+        assertEquals(esperats.size(), resums.size(), "Resums: " + resums);
+        for (int i = 0; i < esperats.size(); i++) {
+            ResumenFaccion e = esperats.get(i);
+            ResumenFaccion r = resums.get(i);
+            assertEquals(e.getIdFaccion(), r.getIdFaccion());
+            assertEquals(e.getNumPersonajes(), r.getNumPersonajes());
+            assertEquals(e.getSumaAtac(), r.getSumaAtac(), 1e-9);
+            assertEquals(e.getSumaDefensa(), r.getSumaDefensa(), 1e-9);
+            assertEquals(e.getDesviacionAtac(), r.getDesviacionAtac(), 1e-9);
+            assertEquals(e.getDesviacionDefensa(), r.getDesviacionDefensa(), 1e-9);
+        }
+    }
+
+    private static void executar(Connection conn, String sql, Object... params) throws SQLException {
+        DatabaseManager.queryUpdatePS(conn, sql, params);
+    }
+
+    @Test
+    public void testResumsSegueixenLesEscriptures() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal(); Connection conn = bd.connexio()) {
+            executar(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers'), (2, 'Vikings'), (3, 'Samurais');");
+            executar(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (1, 'Warden', 1, 3, 1);");
+            executar(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (2, 'Raider', 3, 1, 2);");
+            executar(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (3, 'Kensei', 3, 2, 3);");
+            comprovarResums(conn);
+
+            // Sense facció: no compten enlloc ni creen resums amb un id inventat
+            executar(conn, "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES ('Nobushi', 2, 2, NULL);");
+            executar(conn, "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES ('Aramusha', 2, 1, NULL);");
+            comprovarResums(conn);
+            assertEquals(3, DatabaseManager.queryFirst(conn, "SELECT COUNT(*) FROM ResumenFaccion;", rs -> rs.getInt(1)).get());
+
+            // Actualitzacions: valors, canvi de facció, cap a NULL i des de NULL
+            executar(conn, "UPDATE Personaje SET atac = 5 WHERE id = 1;");
+            executar(conn, "UPDATE Personaje SET idFaccion = 1 WHERE id = 2;");
+            comprovarResums(conn);
+            executar(conn, "UPDATE Personaje SET idFaccion = NULL WHERE id = 3;");
+            executar(conn, "UPDATE Personaje SET idFaccion = 3 WHERE id = 4;");
+            comprovarResums(conn);
+
+            // INSERT OR REPLACE: entre faccions, des de NULL i cap a NULL
+            executar(conn, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (1, 'Warden', 2, 4, 3);");
+            executar(conn, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (5, 'Aramusha', 4, 4, 2);");
+            executar(conn, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (2, 'Raider', 3, 1, NULL);");
+            comprovarResums(conn);
+
+            // Esborrats, també de l'últim d'una facció i d'un sense facció
+            executar(conn, "DELETE FROM Personaje WHERE id IN (2, 3, 5);");
+            comprovarResums(conn);
+            executar(conn, "DELETE FROM Personaje;");
+            comprovarResums(conn);
+            assertEquals(0, DatabaseManager.queryFirst(conn, "SELECT COUNT(*) FROM ResumenFaccion;", rs -> rs.getInt(1)).get());
+        }
+    }
+
+    @Test
+    public void testResumsDesDelDao() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            HonorDao dao = new HonorDao(bd.pool);
+            int cavallers = dao.insertFaccion("Cavallers", null);
+            int vikings = dao.insertFaccion("Vikings", null);
+            Personaje warden = dao.insertPersonaje("Warden", 1, 3, cavallers);
+            dao.insertPersonaje("Conqueror", 2, 2, cavallers);
+            assertEquals(2, dao.findResumen(cavallers).get().getNumPersonajes());
+            assertEquals(1.5, dao.findResumen(cavallers).get().getMediaAtac(), 1e-9);
+            assertTrue(dao.findResumen(vikings).isEmpty());
+
+            // El Warden es passa als vikings: els dos resums canvien sense recalcular res
+            dao.updatePersonaje(new Personaje(warden.getId(), "Warden", 4, 3, vikings));
+            assertEquals(1, dao.findResumen(cavallers).get().getNumPersonajes());
+            assertEquals(4.0, dao.findResumen(vikings).get().getSumaAtac(), 1e-9);
+
+            dao.deletePersonaje(warden.getId());
+            assertTrue(dao.findResumen(vikings).isEmpty());
+            assertEquals(1, dao.listResumenes().size());
+            try (Connection conn = bd.connexio()) {
+                comprovarResums(conn);
+            }
+        }
+    }
+
+    @Test
+    public void testReconstruirIgnoraElsPersonatgesSenseFaccio() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal(); Connection conn = bd.connexio()) {
+            executar(conn, "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES ('Warden', 1, 3, 1), " +
+                "('Nobushi', 2, 2, NULL), ('Kensei', 3, 2, 3);");
+            comprovarResums(conn);
+
+            // Un resum descuadrat (p.ex. després d'un INSERT OR IGNORE): reconstruir-lo el treu
+            executar(conn, "INSERT INTO ResumenFaccion (idFaccion) VALUES (7);");
+            HonorDao.reconstruirVistas(conn);
+            comprovarResums(conn);
+        }
+    }
+
+    @Test
+    public void testTornarACrearNoEscriu() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal(); Connection conn = bd.connexio()) {
+            executar(conn, "INSERT INTO Personaje (nom, atac, defensa, idFaccion) VALUES ('Warden', 1, 3, 1);");
+            // La primera arrencada crea el que falti (BdTemporal no crea els índexs)
+            crearEsquema(conn);
+            int esquema = DatabaseManager.queryFirst(conn, "PRAGMA schema_version;", rs -> rs.getInt(1)).get();
+            int canvis = DatabaseManager.queryFirst(conn, "SELECT total_changes();", rs -> rs.getInt(1)).get();
+
+            // Les següents no han de tocar l'esquema ni les dades: si no, l'arxiu canvia a cada
+            // arrencada i el snapshot sempre sembla més vell que la BBDD
+            crearEsquema(conn);
+            assertEquals(esquema, DatabaseManager.queryFirst(conn, "PRAGMA schema_version;", rs -> rs.getInt(1)).get());
+            assertEquals(canvis, DatabaseManager.queryFirst(conn, "SELECT total_changes();", rs -> rs.getInt(1)).get());
+        }
+    }
+
+    // El que fa P210Honor en obrir una BBDD que ja existeix
+    private static void crearEsquema(Connection conn) throws SQLException {
+        HonorDao.crearIndices(conn);
+        HonorDao.crearVistas(conn);
+        HonorDao.crearBusqueda(conn);
+    }
+
+    @Test
+    public void testRegistreDeCanvis() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            try (Connection conn = bd.connexio()) {
+                executar(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers');");
+            }
+            FeedCambios feed = FeedCambios.desdeAhora(bd.pool);
+            long inici = feed.getPosicion();
+            try (Connection conn = bd.connexio()) {
+                executar(conn, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (1, 'Warden', 1, 3, 1);");
+                executar(conn, "UPDATE Personaje SET idFaccion = NULL WHERE id = 1;");
+                executar(conn, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (1, 'Warden', 1, 3, 1);");
+                executar(conn, "DELETE FROM Personaje WHERE id = 1;");
+            }
+
+            // Per ordre i per trossos: el reemplaçament és un esborrat i una inserció
+            List<FeedCambios.Cambio> primers = feed.siguientes(2);
+            assertEquals("IU", "" + primers.get(0).getOp() + primers.get(1).getOp());
+            assertNull(primers.get(0).getIdFaccionAnterior());
+            assertEquals(1, primers.get(1).getIdFaccionAnterior());
+            assertNull(primers.get(1).getIdFaccion());
+            List<FeedCambios.Cambio> resta = feed.siguientes(10);
+            assertEquals(3, resta.size());
+            assertEquals("DID", "" + resta.get(0).getOp() + resta.get(1).getOp() + resta.get(2).getOp());
+            assertEquals(1, resta.get(0).getIdFila());
+            assertTrue(primers.get(0).getSeq() > inici);
+            assertEquals(resta.get(2).getSeq(), feed.getPosicion());
+            assertTrue(feed.siguientes(10).isEmpty());
+
+            // Purgar els ja llegits (també la inserció de la facció) no fa tornar enrere les seqüències
+            long ultima = feed.getPosicion();
+            assertEquals(6, feed.purgar(ultima));
+            try (Connection conn = bd.connexio()) {
+                assertEquals(0, DatabaseManager.queryFirst(conn,
+                    "SELECT COUNT(*) FROM RegistroCambios WHERE seq > ?;", rs -> rs.getInt(1), inici).get());
+                executar(conn, "UPDATE Faccion SET nom = 'Knights' WHERE id = 1;");
+            }
+            List<FeedCambios.Cambio> nou = feed.siguientes(10);
+            assertEquals(1, nou.size());
+            assertEquals("Faccion", nou.get(0).getTabla());
+            assertTrue(nou.get(0).getSeq() > ultima);
+
+            // Un lector nou a partir d'ara no veu res pendent
+            FeedCambios altre = new FeedCambios(bd.pool, 0);
+            altre.saltarAlFinal();
+            assertTrue(altre.siguientes(10).isEmpty());
+        }
+    }
+
+    @Test
+    public void testElRegistreGuardaNomesElsUltims() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            FeedCambios endarrerit = new FeedCambios(bd.pool, 0);
+            try (Connection conn = bd.connexio()) {
+                executar(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers');");
+                assertEquals(1, endarrerit.siguientes(10).size());
+                // Cada canvi anotat esborra el que queda fora de la finestra
+                executar(conn, "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < ?) " +
+                    "INSERT INTO RegistroCambios (tabla, op, idFila) SELECT 'Personaje', 'U', i FROM n;",
+                    HonorDao.VENTANA_REGISTRO + 10);
+                assertEquals(HonorDao.VENTANA_REGISTRO, DatabaseManager.queryFirst(conn,
+                    "SELECT COUNT(*) FROM RegistroCambios;", rs -> rs.getInt(1)).get());
+            }
+            // Qui no havia llegit els esborrats ho ha de tornar a llegir tot
+            List<FeedCambios.Cambio> cambios = endarrerit.siguientes(5);
+            assertEquals(FeedCambios.RECARGAR, cambios.get(0).getOp());
+            assertEquals(6, cambios.size());
+            assertEquals(cambios.get(0).getSeq() + 1, cambios.get(1).getSeq());
+            // Després ja va seguit
+            assertTrue(endarrerit.siguientes(5).stream().noneMatch(c -> c.getOp() == FeedCambios.RECARGAR));
+        }
+    }
+
+    @Test
+    public void testCarregaMassivaSenseRegistre() throws IOException, SQLException {
+        try (BdTemporal bd = new BdTemporal()) {
+            FeedCambios feed = FeedCambios.desdeAhora(bd.pool);
+            try (Connection conn = bd.connexio()) {
+                assertTrue(HonorDao.pausarRegistro(conn));
+                executar(conn, "INSERT INTO Faccion (id, nom) VALUES (1, 'Cavallers');");
+                // També les escriptures d'altres connexions
+                try (Connection altra = bd.connexio()) {
+                    executar(altra, "INSERT INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (1, 'Warden', 1, 3, 1);");
+                    executar(altra, "INSERT OR REPLACE INTO Personaje (id, nom, atac, defensa, idFaccion) VALUES (1, 'Warden', 2, 3, 1);");
+                }
+                assertTrue(feed.siguientes(10).isEmpty());
+                HonorDao.reanudarRegistro(conn);
+
+                // Un sol avís de recàrrega en lloc d'una fila per canvi
+                List<FeedCambios.Cambio> cambios = feed.siguientes(10);
+                assertEquals(1, cambios.size());
+                assertEquals(FeedCambios.RECARGAR, cambios.get(0).getOp());
+                executar(conn, "DELETE FROM Personaje WHERE id = 1;");
+                assertEquals('D', feed.siguientes(10).get(0).getOp());
+                // Els triggers de resum no es pausen
+                comprovarResums(conn);
+
+                // Una pausa que no s'ha reanudat (el procés ha mort) es reanuda en obrir la base de dades
+                assertTrue(HonorDao.pausarRegistro(conn));
+                HonorDao.crearVistas(conn);
+                executar(conn, "UPDATE Faccion SET nom = 'Knights' WHERE id = 1;");
+                assertEquals("RU", feed.siguientes(10).stream().map(c -> String.valueOf(c.getOp())).reduce("", String::concat));
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package cat.iesesteveterradas.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class DiccionarioFaccionesTest {
+
+    @Test
+    public void testCarregaVellaNoTrepitjaUnRegistre() {
+        DiccionarioFacciones diccionario = new DiccionarioFacciones();
+        assertTrue(diccionario.reemplazar(Map.of(1, "Cavallers"), diccionario.getVersion()));
+        assertTrue(diccionario.isCargado());
+
+        // L'escriptor avisa abans del commit; un lector carrega la taula encara sense la facció 4
+        diccionario.invalidar();
+        long versio = diccionario.getVersion();
+        Map<Integer, String> llegit = Map.of(1, "Cavallers");
+        // Després del commit, l'escriptor la registra; la càrrega del lector arriba tard
+        diccionario.registrar(4, "Wu Lin");
+        assertFalse(diccionario.reemplazar(llegit, versio));
+        assertEquals("Wu Lin", diccionario.nombre(4));
+        assertFalse(diccionario.isCargado());
+
+        // La càrrega següent ja la veu
+        assertTrue(diccionario.reemplazar(Map.of(1, "Cavallers", 4, "Wu Lin"), diccionario.getVersion()));
+        assertTrue(diccionario.isCargado());
+        assertEquals(2, diccionario.size());
+    }
+}
@@ -0,0 +1,112 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+public class ConnectionPoolTest {
+
+    private Path db;
+
+    @BeforeEach
+    public void crearBaseDeDades() throws IOException, SQLException {
+        db = Files.createTempFile("honor", ".db");
+        try (ConnectionPool pool = new ConnectionPool(db.toString(), 1, 0);
+                Connection conn = pool.getConnection()) {
+            DatabaseManager.queryUpdate(conn, "CREATE TABLE Fila (id INTEGER PRIMARY KEY);");
+        }
+    }
+
+    @AfterEach
+    public void esborrarBaseDeDades() throws IOException {
+        Files.deleteIfExists(db);
+    }
+
+    private static int files(Connection conn) throws SQLException {
+        return DatabaseManager.queryFirst(conn, "SELECT COUNT(*) FROM Fila;", rs -> rs.getInt(1)).orElseThrow();
+    }
+
+    @Test
+    public void testPrestecIRetorn() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(db.toString(), 2, 4)) {
+            Connection primera = pool.getConnection();
+            primera.close();
+            assertTrue(primera.isClosed());
+            assertThrows(SQLException.class, () -> primera.createStatement());
+
+            // La connexió física retornada es torna a fer servir
+            try (Connection conn = pool.getConnection()) {
+                assertEquals(0, files(conn));
+            }
+            assertEquals(1, pool.getOpenConnections());
+
+            // Dos préstecs alhora, dues connexions físiques
+            try (Connection a = pool.getConnection(); Connection b = pool.getConnection()) {
+                assertEquals(2, pool.getOpenConnections());
+                // Tancar dos cops el mateix préstec no el retorna dos cops
+                a.close();
+                a.close();
+            }
+            assertEquals(2, pool.getOpenConnections());
+        }
+    }
+
+    @Test
+    public void testDesfaLaTransaccioEnRetornarLa() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(db.toString(), 1, 4)) {
+            try (Connection conn = pool.getConnection()) {
+                conn.setAutoCommit(false);
+                DatabaseManager.queryUpdate(conn, "INSERT INTO Fila (id) VALUES (1);");
+                // Es retorna sense commit
+            }
+            try (Connection conn = pool.getConnection()) {
+                assertTrue(conn.getAutoCommit());
+                assertEquals(0, files(conn));
+            }
+        }
+    }
+
+    @Test
+    public void testRetornaElsStatementsOblidats() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(db.toString(), 1, 4)) {
+            PreparedStatement oblidat;
+            try (Connection conn = pool.getConnection()) {
+                oblidat = conn.prepareStatement("SELECT COUNT(*) FROM Fila;");
+            }
+            assertTrue(oblidat.isClosed());
+            try (Connection conn = pool.getConnection();
+                    PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM Fila;")) {
+                // L'envoltori oblidat no toca l'statement del préstec nou
+                oblidat.close();
+                assertTrue(pstmt.executeQuery().next());
+            }
+        }
+    }
+
+    @Test
+    public void testTempsDEsperaEsgotat() throws SQLException {
+        ConnectionPool tancat;
+        try (ConnectionPool pool = new ConnectionPool(db.toString(), 1, 4, TuningProfile.DRIVER_DEFAULT, 100)) {
+            try (Connection conn = pool.getConnection()) {
+                SQLException e = assertThrows(SQLException.class, pool::getConnection);
+                assertTrue(e.getMessage().contains("Temps d'espera esgotat"));
+            }
+            // L'espera fallida no es queda cap permís
+            try (Connection conn = pool.getConnection()) {
+                assertEquals(0, files(conn));
+            }
+            tancat = pool;
+        }
+        assertThrows(SQLException.class, tancat::getConnection);
+    }
+}
@@ -0,0 +1,253 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DatabaseManagerTest {
+
+    private static final String SQL_PAGINA = "SELECT id FROM Fila WHERE grup = ? AND id > ? ORDER BY id LIMIT ?;";
+
+    // Falla en executar-se, no en preparar-se: l'statement ja és obert
+    private static final String SQL_DESBORDAMENT = "SELECT abs(-9223372036854775807 - 1);";
+
+    private Path db;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void crearBaseDeDades() throws IOException, SQLException {
+        db = Files.createTempFile("honor", ".db");
+        pool = new ConnectionPool(db.toString(), 1, 8);
+        try (Connection conn = pool.getConnection()) {
+            DatabaseManager.queryUpdate(conn, "CREATE TABLE Fila (id INTEGER PRIMARY KEY, grup TEXT);");
+            DatabaseManager.queryUpdate(conn, "INSERT INTO Fila (id, grup) VALUES " +
+                "(1, 'a'), (2, 'b'), (3, 'a'), (5, 'a'), (8, 'b'), (13, 'a'), (21, 'a');");
+        }
+    }
+
+    @AfterEach
+    public void esborrarBaseDeDades() throws IOException {
+        pool.close();
+        Files.deleteIfExists(db);
+    }
+
+    /**
+     * Connexió directa (sense pool ni memòria cau) que apunta els statements i
+     * ResultSets reals que s'obren, per comprovar que tots es tanquen.
+     */
+    private static final class ConnexioVigilada implements AutoCloseable {
+        final Connection fisica;
+        final Connection conn;
+        final List<PreparedStatement> statements = new ArrayList<>();
+        final List<ResultSet> resultSets = new ArrayList<>();
+
+        ConnexioVigilada(Path db) throws SQLException {
+            fisica = DriverManager.getConnection("jdbc:sqlite:" + db);
+            conn = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    Object result = invocar(fisica, method, args);
+                    return result instanceof PreparedStatement pstmt ? vigilar(pstmt) : result;
+                });
+        }
+
+        private PreparedStatement vigilar(PreparedStatement pstmt) {
+            statements.add(pstmt);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    Object result = invocar(pstmt, method, args);
+                    if (result instanceof ResultSet rs) {
+                        resultSets.add(rs);
+                    }
+                    return result;
+                });
+        }
+
+        private static Object invocar(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        void comprovarTotTancat(int statementsOberts) throws SQLException {
+            assertEquals(statementsOberts, statements.size());
+            for (PreparedStatement pstmt : statements) {
+                assertTrue(pstmt.isClosed(), "PreparedStatement obert");
+            }
+            for (ResultSet rs : resultSets) {
+                assertTrue(rs.isClosed(), "ResultSet obert");
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            fisica.close();
+        }
+    }
+
+    @Test
+    public void testQueryPageAvancaPerClau() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            // Els paràmetres propis van primer; la clau i la mida, als dos últims '?'
+            assertEquals(List.of(1, 3), DatabaseManager.queryPage(conn, SQL_PAGINA, rs -> rs.getInt(1), 0, 2, "a"));
+            assertEquals(List.of(5, 13), DatabaseManager.queryPage(conn, SQL_PAGINA, rs -> rs.getInt(1), 3, 2, "a"));
+            // Una pàgina incompleta és l'última
+            assertEquals(List.of(21), DatabaseManager.queryPage(conn, SQL_PAGINA, rs -> rs.getInt(1), 13, 2, "a"));
+            assertTrue(DatabaseManager.queryPage(conn, SQL_PAGINA, rs -> rs.getInt(1), 21, 2, "a").isEmpty());
+            assertEquals(List.of(2, 8), DatabaseManager.queryPage(conn, SQL_PAGINA, rs -> rs.getInt(1), 0, 5, "b"));
+
+            // Sense paràmetres propis
+            assertEquals(List.of(8, 13, 21), DatabaseManager.queryPage(conn,
+                "SELECT id FROM Fila WHERE id > ? ORDER BY id LIMIT ?;", rs -> rs.getInt(1), 5, 10));
+        }
+    }
+
+    @Test
+    public void testQueryStreamTancaElsRecursos() throws SQLException {
+        String sql = "SELECT id FROM Fila WHERE grup = ? ORDER BY id;";
+        try (ConnexioVigilada vigilada = new ConnexioVigilada(db)) {
+            // Consumit sencer, sense tancar-lo
+            assertEquals(List.of(2, 8), DatabaseManager.queryStream(vigilada.conn, sql, rs -> rs.getInt(1), "b").toList());
+            vigilada.comprovarTotTancat(1);
+
+            // Tancat abans d'acabar
+            try (Stream<Integer> ids = DatabaseManager.queryStream(vigilada.conn, sql, rs -> rs.getInt(1), "a")) {
+                assertEquals(1, ids.findFirst().orElseThrow());
+            }
+            vigilada.comprovarTotTancat(2);
+
+            // Error llegint una fila
+            Stream<Integer> ambError = DatabaseManager.queryStream(vigilada.conn, sql, rs -> rs.getInt(5), "a");
+            assertThrows(UncheckedSQLException.class, ambError::toList);
+            vigilada.comprovarTotTancat(3);
+
+            // Error del consumidor: el tanca el try-with-resources
+            try (Stream<Integer> ids = DatabaseManager.queryStream(vigilada.conn, sql, rs -> rs.getInt(1), "a")) {
+                assertThrows(IllegalStateException.class, () -> ids.forEach(id -> {
+                    throw new IllegalStateException("consumidor");
+                }));
+            }
+            vigilada.comprovarTotTancat(4);
+
+            // Error executant la consulta, o el driver rebutjant un paràmetre
+            assertThrows(SQLException.class,
+                () -> DatabaseManager.queryStream(vigilada.conn, SQL_DESBORDAMENT, rs -> rs.getInt(1)));
+            vigilada.comprovarTotTancat(5);
+            assertThrows(RuntimeException.class,
+                () -> DatabaseManager.queryStream(vigilada.conn, sql, rs -> rs.getInt(1), "a", "sobrant"));
+            vigilada.comprovarTotTancat(6);
+        }
+    }
+
+    @Test
+    public void testQueryForEachTancaElsRecursos() throws SQLException {
+        String sql = "SELECT id FROM Fila WHERE grup = ? ORDER BY id;";
+        try (ConnexioVigilada vigilada = new ConnexioVigilada(db)) {
+            List<Integer> ids = new ArrayList<>();
+            assertEquals(5, DatabaseManager.queryForEach(vigilada.conn, sql, rs -> ids.add(rs.getInt(1)), "a"));
+            vigilada.comprovarTotTancat(1);
+
+            assertThrows(SQLException.class, () -> DatabaseManager.queryForEach(vigilada.conn, sql, rs -> rs.getInt(5), "a"));
+            vigilada.comprovarTotTancat(2);
+
+            assertThrows(IllegalStateException.class, () -> DatabaseManager.queryForEach(vigilada.conn, sql, rs -> {
+                throw new IllegalStateException("callback");
+            }, "a"));
+            vigilada.comprovarTotTancat(3);
+
+            assertThrows(SQLException.class,
+                () -> DatabaseManager.queryForEach(vigilada.conn, SQL_DESBORDAMENT, rs -> ids.add(rs.getInt(1))));
+            vigilada.comprovarTotTancat(4);
+            assertThrows(RuntimeException.class,
+                () -> DatabaseManager.queryForEach(vigilada.conn, sql, rs -> ids.add(rs.getInt(1)), "a", "sobrant"));
+            vigilada.comprovarTotTancat(5);
+        }
+    }
+
+    @Test
+    public void testQuerySelectPSTancaElStatementAmbElResultSet() throws SQLException {
+        String sql = "SELECT id FROM Fila WHERE grup = ? ORDER BY id;";
+        try (ConnexioVigilada vigilada = new ConnexioVigilada(db)) {
+            try (ResultSet rs = DatabaseManager.querySelectPS(vigilada.conn, sql, "b")) {
+                assertTrue(rs.next());
+            }
+            vigilada.comprovarTotTancat(1);
+
+            assertThrows(SQLException.class, () -> DatabaseManager.querySelectPS(vigilada.conn, SQL_DESBORDAMENT));
+            vigilada.comprovarTotTancat(2);
+            assertThrows(RuntimeException.class, () -> DatabaseManager.querySelectPS(vigilada.conn, sql, "a", "sobrant"));
+            vigilada.comprovarTotTancat(3);
+        }
+    }
+
+    @Test
+    public void testAvisaDelsCanvisQuanEsConfirmen() throws SQLException {
+        List<String> avisos = new ArrayList<>();
+        TableChangeListener listener = (taula, sql) -> avisos.add(taula);
+        DatabaseManager.addTableChangeListener(listener);
+        try (Connection conn = pool.getConnection()) {
+            // En mode autocommit, de seguida
+            DatabaseManager.queryUpdatePS(conn, "INSERT INTO Fila (id, grup) VALUES (?, 'c');", 30);
+            assertEquals(List.of("Fila"), avisos);
+
+            // Dins d'una transacció, en confirmar-la
+            conn.setAutoCommit(false);
+            DatabaseManager.queryUpdatePS(conn, "INSERT INTO Fila (id, grup) VALUES (?, 'c');", 31);
+            DatabaseManager.queryUpdate(conn, "DELETE FROM Fila WHERE id = 30;");
+            assertEquals(1, avisos.size());
+            conn.commit();
+            assertEquals(List.of("Fila", "Fila", "Fila"), avisos);
+
+            // Si es desfà, cap avís
+            DatabaseManager.queryUpdate(conn, "DELETE FROM Fila WHERE id = 31;");
+            conn.rollback();
+            assertEquals(3, avisos.size());
+
+            // setAutoCommit(true) també confirma
+            DatabaseManager.executeBatch(conn, "INSERT INTO Fila (id, grup) VALUES (?, 'd');",
+                List.of(new Object[] { 40 }, new Object[] { 41 }), 10);
+            assertEquals(3, avisos.size());
+            conn.setAutoCommit(true);
+            assertEquals(4, avisos.size());
+
+            // Retornar-la sense confirmar la transacció la desfà
+            conn.setAutoCommit(false);
+            DatabaseManager.queryUpdate(conn, "DELETE FROM Fila;");
+        } finally {
+            DatabaseManager.removeTableChangeListener(listener);
+        }
+        assertEquals(4, avisos.size());
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.commit();
+            assertEquals(4, avisos.size());
+            assertEquals(10, DatabaseManager.queryList(conn, "SELECT id FROM Fila;", rs -> rs.getInt(1)).size());
+        }
+    }
+
+    @Test
+    public void testQueryPageRebutjaMidesNoPositives() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            assertThrows(IllegalArgumentException.class,
+                () -> DatabaseManager.queryPage(conn, SQL_PAGINA, rs -> rs.getInt(1), 0, 0, "a"));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class LineReaderTest {
+
+    private static List<String> llegir(Path fitxer, int finestra) throws IOException {
+        try (Stream<String> linies = LineReader.lines(fitxer, new LineReader.Chunk(0, Files.size(fitxer)),
+                StandardCharsets.UTF_8, finestra)) {
+            return linies.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testIgualQueReadAllLines() throws IOException {
+        Path fitxer = Files.createTempFile("linies", ".txt");
+        try {
+            // CRLF, línies buides, accents i una última línia sense salt
+            Files.writeString(fitxer, "primera\r\n\nsegona línia amb àccents\nper a l'última\r\nfinal sense salt",
+                StandardCharsets.UTF_8);
+            List<String> esperat = Files.readAllLines(fitxer);
+            // Finestres de 4 bytes: gairebé totes les línies (i la 'à') queden entre dues finestres
+            assertEquals(esperat, llegir(fitxer, 4));
+            assertEquals(esperat, llegir(fitxer, LineReader.DEFAULT_WINDOW_SIZE));
+            try (Stream<String> linies = LineReader.lines(fitxer, StandardCharsets.UTF_8)) {
+                assertEquals(esperat, linies.collect(Collectors.toList()));
+            }
+
+            Files.writeString(fitxer, "acaba amb salt\n");
+            assertEquals(List.of("acaba amb salt"), llegir(fitxer, 3));
+            Files.writeString(fitxer, "");
+            assertTrue(llegir(fitxer, 3).isEmpty());
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    @Test
+    public void testRetornDeCarroSol() throws IOException {
+        Path fitxer = Files.createTempFile("linies", ".txt");
+        try {
+            // \r sol, \r\r (línia buida), \r\n i un \r al final
+            Files.writeString(fitxer, "a\rb\r\rc\r\nd\n\re\r", StandardCharsets.UTF_8);
+            List<String> esperat = Files.readAllLines(fitxer);
+            assertEquals(List.of("a", "b", "", "c", "d", "", "e"), esperat);
+            // Amb finestres d'1 i 2 bytes, el \n d'un \r\n queda a la finestra següent
+            for (int finestra : new int[] { 1, 2, 3, LineReader.DEFAULT_WINDOW_SIZE }) {
+                assertEquals(esperat, llegir(fitxer, finestra), "Finestra de " + finestra);
+            }
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    @Test
+    public void testTrossosAlineatsPerLinia() throws IOException {
+        Path fitxer = Files.createTempFile("linies", ".txt");
+        try {
+            List<String> esperat = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 300_000; i++) {
+                String linia = "línia " + i + " " + "x".repeat(i % 17);
+                esperat.add(linia);
+                sb.append(linia).append('\n');
+            }
+            Files.writeString(fitxer, sb, StandardCharsets.UTF_8);
+
+            List<LineReader.Chunk> trossos = LineReader.split(fitxer, 4);
+            assertEquals(4, trossos.size());
+            assertEquals(0, trossos.get(0).getStart());
+            assertEquals(Files.size(fitxer), trossos.get(trossos.size() - 1).getEnd());
+            for (int i = 1; i < trossos.size(); i++) {
+                assertEquals(trossos.get(i - 1).getEnd(), trossos.get(i).getStart());
+            }
+
+            try (Stream<String> linies = LineReader.parallelLines(fitxer, StandardCharsets.UTF_8, 4)) {
+                assertEquals(esperat, linies.collect(Collectors.toList()));
+            }
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+public class LruCacheTest {
+    @Test
+    public void testExpulsaLaMenysUsada() {
+        LruCache<Integer, String> cache = new LruCache<>("test", 2, null);
+        cache.put(1, "u");
+        cache.put(2, "dos");
+        cache.get(1); // ara la 2 és la menys usada
+        cache.put(3, "tres");
+
+        assertEquals("u", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals("tres", cache.get(3));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testGetOrLoadComptaEncertsIErrades() throws SQLException {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, Duration.ofMinutes(1));
+        int[] carregues = new int[1];
+
+        for (int i = 0; i < 3; i++) {
+            cache.getOrLoad(7, k -> {
+                carregues[0]++;
+                return "valor " + k;
+            });
+        }
+
+        // Només la primera crida ha d'anar al loader (la BBDD)
+        assertEquals(1, carregues[0]);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidarObligaATornarACarregar() throws SQLException {
+        LruCache<Integer, String> cache = new LruCache<>("test", 10, null);
+        cache.put(1, "vell");
+        cache.invalidate(1);
+
+        assertEquals("nou", cache.getOrLoad(1, k -> "nou"));
+        assertEquals(1, cache.getInvalidations());
+    }
+}
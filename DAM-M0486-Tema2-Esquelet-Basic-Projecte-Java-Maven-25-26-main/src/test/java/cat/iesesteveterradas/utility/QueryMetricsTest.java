@@ -0,0 +1,43 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class QueryMetricsTest {
+    @Test
+    public void testEmpremtaIgnoraLiteralsIEspais() {
+        assertEquals("SELECT * FROM Personaje WHERE id = ? AND nom = ?",
+            QueryMetrics.fingerprint("SELECT *  FROM Personaje\n WHERE id = 42 AND nom = 'O''Brien';"));
+        // Els números dins d'identificadors no són literals
+        assertEquals("SELECT atac2 FROM t1", QueryMetrics.fingerprint("SELECT atac2 FROM t1"));
+    }
+
+    @Test
+    public void testPercentilsDelHistograma() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1_000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1_000_000, h.getMax());
+        // Error relatiu com a molt d'1/32
+        long p50 = h.getPercentile(50);
+        assertTrue(Math.abs(p50 - 500_000) <= 500_000 / 32, "p50 = " + p50);
+        long p99 = h.getPercentile(99);
+        assertTrue(Math.abs(p99 - 990_000) <= 990_000 / 32, "p99 = " + p99);
+    }
+
+    @Test
+    public void testAgrupaPerEmpremta() {
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.record("SELECT * FROM Faccion WHERE id = 1", metrics.start(), 1, false);
+        metrics.record("SELECT * FROM Faccion WHERE id = 2", metrics.start(), 0, true);
+
+        assertEquals(1, metrics.getQueries().size());
+        QueryStats stats = metrics.getQueries().get(0);
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getErrors());
+        assertEquals(1, stats.getRows());
+    }
+}
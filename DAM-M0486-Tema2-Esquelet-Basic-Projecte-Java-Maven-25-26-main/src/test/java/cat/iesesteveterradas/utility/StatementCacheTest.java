@@ -0,0 +1,209 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatementCacheTest {
+
+    private static final String SQL_GRUP = "SELECT id FROM Fila WHERE grup = ? ORDER BY id;";
+
+    private Path db;
+    private Connection physical;
+
+    @BeforeEach
+    public void crearBaseDeDades() throws IOException, SQLException {
+        db = Files.createTempFile("honor", ".db");
+        physical = DriverManager.getConnection("jdbc:sqlite:" + db);
+        try (Statement stmt = physical.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE Fila (id INTEGER PRIMARY KEY, grup TEXT);");
+            stmt.executeUpdate("INSERT INTO Fila (id, grup) VALUES (1, 'a'), (2, 'b'), (3, 'a'), (4, 'b'), (5, 'a');");
+        }
+    }
+
+    @AfterEach
+    public void esborrarBaseDeDades() throws IOException, SQLException {
+        physical.close();
+        Files.deleteIfExists(db);
+    }
+
+    private static List<Integer> llegir(ResultSet rs) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        while (rs.next()) {
+            ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testReutilitzaElStatementRetornat() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4);
+        for (int i = 0; i < 3; i++) {
+            try (PreparedStatement pstmt = cache.prepare(SQL_GRUP)) {
+                pstmt.setString(1, "a");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    assertEquals(List.of(1, 3, 5), llegir(rs));
+                }
+            }
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.inUse());
+        cache.clear();
+    }
+
+    @Test
+    public void testElMateixSqlMentreEsLlegeix() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4);
+        PreparedStatement extern = cache.prepare(SQL_GRUP);
+        extern.setString(1, "a");
+        try (ResultSet rs = extern.executeQuery()) {
+            List<Integer> ids = new ArrayList<>();
+            List<Integer> interns = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+                // Una consulta niuada amb el mateix SQL no pot tancar el ResultSet de fora
+                try (PreparedStatement intern = cache.prepare(SQL_GRUP)) {
+                    intern.setString(1, "b");
+                    try (ResultSet rsIntern = intern.executeQuery()) {
+                        interns.addAll(llegir(rsIntern));
+                    }
+                }
+            }
+            assertEquals(List.of(1, 3, 5), ids);
+            assertEquals(List.of(2, 4, 2, 4, 2, 4), interns);
+        }
+        assertEquals(3, cache.getUncached());
+        extern.close();
+
+        // Un cop retornat, es torna a donar el de la memòria cau
+        try (PreparedStatement pstmt = cache.prepare(SQL_GRUP)) {
+            assertEquals(1, cache.getHits());
+        }
+        cache.clear();
+    }
+
+    @Test
+    public void testExpulsaElsStatementsMesAntics() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 2);
+        PreparedStatement[] reals = new PreparedStatement[3];
+        for (int i = 0; i < 3; i++) {
+            try (PreparedStatement pstmt = cache.prepare("SELECT " + i + ";")) {
+                reals[i] = pstmt.unwrap(PreparedStatement.class);
+            }
+        }
+        assertEquals(2, cache.size());
+        assertTrue(reals[0].isClosed());
+        assertFalse(reals[1].isClosed());
+        assertFalse(reals[2].isClosed());
+
+        cache.clear();
+        assertTrue(reals[1].isClosed());
+        assertTrue(reals[2].isClosed());
+    }
+
+    @Test
+    public void testNoTancaUnStatementExpulsatEnUs() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 1);
+        PreparedStatement pstmt = cache.prepare(SQL_GRUP);
+        PreparedStatement real = pstmt.unwrap(PreparedStatement.class);
+        pstmt.setString(1, "a");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            assertTrue(rs.next());
+            // Expulsa SQL_GRUP mentre encara es llegeix
+            try (PreparedStatement altre = cache.prepare("SELECT 1;")) {
+                assertEquals(1, cache.size());
+            }
+            assertFalse(real.isClosed());
+            assertEquals(List.of(3, 5), llegir(rs));
+        }
+        // Es tanca en retornar-lo
+        pstmt.close();
+        assertTrue(real.isClosed());
+        cache.clear();
+    }
+
+    @Test
+    public void testTancarBuidaElLot() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4);
+        String sql = "INSERT INTO Fila (id, grup) VALUES (?, 'c');";
+        try (PreparedStatement pstmt = cache.prepare(sql)) {
+            pstmt.setInt(1, 10);
+            pstmt.addBatch();
+            pstmt.setInt(1, 11);
+            pstmt.addBatch();
+            // Es tanca sense executar el lot
+        }
+        try (PreparedStatement pstmt = cache.prepare(sql)) {
+            pstmt.setInt(1, 12);
+            pstmt.addBatch();
+            // Només la fila d'aquest ús
+            assertEquals(1, pstmt.executeBatch().length);
+        }
+        try (Statement stmt = physical.createStatement(); ResultSet rs = stmt.executeQuery(
+                "SELECT id FROM Fila WHERE grup = 'c';")) {
+            assertEquals(List.of(12), llegir(rs));
+        }
+        assertEquals(1, cache.getHits());
+        cache.clear();
+    }
+
+    @Test
+    public void testTancarElResultSetElRetorna() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4);
+        for (int i = 0; i < 3; i++) {
+            // Com querySelectPS: qui crida només tanca el ResultSet
+            PreparedStatement pstmt = cache.prepare(SQL_GRUP);
+            pstmt.setString(1, "b");
+            pstmt.closeOnCompletion();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assertEquals(List.of(2, 4), llegir(rs));
+                assertEquals(1, cache.inUse());
+            }
+            assertTrue(pstmt.isClosed());
+            assertEquals(0, cache.inUse());
+        }
+        assertEquals(2, cache.getHits());
+        assertEquals(0, cache.getUncached());
+        cache.clear();
+    }
+
+    @Test
+    public void testLEnvoltoriNoEsPotFerServirUnCopTancat() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4);
+        PreparedStatement pstmt = cache.prepare(SQL_GRUP);
+        pstmt.close();
+        assertTrue(pstmt.isClosed());
+        assertThrows(SQLException.class, () -> pstmt.setString(1, "a"));
+
+        // Tancar-lo dos cops no retorna el que ara té un altre
+        PreparedStatement altre = cache.prepare(SQL_GRUP);
+        pstmt.close();
+        assertEquals(1, cache.inUse());
+        altre.close();
+
+        // Els que un préstec no ha tancat es retornen amb la connexió
+        PreparedStatement oblidat = cache.prepare(SQL_GRUP);
+        cache.returnAll();
+        assertEquals(0, cache.inUse());
+        assertTrue(oblidat.isClosed());
+        cache.clear();
+    }
+}
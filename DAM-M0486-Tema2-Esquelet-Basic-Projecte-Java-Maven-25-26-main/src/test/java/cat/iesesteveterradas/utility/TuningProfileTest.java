@@ -0,0 +1,56 @@
+package cat.iesesteveterradas.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+
+public class TuningProfileTest {
+
+    @Test
+    public void testPerfilPerformanceSobreUnaConnexioReal() throws IOException, SQLException {
+        // Carregar PERFORMANCE inicialitza la classe: si els conjunts de valors vàlids
+        // es declaren després dels perfils, aquí ja falla
+        TuningProfile perfil = TuningProfile.PERFORMANCE;
+        assertEquals("WAL", perfil.getJournalMode());
+
+        Path db = Files.createTempFile("honor", ".db");
+        try {
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+                perfil.apply(conn);
+                Map<String, String> valors = TuningProfile.report(conn);
+                assertEquals("wal", valors.get("journal_mode"));
+                assertEquals("1", valors.get("synchronous"));
+                assertEquals(String.valueOf(256L * 1024 * 1024), valors.get("mmap_size"));
+                assertEquals("-64000", valors.get("cache_size"));
+                assertEquals("2", valors.get("temp_store"));
+            }
+            // WAL queda guardat a l'arxiu; la resta és per connexió
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+                TuningProfile.DRIVER_DEFAULT.apply(conn);
+                Map<String, String> valors = TuningProfile.report(conn);
+                assertEquals("wal", valors.get("journal_mode"));
+                assertEquals("0", valors.get("temp_store"));
+            }
+        } finally {
+            Files.deleteIfExists(db);
+            Files.deleteIfExists(Path.of(db + "-wal"));
+            Files.deleteIfExists(Path.of(db + "-shm"));
+        }
+    }
+
+    @Test
+    public void testRebutjaValorsDesconeguts() {
+        // Els valors van directament al PRAGMA
+        assertThrows(IllegalArgumentException.class,
+            () -> new TuningProfile("dolent", "WAL; DROP TABLE Faccion", null, null, null, null));
+        assertEquals("NORMAL", new TuningProfile("minuscules", null, "normal", null, null, null).getSynchronous());
+    }
+}